@@ -0,0 +1,47 @@
+package de.papke.health.checker.benchmark;
+
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Helper methods shared by all benchmarks.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+final class BenchmarkSupport {
+	
+	private static final PrintStream NULL_STREAM = new PrintStream(new OutputStream() {
+		
+		@Override
+		public void write(int b) {
+		}
+		
+		@Override
+		public void write(byte[] b, int off, int len) {
+		}
+	});
+	
+	private BenchmarkSupport() {}
+	
+	/**
+	 * Method for discarding everything the health checkers print
+	 * to the console, so the benchmarks do not measure the terminal.
+	 * 
+	 * @return the original console stream
+	 */
+	static PrintStream silence() {
+		PrintStream out = System.out;
+		System.setOut(NULL_STREAM);
+		return out;
+	}
+	
+	/**
+	 * Method for restoring the original console stream.
+	 * 
+	 * @param out
+	 */
+	static void restore(PrintStream out) {
+		System.setOut(out);
+	}
+}
@@ -0,0 +1,136 @@
+package de.papke.health.checker.benchmark;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Level;
+import org.openjdk.jmh.annotations.Measurement;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+import org.openjdk.jmh.annotations.Warmup;
+
+import de.papke.health.checker.HealthChecker;
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.engine.CheckExecutor;
+import de.papke.health.checker.engine.HealthCheck;
+import de.papke.health.checker.engine.ResultListener;
+import de.papke.health.checker.schedule.HashedWheelScheduler;
+
+/**
+ * Benchmark for the scheduling overhead of the hashed wheel scheduler 
+ * with a large number of registered health checks.
+ * 
+ * The health checks do not do any I/O, so the numbers only show the
+ * costs of the scheduler itself. The time for firing all health checks 
+ * includes the interval, everything above the interval is the timer 
+ * drift and the hand-over to the executor.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class HashedWheelSchedulerBenchmark {
+	
+	private static final int REGISTER_BATCH_SIZE = 100000;
+	private static final long INTERVAL_MILLIS = 200;
+	
+	/**
+	 * Health checker which does nothing.
+	 */
+	private static class NoopHealthChecker extends HealthChecker {
+		
+		private static Options options = new Options();
+		
+		static {
+			options.addOption(new Option("i", "id", true, "The id of the health check"));
+		}
+		
+		public NoopHealthChecker() {
+			super(null, options);
+		}
+		
+		@Override
+		public CheckResult check(CommandLine commandLine) throws Exception {
+			return up(null);
+		}
+	}
+	
+	@Param({ "10000", "100000" })
+	public int checks;
+	
+	private HealthCheck[] healthChecks;
+	private CheckExecutor executor;
+	private HashedWheelScheduler scheduler;
+	private CountDownLatch fired;
+	private int registered;
+	
+	@Setup(Level.Trial)
+	public void setupTrial() throws Exception {
+		
+		// parse the command lines once, so they are not measured
+		NoopHealthChecker healthChecker = new NoopHealthChecker();
+		healthChecks = new HealthCheck[checks];
+		for (int i = 0; i < checks; i++) {
+			CommandLine commandLine = healthChecker.parse(new String[] { "--id", String.valueOf(i) });
+			healthChecks[i] = new HealthCheck("check-" + i, null, healthChecker, commandLine);
+		}
+		
+		executor = new CheckExecutor(Runtime.getRuntime().availableProcessors());
+	}
+	
+	@Setup(Level.Iteration)
+	public void setupIteration() {
+		
+		// every iteration starts with an empty wheel
+		final CountDownLatch latch = new CountDownLatch(checks);
+		fired = latch;
+		registered = 0;
+		scheduler = new HashedWheelScheduler(executor, new ResultListener() {
+			
+			public void onResult(CheckResult result) {
+				latch.countDown();
+			}
+		});
+	}
+	
+	@TearDown(Level.Iteration)
+	public void tearDownIteration() {
+		scheduler.stop();
+	}
+	
+	@TearDown(Level.Trial)
+	public void tearDownTrial() {
+		executor.shutdown();
+	}
+	
+	@Benchmark
+	@Warmup(batchSize = REGISTER_BATCH_SIZE)
+	@Measurement(batchSize = REGISTER_BATCH_SIZE)
+	public void register() {
+		scheduler.register(healthChecks[registered++ % checks], INTERVAL_MILLIS);
+	}
+	
+	@Benchmark
+	public void fireAll() throws InterruptedException {
+		
+		for (HealthCheck healthCheck : healthChecks) {
+			scheduler.register(healthCheck, INTERVAL_MILLIS);
+		}
+		
+		// wait until every health check has run once
+		scheduler.start();
+		fired.await();
+	}
+}
@@ -0,0 +1,103 @@
+package de.papke.health.checker.benchmark;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetSocketAddress;
+import java.util.Arrays;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.cli.CommandLine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.api.Type;
+import de.papke.health.checker.engine.HealthCheck;
+import de.papke.health.checker.http.HttpHealthChecker;
+
+/**
+ * Benchmark for the HTTP health checker against an embedded HTTP server.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class HttpCheckBenchmark {
+	
+	@Param({ "1024", "65536" })
+	public int bodySize;
+	
+	private HttpServer server;
+	private ExecutorService serverExecutor;
+	private HttpHealthChecker healthChecker;
+	private CommandLine commandLine;
+	private HealthCheck healthCheck;
+	private PrintStream out;
+	
+	@Setup
+	public void setup() throws Exception {
+		
+		// create response body with the status line at the end
+		final byte[] body = new byte[bodySize];
+		Arrays.fill(body, (byte) 'x');
+		byte[] status = "status: OK".getBytes("UTF-8");
+		System.arraycopy(status, 0, body, body.length - status.length, status.length);
+		
+		// start embedded HTTP server
+		server = HttpServer.create(new InetSocketAddress("127.0.0.1", 0), 0);
+		serverExecutor = Executors.newFixedThreadPool(4);
+		server.setExecutor(serverExecutor);
+		server.createContext("/", new HttpHandler() {
+			
+			public void handle(HttpExchange exchange) throws IOException {
+				exchange.getResponseHeaders().set("Content-Type", "text/plain; charset=UTF-8");
+				exchange.sendResponseHeaders(200, body.length);
+				OutputStream outputStream = exchange.getResponseBody();
+				outputStream.write(body);
+				outputStream.close();
+			}
+		});
+		server.start();
+		
+		// create health check
+		String url = "http://127.0.0.1:" + server.getAddress().getPort() + "/";
+		healthChecker = new HttpHealthChecker();
+		commandLine = healthChecker.parse(new String[] { "-l", url, "-x", "status: OK" });
+		healthCheck = new HealthCheck(String.valueOf(Type.http), Type.http, healthChecker, commandLine);
+		
+		out = BenchmarkSupport.silence();
+	}
+	
+	@TearDown
+	public void tearDown() {
+		BenchmarkSupport.restore(out);
+		server.stop(0);
+		serverExecutor.shutdownNow();
+	}
+	
+	@Benchmark
+	public CheckResult check() throws Exception {
+		return healthChecker.check(commandLine);
+	}
+	
+	@Benchmark
+	public CheckResult execute() {
+		return healthCheck.execute();
+	}
+}
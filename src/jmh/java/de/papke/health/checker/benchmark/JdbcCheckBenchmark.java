@@ -0,0 +1,85 @@
+package de.papke.health.checker.benchmark;
+
+import java.io.PrintStream;
+import java.sql.Connection;
+import java.sql.DriverManager;
+import java.sql.PreparedStatement;
+import java.sql.Statement;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.cli.CommandLine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.jdbc.JdbcHealthChecker;
+
+/**
+ * Benchmark for the JDBC health checker against an embedded H2 database.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class JdbcCheckBenchmark {
+	
+	private static final String DRIVER = "org.h2.Driver";
+	private static final String URL = "jdbc:h2:mem:health;DB_CLOSE_DELAY=-1";
+	private static final String USERNAME = "sa";
+	private static final String PASSWORD = "";
+	
+	@Param({ "1", "100" })
+	public int rows;
+	
+	private Connection connection;
+	private JdbcHealthChecker healthChecker;
+	private CommandLine commandLine;
+	private PrintStream out;
+	
+	@Setup
+	public void setup() throws Exception {
+		
+		// create table with status rows, the open connection keeps the database alive
+		Class.forName(DRIVER);
+		connection = DriverManager.getConnection(URL, USERNAME, PASSWORD);
+		Statement statement = connection.createStatement();
+		statement.execute("DROP TABLE IF EXISTS status");
+		statement.execute("CREATE TABLE status (id INT PRIMARY KEY, name VARCHAR(64), state VARCHAR(16))");
+		statement.close();
+		
+		PreparedStatement insert = connection.prepareStatement("INSERT INTO status VALUES (?, ?, ?)");
+		for (int i = 0; i < rows; i++) {
+			insert.setInt(1, i);
+			insert.setString(2, "service-" + i);
+			insert.setString(3, "OK");
+			insert.executeUpdate();
+		}
+		insert.close();
+		
+		// create health check
+		healthChecker = new JdbcHealthChecker();
+		commandLine = healthChecker.parse(new String[] { "-y", DRIVER, "-l", URL, "-u", USERNAME, "-p", PASSWORD, "-q", "SELECT * FROM status", "-x", "OK" });
+		
+		out = BenchmarkSupport.silence();
+	}
+	
+	@TearDown
+	public void tearDown() throws Exception {
+		BenchmarkSupport.restore(out);
+		connection.close();
+	}
+	
+	@Benchmark
+	public CheckResult check() throws Exception {
+		return healthChecker.check(commandLine);
+	}
+}
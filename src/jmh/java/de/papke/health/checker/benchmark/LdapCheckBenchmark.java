@@ -0,0 +1,82 @@
+package de.papke.health.checker.benchmark;
+
+import java.io.PrintStream;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.cli.CommandLine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import com.unboundid.ldap.listener.InMemoryDirectoryServer;
+import com.unboundid.ldap.listener.InMemoryDirectoryServerConfig;
+import com.unboundid.ldap.listener.InMemoryListenerConfig;
+
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.ldap.LdapHealthChecker;
+
+/**
+ * Benchmark for the LDAP health checker against an in-memory directory server.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class LdapCheckBenchmark {
+	
+	private static final String BASE_DN = "dc=example,dc=com";
+	private static final String BIND_DN = "cn=admin," + BASE_DN;
+	private static final String BIND_PASSWORD = "secret";
+	
+	@Param({ "1", "100" })
+	public int entries;
+	
+	private InMemoryDirectoryServer server;
+	private LdapHealthChecker healthChecker;
+	private CommandLine commandLine;
+	private PrintStream out;
+	
+	@Setup
+	public void setup() throws Exception {
+		
+		// start in-memory directory server
+		InMemoryDirectoryServerConfig config = new InMemoryDirectoryServerConfig(BASE_DN);
+		config.addAdditionalBindCredentials(BIND_DN, BIND_PASSWORD);
+		config.setListenerConfigs(InMemoryListenerConfig.createLDAPConfig("default", 0));
+		config.setSchema(null);
+		server = new InMemoryDirectoryServer(config);
+		server.startListening();
+		
+		// add entries
+		server.add("dn: " + BASE_DN, "objectClass: top", "objectClass: domain", "dc: example");
+		for (int i = 0; i < entries; i++) {
+			server.add("dn: cn=service-" + i + "," + BASE_DN, "objectClass: top", "objectClass: device", "cn: service-" + i, "description: OK");
+		}
+		
+		// create health check
+		String url = "ldap://127.0.0.1:" + server.getListenPort();
+		healthChecker = new LdapHealthChecker();
+		commandLine = healthChecker.parse(new String[] { "-l", url, "-u", BIND_DN, "-p", BIND_PASSWORD, "-b", BASE_DN, "-s", "sub", "-f", "(cn=service-*)", "-y", "description: OK" });
+		
+		out = BenchmarkSupport.silence();
+	}
+	
+	@TearDown
+	public void tearDown() {
+		BenchmarkSupport.restore(out);
+		server.shutDown(true);
+	}
+	
+	@Benchmark
+	public CheckResult check() throws Exception {
+		return healthChecker.check(commandLine);
+	}
+}
@@ -0,0 +1,136 @@
+package de.papke.health.checker.benchmark;
+
+import java.util.Arrays;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Pattern;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+
+import de.papke.health.checker.HealthChecker;
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.api.Status;
+import de.papke.health.checker.api.Type;
+import de.papke.health.checker.http.HttpParameter;
+import de.papke.health.checker.metrics.MetricsRegistry;
+import de.papke.health.checker.util.PatternMatcher;
+
+/**
+ * Benchmark for the pattern matching and result formatting paths,
+ * which are shared by all health checkers and do not need a backend.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.NANOSECONDS)
+public class MatchingBenchmark {
+	
+	/**
+	 * Health checker which exposes the pattern matcher lookup.
+	 */
+	private static class PatternHealthChecker extends HealthChecker {
+		
+		private static Options options = new Options();
+		
+		static {
+			options.addOption(new Option("x", "pattern", true, "The regex pattern"));
+			options.addOption(new Option(null, "exclude-pattern", true, "The regex pattern which must not be found"));
+		}
+		
+		public PatternHealthChecker() {
+			super(null, options);
+		}
+		
+		public PatternMatcher patternMatcher(CommandLine commandLine) {
+			return getPatternMatcher(commandLine, HttpParameter.PATTERN, HttpParameter.EXCLUDE_PATTERN);
+		}
+		
+		@Override
+		public CheckResult check(CommandLine commandLine) throws Exception {
+			return up(null);
+		}
+	}
+	
+	@Param({ "1024", "1048576" })
+	public int bodySize;
+	
+	private String body;
+	private Pattern pattern;
+	private Pattern[] patterns;
+	private PatternMatcher patternMatcher;
+	private PatternHealthChecker healthChecker;
+	private CommandLine commandLine;
+	private CheckResult result;
+	
+	@Setup
+	public void setup() throws Exception {
+		
+		// create response body with the status line at the end
+		char[] chars = new char[bodySize];
+		Arrays.fill(chars, 'x');
+		String status = "\"build\":\"4f2a9c1\",\"status\":\"UP\"";
+		status.getChars(0, status.length(), chars, chars.length - status.length());
+		body = new String(chars);
+		
+		healthChecker = new PatternHealthChecker();
+		// three conditions of one health check: two includes and one exclude
+		String[] args = new String[] { "-x", "\"status\":\"UP\"", "-x", "\"build\":\"[0-9a-f]+\"", "--exclude-pattern", "ERROR" };
+		commandLine = healthChecker.parse(args);
+		patternMatcher = healthChecker.patternMatcher(commandLine);
+		pattern = Pattern.compile(args[1]);
+		patterns = new Pattern[] { Pattern.compile(args[1]), Pattern.compile(args[3]), Pattern.compile(args[5]) };
+		
+		// create result with timing phases
+		Map<String, Long> phases = new LinkedHashMap<String, Long>();
+		phases.put("dns", 400000L);
+		phases.put("connect", 1200000L);
+		phases.put("tls", 8000000L);
+		phases.put("ttfb", 25000000L);
+		phases.put("body", 3000000L);
+		result = new CheckResult("http", Type.http, Status.UP, 38, "OK", phases, bodySize);
+		MetricsRegistry.getInstance().record(result, 38000000L);
+	}
+	
+	@Benchmark
+	public PatternMatcher getPatternMatcher() {
+		return healthChecker.patternMatcher(commandLine);
+	}
+	
+	@Benchmark
+	public boolean find() {
+		return pattern.matcher(body).find();
+	}
+	
+	@Benchmark
+	public boolean findSeparately() {
+		return patterns[0].matcher(body).find() && patterns[1].matcher(body).find() && !patterns[2].matcher(body).find();
+	}
+	
+	@Benchmark
+	public boolean scanCombined() {
+		return patternMatcher.scan(body).isMatched();
+	}
+	
+	@Benchmark
+	public String formatResult() {
+		return result.toString();
+	}
+	
+	@Benchmark
+	public String renderMetrics() {
+		return MetricsRegistry.getInstance().render();
+	}
+}
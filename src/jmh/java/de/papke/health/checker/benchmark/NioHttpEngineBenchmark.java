@@ -0,0 +1,217 @@
+package de.papke.health.checker.benchmark;
+
+import java.io.IOException;
+import java.net.InetSocketAddress;
+import java.nio.ByteBuffer;
+import java.nio.channels.ClosedSelectorException;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.util.ArrayDeque;
+import java.util.ArrayList;
+import java.util.Iterator;
+import java.util.List;
+import java.util.Queue;
+import java.util.concurrent.TimeUnit;
+
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Param;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.engine.CheckExecutor;
+import de.papke.health.checker.engine.HealthCheck;
+import de.papke.health.checker.http.HttpHealthChecker;
+
+/**
+ * Benchmark for the HTTP engines with a large number of concurrent 
+ * endpoints.
+ * 
+ * All endpoints are served by a stub server, which answers every request 
+ * after a fixed delay, so all health checks are in flight at the same 
+ * time. The endpoints are spread over several ports, so the blocking 
+ * engine is only limited by the total size of its connection pool and 
+ * not by the connections per route. Every connection needs a file 
+ * descriptor on both sides, so the number of endpoints is limited by 
+ * the descriptor limit. The memory 
+ * footprint of the engines is shown with the GC profiler, e.g.:
+ * 
+ * <pre>
+ * mvn -Pbenchmark test-compile exec:exec -Djmh.args="-f 1 -wi 2 -i 3 -prof gc NioHttpEngineBenchmark"
+ * </pre>
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.SingleShotTime)
+@OutputTimeUnit(TimeUnit.MILLISECONDS)
+public class NioHttpEngineBenchmark {
+	
+	private static final String LOCALHOST = "127.0.0.1";
+	private static final int BACKLOG = 65535;
+	private static final long DELAY_MILLIS = 200;
+	private static final int PORTS = 10;
+	
+	private static final byte[] RESPONSE = ("HTTP/1.1 200 OK\r\n"
+			+ "Content-Type: application/json\r\n"
+			+ "Content-Length: 15\r\n"
+			+ "Connection: close\r\n"
+			+ "\r\n"
+			+ "{\"status\":\"UP\"}").getBytes(Charset.forName("ISO-8859-1"));
+	
+	/**
+	 * Stub server, which answers every request after a fixed delay.
+	 */
+	@State(Scope.Benchmark)
+	public static class StubServer extends Thread {
+		
+		private final Queue<SelectionKey> pendingQueue = new ArrayDeque<SelectionKey>();
+		private final ByteBuffer readBuffer = ByteBuffer.allocate(4096);
+		private final long delayNanos = TimeUnit.MILLISECONDS.toNanos(DELAY_MILLIS);
+		
+		private final ServerSocketChannel[] serverChannels = new ServerSocketChannel[PORTS];
+		private Selector selector;
+		
+		public StubServer() {
+			super("stub-server");
+			setDaemon(true);
+		}
+		
+		@Setup
+		public void open() throws IOException {
+			selector = Selector.open();
+			for (int i = 0; i < serverChannels.length; i++) {
+				serverChannels[i] = ServerSocketChannel.open();
+				serverChannels[i].bind(new InetSocketAddress(LOCALHOST, 0), BACKLOG);
+				serverChannels[i].configureBlocking(false);
+				serverChannels[i].register(selector, SelectionKey.OP_ACCEPT);
+			}
+			start();
+		}
+		
+		@TearDown
+		public void close() throws Exception {
+			selector.close();
+			for (ServerSocketChannel serverChannel : serverChannels) {
+				serverChannel.close();
+			}
+			join();
+		}
+		
+		private int getPort(int endpoint) {
+			return serverChannels[endpoint % serverChannels.length].socket().getLocalPort();
+		}
+		
+		@Override
+		public void run() {
+			while (selector.isOpen()) {
+				try {
+					
+					// wait for the next request or the next response
+					SelectionKey firstKey = pendingQueue.peek();
+					long waitMillis = firstKey == null ? 0 : Math.max(1, TimeUnit.NANOSECONDS.toMillis((Long) firstKey.attachment() - System.nanoTime()));
+					selector.select(waitMillis);
+					
+					Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+					while (keyIterator.hasNext()) {
+						
+						SelectionKey key = keyIterator.next();
+						keyIterator.remove();
+						
+						if (key.isAcceptable()) {
+							SocketChannel channel;
+							while ((channel = ((ServerSocketChannel) key.channel()).accept()) != null) {
+								channel.configureBlocking(false);
+								channel.register(selector, SelectionKey.OP_READ);
+							}
+						}
+						else if (key.isReadable()) {
+							
+							// the requests are small, so the first read is enough
+							readBuffer.clear();
+							if (((SocketChannel) key.channel()).read(readBuffer) < 0) {
+								key.channel().close();
+								continue;
+							}
+							
+							key.interestOps(0);
+							key.attach(System.nanoTime() + delayNanos);
+							pendingQueue.add(key);
+						}
+					}
+					
+					// answer the requests, whose delay is over
+					long now = System.nanoTime();
+					while (!pendingQueue.isEmpty() && now - (Long) pendingQueue.peek().attachment() >= 0) {
+						SocketChannel channel = (SocketChannel) pendingQueue.poll().channel();
+						try {
+							channel.write(ByteBuffer.wrap(RESPONSE));
+						}
+						finally {
+							channel.close();
+						}
+					}
+				}
+				catch (ClosedSelectorException e) {
+					// the benchmark is over
+				}
+				catch (IOException e) {
+					System.err.println(e.getMessage());
+				}
+			}
+		}
+	}
+	
+	@Param({ "nio", "blocking" })
+	public String engine;
+	
+	@Param({ "1000", "5000" })
+	public int endpoints;
+	
+	private List<HealthCheck> healthCheckList;
+	private CheckExecutor executor;
+	
+	@Setup
+	public void setup(StubServer stubServer) throws Exception {
+		
+		// create one health check per endpoint
+		HttpHealthChecker healthChecker = new HttpHealthChecker();
+		healthCheckList = new ArrayList<HealthCheck>();
+		for (int i = 0; i < endpoints; i++) {
+			String url = "http://" + LOCALHOST + ":" + stubServer.getPort(i) + "/endpoint-" + i;
+			healthCheckList.add(new HealthCheck(url, null, healthChecker, healthChecker.parse(new String[] {
+					"--url", url, "--engine", engine, "--pattern", "UP", "--connect-timeout", "30000", "--response-timeout", "30000" })));
+		}
+		
+		executor = new CheckExecutor(endpoints);
+	}
+	
+	@TearDown
+	public void tearDown() {
+		executor.shutdown();
+	}
+	
+	@Benchmark
+	public int checkAll() throws Exception {
+		
+		// all health checks are waiting for the stub server at the same time
+		int up = 0;
+		for (CheckResult result : executor.runAll(healthCheckList)) {
+			if (!result.isUp()) {
+				throw new IllegalStateException("The health check " + result.getName() + " has failed: " + result.getMessage());
+			}
+			up++;
+		}
+		
+		return up;
+	}
+}
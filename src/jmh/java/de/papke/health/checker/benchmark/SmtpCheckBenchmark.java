@@ -0,0 +1,137 @@
+package de.papke.health.checker.benchmark;
+
+import java.io.BufferedReader;
+import java.io.IOException;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.io.PrintStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.cli.CommandLine;
+import org.openjdk.jmh.annotations.Benchmark;
+import org.openjdk.jmh.annotations.BenchmarkMode;
+import org.openjdk.jmh.annotations.Mode;
+import org.openjdk.jmh.annotations.OutputTimeUnit;
+import org.openjdk.jmh.annotations.Scope;
+import org.openjdk.jmh.annotations.Setup;
+import org.openjdk.jmh.annotations.State;
+import org.openjdk.jmh.annotations.TearDown;
+
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.smtp.SmtpHealthChecker;
+
+/**
+ * Benchmark for the SMTP health checker against a fake SMTP server, 
+ * which only answers the commands needed for connecting.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+@State(Scope.Benchmark)
+@BenchmarkMode(Mode.AverageTime)
+@OutputTimeUnit(TimeUnit.MICROSECONDS)
+public class SmtpCheckBenchmark {
+	
+	private static final String CHARSET = "US-ASCII";
+	
+	private ServerSocket serverSocket;
+	private ExecutorService serverExecutor;
+	private SmtpHealthChecker healthChecker;
+	private CommandLine commandLine;
+	private PrintStream out;
+	
+	/**
+	 * Helper method for answering the SMTP commands of one connection.
+	 * 
+	 * @param socket
+	 * @throws IOException
+	 */
+	private static void converse(Socket socket) throws IOException {
+		
+		try {
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), CHARSET));
+			OutputStream outputStream = socket.getOutputStream();
+			
+			// send greeting
+			outputStream.write("220 localhost ESMTP fake\r\n".getBytes(CHARSET));
+			outputStream.flush();
+			
+			String line;
+			while ((line = reader.readLine()) != null) {
+				
+				String command = line.length() >= 4 ? line.substring(0, 4).toUpperCase() : line.toUpperCase();
+				if (command.equals("EHLO")) {
+					outputStream.write("250-localhost\r\n250 SIZE 10240000\r\n".getBytes(CHARSET));
+				}
+				else if (command.equals("QUIT")) {
+					outputStream.write("221 Bye\r\n".getBytes(CHARSET));
+					outputStream.flush();
+					break;
+				}
+				else {
+					outputStream.write("250 OK\r\n".getBytes(CHARSET));
+				}
+				
+				outputStream.flush();
+			}
+		}
+		finally {
+			socket.close();
+		}
+	}
+	
+	@Setup
+	public void setup() throws Exception {
+		
+		// start fake SMTP server
+		serverSocket = new ServerSocket(0, 50, InetAddress.getByName("127.0.0.1"));
+		serverExecutor = Executors.newCachedThreadPool();
+		serverExecutor.execute(new Runnable() {
+			
+			public void run() {
+				while (!serverSocket.isClosed()) {
+					try {
+						final Socket socket = serverSocket.accept();
+						serverExecutor.execute(new Runnable() {
+							
+							public void run() {
+								try {
+									converse(socket);
+								}
+								catch (IOException e) {
+									// connection closed by the client
+								}
+							}
+						});
+					}
+					catch (IOException e) {
+						// server socket closed
+					}
+				}
+			}
+		});
+		
+		// create health check
+		healthChecker = new SmtpHealthChecker();
+		commandLine = healthChecker.parse(new String[] { "--hostname", "127.0.0.1", "--port", String.valueOf(serverSocket.getLocalPort()) });
+		
+		out = BenchmarkSupport.silence();
+	}
+	
+	@TearDown
+	public void tearDown() throws Exception {
+		BenchmarkSupport.restore(out);
+		serverSocket.close();
+		serverExecutor.shutdownNow();
+	}
+	
+	@Benchmark
+	public CheckResult check() throws Exception {
+		return healthChecker.check(commandLine);
+	}
+}
@@ -2,6 +2,7 @@ package de.papke.health.checker;
 
 import org.apache.commons.cli.CommandLine;
 
+import de.papke.health.checker.api.CheckResult;
 import de.papke.health.checker.api.Type;
 
 /**
@@ -16,22 +17,26 @@ import de.papke.health.checker.api.Type;
 public class DefaultHealthChecker extends HealthChecker {
 
 	public DefaultHealthChecker() {
-		super(null);
+		super(null, null);
 	}
 
 	/* (non-Javadoc)
-	 * @see de.papke.health.checker.HealthChecker#execute(java.lang.String[])
+	 * @see de.papke.health.checker.HealthChecker#run(java.lang.String[])
 	 */
 	@Override
-	public void execute(String[] args) throws Exception {
-		check(null);
+	public int run(String[] args) {
+		
+		CheckResult result = check(null);
+		System.err.println(result.getMessage());
+		
+		return getExitCode(result.getStatus());
 	}
 
 	/* (non-Javadoc)
 	 * @see de.papke.health.checker.HealthChecker#check(org.apache.commons.cli.CommandLine)
 	 */
 	@Override
-	public void check(CommandLine commandLine) throws Exception {
+	public CheckResult check(CommandLine commandLine) {
 		
 		Type[] types = Type.values();
 		
@@ -46,6 +51,6 @@ public class DefaultHealthChecker extends HealthChecker {
 			}
 		}
 		
-		throw new Exception("Please specify a supported type [" + availableTypeString + "] as environment variable '" + HealthCheckerFactory.HEALTH_CHECKER_TYPE + "'");		
+		return down("Please specify a supported type [" + availableTypeString + "] as environment variable '" + HealthCheckerFactory.HEALTH_CHECKER_TYPE + "'", null);
 	}
 }
@@ -1,10 +1,45 @@
 package de.papke.health.checker;
 
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.ConcurrentMap;
+import java.util.regex.Pattern;
+
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.CommandLineParser;
 import org.apache.commons.cli.HelpFormatter;
 import org.apache.commons.cli.Options;
+import org.apache.commons.cli.ParseException;
 import org.apache.commons.cli.PosixParser;
+import org.apache.commons.lang3.StringUtils;
+
+import de.papke.health.checker.api.CheckContext;
+import de.papke.health.checker.api.DeadlineExceededException;
+import de.papke.health.checker.api.GeneralParameter;
+import de.papke.health.checker.api.Parameter;
+import de.papke.health.checker.api.Status;
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.api.Type;
+import de.papke.health.checker.cache.FileResultCache;
+import de.papke.health.checker.engine.HealthCheck;
+import de.papke.health.checker.engine.CheckExecutor;
+import de.papke.health.checker.engine.ResultListener;
+import de.papke.health.checker.engine.Watchdog;
+import de.papke.health.checker.metrics.MetricsRegistry;
+import de.papke.health.checker.schedule.HashedWheelScheduler;
+import de.papke.health.checker.schedule.HealthCheckScheduler;
+import de.papke.health.checker.status.ResultTable;
+import de.papke.health.checker.status.StatusServer;
+import de.papke.health.checker.util.PatternMatcher;
+import de.papke.health.checker.util.StartupReport;
+import de.papke.health.checker.util.TimeUtils;
 
 /**
  * Abstract health checker class.
@@ -18,12 +53,25 @@ public abstract class HealthChecker {
 	
 	public static final String APP_NAME = "health-checker"; 
 	
+	private static final long DEFAULT_STATUS_INTERVAL = 10000;
+	
+	protected Type type;
 	protected Options options;
 	
+	private final ConcurrentMap<String, PatternMatcher> patternMatcherCache = new ConcurrentHashMap<String, PatternMatcher>();
+	
 	public HealthChecker(){}
 	
-	public HealthChecker(Options options) {
+	public HealthChecker(Type type, Options options) {
+		this.type = type;
 		this.options = options;
+		
+		// add options which are available for all health checkers
+		if (options != null) {
+			for (GeneralParameter parameter : GeneralParameter.values()) {
+				options.addOption(parameter.getOption());
+			}
+		}
 	}
 	
 	/**
@@ -36,27 +84,351 @@ public abstract class HealthChecker {
 	}
 	
 	/**
-	 * Method for executing the health checker.
-	 * This method parses the command line arguments and 
-	 * passes them to the concrete health checker class.
-	 * All exceptions during the health checks are printed
-	 * to console here.
+	 * Method for creating the outcome of a successful health check.
+	 * 
+	 * @param detail the output of the health checker or null
+	 * @return
+	 */
+	protected CheckResult up(String detail) {
+		return new CheckResult(null, type, Status.UP, 0, null, detail, Collections.<String, Long>emptyMap(), 0, System.currentTimeMillis());
+	}
+	
+	/**
+	 * Method for creating the outcome of a failed health check.
+	 * 
+	 * @param message the reason of the failure
+	 * @param detail the output of the health checker or null
+	 * @return
+	 */
+	protected CheckResult down(String message, String detail) {
+		return new CheckResult(null, type, Status.DOWN, 0, message, detail, Collections.<String, Long>emptyMap(), 0, System.currentTimeMillis());
+	}
+	
+	/**
+	 * Method for printing the result of a one-shot health check.
+	 * 
+	 * @param result
+	 */
+	protected void printResult(CheckResult result) {
+		
+		// print output of the health checker
+		if (StringUtils.isNotEmpty(result.getDetail())) {
+			System.out.println(result.getDetail());
+		}
+		
+		// print timing of all phases
+		if (!result.getPhases().isEmpty()) {
+			System.out.println("Timing: " + CheckContext.format(result.getPhases()));
+		}
+		
+		// print reason of the failure
+		if (!result.isUp()) {
+			System.err.println(result.getMessage());
+		}
+	}
+	
+	/**
+	 * Method for mapping the status of a health check to the exit code.
+	 * 
+	 * @param status
+	 * @return
+	 */
+	protected int getExitCode(Status status) {
+		
+		switch (status) {
+			case UP:
+				return 0;
+			case TIMEOUT:
+				return -2;
+			default:
+				return -1;
+		}
+	}
+	
+	/**
+	 * Method for getting the matcher for all patterns of the given 
+	 * parameters. Both parameters can be given multiple times. Compiled 
+	 * matchers are cached, so repeated checks with the same patterns 
+	 * do not compile them again.
+	 * 
+	 * @param commandLine
+	 * @param patternParameter the patterns which must be found
+	 * @param excludePatternParameter the patterns which must not be found
+	 * @return
+	 */
+	protected PatternMatcher getPatternMatcher(CommandLine commandLine, Parameter patternParameter, Parameter excludePatternParameter) {
+		
+		// get patterns which must be found
+		List<String> includeList = Collections.singletonList(((Pattern) patternParameter.getDefaultValue()).pattern());
+		String[] patterns = commandLine.getOptionValues(patternParameter.toString());
+		if (patterns != null) {
+			includeList = Arrays.asList(patterns);
+		}
+		
+		// get patterns which must not be found
+		List<String> excludeList = Collections.emptyList();
+		String[] excludePatterns = commandLine.getOptionValues(excludePatternParameter.toString());
+		if (excludePatterns != null) {
+			excludeList = Arrays.asList(excludePatterns);
+		}
+		
+		String key = StringUtils.join(includeList, '\n') + '\u0000' + StringUtils.join(excludeList, '\n');
+		PatternMatcher patternMatcher = patternMatcherCache.get(key);
+		if (patternMatcher == null) {
+			patternMatcher = new PatternMatcher(includeList, excludeList);
+			patternMatcherCache.put(key, patternMatcher);
+		}
+		
+		return patternMatcher;
+	}
+	
+	/**
+	 * Method for parsing the command line arguments
+	 * with the options of this health checker.
+	 * 
+	 * @param args
+	 * @return
+	 * @throws Exception
+	 */
+	public CommandLine parse(String[] args) throws Exception {
+		
+		// create the command line parser
+		CommandLineParser parser = new PosixParser();
+
+		// parse the command line arguments
+		return parser.parse(options, args);
+	}
+	
+	/**
+	 * Method for getting all health checks which are defined
+	 * by the given command line. This is a single health check
+	 * by default.
+	 * 
+	 * @param commandLine
+	 * @return
+	 * @throws Exception
+	 */
+	public List<HealthCheck> getHealthChecks(CommandLine commandLine) throws Exception {
+		return Collections.singletonList(new HealthCheck(String.valueOf(type), type, this, commandLine));
+	}
+	
+	/**
+	 * Method for getting the maximum number of health checks 
+	 * which are executed in parallel.
+	 * 
+	 * @param commandLine
+	 * @return
+	 */
+	protected int getConcurrency(CommandLine commandLine) {
+		return 1;
+	}
+	
+	/**
+	 * Method for serving the health check results via HTTP.
+	 * The results are refreshed in the background and this
+	 * method blocks forever.
+	 * 
+	 * @param commandLine
+	 * @param port
+	 * @param intervalMillis
+	 * @throws Exception
+	 */
+	protected void serve(CommandLine commandLine, int port, long intervalMillis) throws Exception {
+		
+		final String metricsFile = commandLine.getOptionValue(GeneralParameter.METRICS_FILE.toString());
+		
+		List<HealthCheck> healthCheckList = getHealthChecks(commandLine);
+		final ResultTable resultTable = new ResultTable();
+		
+		// refresh results in the background
+		CheckExecutor executor = new CheckExecutor(Math.max(1, Math.min(getConcurrency(commandLine), healthCheckList.size())));
+		HashedWheelScheduler scheduler = new HashedWheelScheduler(executor, new ResultListener() {
+			
+			public void onResult(CheckResult result) {
+				resultTable.update(result);
+			}
+		});
+		
+		for (HealthCheck healthCheck : healthCheckList) {
+			scheduler.register(healthCheck, intervalMillis);
+		}
+		
+		scheduler.start();
+		
+		// serve results from memory
+		StatusServer server = new StatusServer(port, resultTable, healthCheckList.size());
+		server.start();
+		
+		System.out.println("Serving " + healthCheckList.size() + " health check results on port " + server.getPort());
+		
+		// write metrics file periodically
+		if (StringUtils.isNotEmpty(metricsFile)) {
+			ScheduledExecutorService metricsExecutor = Executors.newSingleThreadScheduledExecutor();
+			metricsExecutor.scheduleWithFixedDelay(new Runnable() {
+				
+				public void run() {
+					try {
+						MetricsRegistry.getInstance().write(metricsFile);
+					}
+					catch (Exception e) {
+						System.err.println(e.getMessage());
+					}
+				}
+			}, intervalMillis, intervalMillis, TimeUnit.MILLISECONDS);
+		}
+		
+		new CountDownLatch(1).await();
+	}
+	
+	/**
+	 * Method for getting the result of a health check from the cache
+	 * file. The health check is only executed if no other process has
+	 * stored a result within the time to live.
+	 * 
+	 * @param healthCheck
+	 * @param cacheFile
+	 * @return
+	 * @throws Exception
+	 */
+	protected CheckResult checkCached(HealthCheck healthCheck, String cacheFile) throws Exception {
+		
+		if (healthCheck.getCacheTtlMillis() < 0) {
+			throw new Exception("The option '" + GeneralParameter.CACHE_FILE + "' needs the option '" + GeneralParameter.CACHE_TTL + "'");
+		}
+		
+		FileResultCache cache = FileResultCache.getInstance(cacheFile);
+		
+		// return fresh result of another process
+		CheckResult result = cache.get(healthCheck, healthCheck.getCacheTtlMillis());
+		if (result != null) {
+			System.out.println("Cached result (" + result.getAgeMillis() + " ms old): " + result);
+			return result;
+		}
+		
+		// do the health check and share the result
+		result = healthCheck.execute();
+		cache.put(healthCheck, result);
+		
+		return result;
+	}
+	
+	/**
+	 * Method for executing the health checker and exiting
+	 * the process with a failure exit code if the health 
+	 * check failed.
 	 *  
 	 * @param args
 	 * @throws Exception
 	 */
 	public void execute(String[] args) throws Exception {
 		
+		int exitCode = run(args);
+		if (exitCode != 0) {
+			System.exit(exitCode);
+		}
+	}
+	
+	/**
+	 * Method for running the health checker.
+	 * This method parses the command line arguments and 
+	 * passes them to the concrete health checker class.
+	 * The results of the health checks are printed and 
+	 * mapped to the exit code here.
+	 *  
+	 * @param args
+	 * @return the exit code
+	 */
+	public int run(String[] args) {
+		
+		StartupReport startupReport = null;
+		int exitCode = 0;
+		
 		try {
 			
-			// create the command line parser
-			CommandLineParser parser = new PosixParser();
-	
 			// parse the command line arguments
-			CommandLine commandLine = parser.parse(options, args);
+			CommandLine commandLine = parse(args);
+			HealthCheck healthCheck = new HealthCheck(String.valueOf(type), type, this, commandLine);
+			
+			// check if the startup costs should be reported
+			if (Boolean.parseBoolean(commandLine.getOptionValue(GeneralParameter.STARTUP_REPORT.toString()))) {
+				startupReport = new StartupReport(type);
+			}
 
-			// do the health check
-			check(commandLine);
+			// check if the health check should be repeated
+			String intervalString = commandLine.getOptionValue(GeneralParameter.INTERVAL.toString());
+			
+			// check if the results should be served via HTTP
+			String statusPortString = commandLine.getOptionValue(GeneralParameter.STATUS_PORT.toString());
+			
+			// check if metrics should be written to a file
+			String metricsFile = commandLine.getOptionValue(GeneralParameter.METRICS_FILE.toString());
+			
+			// check if results should be shared with other processes
+			String cacheFile = commandLine.getOptionValue(GeneralParameter.CACHE_FILE.toString());
+			
+			if (StringUtils.isNotEmpty(statusPortString)) {
+				
+				// get refresh interval
+				long intervalMillis = DEFAULT_STATUS_INTERVAL;
+				if (StringUtils.isNotEmpty(intervalString)) {
+					intervalMillis = getIntervalMillis(intervalString);
+				}
+				
+				// serve the health check results
+				serve(commandLine, Integer.parseInt(statusPortString), intervalMillis);
+			}
+			else if (StringUtils.isNotEmpty(intervalString)) {
+				
+				// get number of runs
+				long repeat = -1;
+				String repeatString = commandLine.getOptionValue(GeneralParameter.REPEAT.toString());
+				if (StringUtils.isNotEmpty(repeatString)) {
+					repeat = Long.parseLong(repeatString);
+				}
+				
+				// do the health check periodically
+				HealthCheckScheduler scheduler = new HealthCheckScheduler(healthCheck, getIntervalMillis(intervalString), repeat);
+				scheduler.setMetricsFile(metricsFile);
+				if (!scheduler.run()) {
+					exitCode = getExitCode(Status.DOWN);
+				}
+			}
+			else if (StringUtils.isNotEmpty(cacheFile) || StringUtils.isNotEmpty(metricsFile)) {
+				
+				// do the health check, unless another process (or a former run in this process) has a fresh result
+				CheckResult result = StringUtils.isNotEmpty(cacheFile) ? checkCached(healthCheck, cacheFile) : healthCheck.run();
+				
+				// record metrics
+				if (StringUtils.isNotEmpty(metricsFile)) {
+					MetricsRegistry.getInstance().write(metricsFile);
+				}
+				
+				// print result
+				printResult(result);
+				exitCode = getExitCode(result.getStatus());
+			}
+			else {
+				
+				// do the health check, unless a former run in this process (e.g. in the daemon) has a fresh result
+				CheckResult result = healthCheck.run();
+				
+				// print result
+				printResult(result);
+				exitCode = getExitCode(result.getStatus());
+			}
+			
+			// print startup costs
+			if (startupReport != null) {
+				startupReport.print();
+			}
+		}
+		catch (ParseException e) {
+			
+			// print the invalid usage and all command line options
+			System.err.println(e.getMessage());
+			printHelp();
+			
+			return -1;
 		}
 		catch (Exception e) {
 			
@@ -66,17 +438,138 @@ public abstract class HealthChecker {
 			// print exception stack trace
 			e.printStackTrace();
 			
-			// set a failure exit code
-			System.exit(-1);
+			// print startup costs
+			if (startupReport != null) {
+				startupReport.print();
+			}
+			
+			// return a failure exit code
+			return -1;
 		}
+		
+		return exitCode;
 	}
 	
 	/**
 	 * Abstract checking method which has to be overridden
-	 * by the concrete checker class
+	 * by the concrete checker class. Expected failures are 
+	 * returned as failed results, exceptions are only thrown 
+	 * for unexpected errors (e.g. the server is not reachable).
+	 * 
+	 * @param commandLine
+	 * @return the outcome of the health check
+	 * @throws Exception
+	 */
+	public abstract CheckResult check(CommandLine commandLine) throws Exception;
+	
+	/**
+	 * Method for starting the health check without blocking the calling 
+	 * thread. Health checkers with a non-blocking engine override this 
+	 * method and pass the outcome to the listener from their own threads.
+	 * 
+	 * @param commandLine
+	 * @param listener
+	 * @return false if the health check has to be done by check on a thread
+	 * @throws Exception
+	 */
+	public boolean checkAsync(CommandLine commandLine, ResultListener listener) throws Exception {
+		return false;
+	}
+	
+	/**
+	 * Method for parsing the interval of repeated health checks.
+	 * 
+	 * @param intervalString
+	 * @return
+	 * @throws ParseException if the interval is not positive
+	 */
+	protected long getIntervalMillis(String intervalString) throws ParseException {
+		
+		long intervalMillis = TimeUtils.parseMillis(intervalString);
+		if (intervalMillis <= 0) {
+			throw new ParseException("The option '" + GeneralParameter.INTERVAL + "' must be greater than 0: " + intervalString);
+		}
+		
+		return intervalMillis;
+	}
+	
+	/**
+	 * Method for getting the deadline of the command line.
 	 * 
 	 * @param commandLine
+	 * @return the deadline in milliseconds or -1 if there is no deadline
+	 */
+	protected long getDeadlineMillis(CommandLine commandLine) {
+		String deadlineString = commandLine.getOptionValue(GeneralParameter.DEADLINE.toString());
+		return StringUtils.isNotEmpty(deadlineString) ? TimeUtils.parseMillis(deadlineString) : -1;
+	}
+	
+	/**
+	 * Method for getting the time budget of a pattern evaluation of the command line.
+	 * 
+	 * @param commandLine
+	 * @return
+	 */
+	protected long getPatternTimeoutMillis(CommandLine commandLine) {
+		String patternTimeoutString = commandLine.getOptionValue(GeneralParameter.PATTERN_TIMEOUT.toString(), (String) GeneralParameter.PATTERN_TIMEOUT.getDefaultValue());
+		return TimeUtils.parseMillis(patternTimeoutString);
+	}
+	
+	/**
+	 * Method for doing the health check within the deadline of the 
+	 * command line. The watchdog cancels the in-flight operations of 
+	 * the health check when the deadline is exceeded, the evaluation
+	 * of patterns is aborted when the pattern budget is exceeded.
+	 * 
+	 * @param commandLine
+	 * @return the outcome of the health check
 	 * @throws Exception
 	 */
-	public abstract void check(CommandLine commandLine) throws Exception;
+	public CheckResult checkWithinDeadline(CommandLine commandLine) throws Exception {
+		
+		// get the pattern budget
+		CheckContext.current().setPatternTimeout(getPatternTimeoutMillis(commandLine));
+		
+		// get the deadline
+		long deadlineMillis = getDeadlineMillis(commandLine);
+		if (deadlineMillis < 0) {
+			return check(commandLine);
+		}
+		
+		// start the deadline and the watchdog
+		CheckContext context = CheckContext.current();
+		context.startDeadline(deadlineMillis);
+		ScheduledFuture<?> watchdog = Watchdog.getInstance().watch(context, Thread.currentThread(), deadlineMillis);
+		
+		try {
+			
+			// do the health check
+			CheckResult result = check(commandLine);
+			
+			// a health check finishing late has failed as well
+			context.checkDeadline();
+			
+			return result;
+		}
+		catch (DeadlineExceededException e) {
+			throw e;
+		}
+		catch (Exception e) {
+			
+			// cancelled operations fail with all kinds of exceptions
+			if (context.isExpired()) {
+				throw new DeadlineExceededException(deadlineMillis, e);
+			}
+			
+			throw e;
+		}
+		finally {
+			context.finishDeadline();
+			watchdog.cancel(false);
+		}
+	}
+	
+	public Type getType() {
+		return type;
+	}
 }
@@ -1,19 +1,19 @@
 package de.papke.health.checker;
 
+import java.util.ArrayList;
+import java.util.List;
+import java.util.ServiceConfigurationError;
+import java.util.ServiceLoader;
+
 import org.apache.commons.lang3.StringUtils;
 
 import de.papke.health.checker.api.Type;
-import de.papke.health.checker.elasticsearch.ElasticSearchHealthChecker;
-import de.papke.health.checker.http.HttpHealthChecker;
-import de.papke.health.checker.jdbc.JdbcHealthChecker;
-import de.papke.health.checker.ldap.LdapHealthChecker;
-import de.papke.health.checker.mongo.MongoHealthChecker;
-import de.papke.health.checker.smtp.SmtpHealthChecker;
-import de.papke.health.checker.solr.SolrHealthChecker;
 
 /**
  * Factory class for creating concrete health checker objects
  * based on the environment variable HEALTH_CHECKER_TYPE.
+ * If the variable is not set and only one health checker is
+ * registered, this health checker is used.
  * 
  * @author Christoph Papke (info@christoph-papke.de)
  *
@@ -31,37 +31,85 @@ public class HealthCheckerFactory {
 	 * @throws Exception
 	 */
 	public static HealthChecker create() throws Exception {
+		return create((String) System.getenv().get(HEALTH_CHECKER_TYPE));
+	}
+	
+	/**
+	 * Method for creating a concrete health checker object
+	 * based on the given value of the environment variable 
+	 * HEALTH_CHECKER_TYPE.
+	 * 
+	 * @param typeString
+	 * @return
+	 * @throws Exception
+	 */
+	public static HealthChecker create(String typeString) throws Exception {
 		
 		HealthChecker healthChecker = new DefaultHealthChecker();
 
-		String typeString = (String) System.getenv().get(HEALTH_CHECKER_TYPE);
 		if (StringUtils.isNotEmpty(typeString)) {
+			healthChecker = create(Type.valueOf(typeString));
+		}
+		else {
 			
-			Type type = Type.valueOf(typeString);
+			// use the only registered health checker (e.g. in a slim artifact)
+			List<HealthCheckerProvider> providerList = getProviders();
+			if (providerList.size() == 1) {
+				healthChecker = providerList.get(0).create();
+			}
+		}
+		
+		return healthChecker;
+	}
+	
+	/**
+	 * Method for getting all registered health checker providers.
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	private static List<HealthCheckerProvider> getProviders() throws Exception {
+		
+		List<HealthCheckerProvider> providerList = new ArrayList<HealthCheckerProvider>();
+		
+		try {
+			for (HealthCheckerProvider provider : ServiceLoader.load(HealthCheckerProvider.class)) {
+				providerList.add(provider);
+			}
+		}
+		catch (ServiceConfigurationError e) {
+			throw new Exception("Could not load the health checker providers", e);
+		}
+		
+		return providerList;
+	}
+	
+	/**
+	 * Method for creating a concrete health checker object
+	 * for the given type. The health checker is looked up in
+	 * the registered {@link HealthCheckerProvider} services, 
+	 * so only the classes of the selected type are loaded.
+	 * 
+	 * @param type
+	 * @return
+	 * @throws Exception
+	 */
+	public static HealthChecker create(Type type) throws Exception {
+		
+		HealthChecker healthChecker = new DefaultHealthChecker();
+		
+		try {
 			
-			switch (type) {
-			case elasticsearch:
-				healthChecker = new ElasticSearchHealthChecker();
-				break;
-			case http:
-				healthChecker = new HttpHealthChecker();
-				break;
-			case jdbc:
-				healthChecker = new JdbcHealthChecker();
-				break;
-			case ldap:
-				healthChecker = new LdapHealthChecker();
-				break;
-			case mongo:
-				healthChecker = new MongoHealthChecker();
-				break;
-			case smtp:
-				healthChecker = new SmtpHealthChecker();
-				break;
-			case solr:
-				healthChecker = new SolrHealthChecker();
-				break;
-			}		
+			// find the provider for the given type
+			for (HealthCheckerProvider provider : ServiceLoader.load(HealthCheckerProvider.class)) {
+				if (provider.getType() == type) {
+					healthChecker = provider.create();
+					break;
+				}
+			}
+		}
+		catch (ServiceConfigurationError e) {
+			throw new Exception("Could not load the health checker provider for type '" + type + "'", e);
 		}
 		
 		return healthChecker;
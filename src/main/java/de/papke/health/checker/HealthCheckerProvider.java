@@ -0,0 +1,33 @@
+package de.papke.health.checker;
+
+import de.papke.health.checker.api.Type;
+
+/**
+ * Interface for providing a concrete health checker. 
+ * 
+ * Providers are registered in META-INF/services and found via 
+ * the {@link java.util.ServiceLoader}. A provider must not reference
+ * the health checker class outside of {@link #create()}, so the 
+ * classes of a health checker and its client libraries are only 
+ * loaded if its type is selected.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public interface HealthCheckerProvider {
+	
+	/**
+	 * Method for getting the type of the provided health checker.
+	 * 
+	 * @return
+	 */
+	Type getType();
+	
+	/**
+	 * Method for creating the health checker.
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	HealthChecker create() throws Exception;
+}
@@ -2,6 +2,8 @@ package de.papke.health.checker;
 
 import java.util.ResourceBundle;
 
+import de.papke.health.checker.daemon.HealthCheckerDaemon;
+
 /**
  * Starter class for health checker application.
  * 
@@ -19,7 +21,32 @@ public class Main {
 	 * @throws Exception
 	 */
 	public static void main(String[] args) throws Exception {
-		HealthCheckerFactory.create().execute(args);
+		
+		// check if the health checker should run as daemon
+		if (args.length > 0 && args[0].equals(HealthCheckerDaemon.COMMAND)) {
+			
+			String address = System.getenv(HealthCheckerDaemon.HEALTH_CHECKER_DAEMON);
+			if (args.length > 1) {
+				address = args[1];
+			}
+			
+			if (address == null) {
+				System.err.println("Please specify the daemon address (socket file or port) as argument or environment variable '" + HealthCheckerDaemon.HEALTH_CHECKER_DAEMON + "'");
+				System.exit(-1);
+			}
+			
+			try {
+				HealthCheckerDaemon daemon = new HealthCheckerDaemon(address, System.getenv(HealthCheckerDaemon.HEALTH_CHECKER_DAEMON_TOKEN));
+				daemon.run();
+			}
+			catch (Exception e) {
+				System.err.println(e.getMessage());
+				System.exit(-1);
+			}
+		}
+		else {
+			HealthCheckerFactory.create().execute(args);
+		}
 	}
 	
 	public static String getApplicationProperty(String key) {
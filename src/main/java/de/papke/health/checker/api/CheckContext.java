@@ -0,0 +1,365 @@
+package de.papke.health.checker.api;
+
+import java.io.Closeable;
+import java.io.IOException;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.LinkedHashMap;
+import java.util.List;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Class for collecting measurements of the health check, 
+ * which is running on the current thread.
+ * 
+ * Health checkers and their protocol clients record the duration 
+ * of single phases (e.g. DNS lookup, connect, TLS handshake) here 
+ * without having to pass the context through all method calls.
+ * 
+ * The context also carries the deadline of the health check. Health
+ * checkers limit their timeouts to the remaining time and register 
+ * their in-flight operations, which are closed by the watchdog when 
+ * the deadline is exceeded.
+ * 
+ * Parts of a health check, which run on other threads (e.g. the requests
+ * of several urls), fork the context of the health check.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class CheckContext {
+	
+	private static final ThreadLocal<CheckContext> CURRENT = new ThreadLocal<CheckContext>() {
+		
+		@Override
+		protected CheckContext initialValue() {
+			return new CheckContext(null);
+		}
+	};
+	
+	private final Map<String, Long> phaseMap = new LinkedHashMap<String, Long>();
+	private long bytesRead;
+	
+	private long deadlineMillis = -1;
+	private long deadlineNanos;
+	private boolean expired;
+	private boolean finished;
+	private final List<Closeable> operationList = new ArrayList<Closeable>();
+	private long patternTimeoutMillis = -1;
+	
+	// context of the health check, which has forked this context
+	private final CheckContext parent;
+	
+	private CheckContext(CheckContext parent) {
+		this.parent = parent;
+	}
+	
+	/**
+	 * Method for getting the context of the current thread.
+	 * 
+	 * @return
+	 */
+	public static CheckContext current() {
+		return CURRENT.get();
+	}
+	
+	/**
+	 * Method for starting a new context on the current thread.
+	 * 
+	 * @return
+	 */
+	public static CheckContext reset() {
+		CheckContext context = new CheckContext(null);
+		CURRENT.set(context);
+		return context;
+	}
+	
+	/**
+	 * Method for starting a context on the current thread for a part of 
+	 * a health check, which is running on another thread. The part shares 
+	 * the deadline and the pattern budget of the health check, its in-flight 
+	 * operations are cancelled together with the health check.
+	 * 
+	 * @param parent the context of the health check
+	 * @return
+	 */
+	public static CheckContext fork(CheckContext parent) {
+		
+		CheckContext context = new CheckContext(parent);
+		synchronized (parent) {
+			context.deadlineMillis = parent.deadlineMillis;
+			context.deadlineNanos = parent.deadlineNanos;
+		}
+		context.patternTimeoutMillis = parent.patternTimeoutMillis;
+		
+		CURRENT.set(context);
+		return context;
+	}
+	
+	/**
+	 * Method for adding the measurements of a forked context, 
+	 * which has finished its part of the health check.
+	 * 
+	 * @param context
+	 */
+	public void addMeasurements(CheckContext context) {
+		
+		for (Map.Entry<String, Long> entry : context.phaseMap.entrySet()) {
+			addPhase(entry.getKey(), entry.getValue());
+		}
+		
+		bytesRead += context.bytesRead;
+	}
+	
+	/**
+	 * Method for adding the duration of a phase. Durations of 
+	 * phases which occur multiple times (e.g. redirects) are summed up.
+	 * 
+	 * @param phase
+	 * @param nanos
+	 */
+	public void addPhase(String phase, long nanos) {
+		Long previousNanos = phaseMap.get(phase);
+		phaseMap.put(phase, previousNanos != null ? previousNanos + nanos : nanos);
+	}
+	
+	public long getPhase(String phase) {
+		Long nanos = phaseMap.get(phase);
+		return nanos != null ? nanos : 0;
+	}
+	
+	/**
+	 * Method for adding the number of bytes received from the backend.
+	 * 
+	 * @param bytes
+	 */
+	public void addBytesRead(long bytes) {
+		bytesRead += bytes;
+	}
+	
+	public long getBytesRead() {
+		return bytesRead;
+	}
+	
+	public Map<String, Long> getPhases() {
+		return Collections.unmodifiableMap(new LinkedHashMap<String, Long>(phaseMap));
+	}
+	
+	/**
+	 * Method for starting the deadline of the health check.
+	 * 
+	 * @param deadlineMillis
+	 */
+	public synchronized void startDeadline(long deadlineMillis) {
+		this.deadlineMillis = deadlineMillis;
+		this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(deadlineMillis);
+	}
+	
+	/**
+	 * Method for getting the whole time budget of the health check.
+	 * 
+	 * @return the deadline in milliseconds or -1 if there is no deadline
+	 */
+	public long getDeadlineMillis() {
+		return deadlineMillis;
+	}
+	
+	/**
+	 * Method for getting the remaining time until the deadline.
+	 * 
+	 * @return the remaining milliseconds or Long.MAX_VALUE if there is no deadline
+	 */
+	public long getRemainingMillis() {
+		
+		if (deadlineMillis < 0) {
+			return Long.MAX_VALUE;
+		}
+		
+		return Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+	}
+	
+	/**
+	 * Method for limiting a timeout to the remaining time until the deadline.
+	 * A timeout of 0 (no timeout) is replaced by the remaining time.
+	 * 
+	 * @param timeoutMillis
+	 * @return the timeout unchanged if there is no deadline
+	 * @throws DeadlineExceededException if the deadline has already been exceeded
+	 */
+	public int limitTimeout(int timeoutMillis) throws DeadlineExceededException {
+		checkDeadline();
+		return deadlineMillis < 0 ? timeoutMillis : limit(timeoutMillis, getRemainingMillis());
+	}
+	
+	/**
+	 * Method for limiting a timeout to the whole time budget of the health 
+	 * check. This is used for settings of cached clients, which must not 
+	 * change with the remaining time.
+	 * 
+	 * @param timeoutMillis
+	 * @return the timeout unchanged if there is no deadline
+	 */
+	public int limitTimeoutToBudget(int timeoutMillis) {
+		return deadlineMillis < 0 ? timeoutMillis : limit(timeoutMillis, deadlineMillis);
+	}
+	
+	/**
+	 * Helper method for limiting a timeout to the given time, a timeout
+	 * of 0 or less means no timeout and gets the whole time.
+	 * 
+	 * @param timeoutMillis
+	 * @param limitMillis
+	 * @return at least 1, because 0 would disable the timeout
+	 */
+	private static int limit(int timeoutMillis, long limitMillis) {
+		
+		long limitedMillis = Math.min(limitMillis, Integer.MAX_VALUE);
+		if (timeoutMillis > 0) {
+			limitedMillis = Math.min(timeoutMillis, limitedMillis);
+		}
+		
+		return (int) Math.max(1, limitedMillis);
+	}
+	
+	/**
+	 * Method for checking if the deadline has been exceeded.
+	 * 
+	 * @throws DeadlineExceededException
+	 */
+	public void checkDeadline() throws DeadlineExceededException {
+		if (isExpired() || (deadlineMillis >= 0 && System.nanoTime() - deadlineNanos > 0)) {
+			throw new DeadlineExceededException(deadlineMillis);
+		}
+	}
+	
+	/**
+	 * Method for setting the time budget of a single pattern evaluation.
+	 * 
+	 * @param patternTimeoutMillis
+	 */
+	public void setPatternTimeout(long patternTimeoutMillis) {
+		this.patternTimeoutMillis = patternTimeoutMillis;
+	}
+	
+	/**
+	 * Method for getting the time budget of a pattern evaluation, 
+	 * which starts now. The budget ends with the deadline at the latest.
+	 * 
+	 * @return the budget in milliseconds or -1 if there is no budget
+	 */
+	public long getPatternBudgetMillis() {
+		
+		long remainingMillis = getRemainingMillis();
+		if (patternTimeoutMillis < 0) {
+			return remainingMillis == Long.MAX_VALUE ? -1 : remainingMillis;
+		}
+		
+		return Math.min(patternTimeoutMillis, remainingMillis);
+	}
+	
+	public boolean isExpired() {
+		
+		if (parent != null) {
+			return parent.isExpired();
+		}
+		
+		synchronized (this) {
+			return expired;
+		}
+	}
+	
+	/**
+	 * Method for registering an in-flight operation, which is closed
+	 * when the deadline is exceeded.
+	 * 
+	 * @param operation
+	 */
+	public synchronized void register(Closeable operation) {
+		if (parent != null) {
+			parent.register(operation);
+		}
+		else if (expired) {
+			close(operation);
+		}
+		else {
+			operationList.add(operation);
+		}
+	}
+	
+	/**
+	 * Method for cancelling the health check, which is called by the 
+	 * watchdog when the deadline is exceeded. All registered operations 
+	 * are closed and the thread of the health check is interrupted.
+	 * 
+	 * @param thread
+	 */
+	public synchronized void expire(Thread thread) {
+		
+		if (finished) {
+			return;
+		}
+		
+		expired = true;
+		
+		for (Closeable operation : operationList) {
+			close(operation);
+		}
+		
+		thread.interrupt();
+	}
+	
+	/**
+	 * Method for finishing the deadline of the health check on its thread.
+	 * A pending interrupt of the watchdog is cleared, because the thread 
+	 * may be reused.
+	 */
+	public synchronized void finishDeadline() {
+		
+		finished = true;
+		operationList.clear();
+		
+		if (expired) {
+			Thread.interrupted();
+		}
+	}
+	
+	/**
+	 * Helper method for closing an operation quietly.
+	 * 
+	 * @param operation
+	 */
+	private static void close(Closeable operation) {
+		try {
+			operation.close();
+		}
+		catch (IOException e) {
+			// the operation is cancelled anyway
+		}
+		catch (RuntimeException e) {
+			// the operation is cancelled anyway
+		}
+	}
+	
+	/**
+	 * Method for formatting phase durations in milliseconds,
+	 * e.g. "dns=0.4 ms, connect=1.2 ms".
+	 * 
+	 * @param phaseMap
+	 * @return
+	 */
+	public static String format(Map<String, Long> phaseMap) {
+		
+		StringBuilder builder = new StringBuilder();
+		
+		for (Map.Entry<String, Long> entry : phaseMap.entrySet()) {
+			if (builder.length() > 0) {
+				builder.append(", ");
+			}
+			builder.append(entry.getKey()).append("=").append(String.format(Locale.ROOT, "%.1f ms", entry.getValue() / 1000000.0));
+		}
+		
+		return builder.toString();
+	}
+}
@@ -0,0 +1,156 @@
+package de.papke.health.checker.api;
+
+import java.util.Collections;
+import java.util.Map;
+
+/**
+ * Class for the result of a single health check run.
+ * 
+ * Health checkers return expected failures (e.g. a pattern which does 
+ * not match) as results instead of throwing exceptions, so repeated 
+ * health checks neither fill stack traces nor print anything. The 
+ * output of the health checker (e.g. the response text) is kept as 
+ * detail and only printed by one-shot health checks.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class CheckResult {
+	
+	private final String name;
+	private final Type type;
+	private final Status status;
+	private final long latencyMillis;
+	private final String message;
+	private final String detail;
+	private final long timestamp;
+	private final Map<String, Long> phases;
+	private final long bytesRead;
+	
+	public CheckResult(String name, Type type, Status status, long latencyMillis, String message) {
+		this(name, type, status, latencyMillis, message, Collections.<String, Long>emptyMap(), 0);
+	}
+	
+	public CheckResult(String name, Type type, Status status, long latencyMillis, String message, Map<String, Long> phases, long bytesRead) {
+		this(name, type, status, latencyMillis, message, phases, bytesRead, System.currentTimeMillis());
+	}
+	
+	public CheckResult(String name, Type type, Status status, long latencyMillis, String message, Map<String, Long> phases, long bytesRead, long timestamp) {
+		this(name, type, status, latencyMillis, message, null, phases, bytesRead, timestamp);
+	}
+	
+	public CheckResult(String name, Type type, Status status, long latencyMillis, String message, String detail, Map<String, Long> phases, long bytesRead, long timestamp) {
+		this.name = name;
+		this.type = type;
+		this.status = status;
+		this.latencyMillis = latencyMillis;
+		this.message = message;
+		this.detail = detail;
+		this.phases = phases;
+		this.bytesRead = bytesRead;
+		this.timestamp = timestamp;
+	}
+	
+	/**
+	 * Method for getting a copy of this result for a health check
+	 * with another name, e.g. when the result is shared by identical
+	 * health checks.
+	 * 
+	 * @param name
+	 * @return
+	 */
+	public CheckResult withName(String name) {
+		
+		if (name == null ? this.name == null : name.equals(this.name)) {
+			return this;
+		}
+		
+		return new CheckResult(name, type, status, latencyMillis, message, detail, phases, bytesRead, timestamp);
+	}
+	
+	/**
+	 * Method for getting a copy of this result with the measurements 
+	 * of the health check run. Health checkers only return the outcome, 
+	 * the measurements are added by the caller.
+	 * 
+	 * @param name
+	 * @param latencyMillis
+	 * @param phases
+	 * @param bytesRead
+	 * @return
+	 */
+	public CheckResult withMeasurements(String name, long latencyMillis, Map<String, Long> phases, long bytesRead) {
+		return new CheckResult(name, type, status, latencyMillis, message, detail, phases, bytesRead, timestamp);
+	}
+	
+	public long getAgeMillis() {
+		return System.currentTimeMillis() - timestamp;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public Type getType() {
+		return type;
+	}
+	
+	public Status getStatus() {
+		return status;
+	}
+	
+	public boolean isUp() {
+		return status == Status.UP;
+	}
+	
+	public long getLatencyMillis() {
+		return latencyMillis;
+	}
+	
+	public String getMessage() {
+		return message;
+	}
+	
+	/**
+	 * Method for getting the output of the health checker,
+	 * e.g. the response text.
+	 * 
+	 * @return the output or null if there is none
+	 */
+	public String getDetail() {
+		return detail;
+	}
+	
+	public long getTimestamp() {
+		return timestamp;
+	}
+	
+	/**
+	 * Method for getting the durations of the single phases
+	 * of the health check in nanoseconds.
+	 * 
+	 * @return
+	 */
+	public Map<String, Long> getPhases() {
+		return phases;
+	}
+	
+	public long getBytesRead() {
+		return bytesRead;
+	}
+	
+	@Override
+	public String toString() {
+		
+		String text = status + " (" + latencyMillis + " ms";
+		if (!phases.isEmpty()) {
+			text += ": " + CheckContext.format(phases);
+		}
+		text += ")";
+		if (message != null) {
+			text += ": " + message;
+		}
+		
+		return text;
+	}
+}
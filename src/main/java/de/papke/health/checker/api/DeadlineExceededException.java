@@ -0,0 +1,23 @@
+package de.papke.health.checker.api;
+
+/**
+ * Exception for a health check which has exceeded its deadline.
+ * 
+ * The exception has no stack trace, because exceeding the deadline 
+ * is an expected outcome of a health check.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class DeadlineExceededException extends Exception {
+	
+	private static final long serialVersionUID = 1L;
+	
+	public DeadlineExceededException(long deadlineMillis) {
+		super("The deadline of " + deadlineMillis + " ms has been exceeded", null, false, false);
+	}
+	
+	public DeadlineExceededException(long deadlineMillis, Throwable cause) {
+		super("The deadline of " + deadlineMillis + " ms has been exceeded", cause, false, false);
+	}
+}
@@ -0,0 +1,66 @@
+package de.papke.health.checker.api;
+
+import org.apache.commons.cli.Option;
+
+/**
+ * Enum for command line arguments which are available
+ * for all health checker types.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public enum GeneralParameter implements Parameter {
+	
+	INTERVAL(null, "interval", "The interval for repeating the health check in the same process (e.g. 500ms, 10s, 5m)", null),
+	REPEAT(null, "repeat", "The number of health check runs in interval mode (runs forever if not set)", null),
+	STATUS_PORT(null, "status-port", "The port of an HTTP server serving the results (/health, /health/{name}, /results), which are refreshed in the background", null),
+	CACHE_TTL(null, "cache-ttl", "The time to live of cached results for identical health checks (e.g. 500ms, 10s, 5m), stale results are returned while refreshing", null),
+	CACHE_FILE(null, "cache-file", "The file to share results of identical one-shot health checks between processes for the time to live of --cache-ttl", null),
+	METRICS_FILE(null, "metrics-file", "The file to write Prometheus metrics (latency histograms, outcomes, received bytes) of all health check runs to", null),
+	DEADLINE(null, "deadline", "The total time budget of a health check over all phases (e.g. 500ms, 10s), in-flight operations are cancelled when it is exceeded", null),
+	PATTERN_TIMEOUT(null, "pattern-timeout", "The time budget for evaluating the patterns against the response text (e.g. 500ms, 10s), the health check times out when it is exceeded", "10s"),
+	STARTUP_REPORT(null, "startup-report", "Set to print the startup time and the number of loaded classes of the health checker", false);
+	
+	private final String shortName;
+	private final String longName;
+	private final String description;
+	private final Object defaultValue;
+	
+	private GeneralParameter(String shortName, String longName, String description, Object defaultValue) {
+		this.shortName = shortName;
+		this.longName = longName;			
+		this.description = description;
+		this.defaultValue = defaultValue;
+	}
+	
+	public Option getOption() {
+		
+		String descriptionText = description;
+		if (defaultValue != null) {
+			descriptionText += " [default: " + defaultValue + "]";
+		}
+		
+		return new Option(shortName, longName, true, descriptionText);
+	}
+	
+	@Override
+	public String toString() {
+		return longName;
+	}	
+	
+	public String getShortName() {
+		return shortName;
+	}
+	
+	public String getLongName() {
+		return longName;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+	
+	public Object getDefaultValue() {
+		return defaultValue;
+	}
+}
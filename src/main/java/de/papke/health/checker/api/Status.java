@@ -0,0 +1,17 @@
+package de.papke.health.checker.api;
+
+/**
+ * Enum for the possible outcomes of a health check.
+ * 
+ * TIMEOUT is a failed health check, which has exceeded its time budget 
+ * (e.g. the deadline or the budget of the pattern evaluation) before
+ * the backend could be judged.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public enum Status {
+	UP,
+	DOWN,
+	TIMEOUT
+}
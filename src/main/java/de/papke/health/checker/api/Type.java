@@ -7,6 +7,7 @@ package de.papke.health.checker.api;
  *
  */
 public enum Type {
+	batch,
 	elasticsearch, 
 	http, 
 	jdbc, 
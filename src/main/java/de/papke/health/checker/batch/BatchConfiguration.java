@@ -0,0 +1,235 @@
+package de.papke.health.checker.batch;
+
+import java.io.FileInputStream;
+import java.io.InputStream;
+import java.util.ArrayList;
+import java.util.Comparator;
+import java.util.EnumMap;
+import java.util.LinkedHashSet;
+import java.util.List;
+import java.util.Map;
+import java.util.Properties;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.TreeSet;
+
+import org.apache.commons.lang3.StringUtils;
+
+import de.papke.health.checker.HealthChecker;
+import de.papke.health.checker.HealthCheckerFactory;
+import de.papke.health.checker.api.Type;
+import de.papke.health.checker.engine.HealthCheck;
+
+/**
+ * Class for reading health check definitions from a properties file.
+ * 
+ * Every property key has the format <code>&lt;name&gt;.&lt;option&gt;</code>, 
+ * where option is the long name of a command line argument of the 
+ * health checker type. Options which can be given multiple times get 
+ * an additional index suffix:
+ * 
+ * <pre>
+ * checks=web,db
+ * 
+ * web.type=http
+ * web.url=https://www.google.de
+ * web.header.1=Accept: text/html
+ * web.header.2=Accept-Language: de
+ * 
+ * db.type=jdbc
+ * db.driver=org.postgresql.Driver
+ * db.url=jdbc:postgresql://localhost/test
+ * db.query=select 1
+ * </pre>
+ * 
+ * The property <code>checks</code> is optional. The listed health 
+ * checks are used in the given order. If it is missing all defined 
+ * health checks are used in alphabetical order.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class BatchConfiguration {
+	
+	private static final String CHECKS_KEY = "checks";
+	private static final String TYPE_KEY = "type";
+	private static final String KEY_SEPARATOR = ".";
+	private static final String LIST_SEPARATOR = ",";
+	private static final String OPTION_PREFIX = "--";
+	
+	// sorts options by name and repeated options by the number of their index suffix
+	private static final Comparator<String> OPTION_ORDER = new Comparator<String>() {
+		
+		public int compare(String option1, String option2) {
+			
+			int separatorIndex1 = option1.indexOf(KEY_SEPARATOR);
+			int separatorIndex2 = option2.indexOf(KEY_SEPARATOR);
+			String name1 = separatorIndex1 != -1 ? option1.substring(0, separatorIndex1) : option1;
+			String name2 = separatorIndex2 != -1 ? option2.substring(0, separatorIndex2) : option2;
+			
+			int result = name1.compareTo(name2);
+			if (result != 0) {
+				return result;
+			}
+			
+			String index1 = separatorIndex1 != -1 ? option1.substring(separatorIndex1 + 1) : "";
+			String index2 = separatorIndex2 != -1 ? option2.substring(separatorIndex2 + 1) : "";
+			if (StringUtils.isNumeric(index1) && StringUtils.isNumeric(index2)) {
+				result = Long.compare(Long.parseLong(index1), Long.parseLong(index2));
+			}
+			
+			return result != 0 ? result : index1.compareTo(index2);
+		}
+	};
+	
+	private final Properties properties;
+	
+	private final Map<Type, HealthChecker> healthCheckerMap = new EnumMap<Type, HealthChecker>(Type.class);
+	
+	public BatchConfiguration(Properties properties) {
+		this.properties = properties;
+	}
+	
+	/**
+	 * Method for loading the batch configuration from a file.
+	 * 
+	 * @param file
+	 * @return
+	 * @throws Exception
+	 */
+	public static BatchConfiguration load(String file) throws Exception {
+		
+		Properties properties = new Properties();
+		
+		InputStream inputStream = new FileInputStream(file);
+		try {
+			properties.load(inputStream);
+		}
+		finally {
+			inputStream.close();
+		}
+		
+		return new BatchConfiguration(properties);
+	}
+	
+	/**
+	 * Method for getting all health checks of the batch configuration.
+	 * Health checks of the same type share one health checker object.
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	public List<HealthCheck> getHealthChecks() throws Exception {
+		
+		List<HealthCheck> healthCheckList = new ArrayList<HealthCheck>();
+		
+		for (String name : getNames()) {
+			
+			// get health checker type
+			String typeString = properties.getProperty(name + KEY_SEPARATOR + TYPE_KEY);
+			if (StringUtils.isEmpty(typeString)) {
+				throw new Exception("No type defined for health check '" + name + "'");
+			}
+			
+			Type type = Type.valueOf(typeString.trim());
+			if (type == Type.batch) {
+				throw new Exception("Nested batch health check '" + name + "' is not supported");
+			}
+			
+			// parse the arguments with the options of the health checker
+			HealthChecker healthChecker = getHealthChecker(type);
+			healthCheckList.add(new HealthCheck(name, type, healthChecker, healthChecker.parse(getArguments(name))));
+		}
+		
+		return healthCheckList;
+	}
+	
+	/**
+	 * Helper method for getting the names of all health checks.
+	 * 
+	 * @return
+	 */
+	private Set<String> getNames() {
+		
+		Set<String> names;
+		
+		// keep the declared order of the explicit list
+		String checksString = properties.getProperty(CHECKS_KEY);
+		if (StringUtils.isNotEmpty(checksString)) {
+			names = new LinkedHashSet<String>();
+			for (String name : checksString.split(LIST_SEPARATOR)) {
+				if (StringUtils.isNotBlank(name)) {
+					names.add(name.trim());
+				}
+			}
+		}
+		else {
+			names = new TreeSet<String>();
+			for (String key : properties.stringPropertyNames()) {
+				if (key.endsWith(KEY_SEPARATOR + TYPE_KEY)) {
+					names.add(key.substring(0, key.length() - TYPE_KEY.length() - 1));
+				}
+			}
+		}
+		
+		return names;
+	}
+	
+	/**
+	 * Helper method for converting the properties of a health check
+	 * to command line arguments.
+	 * 
+	 * @param name
+	 * @return
+	 */
+	private String[] getArguments(String name) {
+		
+		String prefix = name + KEY_SEPARATOR;
+		
+		// sort keys, so indexed options keep their order
+		Map<String, String> optionMap = new TreeMap<String, String>(OPTION_ORDER);
+		for (String key : properties.stringPropertyNames()) {
+			if (key.startsWith(prefix)) {
+				optionMap.put(key.substring(prefix.length()), properties.getProperty(key));
+			}
+		}
+		
+		List<String> argumentList = new ArrayList<String>();
+		for (Map.Entry<String, String> entry : optionMap.entrySet()) {
+			
+			String option = entry.getKey();
+			if (option.equals(TYPE_KEY)) {
+				continue;
+			}
+			
+			// remove index suffix of repeated options
+			int separatorIndex = option.indexOf(KEY_SEPARATOR);
+			if (separatorIndex != -1) {
+				option = option.substring(0, separatorIndex);
+			}
+			
+			argumentList.add(OPTION_PREFIX + option);
+			argumentList.add(entry.getValue());
+		}
+		
+		return argumentList.toArray(new String[argumentList.size()]);
+	}
+	
+	/**
+	 * Helper method for getting a shared health checker object for a type.
+	 * 
+	 * @param type
+	 * @return
+	 * @throws Exception
+	 */
+	private HealthChecker getHealthChecker(Type type) throws Exception {
+		
+		HealthChecker healthChecker = healthCheckerMap.get(type);
+		if (healthChecker == null) {
+			healthChecker = HealthCheckerFactory.create(type);
+			healthCheckerMap.put(type, healthChecker);
+		}
+		
+		return healthChecker;
+	}
+}
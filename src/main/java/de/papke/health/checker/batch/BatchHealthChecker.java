@@ -0,0 +1,138 @@
+package de.papke.health.checker.batch;
+
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Options;
+import org.apache.commons.lang3.StringUtils;
+
+import com.bethecoder.ascii_table.ASCIITable;
+
+import de.papke.health.checker.HealthChecker;
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.api.Type;
+import de.papke.health.checker.engine.CheckExecutor;
+import de.papke.health.checker.engine.HealthCheck;
+
+/**
+ * Class for executing many health checks of mixed types 
+ * from a single batch file in parallel.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class BatchHealthChecker extends HealthChecker {
+	
+	private static final String[] REPORT_HEADER = new String[] { "Name", "Type", "Status", "Latency (ms)", "Message" };
+	
+	private static Options options = new Options();
+
+	static {
+		for (BatchParameter parameter : BatchParameter.values()) {
+			options.addOption(parameter.getOption());
+		}
+	}
+	
+	public BatchHealthChecker() {
+		super(Type.batch, options);
+	}
+	
+	/**
+	 * Helper method for getting the report of all health check results.
+	 * 
+	 * @param resultList
+	 * @param durationMillis
+	 * @param executor
+	 * @return
+	 */
+	private String getReport(List<CheckResult> resultList, long durationMillis, CheckExecutor executor) {
+		
+		String[][] rows = new String[resultList.size()][];
+		for (int i = 0; i < resultList.size(); i++) {
+			CheckResult result = resultList.get(i);
+			rows[i] = new String[] { 
+					result.getName(), 
+					String.valueOf(result.getType()), 
+					String.valueOf(result.getStatus()), 
+					String.valueOf(result.getLatencyMillis()), 
+					StringUtils.defaultString(result.getMessage()) 
+			};
+		}
+		
+		return ASCIITable.getInstance().getTable(REPORT_HEADER, rows)
+				+ "\n" + resultList.size() + " health checks executed in " + durationMillis + " ms"
+				+ " (" + (executor.isVirtual() ? "virtual threads" : "thread pool") 
+				+ ", peak " + executor.getPeakInFlight() + " in flight)";
+	}
+
+	@Override
+	public List<HealthCheck> getHealthChecks(CommandLine commandLine) throws Exception {
+		
+		// get batch file
+		String file = commandLine.getOptionValue(BatchParameter.FILE.toString());
+		if (StringUtils.isEmpty(file)) {
+			throw new Exception("Please specify a batch file");
+		}
+		
+		// get health checks from batch file
+		List<HealthCheck> healthCheckList = BatchConfiguration.load(file).getHealthChecks();
+		if (healthCheckList.isEmpty()) {
+			throw new Exception("The batch file does not contain any health checks");
+		}
+		
+		return healthCheckList;
+	}
+
+	@Override
+	protected int getConcurrency(CommandLine commandLine) {
+		
+		// get number of threads
+		int threads = (Integer) BatchParameter.THREADS.getDefaultValue();
+		String threadsString = commandLine.getOptionValue(BatchParameter.THREADS.toString());
+		if (StringUtils.isNotEmpty(threadsString)) {
+			threads = Integer.parseInt(threadsString);
+		}
+		
+		return threads;
+	}
+
+	@Override
+	public CheckResult check(CommandLine commandLine) throws Exception {
+		
+		// get number of threads
+		int threads = getConcurrency(commandLine);
+		
+		// get health checks from batch file
+		List<HealthCheck> healthCheckList = getHealthChecks(commandLine);
+		
+		// execute all health checks in parallel
+		CheckExecutor executor = new CheckExecutor(Math.max(1, Math.min(threads, healthCheckList.size())));
+		try {
+			
+			long start = System.nanoTime();
+			List<CheckResult> resultList = executor.runAll(healthCheckList);
+			long durationMillis = TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start);
+			
+			// get report
+			String report = getReport(resultList, durationMillis, executor);
+			
+			// check if all health checks were successful
+			int failures = 0;
+			for (CheckResult result : resultList) {
+				if (!result.isUp()) {
+					failures++;
+				}
+			}
+			
+			if (failures > 0) {
+				return down(failures + " of " + resultList.size() + " health checks failed", report);
+			}
+			
+			return up(report);
+		}
+		finally {
+			executor.shutdown();
+		}
+	}
+}
@@ -0,0 +1,22 @@
+package de.papke.health.checker.batch;
+
+import de.papke.health.checker.HealthChecker;
+import de.papke.health.checker.HealthCheckerProvider;
+import de.papke.health.checker.api.Type;
+
+/**
+ * Provider for the health checker of multiple backends in one run.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class BatchHealthCheckerProvider implements HealthCheckerProvider {
+	
+	public Type getType() {
+		return Type.batch;
+	}
+	
+	public HealthChecker create() throws Exception {
+		return new BatchHealthChecker();
+	}
+}
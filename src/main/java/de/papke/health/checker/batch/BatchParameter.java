@@ -0,0 +1,60 @@
+package de.papke.health.checker.batch;
+
+import org.apache.commons.cli.Option;
+
+import de.papke.health.checker.api.Parameter;
+
+/**
+ * Enum for available batch command line arguments.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public enum BatchParameter implements Parameter {
+	
+	FILE("f", "file", "The properties file with the health check definitions", null),
+	THREADS("t", "threads", "The maximum number of health checks executed in parallel (runs on virtual threads with Java 21+)", 16);
+	
+	private final String shortName;
+	private final String longName;
+	private final String description;
+	private final Object defaultValue;
+	
+	private BatchParameter(String shortName, String longName, String description, Object defaultValue) {
+		this.shortName = shortName;
+		this.longName = longName;			
+		this.description = description;
+		this.defaultValue = defaultValue;
+	}
+	
+	public Option getOption() {
+		
+		String descriptionText = description;
+		if (defaultValue != null) {
+			descriptionText += " [default: " + defaultValue + "]";
+		}
+		
+		return new Option(shortName, longName, true, descriptionText);
+	}
+	
+	@Override
+	public String toString() {
+		return longName;
+	}	
+	
+	public String getShortName() {
+		return shortName;
+	}
+	
+	public String getLongName() {
+		return longName;
+	}
+
+	public String getDescription() {
+		return description;
+	}
+	
+	public Object getDefaultValue() {
+		return defaultValue;
+	}
+}
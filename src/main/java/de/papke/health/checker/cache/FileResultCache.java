@@ -0,0 +1,353 @@
+package de.papke.health.checker.cache;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.ByteBuffer;
+import java.nio.MappedByteBuffer;
+import java.nio.channels.FileChannel;
+import java.nio.channels.FileLock;
+import java.nio.charset.Charset;
+import java.security.MessageDigest;
+import java.security.NoSuchAlgorithmException;
+import java.util.Collections;
+import java.util.HashMap;
+import java.util.Map;
+import java.util.zip.CRC32;
+
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.api.Status;
+import de.papke.health.checker.engine.HealthCheck;
+
+/**
+ * Cache for health check results which is shared by all processes
+ * on a host via a memory-mapped file.
+ * 
+ * The file contains a fixed number of slots. A result is stored in
+ * one of the slots following the hash of the health check key. Readers
+ * do not lock: every slot carries a checksum and a slot which is read
+ * while another process writes it is treated as missing. Writers lock
+ * the slot area of the file, so they do not overwrite each other.
+ * There is one instance per file in a process, because file locks 
+ * are held by the whole JVM.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class FileResultCache {
+	
+	private static final int MAGIC = 0x48435243;
+	private static final int VERSION = 1;
+	private static final int HEADER_SIZE = 64;
+	private static final int SLOT_COUNT = 256;
+	private static final int SLOT_SIZE = 512;
+	private static final int PROBE_LENGTH = 8;
+	
+	private static final int HASH_HIGH_OFFSET = 0;
+	private static final int HASH_LOW_OFFSET = 8;
+	private static final int TIMESTAMP_OFFSET = 16;
+	private static final int LATENCY_OFFSET = 24;
+	private static final int STATUS_OFFSET = 32;
+	private static final int MESSAGE_LENGTH_OFFSET = 36;
+	private static final int CHECKSUM_OFFSET = 40;
+	private static final int MESSAGE_OFFSET = 44;
+	private static final int MAX_MESSAGE_LENGTH = SLOT_SIZE - MESSAGE_OFFSET;
+	
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	
+	private static final Map<String, FileResultCache> INSTANCES = new HashMap<String, FileResultCache>();
+	
+	private final RandomAccessFile file;
+	private final FileChannel channel;
+	private final MappedByteBuffer buffer;
+	
+	/**
+	 * Method for getting the cache of the given file.
+	 * 
+	 * @param fileName
+	 * @return
+	 * @throws IOException
+	 */
+	public static synchronized FileResultCache getInstance(String fileName) throws IOException {
+		
+		String path = new File(fileName).getCanonicalPath();
+		
+		FileResultCache cache = INSTANCES.get(path);
+		if (cache == null) {
+			cache = new FileResultCache(path);
+			INSTANCES.put(path, cache);
+		}
+		
+		return cache;
+	}
+	
+	private FileResultCache(String fileName) throws IOException {
+		
+		file = new RandomAccessFile(fileName, "rw");
+		channel = file.getChannel();
+		
+		try {
+			
+			// create file and header, if this is the first process using it
+			FileLock lock = channel.lock(0, HEADER_SIZE, false);
+			try {
+				
+				// check the header before changing an existing file
+				long size = HEADER_SIZE + (long) SLOT_COUNT * SLOT_SIZE;
+				boolean empty = file.length() == 0;
+				if (!empty && !isCompatible(size)) {
+					throw new IOException("The file '" + fileName + "' is not a compatible result cache");
+				}
+				
+				if (empty) {
+					file.setLength(size);
+				}
+				buffer = channel.map(FileChannel.MapMode.READ_WRITE, 0, size);
+				
+				// the header of a new file is written last, so it only becomes valid with its size
+				if (buffer.getInt(0) == 0) {
+					buffer.putInt(4, VERSION);
+					buffer.putInt(8, SLOT_COUNT);
+					buffer.putInt(12, SLOT_SIZE);
+					buffer.putInt(0, MAGIC);
+				}
+			}
+			finally {
+				lock.release();
+			}
+		}
+		catch (IOException e) {
+			file.close();
+			throw e;
+		}
+	}
+	
+	/**
+	 * Helper method for checking if an existing file is a result cache
+	 * of this layout. A file of the right size without header is left
+	 * by a process, which has stopped while creating the file.
+	 * 
+	 * @param size
+	 * @return
+	 * @throws IOException
+	 */
+	private boolean isCompatible(long size) throws IOException {
+		
+		if (file.length() != size) {
+			return false;
+		}
+		
+		ByteBuffer header = ByteBuffer.allocate(16);
+		while (header.hasRemaining() && channel.read(header, header.position()) != -1) {
+			// read the whole header
+		}
+		
+		int magic = header.getInt(0);
+		if (magic == 0) {
+			return header.getInt(4) == 0 && header.getInt(8) == 0 && header.getInt(12) == 0;
+		}
+		
+		return magic == MAGIC && header.getInt(4) == VERSION && header.getInt(8) == SLOT_COUNT && header.getInt(12) == SLOT_SIZE;
+	}
+	
+	/**
+	 * Method for getting a cached result of a health check, which is
+	 * not older than the given time to live.
+	 * 
+	 * @param healthCheck
+	 * @param ttlMillis
+	 * @return the cached result or null
+	 */
+	public CheckResult get(HealthCheck healthCheck, long ttlMillis) {
+		
+		long[] hash = hash(healthCheck.getKey());
+		
+		for (int i = 0; i < PROBE_LENGTH; i++) {
+			ByteBuffer slot = readSlot(getSlotIndex(hash, i));
+			if (slot != null && slot.getLong(HASH_HIGH_OFFSET) == hash[0] && slot.getLong(HASH_LOW_OFFSET) == hash[1]) {
+				
+				long timestamp = slot.getLong(TIMESTAMP_OFFSET);
+				if (System.currentTimeMillis() - timestamp > ttlMillis) {
+					return null;
+				}
+				
+				String message = null;
+				int messageLength = slot.getInt(MESSAGE_LENGTH_OFFSET);
+				if (messageLength >= 0) {
+					message = new String(slot.array(), MESSAGE_OFFSET, messageLength, CHARSET);
+				}
+				
+				Status status = Status.values()[slot.getInt(STATUS_OFFSET)];
+				return new CheckResult(healthCheck.getName(), healthCheck.getType(), status, slot.getLong(LATENCY_OFFSET), message, Collections.<String, Long>emptyMap(), 0, timestamp);
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Method for storing the result of a health check. The slot of the 
+	 * same health check is replaced, otherwise an empty slot or the slot
+	 * with the oldest result.
+	 * 
+	 * @param healthCheck
+	 * @param result
+	 * @throws IOException
+	 */
+	public synchronized void put(HealthCheck healthCheck, CheckResult result) throws IOException {
+		
+		long[] hash = hash(healthCheck.getKey());
+		byte[] slot = createSlot(hash, result);
+		
+		FileLock lock = channel.lock(HEADER_SIZE, (long) SLOT_COUNT * SLOT_SIZE, false);
+		try {
+			
+			// find slot of the same health check, an empty or the oldest slot
+			int slotIndex = -1;
+			long oldestTimestamp = Long.MAX_VALUE;
+			for (int i = 0; i < PROBE_LENGTH; i++) {
+				
+				int currentSlotIndex = getSlotIndex(hash, i);
+				ByteBuffer currentSlot = readSlot(currentSlotIndex);
+				if (currentSlot == null) {
+					slotIndex = currentSlotIndex;
+					break;
+				}
+				if (currentSlot.getLong(HASH_HIGH_OFFSET) == hash[0] && currentSlot.getLong(HASH_LOW_OFFSET) == hash[1]) {
+					slotIndex = currentSlotIndex;
+					break;
+				}
+				if (currentSlot.getLong(TIMESTAMP_OFFSET) < oldestTimestamp) {
+					oldestTimestamp = currentSlot.getLong(TIMESTAMP_OFFSET);
+					slotIndex = currentSlotIndex;
+				}
+			}
+			
+			// write slot
+			ByteBuffer target = buffer.duplicate();
+			target.position(getSlotOffset(slotIndex));
+			target.put(slot);
+		}
+		finally {
+			lock.release();
+		}
+	}
+	
+	/**
+	 * Helper method for creating the bytes of a slot.
+	 * 
+	 * @param hash
+	 * @param result
+	 * @return
+	 */
+	private static byte[] createSlot(long[] hash, CheckResult result) {
+		
+		ByteBuffer slot = ByteBuffer.allocate(SLOT_SIZE);
+		slot.putLong(HASH_HIGH_OFFSET, hash[0]);
+		slot.putLong(HASH_LOW_OFFSET, hash[1]);
+		slot.putLong(TIMESTAMP_OFFSET, result.getTimestamp());
+		slot.putLong(LATENCY_OFFSET, result.getLatencyMillis());
+		slot.putInt(STATUS_OFFSET, result.getStatus().ordinal());
+		
+		// store message, truncated to the slot size at the start of a character
+		int messageLength = -1;
+		if (result.getMessage() != null) {
+			byte[] message = result.getMessage().getBytes(CHARSET);
+			messageLength = Math.min(message.length, MAX_MESSAGE_LENGTH);
+			while (messageLength > 0 && messageLength < message.length && (message[messageLength] & 0xc0) == 0x80) {
+				messageLength--;
+			}
+			slot.position(MESSAGE_OFFSET);
+			slot.put(message, 0, messageLength);
+		}
+		slot.putInt(MESSAGE_LENGTH_OFFSET, messageLength);
+		slot.putInt(CHECKSUM_OFFSET, checksum(slot.array()));
+		
+		return slot.array();
+	}
+	
+	/**
+	 * Helper method for reading a slot without locking.
+	 * 
+	 * @param slotIndex
+	 * @return the slot or null if it is empty or incomplete
+	 */
+	private ByteBuffer readSlot(int slotIndex) {
+		
+		byte[] bytes = new byte[SLOT_SIZE];
+		ByteBuffer source = buffer.duplicate();
+		source.position(getSlotOffset(slotIndex));
+		source.get(bytes);
+		
+		ByteBuffer slot = ByteBuffer.wrap(bytes);
+		if (slot.getLong(TIMESTAMP_OFFSET) == 0) {
+			return null;
+		}
+		
+		int messageLength = slot.getInt(MESSAGE_LENGTH_OFFSET);
+		if (messageLength < -1 || messageLength > MAX_MESSAGE_LENGTH || slot.getInt(STATUS_OFFSET) < 0 || slot.getInt(STATUS_OFFSET) >= Status.values().length) {
+			return null;
+		}
+		
+		if (slot.getInt(CHECKSUM_OFFSET) != checksum(bytes)) {
+			return null;
+		}
+		
+		return slot;
+	}
+	
+	/**
+	 * Helper method for calculating the checksum of a slot.
+	 * 
+	 * @param slot
+	 * @return
+	 */
+	private static int checksum(byte[] slot) {
+		
+		int messageLength = Math.max(0, ByteBuffer.wrap(slot).getInt(MESSAGE_LENGTH_OFFSET));
+		
+		CRC32 crc = new CRC32();
+		crc.update(slot, 0, CHECKSUM_OFFSET);
+		crc.update(slot, MESSAGE_OFFSET, messageLength);
+		
+		return (int) crc.getValue();
+	}
+	
+	/**
+	 * Helper method for getting the slot index of the given probe.
+	 * 
+	 * @param hash
+	 * @param probe
+	 * @return
+	 */
+	static int getSlotIndex(long[] hash, int probe) {
+		return (int) (((hash[1] & Long.MAX_VALUE) + probe) % SLOT_COUNT);
+	}
+	
+	/**
+	 * Helper method for getting the file offset of a slot.
+	 * 
+	 * @param slotIndex
+	 * @return
+	 */
+	private static int getSlotOffset(int slotIndex) {
+		return HEADER_SIZE + slotIndex * SLOT_SIZE;
+	}
+	
+	/**
+	 * Helper method for hashing the key of a health check with SHA-256.
+	 * 
+	 * @param key
+	 * @return the first 128 bits of the hash
+	 */
+	static long[] hash(String key) {
+		
+		try {
+			ByteBuffer digest = ByteBuffer.wrap(MessageDigest.getInstance("SHA-256").digest(key.getBytes(CHARSET)));
+			return new long[] { digest.getLong(), digest.getLong() };
+		}
+		catch (NoSuchAlgorithmException e) {
+			throw new IllegalStateException(e);
+		}
+	}
+}
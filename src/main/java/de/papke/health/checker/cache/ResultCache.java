@@ -0,0 +1,156 @@
+package de.papke.health.checker.cache;
+
+import java.util.Map;
+import java.util.concurrent.ArrayBlockingQueue;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.RejectedExecutionException;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.ThreadPoolExecutor;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.engine.HealthCheck;
+
+/**
+ * Process wide cache for health check results with 
+ * stale-while-revalidate semantics.
+ * 
+ * Results are cached by the key of the health check, so identical 
+ * health checks with different names share one result. A fresh result
+ * is returned directly. An expired result is returned as well, while
+ * exactly one refresh of the health check runs in the background.
+ * 
+ * Results, which are older than their time to live plus a grace period,
+ * are evicted. Refreshes run on a bounded number of threads, a refresh
+ * which does not fit into the queue is retried with the next request.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class ResultCache {
+	
+	private static final long GRACE_MILLIS = TimeUnit.MINUTES.toMillis(1);
+	private static final int REFRESH_THREADS = 4;
+	private static final int REFRESH_QUEUE_SIZE = 1000;
+	
+	private static final ResultCache INSTANCE = new ResultCache(GRACE_MILLIS, REFRESH_THREADS, REFRESH_QUEUE_SIZE);
+	
+	private final ConcurrentMap<String, Entry> entryMap = new ConcurrentHashMap<String, Entry>();
+	private final AtomicLong lastEvictionMillis = new AtomicLong(System.currentTimeMillis());
+	
+	private final long graceMillis;
+	private final ThreadPoolExecutor refreshExecutor;
+	
+	ResultCache(long graceMillis, int refreshThreads, int refreshQueueSize) {
+		
+		this.graceMillis = graceMillis;
+		
+		// idle refresh threads are stopped
+		refreshExecutor = new ThreadPoolExecutor(refreshThreads, refreshThreads, 1, TimeUnit.MINUTES, new ArrayBlockingQueue<Runnable>(refreshQueueSize), new ThreadFactory() {
+			
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "result-cache-refresh");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		refreshExecutor.allowCoreThreadTimeOut(true);
+	}
+	
+	public static ResultCache getInstance() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * Method for getting the result of a health check from the cache.
+	 * The health check is only executed if no result is cached yet or
+	 * the cached result is expired.
+	 * 
+	 * @param healthCheck
+	 * @param ttlMillis
+	 * @return
+	 */
+	public CheckResult get(final HealthCheck healthCheck, final long ttlMillis) {
+		
+		final String key = healthCheck.getKey();
+		
+		evict();
+		
+		// execute health check synchronously if nothing is cached yet or the result is too old
+		final Entry entry = entryMap.get(key);
+		if (entry == null || entry.isEvictable(graceMillis)) {
+			CheckResult result = healthCheck.execute();
+			entryMap.put(key, new Entry(result, ttlMillis));
+			return result;
+		}
+		
+		// refresh expired result in the background, but only once at a time
+		if (entry.result.getAgeMillis() > ttlMillis && entry.refreshing.compareAndSet(false, true)) {
+			try {
+				refreshExecutor.execute(new Runnable() {
+					
+					public void run() {
+						try {
+							entryMap.put(key, new Entry(healthCheck.execute(), ttlMillis));
+						}
+						finally {
+							entry.refreshing.set(false);
+						}
+					}
+				});
+			}
+			catch (RejectedExecutionException e) {
+				entry.refreshing.set(false);
+			}
+		}
+		
+		return entry.result.withName(healthCheck.getName());
+	}
+	
+	/**
+	 * Helper method for removing the results, which are older than their
+	 * time to live plus the grace period. The entries are only checked 
+	 * once per grace period.
+	 */
+	private void evict() {
+		
+		long now = System.currentTimeMillis();
+		long last = lastEvictionMillis.get();
+		if (now - last < graceMillis || !lastEvictionMillis.compareAndSet(last, now)) {
+			return;
+		}
+		
+		for (Map.Entry<String, Entry> mapEntry : entryMap.entrySet()) {
+			if (mapEntry.getValue().isEvictable(graceMillis)) {
+				entryMap.remove(mapEntry.getKey(), mapEntry.getValue());
+			}
+		}
+	}
+	
+	int size() {
+		return entryMap.size();
+	}
+	
+	/**
+	 * Class for a cached result together with its refresh state.
+	 */
+	private static class Entry {
+		
+		private final CheckResult result;
+		private final long ttlMillis;
+		private final AtomicBoolean refreshing = new AtomicBoolean();
+		
+		private Entry(CheckResult result, long ttlMillis) {
+			this.result = result;
+			this.ttlMillis = ttlMillis;
+		}
+		
+		private boolean isEvictable(long graceMillis) {
+			long maxAgeMillis = ttlMillis > Long.MAX_VALUE - graceMillis ? Long.MAX_VALUE : ttlMillis + graceMillis;
+			return result.getAgeMillis() > maxAgeMillis;
+		}
+	}
+}
@@ -0,0 +1,81 @@
+package de.papke.health.checker.daemon;
+
+import java.io.ByteArrayOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+
+/**
+ * Class for sending console output to a daemon client line by line.
+ * 
+ * Every line is prefixed with the channel character, so stdout and 
+ * stderr can be sent over the same connection.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class FramedOutputStream extends OutputStream {
+	
+	private final char channel;
+	private final OutputStream connection;
+	private final ByteArrayOutputStream line = new ByteArrayOutputStream();
+	
+	public FramedOutputStream(char channel, OutputStream connection) {
+		this.channel = channel;
+		this.connection = connection;
+	}
+	
+	@Override
+	public synchronized void write(int b) throws IOException {
+		if (b == '\n') {
+			sendLine();
+		}
+		else {
+			line.write(b);
+		}
+	}
+	
+	@Override
+	public synchronized void write(byte[] b, int off, int len) throws IOException {
+		
+		int start = off;
+		int end = off + len;
+		
+		// send every complete line
+		for (int i = off; i < end; i++) {
+			if (b[i] == '\n') {
+				line.write(b, start, i - start);
+				sendLine();
+				start = i + 1;
+			}
+		}
+		
+		// keep the rest until the line is complete
+		line.write(b, start, end - start);
+	}
+	
+	/**
+	 * Method for sending an incomplete last line.
+	 * 
+	 * @throws IOException
+	 */
+	public synchronized void close() throws IOException {
+		if (line.size() > 0) {
+			sendLine();
+		}
+	}
+	
+	/**
+	 * Helper method for sending the buffered line with its channel.
+	 * 
+	 * @throws IOException
+	 */
+	private void sendLine() throws IOException {
+		synchronized (connection) {
+			connection.write(channel);
+			line.writeTo(connection);
+			connection.write('\n');
+			connection.flush();
+		}
+		line.reset();
+	}
+}
@@ -0,0 +1,428 @@
+package de.papke.health.checker.daemon;
+
+import java.io.BufferedInputStream;
+import java.io.ByteArrayOutputStream;
+import java.io.EOFException;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ProtocolFamily;
+import java.net.SocketAddress;
+import java.net.StandardProtocolFamily;
+import java.nio.channels.Channels;
+import java.nio.channels.ServerSocketChannel;
+import java.nio.channels.SocketChannel;
+import java.nio.file.Files;
+import java.nio.file.LinkOption;
+import java.nio.file.Path;
+import java.nio.file.Paths;
+import java.nio.file.StandardCopyOption;
+import java.nio.file.attribute.BasicFileAttributes;
+import java.nio.file.attribute.PosixFilePermissions;
+import java.security.MessageDigest;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.lang3.StringUtils;
+
+import de.papke.health.checker.HealthChecker;
+import de.papke.health.checker.HealthCheckerFactory;
+import de.papke.health.checker.api.GeneralParameter;
+
+/**
+ * Class for a resident health checker daemon.
+ * 
+ * The daemon keeps the JVM, the health checkers and their clients warm
+ * and executes the health checks which are forwarded by the thin client
+ * mode of the start script. It listens on a Unix domain socket (Java 16 
+ * or later) or on a loopback TCP port, if the address is a number.
+ * 
+ * The socket file is only accessible by the owner of the daemon. It is 
+ * bound in a private directory and moved to its address after its 
+ * permissions have been set. A TCP port (or a socket file on a file 
+ * system without POSIX permissions) is accessible by all local users, 
+ * so the daemon only accepts requests with the token of 
+ * HEALTH_CHECKER_DAEMON_TOKEN in this case. Only the socket file of 
+ * a daemon, which is not running anymore, is replaced.
+ * Health checks which would run forever (status server, interval mode 
+ * without number of runs) are rejected.
+ * 
+ * Request: the token (empty if not set), the value of HEALTH_CHECKER_TYPE, 
+ * the number of arguments and the arguments, each terminated by a NUL 
+ * character.
+ * 
+ * Response: lines prefixed with 'o' (stdout) or 'e' (stderr) and a last 
+ * line 'x' with the exit code of the health check.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class HealthCheckerDaemon {
+	
+	public static final String COMMAND = "daemon";
+	public static final String HEALTH_CHECKER_DAEMON = "HEALTH_CHECKER_DAEMON";
+	public static final String HEALTH_CHECKER_DAEMON_TOKEN = "HEALTH_CHECKER_DAEMON_TOKEN";
+	
+	private static final String CHARSET = "UTF-8";
+	private static final char STDOUT = 'o';
+	private static final char STDERR = 'e';
+	private static final char EXIT_CODE = 'x';
+	private static final int FAILURE_EXIT_CODE = 255;
+	private static final int MAX_FIELD_LENGTH = 1024 * 1024;
+	
+	// file type bits of the unix file mode
+	private static final int S_IFMT = 0170000;
+	private static final int S_IFSOCK = 0140000;
+	
+	private final String address;
+	private final byte[] token;
+	private final ConcurrentMap<String, HealthChecker> healthCheckerMap = new ConcurrentHashMap<String, HealthChecker>();
+	private final ExecutorService executor = Executors.newCachedThreadPool();
+	
+	/**
+	 * @param address the socket file or the loopback TCP port
+	 * @param token the token of the clients or null (only allowed for socket files)
+	 * @throws Exception
+	 */
+	public HealthCheckerDaemon(String address, String token) throws Exception {
+		
+		// every local user can connect to a TCP port
+		if (isPort(address) && StringUtils.isEmpty(token)) {
+			throw new Exception("A daemon on a TCP port needs a token in the environment variable '" + HEALTH_CHECKER_DAEMON_TOKEN + "', please use a socket file or set a token");
+		}
+		
+		this.address = address;
+		this.token = StringUtils.isNotEmpty(token) ? token.getBytes(CHARSET) : null;
+	}
+	
+	private static boolean isPort(String address) {
+		return address.matches("\\d+");
+	}
+	
+	/**
+	 * Method for listening for requests. This method blocks forever.
+	 * 
+	 * @throws Exception
+	 */
+	public void run() throws Exception {
+		
+		ServerSocketChannel serverChannel = open();
+		
+		// send the console output of each request to its client
+		OutputRouter.install();
+		
+		System.out.println("Health checker daemon listening on " + address);
+		
+		while (true) {
+			final SocketChannel channel = serverChannel.accept();
+			executor.execute(new Runnable() {
+				
+				public void run() {
+					handle(channel);
+				}
+			});
+		}
+	}
+	
+	/**
+	 * Helper method for opening the server socket.
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	private ServerSocketChannel open() throws Exception {
+		
+		// listen on a loopback TCP port
+		if (isPort(address)) {
+			ServerSocketChannel serverChannel = ServerSocketChannel.open();
+			serverChannel.bind(new InetSocketAddress(InetAddress.getLoopbackAddress(), Integer.parseInt(address)));
+			return serverChannel;
+		}
+		
+		// listen on a Unix domain socket, which is only available since Java 16
+		final Path path = Paths.get(address).toAbsolutePath();
+		SocketAddress socketAddress = getUnixAddress(path);
+		ServerSocketChannel serverChannel = (ServerSocketChannel) ServerSocketChannel.class.getMethod("open", ProtocolFamily.class).invoke(null, getUnixFamily());
+		
+		// remove the socket file of a previous daemon
+		removeStaleSocket(path);
+		
+		// bind in a directory, which is only accessible by the owner, so nobody 
+		// can connect before the permissions of the socket file have been set
+		Path directory;
+		try {
+			directory = Files.createTempDirectory(path.getParent(), ".health-checker", PosixFilePermissions.asFileAttribute(PosixFilePermissions.fromString("rwx------")));
+		}
+		catch (UnsupportedOperationException e) {
+			
+			// no POSIX file system, every local user can connect
+			if (token == null) {
+				throw new Exception("The socket file '" + address + "' cannot be restricted to its owner, please set a token in the environment variable '" + HEALTH_CHECKER_DAEMON_TOKEN + "'");
+			}
+			directory = null;
+		}
+		
+		if (directory == null) {
+			serverChannel.bind(socketAddress);
+		}
+		else {
+			Path boundPath = directory.resolve("socket");
+			try {
+				
+				// only the owner may execute health checks
+				serverChannel.bind(getUnixAddress(boundPath));
+				Files.setPosixFilePermissions(boundPath, PosixFilePermissions.fromString("rw-------"));
+				
+				// publish the socket file under its address
+				Files.move(boundPath, path, StandardCopyOption.ATOMIC_MOVE);
+			}
+			finally {
+				Files.deleteIfExists(boundPath);
+				Files.delete(directory);
+			}
+		}
+		
+		// remove the socket file on shutdown, if it has not been replaced
+		final Object fileKey = Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).fileKey();
+		Runtime.getRuntime().addShutdownHook(new Thread() {
+			
+			@Override
+			public void run() {
+				try {
+					if (fileKey != null && fileKey.equals(Files.readAttributes(path, BasicFileAttributes.class, LinkOption.NOFOLLOW_LINKS).fileKey())) {
+						Files.delete(path);
+					}
+				}
+				catch (IOException e) {
+					// nothing to clean up
+				}
+			}
+		});
+		
+		return serverChannel;
+	}
+	
+	/**
+	 * Helper method for getting the protocol family of Unix domain sockets.
+	 * 
+	 * @return
+	 * @throws Exception if Unix domain sockets are not available
+	 */
+	private static ProtocolFamily getUnixFamily() throws Exception {
+		try {
+			return StandardProtocolFamily.valueOf("UNIX");
+		}
+		catch (IllegalArgumentException e) {
+			throw new Exception("Unix domain sockets need Java 16 or later, please use a port as daemon address");
+		}
+	}
+	
+	/**
+	 * Helper method for getting the address of a Unix domain socket.
+	 * 
+	 * @param path
+	 * @return
+	 * @throws Exception if Unix domain sockets are not available
+	 */
+	private static SocketAddress getUnixAddress(Path path) throws Exception {
+		try {
+			Class<?> addressClass = Class.forName("java.net.UnixDomainSocketAddress");
+			return (SocketAddress) addressClass.getMethod("of", String.class).invoke(null, path.toString());
+		}
+		catch (ClassNotFoundException e) {
+			throw new Exception("Unix domain sockets need Java 16 or later, please use a port as daemon address");
+		}
+	}
+	
+	/**
+	 * Helper method for removing the socket file of a daemon, which is 
+	 * not running anymore. Other files and the socket files of running 
+	 * daemons are never removed.
+	 * 
+	 * @param path
+	 * @throws Exception if the file cannot be removed
+	 */
+	private static void removeStaleSocket(Path path) throws Exception {
+		
+		if (!Files.exists(path, LinkOption.NOFOLLOW_LINKS)) {
+			return;
+		}
+		
+		// check the file type
+		int mode;
+		try {
+			mode = (Integer) Files.getAttribute(path, "unix:mode", LinkOption.NOFOLLOW_LINKS);
+		}
+		catch (UnsupportedOperationException e) {
+			throw new Exception("The daemon address '" + path + "' already exists, please remove it or use another address");
+		}
+		
+		if ((mode & S_IFMT) != S_IFSOCK) {
+			throw new Exception("The daemon address '" + path + "' is not a socket file, please remove it or use another address");
+		}
+		
+		// a socket file, which accepts connections, belongs to a running daemon
+		SocketChannel channel = (SocketChannel) SocketChannel.class.getMethod("open", ProtocolFamily.class).invoke(null, getUnixFamily());
+		try {
+			channel.connect(getUnixAddress(path));
+			throw new Exception("Another daemon is listening on '" + path + "'");
+		}
+		catch (IOException e) {
+			// nobody is listening anymore
+		}
+		finally {
+			channel.close();
+		}
+		
+		Files.delete(path);
+	}
+	
+	/**
+	 * Helper method for executing the health check of one client.
+	 * 
+	 * @param channel
+	 */
+	private void handle(SocketChannel channel) {
+		
+		try {
+			
+			InputStream inputStream = new BufferedInputStream(Channels.newInputStream(channel));
+			OutputStream outputStream = Channels.newOutputStream(channel);
+			FramedOutputStream out = new FramedOutputStream(STDOUT, outputStream);
+			FramedOutputStream err = new FramedOutputStream(STDERR, outputStream);
+			
+			int exitCode = FAILURE_EXIT_CODE;
+			
+			// send the console output of this thread to the client
+			OutputRouter.route(out, err);
+			try {
+				
+				// check token before reading the rest of the request
+				byte[] clientToken = readField(inputStream).getBytes(CHARSET);
+				if (token != null && !MessageDigest.isEqual(token, clientToken)) {
+					throw new Exception("Invalid token for the health checker daemon");
+				}
+				
+				// read request
+				String typeString = readField(inputStream);
+				int argumentCount = Integer.parseInt(readField(inputStream));
+				String[] args = new String[argumentCount];
+				for (int i = 0; i < argumentCount; i++) {
+					args[i] = readField(inputStream);
+				}
+				
+				// execute health check
+				HealthChecker healthChecker = getHealthChecker(typeString);
+				checkOptions(healthChecker, args);
+				exitCode = healthChecker.run(args) & 0xff;
+			}
+			catch (Exception e) {
+				System.err.println(e.getMessage());
+			}
+			finally {
+				OutputRouter.reset();
+				out.close();
+				err.close();
+			}
+			
+			// send exit code
+			synchronized (outputStream) {
+				outputStream.write((EXIT_CODE + String.valueOf(exitCode) + "\n").getBytes(CHARSET));
+				outputStream.flush();
+			}
+		}
+		catch (IOException e) {
+			// client has gone away
+		}
+		finally {
+			try {
+				channel.close();
+			}
+			catch (IOException e) {
+				// already closed
+			}
+		}
+	}
+	
+	/**
+	 * Helper method for rejecting health checks which would run forever 
+	 * and block a thread and the connection of the client.
+	 * 
+	 * @param healthChecker
+	 * @param args
+	 * @throws Exception
+	 */
+	private static void checkOptions(HealthChecker healthChecker, String[] args) throws Exception {
+		
+		CommandLine commandLine;
+		try {
+			commandLine = healthChecker.parse(args);
+		}
+		catch (Exception e) {
+			// the invalid usage is printed by the health checker
+			return;
+		}
+		
+		if (commandLine.hasOption(GeneralParameter.STATUS_PORT.toString())) {
+			throw new Exception("The option '" + GeneralParameter.STATUS_PORT + "' is not supported by the health checker daemon");
+		}
+		
+		if (commandLine.hasOption(GeneralParameter.INTERVAL.toString())) {
+			String repeatString = commandLine.getOptionValue(GeneralParameter.REPEAT.toString());
+			if (!StringUtils.isNumeric(repeatString) || Long.parseLong(repeatString) <= 0) {
+				throw new Exception("The option '" + GeneralParameter.INTERVAL + "' needs a positive number of runs in the option '" + GeneralParameter.REPEAT + "' in the health checker daemon");
+			}
+		}
+	}
+	
+	/**
+	 * Helper method for getting the warm health checker of a type.
+	 * 
+	 * @param typeString
+	 * @return
+	 * @throws Exception
+	 */
+	private HealthChecker getHealthChecker(String typeString) throws Exception {
+		
+		HealthChecker healthChecker = healthCheckerMap.get(typeString);
+		if (healthChecker == null) {
+			healthChecker = HealthCheckerFactory.create(typeString);
+			HealthChecker existingHealthChecker = healthCheckerMap.putIfAbsent(typeString, healthChecker);
+			if (existingHealthChecker != null) {
+				healthChecker = existingHealthChecker;
+			}
+		}
+		
+		return healthChecker;
+	}
+	
+	/**
+	 * Helper method for reading a NUL terminated field of the request.
+	 * 
+	 * @param inputStream
+	 * @return
+	 * @throws IOException
+	 */
+	private static String readField(InputStream inputStream) throws IOException {
+		
+		ByteArrayOutputStream field = new ByteArrayOutputStream();
+		
+		int b;
+		while ((b = inputStream.read()) != 0) {
+			if (b == -1) {
+				throw new EOFException("Incomplete request");
+			}
+			if (field.size() >= MAX_FIELD_LENGTH) {
+				throw new IOException("Request field too long");
+			}
+			field.write(b);
+		}
+		
+		return field.toString(CHARSET);
+	}
+}
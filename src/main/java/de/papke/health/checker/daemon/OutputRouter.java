@@ -0,0 +1,121 @@
+package de.papke.health.checker.daemon;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.io.PrintStream;
+
+/**
+ * Class for routing the console output of a thread to its own stream.
+ * 
+ * The health checkers print their results to System.out and System.err.
+ * In the daemon, several requests are executed at the same time, so the 
+ * output of each request thread is sent to the stream of its client 
+ * instead of the console. The routing is not inherited by other threads, 
+ * because pool threads which are shared by all requests (e.g. the I/O 
+ * threads of the non-blocking HTTP engine) would keep the stream of the 
+ * request, which happened to create them, for their whole life.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class OutputRouter extends OutputStream {
+	
+	private static final ThreadLocal<OutputStream> OUT = new ThreadLocal<OutputStream>();
+	private static final ThreadLocal<OutputStream> ERR = new ThreadLocal<OutputStream>();
+	
+	private static boolean installed;
+	
+	private final ThreadLocal<OutputStream> target;
+	private final OutputStream console;
+	
+	private OutputRouter(ThreadLocal<OutputStream> target, OutputStream console) {
+		this.target = target;
+		this.console = console;
+	}
+	
+	/**
+	 * Method for replacing System.out and System.err with routing streams.
+	 */
+	public static synchronized void install() {
+		if (!installed) {
+			System.setOut(new PrintStream(new OutputRouter(OUT, System.out), true));
+			System.setErr(new PrintStream(new OutputRouter(ERR, System.err), true));
+			installed = true;
+		}
+	}
+	
+	/**
+	 * Method for routing the console output of the current thread.
+	 * 
+	 * @param out
+	 * @param err
+	 */
+	public static void route(OutputStream out, OutputStream err) {
+		OUT.set(out);
+		ERR.set(err);
+	}
+	
+	/**
+	 * Method for handing the routing of the current thread over to a task, 
+	 * which is executed by a thread of its own request. The routing is 
+	 * removed after the task, so the thread can be reused.
+	 * 
+	 * @param task
+	 * @return
+	 */
+	public static Runnable inherit(final Runnable task) {
+		
+		final OutputStream out = OUT.get();
+		final OutputStream err = ERR.get();
+		if (out == null && err == null) {
+			return task;
+		}
+		
+		return new Runnable() {
+			
+			public void run() {
+				route(out, err);
+				try {
+					task.run();
+				}
+				finally {
+					reset();
+				}
+			}
+		};
+	}
+	
+	/**
+	 * Method for sending the console output of the current thread
+	 * to the console again.
+	 */
+	public static void reset() {
+		OUT.remove();
+		ERR.remove();
+	}
+	
+	/**
+	 * Helper method for getting the stream of the current thread.
+	 * 
+	 * @return
+	 */
+	private OutputStream getStream() {
+		OutputStream stream = target.get();
+		return stream != null ? stream : console;
+	}
+	
+	@Override
+	public void write(int b) throws IOException {
+		getStream().write(b);
+	}
+	
+	@Override
+	public void write(byte[] b, int off, int len) throws IOException {
+		getStream().write(b, off, len);
+	}
+	
+	@Override
+	public void flush() throws IOException {
+		getStream().flush();
+	}
+}
@@ -1,7 +1,7 @@
 package de.papke.health.checker.elasticsearch;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
@@ -15,6 +15,10 @@ import org.elasticsearch.common.settings.Settings;
 import org.elasticsearch.common.transport.InetSocketTransportAddress;
 
 import de.papke.health.checker.HealthChecker;
+import de.papke.health.checker.api.CheckContext;
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.api.Type;
+import de.papke.health.checker.util.PatternMatcher;
 
 /**
  * Class for checking the health of an elasticsearch server.
@@ -25,6 +29,8 @@ import de.papke.health.checker.HealthChecker;
 public class ElasticSearchHealthChecker extends HealthChecker {
 
 	private static Options options = new Options();
+	
+	private final ConcurrentMap<String, Client> clientCache = new ConcurrentHashMap<String, Client>();
 
 	static {
 		for (ElasticSearchParameter parameter : ElasticSearchParameter.values()) {
@@ -33,11 +39,49 @@ public class ElasticSearchHealthChecker extends HealthChecker {
 	}
 
 	public ElasticSearchHealthChecker() {
-		super(options);
+		super(Type.elasticsearch, options);
+	}
+
+	/**
+	 * Helper method for getting an elasticsearch transport client.
+	 * Clients are cached, so repeated checks reuse the transport
+	 * connections of the client.
+	 * 
+	 * @param hostname
+	 * @param port
+	 * @param clusterName
+	 * @param connectTimeout
+	 * @return
+	 */
+	private Client getClient(String hostname, int port, String clusterName, int connectTimeout) {
+		
+		String key = hostname + "|" + port + "|" + clusterName + "|" + connectTimeout;
+		
+		Client client = clientCache.get(key);
+		if (client == null) {
+			
+			// build elasticsearch client settings
+			Settings settings = ImmutableSettings
+					.settingsBuilder()
+					.put("cluster.name", clusterName)
+					.put("client.transport.ping_timeout", connectTimeout)
+					.build();
+			
+			// create elasticsearch transport client
+			client = new TransportClient(settings).addTransportAddress(new InetSocketTransportAddress(hostname, port));
+			
+			Client existingClient = clientCache.putIfAbsent(key, client);
+			if (existingClient != null) {
+				client.close();
+				client = existingClient;
+			}
+		}
+		
+		return client;
 	}
 
 	@Override
-	public void check(CommandLine commandLine) throws Exception {
+	public CheckResult check(CommandLine commandLine) throws Exception {
 
 		// get hostname
 		String hostname = commandLine.getOptionValue(ElasticSearchParameter.HOSTNAME.toString());
@@ -68,25 +112,18 @@ public class ElasticSearchHealthChecker extends HealthChecker {
 		int responseTimeout = (Integer) ElasticSearchParameter.RESPONSE_TIMEOUT.getDefaultValue();
 		String responseTimeoutString = commandLine.getOptionValue(ElasticSearchParameter.RESPONSE_TIMEOUT.toString());
 		if (StringUtils.isNotEmpty(responseTimeoutString)) {
-			responseTimeout = Integer.parseInt(connectTimeoutString);
+			responseTimeout = Integer.parseInt(responseTimeoutString);
 		}
 
 		// get pattern to search
-		Pattern pattern = (Pattern) ElasticSearchParameter.PATTERN.getDefaultValue();
-		String patternString = commandLine.getOptionValue(ElasticSearchParameter.PATTERN.toString());
-		if (StringUtils.isNotEmpty(patternString)) {
-			pattern = Pattern.compile(patternString);
-		}
+		PatternMatcher patternMatcher = getPatternMatcher(commandLine, ElasticSearchParameter.PATTERN, ElasticSearchParameter.EXCLUDE_PATTERN);
 
-		// build elasticsearch client settings
-		Settings settings = ImmutableSettings
-				.settingsBuilder()
-				.put("cluster.name", clusterName)
-				.put("client.transport.ping_timeout", connectTimeout)
-				.build();
+		// limit the timeout of the cached client to the deadline
+		CheckContext context = CheckContext.current();
+		connectTimeout = context.limitTimeoutToBudget(connectTimeout);
 		
 		// get elasticsearch transport client
-		Client client = new TransportClient(settings).addTransportAddress(new InetSocketTransportAddress(hostname, port));
+		Client client = getClient(hostname, port, clusterName, connectTimeout);
 		
 		// build elasticsearch search request
 		SearchRequestBuilder builder = client.prepareSearch(index);
@@ -95,20 +132,21 @@ public class ElasticSearchHealthChecker extends HealthChecker {
 			builder.setTypes(types);
 		}
 
-		// execute elasticsearch search request with timeout
-		SearchResponse response = builder.execute().actionGet(responseTimeout);
+		// execute elasticsearch search request with timeout (limited to the remaining time of the deadline)
+		SearchResponse response = builder.execute().actionGet(context.limitTimeout(responseTimeout));
 		
 		// get response as string
 		String responseText = response.toString();
+		context.addBytesRead(responseText.length());
 		if (StringUtils.isNotEmpty(responseText)) {
 			
-			System.out.println(responseText);
-			
 			// check if response string matches the pattern
-			Matcher matcher = pattern.matcher(responseText);
-			if (!matcher.find()) {
-				throw new Exception("The pattern does not match the HTTP response text");
+			PatternMatcher.Scan scan = patternMatcher.scan(responseText);
+			if (!scan.isMatched()) {
+				return down(scan.getFailure("HTTP response text"), responseText);
 			}
 		}
+
+		return up(responseText);
 	}
 }
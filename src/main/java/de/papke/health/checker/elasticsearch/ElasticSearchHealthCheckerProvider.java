@@ -0,0 +1,22 @@
+package de.papke.health.checker.elasticsearch;
+
+import de.papke.health.checker.HealthChecker;
+import de.papke.health.checker.HealthCheckerProvider;
+import de.papke.health.checker.api.Type;
+
+/**
+ * Provider for the health checker of an elasticsearch server.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class ElasticSearchHealthCheckerProvider implements HealthCheckerProvider {
+	
+	public Type getType() {
+		return Type.elasticsearch;
+	}
+	
+	public HealthChecker create() throws Exception {
+		return new ElasticSearchHealthChecker();
+	}
+}
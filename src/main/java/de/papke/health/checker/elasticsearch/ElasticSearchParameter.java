@@ -25,7 +25,8 @@ public enum ElasticSearchParameter implements Parameter {
 	QUERY("q", "query", "The elasticsearch query string to execute", null),
 	TYPES("t", "types", "Comma separated list of elasticsearch return types", null),
 	
-	PATTERN("x", "pattern", "The regex pattern to search in the elasticsearch response text", Pattern.compile(".*"));
+	PATTERN("x", "pattern", "The regex pattern to search in the elasticsearch response text, can be given multiple times", Pattern.compile(".*")),
+	EXCLUDE_PATTERN(null, "exclude-pattern", "The regex pattern which must not be found in the elasticsearch response text, can be given multiple times", null);
 	
 	private final String shortName;
 	private final String longName;
@@ -0,0 +1,230 @@
+package de.papke.health.checker.engine;
+
+import java.lang.reflect.Method;
+import java.util.ArrayList;
+import java.util.List;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.Semaphore;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import de.papke.health.checker.api.CheckResult;
+
+/**
+ * Class for executing many blocking health checks concurrently.
+ * 
+ * On Java 21 and newer every health check runs on its own virtual
+ * thread, so thousands of blocking checks do not need thousands of
+ * platform thread stacks. On older Java versions a fixed thread pool
+ * is used instead. In both cases the number of concurrently running
+ * health checks is limited by the given concurrency.
+ * 
+ * Health checks with a non-blocking engine do not occupy a thread 
+ * while they are in flight, they only take a permit of the concurrency.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class CheckExecutor {
+	
+	private static final String VIRTUAL_THREAD_EXECUTOR_METHOD = "newVirtualThreadPerTaskExecutor";
+	
+	private final ExecutorService executor;
+	private final boolean virtual;
+	private final Semaphore permits;
+	
+	private final AtomicInteger inFlight = new AtomicInteger();
+	private final AtomicInteger peakInFlight = new AtomicInteger();
+	
+	public CheckExecutor(int concurrency) {
+		
+		ExecutorService virtualExecutor = createVirtualThreadExecutor();
+		
+		this.virtual = virtualExecutor != null;
+		this.executor = virtual ? virtualExecutor : Executors.newFixedThreadPool(concurrency);
+		this.permits = new Semaphore(concurrency);
+	}
+	
+	/**
+	 * Helper method for creating a virtual thread executor, 
+	 * if the running Java version supports it.
+	 * 
+	 * @return the executor or null if virtual threads are not available
+	 */
+	private static ExecutorService createVirtualThreadExecutor() {
+		try {
+			Method method = Executors.class.getMethod(VIRTUAL_THREAD_EXECUTOR_METHOD);
+			return (ExecutorService) method.invoke(null);
+		}
+		catch (Exception e) {
+			return null;
+		}
+	}
+	
+	/**
+	 * Method for submitting a health check for execution.
+	 * 
+	 * @param healthCheck
+	 * @return
+	 */
+	public Future<CheckResult> submit(final HealthCheck healthCheck) {
+		
+		final CompletableFuture<CheckResult> future = new CompletableFuture<CheckResult>();
+		boolean async = executeAsync(healthCheck, new ResultListener() {
+			
+			public void onResult(CheckResult result) {
+				future.complete(result);
+			}
+		});
+		
+		if (async) {
+			return future;
+		}
+		
+		return executor.submit(new Callable<CheckResult>() {
+			
+			public CheckResult call() throws Exception {
+				return runWithPermit(healthCheck);
+			}
+		});
+	}
+	
+	/**
+	 * Method for executing a health check and passing
+	 * its result to the given listener.
+	 * 
+	 * @param healthCheck
+	 * @param listener
+	 */
+	public void execute(final HealthCheck healthCheck, final ResultListener listener) {
+		
+		if (executeAsync(healthCheck, listener)) {
+			return;
+		}
+		
+		executor.execute(new Runnable() {
+			
+			public void run() {
+				try {
+					listener.onResult(runWithPermit(healthCheck));
+				}
+				catch (InterruptedException e) {
+					Thread.currentThread().interrupt();
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Helper method for executing a health check without a thread, if
+	 * a permit is available and the health checker supports it.
+	 * 
+	 * @param healthCheck
+	 * @param listener
+	 * @return false if the health check has to be executed on a thread
+	 */
+	private boolean executeAsync(HealthCheck healthCheck, final ResultListener listener) {
+		
+		if (!permits.tryAcquire()) {
+			return false;
+		}
+		
+		updatePeak(inFlight.incrementAndGet());
+		
+		boolean async = false;
+		try {
+			async = healthCheck.executeAsync(new ResultListener() {
+				
+				public void onResult(CheckResult result) {
+					inFlight.decrementAndGet();
+					permits.release();
+					listener.onResult(result);
+				}
+			});
+		}
+		finally {
+			if (!async) {
+				inFlight.decrementAndGet();
+				permits.release();
+			}
+		}
+		
+		return async;
+	}
+	
+	/**
+	 * Helper method for running a health check as soon as
+	 * the concurrency limit allows it.
+	 * 
+	 * @param healthCheck
+	 * @return
+	 * @throws InterruptedException
+	 */
+	private CheckResult runWithPermit(HealthCheck healthCheck) throws InterruptedException {
+		
+		permits.acquire();
+		try {
+			updatePeak(inFlight.incrementAndGet());
+			return healthCheck.run();
+		}
+		finally {
+			inFlight.decrementAndGet();
+			permits.release();
+		}
+	}
+	
+	/**
+	 * Method for running all health checks and waiting for their results.
+	 * The results keep the order of the health checks.
+	 * 
+	 * @param healthCheckList
+	 * @return
+	 * @throws Exception
+	 */
+	public List<CheckResult> runAll(List<HealthCheck> healthCheckList) throws Exception {
+		
+		List<Future<CheckResult>> futureList = new ArrayList<Future<CheckResult>>();
+		for (HealthCheck healthCheck : healthCheckList) {
+			futureList.add(submit(healthCheck));
+		}
+		
+		List<CheckResult> resultList = new ArrayList<CheckResult>();
+		for (Future<CheckResult> future : futureList) {
+			resultList.add(future.get());
+		}
+		
+		return resultList;
+	}
+	
+	/**
+	 * Helper method for remembering the highest number of 
+	 * concurrently running health checks.
+	 * 
+	 * @param current
+	 */
+	private void updatePeak(int current) {
+		int peak = peakInFlight.get();
+		while (current > peak && !peakInFlight.compareAndSet(peak, current)) {
+			peak = peakInFlight.get();
+		}
+	}
+	
+	public void shutdown() {
+		executor.shutdownNow();
+	}
+	
+	public boolean isVirtual() {
+		return virtual;
+	}
+	
+	public int getInFlight() {
+		return inFlight.get();
+	}
+	
+	public int getPeakInFlight() {
+		return peakInFlight.get();
+	}
+}
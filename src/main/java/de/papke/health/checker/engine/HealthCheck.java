@@ -0,0 +1,236 @@
+package de.papke.health.checker.engine;
+
+import java.util.HashSet;
+import java.util.Map;
+import java.util.Set;
+import java.util.TreeMap;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.lang3.StringUtils;
+
+import de.papke.health.checker.HealthChecker;
+import de.papke.health.checker.api.CheckContext;
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.api.DeadlineExceededException;
+import de.papke.health.checker.api.GeneralParameter;
+import de.papke.health.checker.api.Status;
+import de.papke.health.checker.api.Type;
+import de.papke.health.checker.cache.ResultCache;
+import de.papke.health.checker.metrics.MetricsRegistry;
+import de.papke.health.checker.util.PatternTimeoutException;
+import de.papke.health.checker.util.TimeUtils;
+
+/**
+ * Class for a named health check, which binds a health checker
+ * to its parsed command line arguments. 
+ * 
+ * A health check can be run any number of times and
+ * from any thread.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class HealthCheck {
+	
+	private static final Set<String> GENERAL_OPTIONS = new HashSet<String>();
+	
+	static {
+		for (GeneralParameter parameter : GeneralParameter.values()) {
+			
+			// the time budgets decide between a result and a timeout
+			if (parameter != GeneralParameter.DEADLINE && parameter != GeneralParameter.PATTERN_TIMEOUT) {
+				GENERAL_OPTIONS.add(parameter.getLongName());
+			}
+		}
+	}
+	
+	private final String name;
+	private final Type type;
+	private final HealthChecker healthChecker;
+	private final CommandLine commandLine;
+	private final String key;
+	private final long cacheTtlMillis;
+	private final long deadlineMillis;
+	
+	public HealthCheck(String name, Type type, HealthChecker healthChecker, CommandLine commandLine) {
+		this.name = name;
+		this.type = type;
+		this.healthChecker = healthChecker;
+		this.commandLine = commandLine;
+		this.key = createKey(type, commandLine);
+		
+		String cacheTtlString = commandLine.getOptionValue(GeneralParameter.CACHE_TTL.toString());
+		this.cacheTtlMillis = StringUtils.isNotEmpty(cacheTtlString) ? TimeUtils.parseMillis(cacheTtlString) : -1;
+		
+		String deadlineString = commandLine.getOptionValue(GeneralParameter.DEADLINE.toString());
+		this.deadlineMillis = StringUtils.isNotEmpty(deadlineString) ? TimeUtils.parseMillis(deadlineString) : -1;
+	}
+	
+	/**
+	 * Helper method for creating a key from the type and the normalized
+	 * command line arguments. Identical health checks get the same key
+	 * regardless of the order of the arguments. General arguments are
+	 * ignored, because they do not change the result, except for the
+	 * time budgets (deadline and pattern timeout).
+	 * 
+	 * @param type
+	 * @param commandLine
+	 * @return
+	 */
+	private static String createKey(Type type, CommandLine commandLine) {
+		
+		Map<String, StringBuilder> optionMap = new TreeMap<String, StringBuilder>();
+		
+		for (Object object : commandLine.getOptions()) {
+			
+			Option option = (Option) object;
+			String optionName = option.getLongOpt() != null ? option.getLongOpt() : option.getOpt();
+			if (GENERAL_OPTIONS.contains(optionName)) {
+				continue;
+			}
+			
+			StringBuilder values = optionMap.get(optionName);
+			if (values == null) {
+				values = new StringBuilder();
+				optionMap.put(optionName, values);
+			}
+			
+			for (Object value : option.getValuesList()) {
+				values.append(value).append('\u0000');
+			}
+		}
+		
+		return type + "|" + optionMap;
+	}
+	
+	/**
+	 * Method for running the health check once. The result is
+	 * taken from the result cache, if a cache TTL is given.
+	 * 
+	 * @return
+	 */
+	public CheckResult run() {
+		
+		if (cacheTtlMillis >= 0) {
+			return ResultCache.getInstance().get(this, cacheTtlMillis);
+		}
+		
+		return execute();
+	}
+	
+	/**
+	 * Method for executing the health check against the backend.
+	 * Concurrent executions of identical health checks share 
+	 * one execution and its result.
+	 * 
+	 * @return
+	 */
+	public CheckResult execute() {
+		return SingleFlight.getInstance().execute(this);
+	}
+	
+	/**
+	 * Method for executing the health check without coalescing.
+	 * Unexpected exceptions of the health checker are 
+	 * converted to a failed result, exceeded time budgets
+	 * to a timed out result.
+	 * 
+	 * @return
+	 */
+	CheckResult executeDirectly() {
+		
+		CheckContext context = CheckContext.reset();
+		long start = System.nanoTime();
+		
+		CheckResult outcome;
+		try {
+			outcome = healthChecker.checkWithinDeadline(commandLine);
+		}
+		catch (DeadlineExceededException e) {
+			outcome = new CheckResult(name, type, Status.TIMEOUT, 0, e.getMessage());
+		}
+		catch (PatternTimeoutException e) {
+			outcome = new CheckResult(name, type, Status.TIMEOUT, 0, e.getMessage());
+		}
+		catch (Exception e) {
+			outcome = new CheckResult(name, type, Status.DOWN, 0, e.getMessage() != null ? e.getMessage() : e.toString());
+		}
+		
+		long durationNanos = System.nanoTime() - start;
+		CheckResult result = outcome.withMeasurements(name, TimeUnit.NANOSECONDS.toMillis(durationNanos), context.getPhases(), context.getBytesRead());
+		
+		// record metrics of every run against the backend
+		MetricsRegistry.getInstance().record(result, durationNanos);
+		
+		return result;
+	}
+	
+	/**
+	 * Method for executing the health check without blocking the calling
+	 * thread, if the health checker supports it. Results of asynchronous
+	 * executions are neither cached nor shared with concurrent executions.
+	 * 
+	 * @param listener
+	 * @return false if the health check has to be executed on a thread
+	 */
+	public boolean executeAsync(final ResultListener listener) {
+		
+		if (cacheTtlMillis >= 0) {
+			return false;
+		}
+		
+		final long start = System.nanoTime();
+		
+		ResultListener measuringListener = new ResultListener() {
+			
+			public void onResult(CheckResult outcome) {
+				
+				long durationNanos = System.nanoTime() - start;
+				CheckResult result = outcome.withMeasurements(name, TimeUnit.NANOSECONDS.toMillis(durationNanos), outcome.getPhases(), outcome.getBytesRead());
+				
+				// record metrics of every run against the backend
+				MetricsRegistry.getInstance().record(result, durationNanos);
+				
+				listener.onResult(result);
+			}
+		};
+		
+		try {
+			return healthChecker.checkAsync(commandLine, measuringListener);
+		}
+		catch (Exception e) {
+			measuringListener.onResult(new CheckResult(name, type, Status.DOWN, 0, e.getMessage() != null ? e.getMessage() : e.toString()));
+			return true;
+		}
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public Type getType() {
+		return type;
+	}
+	
+	public HealthChecker getHealthChecker() {
+		return healthChecker;
+	}
+	
+	public CommandLine getCommandLine() {
+		return commandLine;
+	}
+	
+	public long getCacheTtlMillis() {
+		return cacheTtlMillis;
+	}
+	
+	public long getDeadlineMillis() {
+		return deadlineMillis;
+	}
+	
+	public String getKey() {
+		return key;
+	}
+}
@@ -0,0 +1,15 @@
+package de.papke.health.checker.engine;
+
+import de.papke.health.checker.api.CheckResult;
+
+/**
+ * Interface for getting notified about the result
+ * of an asynchronously executed health check.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public interface ResultListener {
+	
+	public void onResult(CheckResult result);
+}
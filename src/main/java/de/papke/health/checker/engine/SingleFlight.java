@@ -0,0 +1,95 @@
+package de.papke.health.checker.engine;
+
+import java.util.concurrent.Callable;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ExecutionException;
+import java.util.concurrent.FutureTask;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.api.DeadlineExceededException;
+import de.papke.health.checker.api.Status;
+
+/**
+ * Class for coalescing concurrent executions of identical health checks.
+ * 
+ * If a health check with the same key is already running, the caller
+ * waits for the running execution and gets its result instead of
+ * executing the health check again. So the load on a backend is at most
+ * one request per distinct health check, regardless of the number of
+ * concurrent callers. A caller with a deadline waits at most until 
+ * its own deadline is exceeded.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class SingleFlight {
+	
+	private static final SingleFlight INSTANCE = new SingleFlight();
+	
+	private final ConcurrentMap<String, FutureTask<CheckResult>> inFlightMap = new ConcurrentHashMap<String, FutureTask<CheckResult>>();
+	
+	public static SingleFlight getInstance() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * Method for executing a health check or joining an 
+	 * identical execution which is already running.
+	 * 
+	 * @param healthCheck
+	 * @return
+	 */
+	public CheckResult execute(final HealthCheck healthCheck) {
+		
+		String key = healthCheck.getKey();
+		long start = System.nanoTime();
+		
+		FutureTask<CheckResult> task = new FutureTask<CheckResult>(new Callable<CheckResult>() {
+			
+			public CheckResult call() {
+				return healthCheck.executeDirectly();
+			}
+		});
+		
+		// only the first caller executes the health check
+		FutureTask<CheckResult> runningTask = inFlightMap.putIfAbsent(key, task);
+		if (runningTask == null) {
+			try {
+				task.run();
+			}
+			finally {
+				inFlightMap.remove(key, task);
+			}
+			runningTask = task;
+		}
+		
+		try {
+			
+			// a waiting caller must not exceed its own deadline
+			long deadlineMillis = healthCheck.getDeadlineMillis();
+			if (deadlineMillis < 0 || runningTask == task) {
+				return runningTask.get().withName(healthCheck.getName());
+			}
+			
+			long remainingNanos = TimeUnit.MILLISECONDS.toNanos(deadlineMillis) - (System.nanoTime() - start);
+			return runningTask.get(Math.max(remainingNanos, 0), TimeUnit.NANOSECONDS).withName(healthCheck.getName());
+		}
+		catch (TimeoutException e) {
+			return new CheckResult(healthCheck.getName(), healthCheck.getType(), Status.TIMEOUT, 0, new DeadlineExceededException(healthCheck.getDeadlineMillis()).getMessage());
+		}
+		catch (InterruptedException e) {
+			Thread.currentThread().interrupt();
+			return new CheckResult(healthCheck.getName(), healthCheck.getType(), Status.DOWN, 0, "Interrupted while waiting for health check");
+		}
+		catch (ExecutionException e) {
+			return new CheckResult(healthCheck.getName(), healthCheck.getType(), Status.DOWN, 0, String.valueOf(e.getCause()));
+		}
+	}
+	
+	public int getInFlight() {
+		return inFlightMap.size();
+	}
+}
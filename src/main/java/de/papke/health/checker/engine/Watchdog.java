@@ -0,0 +1,60 @@
+package de.papke.health.checker.engine;
+
+import java.util.concurrent.ScheduledFuture;
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import de.papke.health.checker.api.CheckContext;
+
+/**
+ * Process wide watchdog, which cancels health checks when their
+ * deadline is exceeded.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class Watchdog {
+	
+	private static final Watchdog INSTANCE = new Watchdog();
+	
+	private final ScheduledThreadPoolExecutor executor;
+	
+	private Watchdog() {
+		
+		executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "check-watchdog");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		
+		// finished health checks do not keep their timers in the queue
+		executor.setRemoveOnCancelPolicy(true);
+	}
+	
+	public static Watchdog getInstance() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * Method for watching the health check of the given context, 
+	 * which is running on the given thread.
+	 * 
+	 * @param context
+	 * @param thread
+	 * @param deadlineMillis
+	 * @return the timer, which has to be cancelled when the health check is finished
+	 */
+	public ScheduledFuture<?> watch(final CheckContext context, final Thread thread, long deadlineMillis) {
+		
+		return executor.schedule(new Runnable() {
+			
+			public void run() {
+				context.expire(thread);
+			}
+		}, deadlineMillis, TimeUnit.MILLISECONDS);
+	}
+}
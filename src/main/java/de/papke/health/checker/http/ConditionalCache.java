@@ -0,0 +1,148 @@
+package de.papke.health.checker.http;
+
+import java.util.Map;
+import java.util.TreeMap;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+
+import de.papke.health.checker.api.Status;
+
+/**
+ * Process wide cache for the validators (ETag, Last-Modified) and the
+ * outcome of the last evaluated HTTP response of a request.
+ * 
+ * Conditional requests send the validators to the server. If the server
+ * answers with 304 Not Modified, the document has not changed and the
+ * outcome of its evaluation is reused instead of downloading the document
+ * again.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class ConditionalCache {
+	
+	private static final ConditionalCache INSTANCE = new ConditionalCache();
+	
+	private final ConcurrentMap<String, Entry> entryMap = new ConcurrentHashMap<String, Entry>();
+	
+	private ConditionalCache() {}
+	
+	public static ConditionalCache getInstance() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * Class for the validators and the outcome of an evaluated response.
+	 */
+	public static class Entry {
+		
+		private final String etag;
+		private final String lastModified;
+		private final Status status;
+		private final String message;
+		private final String preview;
+		private final long decodedBytes;
+		
+		public Entry(String etag, String lastModified, Status status, String message, String preview, long decodedBytes) {
+			this.etag = etag;
+			this.lastModified = lastModified;
+			this.status = status;
+			this.message = message;
+			this.preview = preview;
+			this.decodedBytes = decodedBytes;
+		}
+		
+		public String getEtag() {
+			return etag;
+		}
+		
+		public String getLastModified() {
+			return lastModified;
+		}
+		
+		public Status getStatus() {
+			return status;
+		}
+		
+		public String getMessage() {
+			return message;
+		}
+		
+		public String getPreview() {
+			return preview;
+		}
+		
+		public long getDecodedBytes() {
+			return decodedBytes;
+		}
+	}
+	
+	/**
+	 * Method for creating the key of a request to the given url. Requests
+	 * with the same options and url get the same key regardless of the order
+	 * of the options, other urls of the same health check are ignored.
+	 * 
+	 * @param commandLine
+	 * @param url
+	 * @return
+	 */
+	public static String createKey(CommandLine commandLine, String url) {
+		
+		Map<String, StringBuilder> optionMap = new TreeMap<String, StringBuilder>();
+		
+		for (Object object : commandLine.getOptions()) {
+			
+			Option option = (Option) object;
+			String optionName = option.getLongOpt() != null ? option.getLongOpt() : option.getOpt();
+			if (HttpParameter.URL.toString().equals(optionName)) {
+				continue;
+			}
+			
+			StringBuilder values = optionMap.get(optionName);
+			if (values == null) {
+				values = new StringBuilder();
+				optionMap.put(optionName, values);
+			}
+			
+			for (Object value : option.getValuesList()) {
+				values.append(value).append('\u0000');
+			}
+		}
+		
+		return url + "|" + optionMap;
+	}
+	
+	/**
+	 * Method for getting the entry of the last evaluated response.
+	 * 
+	 * @param key
+	 * @return the entry or null if there is no validated response
+	 */
+	public Entry get(String key) {
+		return entryMap.get(key);
+	}
+	
+	/**
+	 * Method for storing the entry of an evaluated response. Responses
+	 * without validators are not stored, an older entry is removed.
+	 * 
+	 * @param key
+	 * @param entry
+	 */
+	public void put(String key, Entry entry) {
+		
+		if (entry.getEtag() == null && entry.getLastModified() == null) {
+			entryMap.remove(key);
+			return;
+		}
+		
+		entryMap.put(key, entry);
+	}
+	
+	public void remove(String key) {
+		entryMap.remove(key);
+	}
+}
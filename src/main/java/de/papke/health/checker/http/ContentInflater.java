@@ -0,0 +1,253 @@
+package de.papke.health.checker.http;
+
+import java.util.zip.DataFormatException;
+import java.util.zip.Inflater;
+import java.util.zip.ZipException;
+
+/**
+ * Class for decompressing a gzip or deflate encoded HTTP response body,
+ * which is pushed in pieces as the bytes arrive.
+ * 
+ * The gzip header is skipped by a small state machine, deflate bodies
+ * are accepted with and without the zlib wrapper. The trailer of a gzip
+ * body is not checked.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class ContentInflater {
+	
+	public static final String GZIP = "gzip";
+	public static final String X_GZIP = "x-gzip";
+	public static final String DEFLATE = "deflate";
+	
+	private static final int OUTPUT_SIZE = 8 * 1024;
+	
+	private static final int GZIP_HEADER_SIZE = 10;
+	private static final int GZIP_MAGIC_1 = 0x1f;
+	private static final int GZIP_MAGIC_2 = 0x8b;
+	private static final int GZIP_DEFLATE_METHOD = 8;
+	private static final int FHCRC = 2;
+	private static final int FEXTRA = 4;
+	private static final int FNAME = 8;
+	private static final int FCOMMENT = 16;
+	
+	// states of the header
+	private static final int FIXED = 0;
+	private static final int EXTRA_LENGTH = 1;
+	private static final int EXTRA = 2;
+	private static final int NAME = 3;
+	private static final int COMMENT = 4;
+	private static final int HEADER_CRC = 5;
+	private static final int ZLIB_CHECK = 6;
+	private static final int BODY = 7;
+	
+	private final byte[] header = new byte[GZIP_HEADER_SIZE];
+	private final byte[] output = new byte[OUTPUT_SIZE];
+	
+	private Inflater inflater;
+	private int state;
+	private int headerLength;
+	private int flags;
+	private int remaining;
+	private boolean zlibCheckPending;
+	
+	/**
+	 * @param encoding the content encoding (gzip, x-gzip or deflate)
+	 */
+	private ContentInflater(String encoding) {
+		state = DEFLATE.equals(encoding) ? ZLIB_CHECK : FIXED;
+	}
+	
+	/**
+	 * Method for creating an inflater for the given content encoding.
+	 * 
+	 * @param encoding
+	 * @return the inflater or null if the encoding is not compressed or not supported
+	 */
+	public static ContentInflater create(String encoding) {
+		
+		if (encoding == null) {
+			return null;
+		}
+		
+		encoding = encoding.trim().toLowerCase();
+		if (GZIP.equals(encoding) || X_GZIP.equals(encoding) || DEFLATE.equals(encoding)) {
+			return new ContentInflater(encoding);
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Method for checking if a deflate body starts with the zlib wrapper.
+	 * 
+	 * @param first
+	 * @param second
+	 * @return
+	 */
+	public static boolean isZlibHeader(int first, int second) {
+		return (first & 0x0f) == GZIP_DEFLATE_METHOD && ((first << 8) | second) % 31 == 0;
+	}
+	
+	/**
+	 * Method for passing the next bytes of the body. The bytes must not
+	 * be changed until inflate returns 0.
+	 * 
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @throws ZipException if the body is not in gzip format
+	 */
+	public void setInput(byte[] bytes, int offset, int length) throws ZipException {
+		
+		int end = offset + length;
+		
+		// skip the header
+		while (state != BODY && offset < end) {
+			readHeader(bytes[offset++] & 0xff);
+		}
+		
+		if (state != BODY) {
+			return;
+		}
+		
+		// pass the bytes of the zlib check together with the following bytes
+		if (zlibCheckPending) {
+			byte[] joined = new byte[2 + end - offset];
+			System.arraycopy(header, 0, joined, 0, 2);
+			System.arraycopy(bytes, offset, joined, 2, end - offset);
+			inflater.setInput(joined);
+			zlibCheckPending = false;
+		}
+		else if (offset < end) {
+			inflater.setInput(bytes, offset, end - offset);
+		}
+	}
+	
+	/**
+	 * Helper method for reading the next byte of the header.
+	 * 
+	 * @param b
+	 * @throws ZipException
+	 */
+	private void readHeader(int b) throws ZipException {
+		
+		switch (state) {
+		case FIXED:
+			header[headerLength++] = (byte) b;
+			if (headerLength == GZIP_HEADER_SIZE) {
+				if ((header[0] & 0xff) != GZIP_MAGIC_1 || (header[1] & 0xff) != GZIP_MAGIC_2 || header[2] != GZIP_DEFLATE_METHOD) {
+					throw new ZipException("Not in GZIP format");
+				}
+				flags = header[3] & 0xff;
+				nextField(FIXED);
+			}
+			break;
+		case EXTRA_LENGTH:
+			remaining |= b << (8 * headerLength++);
+			if (headerLength == 2) {
+				if (remaining > 0) {
+					state = EXTRA;
+				}
+				else {
+					nextField(EXTRA);
+				}
+			}
+			break;
+		case EXTRA:
+			if (--remaining == 0) {
+				nextField(EXTRA);
+			}
+			break;
+		case NAME:
+		case COMMENT:
+			if (b == 0) {
+				nextField(state);
+			}
+			break;
+		case HEADER_CRC:
+			if (++headerLength == 2) {
+				nextField(HEADER_CRC);
+			}
+			break;
+		case ZLIB_CHECK:
+			
+			// the first two bytes tell if the deflate body has the zlib wrapper
+			header[headerLength++] = (byte) b;
+			if (headerLength == 2) {
+				inflater = new Inflater(!isZlibHeader(header[0] & 0xff, header[1] & 0xff));
+				zlibCheckPending = true;
+				state = BODY;
+			}
+			break;
+		default:
+			break;
+		}
+	}
+	
+	/**
+	 * Helper method for moving to the next optional field of the gzip header.
+	 * 
+	 * @param field the current field
+	 */
+	private void nextField(int field) {
+		
+		headerLength = 0;
+		remaining = 0;
+		
+		if (field < EXTRA_LENGTH && (flags & FEXTRA) != 0) {
+			state = EXTRA_LENGTH;
+		}
+		else if (field < NAME && (flags & FNAME) != 0) {
+			state = NAME;
+		}
+		else if (field < COMMENT && (flags & FCOMMENT) != 0) {
+			state = COMMENT;
+		}
+		else if (field < HEADER_CRC && (flags & FHCRC) != 0) {
+			state = HEADER_CRC;
+		}
+		else {
+			inflater = new Inflater(true);
+			state = BODY;
+		}
+	}
+	
+	/**
+	 * Method for decompressing the next bytes into the output buffer.
+	 * 
+	 * @return the number of decompressed bytes or 0 if more input is needed
+	 * @throws DataFormatException
+	 */
+	public int inflate() throws DataFormatException {
+		
+		if (inflater == null || inflater.finished()) {
+			return 0;
+		}
+		
+		return inflater.inflate(output);
+	}
+	
+	public byte[] getOutput() {
+		return output;
+	}
+	
+	/**
+	 * Method for checking if the end of the compressed data has been reached.
+	 * 
+	 * @return
+	 */
+	public boolean isFinished() {
+		return inflater != null && inflater.finished();
+	}
+	
+	/**
+	 * Method for releasing the native memory of the inflater.
+	 */
+	public void end() {
+		if (inflater != null) {
+			inflater.end();
+		}
+	}
+}
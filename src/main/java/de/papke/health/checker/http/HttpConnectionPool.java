@@ -0,0 +1,115 @@
+package de.papke.health.checker.http;
+
+import java.util.concurrent.ScheduledThreadPoolExecutor;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+
+import org.apache.http.conn.ClientConnectionManager;
+import org.apache.http.conn.ClientConnectionOperator;
+import org.apache.http.conn.scheme.PlainSocketFactory;
+import org.apache.http.conn.scheme.Scheme;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.conn.tsccm.ConnPoolByRoute;
+import org.apache.http.impl.conn.tsccm.RouteSpecificPool;
+import org.apache.http.impl.conn.tsccm.ThreadSafeClientConnManager;
+import org.apache.http.impl.conn.tsccm.WaitingThread;
+
+/**
+ * Process wide pool of keep-alive HTTP connections, which is shared 
+ * by all HTTP health checks. 
+ * 
+ * Connections are pooled per route (scheme, host and port), so repeated 
+ * health checks and health checks of several paths on the same server 
+ * reuse their connections instead of paying the TCP connect and the 
+ * TLS handshake again. Idle and expired connections are closed in the
+ * background.
+ * 
+ * The pool of HttpClient 4.1.2 keeps a woken thread in the queue of its
+ * route until the thread runs again, so connections which are released 
+ * at the same time wake the same thread and the other waiting threads
+ * only get a connection with the next release. The pool removes the
+ * woken thread from the queue instead.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+@SuppressWarnings("deprecation")
+public class HttpConnectionPool {
+	
+	private static final int MAX_TOTAL = 200;
+	private static final int MAX_PER_ROUTE = 20;
+	
+	// connections are opened again from time to time, e.g. to follow DNS changes
+	private static final long TIME_TO_LIVE_MILLIS = TimeUnit.MINUTES.toMillis(5);
+	private static final long IDLE_TIMEOUT_MILLIS = TimeUnit.SECONDS.toMillis(30);
+	private static final long EVICTION_INTERVAL_MILLIS = TimeUnit.SECONDS.toMillis(5);
+	
+	private static final HttpConnectionPool INSTANCE = new HttpConnectionPool();
+	
+	private final ThreadSafeClientConnManager connectionManager;
+	
+	private HttpConnectionPool() {
+		
+		// accept all SSL certificates (self-signed, expired, ...)
+		SchemeRegistry schemeRegistry = new SchemeRegistry();
+		schemeRegistry.register(new Scheme("http", PlainSocketFactory.getSocketFactory(), 80));
+		schemeRegistry.register(new Scheme("https", new TrustAllSSLCertSocketFactory(), 443));
+		
+		connectionManager = new ThreadSafeClientConnManager(schemeRegistry, TIME_TO_LIVE_MILLIS, TimeUnit.MILLISECONDS) {
+			
+			@Override
+			protected ClientConnectionOperator createConnectionOperator(SchemeRegistry schemeRegistry) {
+				return new TimingClientConnectionOperator(schemeRegistry);
+			}
+			
+			@Override
+			protected ConnPoolByRoute createConnectionPool(long connTTL, TimeUnit connTTLTimeUnit) {
+				return new ConnPoolByRoute(connOperator, connPerRoute, MAX_PER_ROUTE, connTTL, connTTLTimeUnit) {
+					
+					@Override
+					protected void notifyWaitingThread(RouteSpecificPool routePool) {
+						
+						// wake every waiting thread only once (the pool lock is held by the caller)
+						if (routePool != null && routePool.hasThread()) {
+							WaitingThread waitingThread = routePool.nextThread();
+							routePool.removeThread(waitingThread);
+							waitingThreads.remove(waitingThread);
+							waitingThread.wakeup();
+							return;
+						}
+						
+						super.notifyWaitingThread(routePool);
+					}
+				};
+			}
+		};
+		connectionManager.setMaxTotal(MAX_TOTAL);
+		connectionManager.setDefaultMaxPerRoute(MAX_PER_ROUTE);
+		
+		// close connections in the background, which are not used anymore
+		ScheduledThreadPoolExecutor executor = new ScheduledThreadPoolExecutor(1, new ThreadFactory() {
+			
+			public Thread newThread(Runnable runnable) {
+				Thread thread = new Thread(runnable, "http-connection-evictor");
+				thread.setDaemon(true);
+				return thread;
+			}
+		});
+		
+		executor.scheduleWithFixedDelay(new Runnable() {
+			
+			public void run() {
+				connectionManager.closeExpiredConnections();
+				connectionManager.closeIdleConnections(IDLE_TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+			}
+		}, EVICTION_INTERVAL_MILLIS, EVICTION_INTERVAL_MILLIS, TimeUnit.MILLISECONDS);
+	}
+	
+	public static HttpConnectionPool getInstance() {
+		return INSTANCE;
+	}
+	
+	public ClientConnectionManager getConnectionManager() {
+		return connectionManager;
+	}
+}
@@ -0,0 +1,12 @@
+package de.papke.health.checker.http;
+
+/**
+ * Enum for available HTTP engines.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public enum HttpEngineType {
+	blocking,
+	nio
+}
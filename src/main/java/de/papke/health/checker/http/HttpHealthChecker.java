@@ -1,10 +1,29 @@
 package de.papke.health.checker.http;
 
+import java.io.Closeable;
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+import java.io.InputStreamReader;
+import java.io.PushbackInputStream;
 import java.net.URI;
+import java.net.URISyntaxException;
 import java.util.ArrayList;
+import java.util.Collections;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.Map;
+import java.util.concurrent.Callable;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.Future;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.TimeoutException;
+import java.util.concurrent.atomic.AtomicInteger;
+import java.util.zip.GZIPInputStream;
+import java.util.zip.Inflater;
+import java.util.zip.InflaterInputStream;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
@@ -12,6 +31,7 @@ import org.apache.commons.lang3.StringUtils;
 import org.apache.http.Header;
 import org.apache.http.HttpEntity;
 import org.apache.http.HttpResponse;
+import org.apache.http.HttpStatus;
 import org.apache.http.NameValuePair;
 import org.apache.http.auth.AuthScope;
 import org.apache.http.auth.Credentials;
@@ -22,11 +42,25 @@ import org.apache.http.client.methods.HttpGet;
 import org.apache.http.client.methods.HttpHead;
 import org.apache.http.client.methods.HttpPost;
 import org.apache.http.client.methods.HttpUriRequest;
+import org.apache.http.client.utils.URLEncodedUtils;
+import org.apache.http.conn.params.ConnManagerPNames;
 import org.apache.http.impl.client.BasicCredentialsProvider;
 import org.apache.http.message.BasicNameValuePair;
+import org.apache.http.params.CoreConnectionPNames;
+import org.apache.http.protocol.HTTP;
 import org.apache.http.util.EntityUtils;
 
 import de.papke.health.checker.HealthChecker;
+import de.papke.health.checker.api.CheckContext;
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.api.DeadlineExceededException;
+import de.papke.health.checker.api.Status;
+import de.papke.health.checker.api.Type;
+import de.papke.health.checker.engine.ResultListener;
+import de.papke.health.checker.util.LimitedInputStream;
+import de.papke.health.checker.util.PatternMatcher;
+import de.papke.health.checker.util.PatternTimeoutException;
+import de.papke.health.checker.util.StreamingMatcher;
 import de.papke.health.checker.Main;
 
 /**
@@ -42,6 +76,26 @@ public class HttpHealthChecker extends HealthChecker {
 	private static final String DATA_SEPARATOR = ":";
 	private static final String PATH_SEPARATOR = "/";
 	private static final String SESSION_ID_SEPARATOR = ";";
+	static final String ACCEPT_ENCODING = ContentInflater.GZIP + ", " + ContentInflater.DEFLATE;
+	
+	// buffers for draining response bodies are reused by the health checks of a thread
+	private static final ThreadLocal<byte[]> BUFFER = new ThreadLocal<byte[]>() {
+		
+		@Override
+		protected byte[] initialValue() {
+			return new byte[StreamingMatcher.PREVIEW_SIZE];
+		}
+	};
+	
+	// workers for checking several urls of a health check
+	private static final ExecutorService URL_EXECUTOR = Executors.newCachedThreadPool(new ThreadFactory() {
+		
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "http-url-worker");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
 	
 	private static Options options = new Options();
 
@@ -52,11 +106,568 @@ public class HttpHealthChecker extends HealthChecker {
 	}
 	
 	public HttpHealthChecker() {
-		super(options);
+		super(Type.http, options);
+	}
+	
+	/**
+	 * Helper method for executing an HTTP request and measuring the time
+	 * to the first byte of the response, without the time for opening
+	 * a new connection. The timeouts (including the wait for a pooled 
+	 * connection) are limited to the deadline of the health check.
+	 * 
+	 * @param httpClient
+	 * @param request
+	 * @param connectTimeout
+	 * @param responseTimeout
+	 * @return
+	 * @throws Exception
+	 */
+	@SuppressWarnings("deprecation")
+	private HttpResponse execute(TrustAllSSLCertHttpClient httpClient, final HttpUriRequest request, int connectTimeout, int responseTimeout) throws Exception {
+		
+		CheckContext context = CheckContext.current();
+		
+		// limit the timeouts to the remaining time of the deadline
+		request.getParams().setLongParameter(ConnManagerPNames.TIMEOUT, context.limitTimeout(connectTimeout));
+		request.getParams().setIntParameter(CoreConnectionPNames.CONNECTION_TIMEOUT, context.limitTimeout(connectTimeout));
+		request.getParams().setIntParameter(CoreConnectionPNames.SO_TIMEOUT, context.limitTimeout(responseTimeout));
+		
+		// abort the request when the deadline is exceeded
+		context.register(new Closeable() {
+			
+			public void close() {
+				request.abort();
+			}
+		});
+		
+		long connectionNanos = getConnectionNanos(context);
+		long start = System.nanoTime();
+		
+		HttpResponse response = httpClient.execute(request);
+		
+		long totalNanos = System.nanoTime() - start;
+		context.addPhase(HttpPhase.ttfb.toString(), Math.max(0, totalNanos - (getConnectionNanos(context) - connectionNanos)));
+		
+		return response;
+	}
+	
+	/**
+	 * Helper method for reading a response body without decoding it.
+	 * Only the beginning of the body is decoded as preview.
+	 * 
+	 * @param inputStream
+	 * @param charset
+	 * @return the preview of the response text
+	 * @throws Exception
+	 */
+	private String drain(InputStream inputStream, String charset) throws Exception {
+		
+		byte[] buffer = BUFFER.get();
+		
+		// fill the buffer once for the preview
+		int length = 0;
+		int read = 0;
+		while (length < buffer.length && (read = inputStream.read(buffer, length, buffer.length - length)) != -1) {
+			length += read;
+		}
+		String preview = new String(buffer, 0, length, charset);
+		
+		// read the rest into the same buffer
+		while (read != -1) {
+			read = inputStream.read(buffer, 0, buffer.length);
+		}
+		
+		return preview;
+	}
+	
+	/**
+	 * Helper method for getting an integer option or its default value.
+	 * 
+	 * @param commandLine
+	 * @param parameter
+	 * @return
+	 */
+	private static int getIntOption(CommandLine commandLine, HttpParameter parameter) {
+		
+		String valueString = commandLine.getOptionValue(parameter.toString());
+		if (StringUtils.isNotEmpty(valueString)) {
+			return Integer.parseInt(valueString);
+		}
+		
+		return (Integer) parameter.getDefaultValue();
+	}
+	
+	/**
+	 * Helper method for getting the HTTP method to execute.
+	 * 
+	 * @param commandLine
+	 * @return
+	 */
+	private static HttpMethod getMethod(CommandLine commandLine) {
+		
+		String methodString = commandLine.getOptionValue(HttpParameter.METHOD.toString());
+		if (StringUtils.isNotEmpty(methodString)) {
+			for (HttpMethod method : HttpMethod.values()) {
+				if (method.toString().equalsIgnoreCase(methodString)) {
+					return method;
+				}
+			}
+		}
+		
+		return (HttpMethod) HttpParameter.METHOD.getDefaultValue();
+	}
+	
+	/**
+	 * Helper method for checking if the non-blocking engine is used. 
+	 * HTTPS is always checked by the blocking engine.
+	 * 
+	 * @param commandLine
+	 * @param url
+	 * @return
+	 */
+	private static boolean isNio(CommandLine commandLine, String url) {
+		
+		String engineString = commandLine.getOptionValue(HttpParameter.ENGINE.toString());
+		if (!HttpEngineType.nio.toString().equalsIgnoreCase(engineString)) {
+			return false;
+		}
+		
+		return url != null && !url.regionMatches(true, 0, "https:", 0, 6);
+	}
+	
+	/**
+	 * Helper method for getting the form data of a POST request.
+	 * 
+	 * @param postData
+	 * @return
+	 */
+	private static List<NameValuePair> getPostData(String[] postData) {
+		
+		List<NameValuePair> requestData = new ArrayList<NameValuePair>();
+		
+		if (postData != null) {
+			for (String postDataEntry : postData) {
+				String[] postDataEntryArray = postDataEntry.split(DATA_SEPARATOR);
+				if (postDataEntryArray.length == 2) {
+					String postDataName = postDataEntryArray[0].trim();
+					String postDataValue = postDataEntryArray[1].trim();
+					requestData.add(new BasicNameValuePair(postDataName, postDataValue));	
+				}
+			}
+		}
+		
+		return requestData;
+	}
+	
+	/**
+	 * Method for getting the user agent of all HTTP requests.
+	 * 
+	 * @return
+	 */
+	static String getUserAgent() {
+		return Main.getApplicationProperty("name") + "/" + Main.getApplicationProperty("version");
+	}
+	
+	/**
+	 * Method for getting the URL of the GET request, which follows 
+	 * a POST request with a location.
+	 * 
+	 * @param url the URL of the POST request
+	 * @param locationUrl the location of the POST response
+	 * @return
+	 * @throws URISyntaxException
+	 */
+	static String getLocationUrl(String url, String locationUrl) throws URISyntaxException {
+		
+		// if the location url is relative we have to build the absolute url for the GET request
+		if (!locationUrl.startsWith(HTTP_SCHEME_PREFIX)) {
+			String pathPrefix = locationUrl.startsWith(PATH_SEPARATOR) ? "" : PATH_SEPARATOR;
+			URI uri = new URI(url);
+			locationUrl = uri.getScheme() + PROTOCOL_SEPARATOR + uri.getHost() + pathPrefix + locationUrl;
+		}
+		
+		// if the location url contains a session id we have to remove it
+		if (locationUrl.contains(SESSION_ID_SEPARATOR)) {
+			locationUrl = locationUrl.substring(0, locationUrl.indexOf(SESSION_ID_SEPARATOR));
+		}
+		
+		return locationUrl;
+	}
+	
+	/**
+	 * Helper method for creating a probe of the non-blocking engine.
+	 * 
+	 * @param commandLine
+	 * @param url
+	 * @param deadlineMillis the deadline or -1 if there is no deadline
+	 * @param listener
+	 * @return
+	 * @throws Exception
+	 */
+	private NioHttpProbe createProbe(CommandLine commandLine, String url, long deadlineMillis, ResultListener listener) throws Exception {
+		
+		// get form data of a POST request
+		byte[] postData = null;
+		List<NameValuePair> requestData = getPostData(commandLine.getOptionValues(HttpParameter.POST_DATA.toString()));
+		if (!requestData.isEmpty()) {
+			postData = URLEncodedUtils.format(requestData, HTTP.DEFAULT_CONTENT_CHARSET).getBytes(HTTP.DEFAULT_CONTENT_CHARSET);
+		}
+		
+		// get patterns (the response body is not decoded without patterns)
+		PatternMatcher patternMatcher = null;
+		if (commandLine.hasOption(HttpParameter.PATTERN.toString()) || commandLine.hasOption(HttpParameter.EXCLUDE_PATTERN.toString())) {
+			patternMatcher = getPatternMatcher(commandLine, HttpParameter.PATTERN, HttpParameter.EXCLUDE_PATTERN);
+		}
+		
+		// get maximum number of bytes to read from the response body
+		long maxBodyBytes = (Integer) HttpParameter.MAX_BODY_BYTES.getDefaultValue();
+		String maxBodyBytesString = commandLine.getOptionValue(HttpParameter.MAX_BODY_BYTES.toString());
+		if (StringUtils.isNotEmpty(maxBodyBytesString)) {
+			maxBodyBytes = Long.parseLong(maxBodyBytesString);
+		}
+		
+		// get the key of the last validated response of a conditional GET request
+		HttpMethod method = getMethod(commandLine);
+		String conditionalKey = null;
+		if (method == HttpMethod.get && Boolean.parseBoolean(commandLine.getOptionValue(HttpParameter.CONDITIONAL.toString()))) {
+			conditionalKey = ConditionalCache.createKey(commandLine, url);
+		}
+		
+		return new NioHttpProbe(
+				url,
+				method,
+				commandLine.getOptionValues(HttpParameter.HEADER.toString()),
+				commandLine.getOptionValue(HttpParameter.USERNAME.toString()),
+				commandLine.getOptionValue(HttpParameter.PASSWORD.toString()),
+				postData,
+				URLEncodedUtils.CONTENT_TYPE + "; charset=" + HTTP.DEFAULT_CONTENT_CHARSET,
+				getIntOption(commandLine, HttpParameter.STATUS_CODE),
+				patternMatcher,
+				maxBodyBytes,
+				Boolean.parseBoolean(commandLine.getOptionValue(HttpParameter.COMPRESSION.toString())),
+				conditionalKey,
+				getIntOption(commandLine, HttpParameter.CONNECT_TIMEOUT),
+				getIntOption(commandLine, HttpParameter.RESPONSE_TIMEOUT),
+				deadlineMillis,
+				getPatternTimeoutMillis(commandLine),
+				listener);
+	}
+	
+	@Override
+	public boolean checkAsync(CommandLine commandLine, ResultListener listener) throws Exception {
+		
+		// HTTPS, several urls and the blocking engine need a thread
+		String[] urls = commandLine.getOptionValues(HttpParameter.URL.toString());
+		if (urls == null || urls.length != 1 || !isNio(commandLine, urls[0])) {
+			return false;
+		}
+		
+		NioHttpEngine.getInstance().execute(createProbe(commandLine, urls[0], getDeadlineMillis(commandLine), listener));
+		
+		return true;
+	}
+	
+	/**
+	 * Helper method for doing a health check with the non-blocking engine
+	 * and waiting for its result. The probe watches the remaining time
+	 * of the deadline itself, except while the host name of a redirect
+	 * is resolved, so the wait is limited to the deadline as well.
+	 * 
+	 * @param commandLine
+	 * @param url
+	 * @return
+	 * @throws Exception
+	 */
+	private CheckResult checkNio(CommandLine commandLine, String url) throws Exception {
+		
+		CheckContext context = CheckContext.current();
+		long deadlineMillis = context.getDeadlineMillis() >= 0 ? context.getRemainingMillis() : -1;
+		
+		final CompletableFuture<CheckResult> future = new CompletableFuture<CheckResult>();
+		NioHttpEngine.getInstance().execute(createProbe(commandLine, url, deadlineMillis, new ResultListener() {
+			
+			public void onResult(CheckResult result) {
+				future.complete(result);
+			}
+		}));
+		
+		CheckResult result;
+		if (deadlineMillis < 0) {
+			result = future.get();
+		}
+		else {
+			try {
+				result = future.get(context.getRemainingMillis(), TimeUnit.MILLISECONDS);
+			}
+			catch (TimeoutException e) {
+				throw new DeadlineExceededException(context.getDeadlineMillis());
+			}
+		}
+		
+		// pass the measurements of the probe to the caller
+		for (Map.Entry<String, Long> phase : result.getPhases().entrySet()) {
+			context.addPhase(phase.getKey(), phase.getValue());
+		}
+		context.addBytesRead(result.getBytesRead());
+		
+		return result;
+	}
+	
+	/**
+	 * Helper method for decompressing a response body with the given
+	 * content encoding. Unknown encodings are passed unchanged. Closing
+	 * the decompressing stream only releases its inflater, the connection
+	 * is released or aborted by the caller.
+	 * 
+	 * @param wireStream
+	 * @param encoding
+	 * @return
+	 * @throws IOException
+	 */
+	private static InputStream decompress(InputStream wireStream, String encoding) throws IOException {
+		
+		if (encoding == null) {
+			return wireStream;
+		}
+		
+		InputStream inputStream = new FilterInputStream(wireStream) {
+			
+			@Override
+			public void close() {
+				// the connection is not closed with the inflater
+			}
+		};
+		
+		encoding = encoding.trim().toLowerCase();
+		if (ContentInflater.GZIP.equals(encoding) || ContentInflater.X_GZIP.equals(encoding)) {
+			
+			// the gzip header is read when creating the stream, so an empty body would fail
+			PushbackInputStream pushbackStream = new PushbackInputStream(inputStream, 1);
+			int first = pushbackStream.read();
+			if (first == -1) {
+				return pushbackStream;
+			}
+			pushbackStream.unread(first);
+			
+			return new GZIPInputStream(pushbackStream, StreamingMatcher.PREVIEW_SIZE);
+		}
+		
+		if (ContentInflater.DEFLATE.equals(encoding)) {
+			
+			// deflate bodies are sent with and without the zlib wrapper
+			PushbackInputStream pushbackStream = new PushbackInputStream(inputStream, 2);
+			int first = pushbackStream.read();
+			int second = first != -1 ? pushbackStream.read() : -1;
+			if (second != -1) {
+				pushbackStream.unread(second);
+			}
+			if (first != -1) {
+				pushbackStream.unread(first);
+			}
+			
+			boolean zlib = second != -1 && ContentInflater.isZlibHeader(first, second);
+			return new InflaterInputStream(pushbackStream, new Inflater(!zlib), StreamingMatcher.PREVIEW_SIZE);
+		}
+		
+		return wireStream;
+	}
+	
+	/**
+	 * Method for describing the transfer of a response body.
+	 * 
+	 * @param wireBytes the bytes received from the server
+	 * @param decodedBytes the bytes after decompression
+	 * @param encoding the content encoding or null
+	 * @return
+	 */
+	static String getTransfer(long wireBytes, long decodedBytes, String encoding) {
+		
+		StringBuilder builder = new StringBuilder("Transfer: ").append(wireBytes).append(" bytes on the wire");
+		if (encoding != null) {
+			builder.append(", ").append(decodedBytes).append(" bytes decoded (").append(encoding.trim()).append(')');
+		}
+		
+		return builder.append('\n').toString();
+	}
+	
+	/**
+	 * Method for describing the transfer of a response, which
+	 * has not been modified since the last validated response.
+	 * 
+	 * @param validated
+	 * @return
+	 */
+	static String getNotModifiedTransfer(ConditionalCache.Entry validated) {
+		return "Transfer: 0 bytes on the wire, " + validated.getDecodedBytes() + " bytes of the last validated response reused (not modified)\n";
+	}
+	
+	/**
+	 * Helper method for getting the value of the first header with the given name.
+	 * 
+	 * @param response
+	 * @param name
+	 * @return the value or null if the header is missing
+	 */
+	private static String getHeaderValue(HttpResponse response, String name) {
+		Header header = response.getFirstHeader(name);
+		return header != null ? header.getValue() : null;
+	}
+	
+	/**
+	 * Helper method for getting the time spent for opening connections.
+	 * 
+	 * @param context
+	 * @return
+	 */
+	private long getConnectionNanos(CheckContext context) {
+		return context.getPhase(HttpPhase.dns.toString()) 
+				+ context.getPhase(HttpPhase.connect.toString()) 
+				+ context.getPhase(HttpPhase.tls.toString())
+				+ context.getPhase(HttpPhase.tls_resumed.toString());
+	}
+	
+	/**
+	 * Helper method for checking several urls of one health check. The 
+	 * urls are requested by a few workers, which reuse the kept-alive 
+	 * connections of the pool, so all urls of a server only need as many
+	 * connections as workers. The health check is up if all urls are up.
+	 * 
+	 * @param commandLine
+	 * @param urls
+	 * @return
+	 * @throws Exception
+	 */
+	private CheckResult checkUrls(final CommandLine commandLine, final String[] urls) throws Exception {
+		
+		final CheckContext context = CheckContext.current();
+		final CheckResult[] results = new CheckResult[urls.length];
+		final AtomicInteger nextUrl = new AtomicInteger();
+		
+		// start the workers, which share the deadline of the health check
+		int workers = Math.max(1, Math.min(getIntOption(commandLine, HttpParameter.URL_CONCURRENCY), urls.length));
+		List<Future<CheckContext>> futureList = new ArrayList<Future<CheckContext>>();
+		for (int i = 0; i < workers; i++) {
+			futureList.add(URL_EXECUTOR.submit(new Callable<CheckContext>() {
+				
+				public CheckContext call() {
+					
+					CheckContext workerContext = CheckContext.fork(context);
+					
+					int index;
+					while ((index = nextUrl.getAndIncrement()) < urls.length) {
+						results[index] = checkUrlQuietly(commandLine, urls[index]);
+					}
+					
+					return workerContext;
+				}
+			}));
+		}
+		
+		// wait for the workers and collect their measurements
+		try {
+			for (Future<CheckContext> future : futureList) {
+				context.addMeasurements(future.get());
+			}
+		}
+		finally {
+			for (Future<CheckContext> future : futureList) {
+				future.cancel(true);
+			}
+		}
+		
+		// list the outcome of every url
+		StringBuilder detailBuilder = new StringBuilder();
+		Status status = Status.UP;
+		String message = null;
+		int failed = 0;
+		for (int i = 0; i < urls.length; i++) {
+			
+			CheckResult result = results[i];
+			detailBuilder.append(result.getStatus()).append(' ').append(urls[i]);
+			
+			if (!result.isUp()) {
+				
+				detailBuilder.append(DATA_SEPARATOR).append(' ').append(result.getMessage());
+				
+				// a failed url outweighs a timed out url
+				if (status != Status.DOWN) {
+					status = result.getStatus();
+				}
+				
+				if (message == null) {
+					message = urls[i] + DATA_SEPARATOR + ' ' + result.getMessage();
+				}
+				failed++;
+			}
+			
+			detailBuilder.append('\n');
+		}
+		
+		if (failed > 1) {
+			message += " (" + failed + " of " + urls.length + " urls failed)";
+		}
+		
+		return new CheckResult(null, type, status, 0, message, detailBuilder.toString(), Collections.<String, Long>emptyMap(), 0, System.currentTimeMillis());
+	}
+	
+	/**
+	 * Helper method for checking a single url of several urls. Exceptions 
+	 * are converted to failed results like for a whole health check.
+	 * 
+	 * @param commandLine
+	 * @param url
+	 * @return
+	 */
+	private CheckResult checkUrlQuietly(CommandLine commandLine, String url) {
+		
+		CheckContext context = CheckContext.current();
+		
+		try {
+			return checkUrl(commandLine, url);
+		}
+		catch (DeadlineExceededException e) {
+			return new CheckResult(null, type, Status.TIMEOUT, 0, e.getMessage());
+		}
+		catch (PatternTimeoutException e) {
+			return new CheckResult(null, type, Status.TIMEOUT, 0, e.getMessage());
+		}
+		catch (Exception e) {
+			
+			// cancelled requests fail with all kinds of exceptions
+			if (context.isExpired()) {
+				return new CheckResult(null, type, Status.TIMEOUT, 0, new DeadlineExceededException(context.getDeadlineMillis()).getMessage());
+			}
+			
+			return down(e.getMessage() != null ? e.getMessage() : e.toString(), null);
+		}
 	}
 	
 	@Override
-	public void check(CommandLine commandLine) throws Exception {
+	public CheckResult check(CommandLine commandLine) throws Exception {
+		
+		// check several urls in parallel
+		String[] urls = commandLine.getOptionValues(HttpParameter.URL.toString());
+		if (urls != null && urls.length > 1) {
+			return checkUrls(commandLine, urls);
+		}
+		
+		return checkUrl(commandLine, commandLine.getOptionValue(HttpParameter.URL.toString()));
+	}
+	
+	/**
+	 * Helper method for checking a single url.
+	 * 
+	 * @param commandLine
+	 * @param url
+	 * @return
+	 * @throws Exception
+	 */
+	private CheckResult checkUrl(CommandLine commandLine, String url) throws Exception {
+		
+		// let the non-blocking engine do the health check
+		if (isNio(commandLine, url)) {
+			return checkNio(commandLine, url);
+		}
 		
 		// get username
 		String username = commandLine.getOptionValue(HttpParameter.USERNAME.toString());
@@ -64,9 +675,6 @@ public class HttpHealthChecker extends HealthChecker {
 		// get password
 		String password = commandLine.getOptionValue(HttpParameter.PASSWORD.toString());
 		
-		// get url
-		String url = commandLine.getOptionValue(HttpParameter.URL.toString());
-		
 		// get header array
 		String headers[] = commandLine.getOptionValues(HttpParameter.HEADER.toString());
 		
@@ -74,43 +682,39 @@ public class HttpHealthChecker extends HealthChecker {
 		String postData[] = commandLine.getOptionValues(HttpParameter.POST_DATA.toString());
 
 		// get connect timeout
-		int connectTimeout = (Integer) HttpParameter.CONNECT_TIMEOUT.getDefaultValue();
-		String connectTimeoutString = commandLine.getOptionValue(HttpParameter.CONNECT_TIMEOUT.toString());
-		if (StringUtils.isNotEmpty(connectTimeoutString)) {
-			connectTimeout = Integer.parseInt(connectTimeoutString);
-		}
+		int connectTimeout = getIntOption(commandLine, HttpParameter.CONNECT_TIMEOUT);
 		
 		// get response timeout
-		int responseTimeout = (Integer) HttpParameter.RESPONSE_TIMEOUT.getDefaultValue();
-		String responseTimeoutString = commandLine.getOptionValue(HttpParameter.RESPONSE_TIMEOUT.toString());
-		if (StringUtils.isNotEmpty(responseTimeoutString)) {
-			responseTimeout = Integer.parseInt(connectTimeoutString);
-		}
+		int responseTimeout = getIntOption(commandLine, HttpParameter.RESPONSE_TIMEOUT);
 		
 		// get HTTP method to execute
-		HttpMethod method = (HttpMethod) HttpParameter.METHOD.getDefaultValue();
-		String methodString = commandLine.getOptionValue(HttpParameter.METHOD.toString());
-		if (StringUtils.isNotEmpty(methodString)) {
-			for (HttpMethod currentMethod : HttpMethod.values()) {
-				if (currentMethod.toString().equalsIgnoreCase(methodString)) {
-					method = currentMethod;
-					break;
-				}
-			}
-		}
+		HttpMethod method = getMethod(commandLine);
 		
 		// get expected status code
-		int statusCode = (Integer) HttpParameter.STATUS_CODE.getDefaultValue();
-		String statusCodeString = commandLine.getOptionValue(HttpParameter.STATUS_CODE.toString());
-		if (StringUtils.isNotEmpty(statusCodeString)) {
-			statusCode = Integer.parseInt(statusCodeString);
+		int statusCode = getIntOption(commandLine, HttpParameter.STATUS_CODE);
+		
+		// get patterns (the response body is not decoded without patterns)
+		PatternMatcher patternMatcher = null;
+		if (commandLine.hasOption(HttpParameter.PATTERN.toString()) || commandLine.hasOption(HttpParameter.EXCLUDE_PATTERN.toString())) {
+			patternMatcher = getPatternMatcher(commandLine, HttpParameter.PATTERN, HttpParameter.EXCLUDE_PATTERN);
+		}
+		
+		// get maximum number of bytes to read from the response body
+		long maxBodyBytes = (Integer) HttpParameter.MAX_BODY_BYTES.getDefaultValue();
+		String maxBodyBytesString = commandLine.getOptionValue(HttpParameter.MAX_BODY_BYTES.toString());
+		if (StringUtils.isNotEmpty(maxBodyBytesString)) {
+			maxBodyBytes = Long.parseLong(maxBodyBytesString);
 		}
 		
-		// get pattern
-		Pattern pattern = (Pattern) HttpParameter.PATTERN.getDefaultValue();
-		String patternString = commandLine.getOptionValue(HttpParameter.PATTERN.toString());
-		if (StringUtils.isNotEmpty(patternString)) {
-			pattern = Pattern.compile(patternString);
+		// check if compressed responses are requested
+		boolean compression = Boolean.parseBoolean(commandLine.getOptionValue(HttpParameter.COMPRESSION.toString()));
+		
+		// get the last validated response of a conditional GET request
+		String conditionalKey = null;
+		ConditionalCache.Entry validated = null;
+		if (method == HttpMethod.get && Boolean.parseBoolean(commandLine.getOptionValue(HttpParameter.CONDITIONAL.toString()))) {
+			conditionalKey = ConditionalCache.createKey(commandLine, url);
+			validated = ConditionalCache.getInstance().get(conditionalKey);
 		}
 		
 		// create HTTP client which accepts all SSL certificates
@@ -144,31 +748,17 @@ public class HttpHealthChecker extends HealthChecker {
 			request = new HttpPost(url);
 			
 			// add data to POST request
-			if (postData != null) {
-				
-				List<NameValuePair> requestData = new ArrayList<NameValuePair>();
-				
-				for (String postDataEntry : postData) {
-					String[] postDataEntryArray = postDataEntry.split(DATA_SEPARATOR);
-					if (postDataEntryArray.length == 2) {
-						String postDataName = postDataEntryArray[0].trim();
-						String postDataValue = postDataEntryArray[1].trim();
-						requestData.add(new BasicNameValuePair(postDataName, postDataValue));	
-					}
-				}
-				
-				if (!requestData.isEmpty()) {
-					HttpPost postRequest = (HttpPost) request;
-					postRequest.setEntity(new UrlEncodedFormEntity(requestData));
-				}
+			List<NameValuePair> requestData = getPostData(postData);
+			if (!requestData.isEmpty()) {
+				HttpPost postRequest = (HttpPost) request;
+				postRequest.setEntity(new UrlEncodedFormEntity(requestData));
 			}
 			
 			break;
 		}
 		
 		// add custom user agent to request
-		String userAgent = Main.getApplicationProperty("name") + "/" + Main.getApplicationProperty("version");
-		request.setHeader("User-Agent", userAgent);			
+		request.setHeader("User-Agent", getUserAgent());			
 		
 		// add headers to HTTP request
 		if (headers != null) {
@@ -182,66 +772,167 @@ public class HttpHealthChecker extends HealthChecker {
 			}
 		}
 		
-		// execute HTTP request
-		HttpResponse response = httpClient.execute(request);
+		// request a compressed response
+		if (compression) {
+			request.setHeader("Accept-Encoding", ACCEPT_ENCODING);
+		}
+		
+		// validate the last response
+		if (validated != null) {
+			if (validated.getEtag() != null) {
+				request.setHeader("If-None-Match", validated.getEtag());
+			}
+			if (validated.getLastModified() != null) {
+				request.setHeader("If-Modified-Since", validated.getLastModified());
+			}
+		}
+		
+		try {
+			
+			// report all request phases in a fixed order
+			CheckContext context = CheckContext.current();
+			for (HttpPhase phase : HttpPhase.values()) {
+				context.addPhase(phase.toString(), 0);
+			}
+			
+			// execute HTTP request
+			HttpResponse response = execute(httpClient, request, connectTimeout, responseTimeout);
 		
-		// do we have to execute another GET request?
-		if (request instanceof HttpPost) {
+			// do we have to execute another GET request?
+			if (request instanceof HttpPost) {
 			
-			Header[] locationArray = response.getHeaders("Location");
+				Header[] locationArray = response.getHeaders("Location");
 			
-			if (locationArray.length == 1) {
+				if (locationArray.length == 1) {
 				
-				Header locationHeader = locationArray[0];
-				String locationUrl = locationHeader.getValue();
+					Header locationHeader = locationArray[0];
+					String locationUrl = locationHeader.getValue();
 
-				// if the location url is given
-				if (StringUtils.isNotEmpty(locationUrl)) {
+					// if the location url is given
+					if (StringUtils.isNotEmpty(locationUrl)) {
 					
-					// if the location url is relative we have to build the absolute url for the GET request
-					if (!locationUrl.startsWith(HTTP_SCHEME_PREFIX)) {
-						String pathPrefix = locationUrl.startsWith(PATH_SEPARATOR) ? "" : PATH_SEPARATOR;
-						URI uri = new URI(url);
-						locationUrl = uri.getScheme() + PROTOCOL_SEPARATOR + uri.getHost() + pathPrefix + locationUrl;
-					}
+						// build the absolute url for the GET request
+						locationUrl = getLocationUrl(url, locationUrl);
 					
-					// if the location url contains a session id we have to remove it
-					if (locationUrl.contains(SESSION_ID_SEPARATOR)) {
-						locationUrl = locationUrl.substring(0, locationUrl.indexOf(SESSION_ID_SEPARATOR));
+						// release the connection of the POST request to the pool
+						EntityUtils.consume(response.getEntity());
+						
+						request = new HttpGet(locationUrl);
+						response = execute(httpClient, request, connectTimeout, responseTimeout);
 					}
-					
-					request = new HttpGet(locationUrl);
-					response = httpClient.execute(request);
 				}
-			}
-		}		
-		
-		// check if HTTP response status code matches expectations
-		int responseStatusCode = response.getStatusLine().getStatusCode();
-		if (responseStatusCode != statusCode) {
-			throw new Exception("The status code of the HTTP response does not match");
-		}
+			}		
 		
-		// print response headers
-		for (Header header: response.getAllHeaders()) {
-			System.out.println(header.getName() + DATA_SEPARATOR + " " + header.getValue());
-		}
+			// get response headers
+			StringBuilder detailBuilder = new StringBuilder();
+			for (Header header: response.getAllHeaders()) {
+				detailBuilder.append(header.getName()).append(DATA_SEPARATOR).append(' ').append(header.getValue()).append('\n');
+			}
 		
-		// check if response has an entity
-		HttpEntity entity = response.getEntity();
-		if (entity != null) {
+			// reuse the outcome of the last validated response, if the document has not been modified
+			int responseStatusCode = response.getStatusLine().getStatusCode();
+			if (validated != null && responseStatusCode == HttpStatus.SC_NOT_MODIFIED) {
+				detailBuilder.append(getNotModifiedTransfer(validated)).append(validated.getPreview());
+				return new CheckResult(null, type, validated.getStatus(), 0, validated.getMessage(), detailBuilder.toString(), Collections.<String, Long>emptyMap(), 0, System.currentTimeMillis());
+			}
 			
-			// print response text
-			String responseText = EntityUtils.toString(response.getEntity());
-			if (StringUtils.isNotEmpty(responseText)) {
-				System.out.println(responseText);
+			// check if HTTP response status code matches expectations
+			if (responseStatusCode != statusCode) {
+				if (conditionalKey != null) {
+					ConditionalCache.getInstance().remove(conditionalKey);
+				}
+				return down("The status code of the HTTP response does not match", null);
 			}
 			
-			// check if response text matches the given pattern
-			Matcher matcher = pattern.matcher(responseText);
-			if (!matcher.find()) {
-				throw new Exception("The pattern does not match the HTTP response text");
+			// check if response has an entity
+			HttpEntity entity = response.getEntity();
+			String preview = "";
+			String message = null;
+			long decodedBytes = 0;
+			if (entity != null) {
+			
+				context.checkDeadline();
+				long start = System.nanoTime();
+				
+				// get charset of the response text
+				String charset = EntityUtils.getContentCharSet(entity);
+				if (charset == null) {
+					charset = HTTP.DEFAULT_CONTENT_CHARSET;
+				}
+				
+				// count the bytes on the wire and decompress the response body
+				LimitedInputStream wireStream = new LimitedInputStream(entity.getContent(), -1);
+				String encoding = entity.getContentEncoding() != null ? entity.getContentEncoding().getValue() : null;
+				InputStream decodedStream = decompress(wireStream, encoding);
+				
+				// read the response body as stream with constant memory
+				LimitedInputStream inputStream = new LimitedInputStream(decodedStream, maxBodyBytes);
+				PatternMatcher.Scan scan = null;
+				if (patternMatcher == null) {
+					preview = drain(inputStream, charset);
+				}
+				else {
+					StreamingMatcher streamingMatcher = new StreamingMatcher(patternMatcher);
+					scan = streamingMatcher.find(new InputStreamReader(inputStream, charset));
+					preview = streamingMatcher.getPreview();
+				}
+				
+				// read the end of a compressed body (e.g. the gzip trailer) for reusing the connection
+				if (inputStream.isEnded() && !wireStream.isEnded()) {
+					byte[] buffer = BUFFER.get();
+					while (wireStream.read(buffer, 0, buffer.length) != -1) {
+						// skip the trailer
+					}
+				}
+				
+				context.addPhase(HttpPhase.body.toString(), System.nanoTime() - start);
+				context.addBytesRead(wireStream.getCount());
+				decodedBytes = inputStream.getCount();
+				
+				// close the connection instead of reading the rest of the body
+				if (!wireStream.isEnded()) {
+					request.abort();
+				}
+				
+				// release the inflater of a compressed body
+				if (decodedStream != wireStream) {
+					decodedStream.close();
+				}
+				
+				// report the bytes on the wire and the decoded bytes
+				if (compression || conditionalKey != null) {
+					detailBuilder.append(getTransfer(wireStream.getCount(), decodedBytes, decodedStream != wireStream ? encoding : null));
+				}
+			
+				// check if response text matches the given patterns
+				if (scan != null && !scan.isMatched()) {
+					if (inputStream.isLimitReached()) {
+						message = scan.getFailure("first " + maxBodyBytes + " bytes of the HTTP response text");
+					}
+					else {
+						message = scan.getFailure("HTTP response text");
+					}
+				}
 			}
+			
+			// remember the outcome for validating the response with the next request
+			if (conditionalKey != null) {
+				ConditionalCache.getInstance().put(conditionalKey, new ConditionalCache.Entry(getHeaderValue(response, "ETag"),
+						getHeaderValue(response, "Last-Modified"), message == null ? Status.UP : Status.DOWN, message, preview, decodedBytes));
+			}
+			
+			detailBuilder.append(preview);
+			if (message != null) {
+				return down(message, detailBuilder.toString());
+			}
+			
+			return up(detailBuilder.toString());
+		}
+		finally {
+			
+			// close the connection if the response has not been read to 
+			// the end, read connections are already back in the pool
+			request.abort();
 		}
 	}
 }
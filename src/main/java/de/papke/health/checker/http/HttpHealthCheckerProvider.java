@@ -0,0 +1,22 @@
+package de.papke.health.checker.http;
+
+import de.papke.health.checker.HealthChecker;
+import de.papke.health.checker.HealthCheckerProvider;
+import de.papke.health.checker.api.Type;
+
+/**
+ * Provider for the health checker of an HTTP server.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class HttpHealthCheckerProvider implements HealthCheckerProvider {
+	
+	public Type getType() {
+		return Type.http;
+	}
+	
+	public HealthChecker create() throws Exception {
+		return new HttpHealthChecker();
+	}
+}
@@ -14,8 +14,10 @@ import de.papke.health.checker.api.Parameter;
  */
 public enum HttpParameter implements Parameter {
 	
-	URL("l", "url", "The url of the HTTP server", null),
+	URL("l", "url", "The url of the HTTP server, can be given multiple times (the health check is up if all urls are up)", null),
+	URL_CONCURRENCY(null, "url-concurrency", "The maximum number of urls, which are requested in parallel over kept-alive connections", 4),
 	METHOD("m", "method", "The HTTP method to use", HttpMethod.get),
+	ENGINE(null, "engine", "The HTTP engine to use (nio multiplexes many health checks on a few threads and supports plain HTTP only, HTTPS uses the blocking engine)", HttpEngineType.blocking),
 	
 	CONNECT_TIMEOUT("c", "connect-timeout", "The connection timeout of the HTTP server (in milliseconds)", DEFAULT_CONNECT_TIMEOUT),
 	RESPONSE_TIMEOUT("r", "response-timeout", "The response timeout of the HTTP server (in milliseconds)", DEFAULT_RESPONSE_TIMEOUT),
@@ -26,7 +28,12 @@ public enum HttpParameter implements Parameter {
 	POST_DATA("d", "post-data", "The data to add for the HTTP POST request", null),
 	
 	STATUS_CODE("s", "status-code", "The expected status code of the HTTP response", 200),
-	PATTERN("x", "pattern", "The regex pattern to search in the HTTP response text", Pattern.compile(".*"));
+	PATTERN("x", "pattern", "The regex pattern to search in the HTTP response text, can be given multiple times", Pattern.compile(".*")),
+	EXCLUDE_PATTERN(null, "exclude-pattern", "The regex pattern which must not be found in the HTTP response text, can be given multiple times", null),
+	MAX_BODY_BYTES("b", "max-body-bytes", "The maximum number of bytes to read from the HTTP response body", -1),
+	
+	COMPRESSION(null, "compression", "Set to request compressed HTTP responses (gzip, deflate), which are decompressed while the patterns are searched", false),
+	CONDITIONAL(null, "conditional", "Set to validate the last HTTP response with If-None-Match / If-Modified-Since and to reuse its result if the document has not been modified", false);
 	
 	private final String shortName;
 	private final String longName;
@@ -0,0 +1,16 @@
+package de.papke.health.checker.http;
+
+/**
+ * Enum for the measured phases of an HTTP request.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public enum HttpPhase {
+	dns,
+	connect,
+	tls,
+	tls_resumed,
+	ttfb,
+	body
+}
@@ -0,0 +1,219 @@
+package de.papke.health.checker.http;
+
+import java.io.IOException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.util.Iterator;
+import java.util.Queue;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ThreadFactory;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+/**
+ * Process wide non-blocking HTTP engine, which multiplexes all probes
+ * in flight on a few I/O threads.
+ * 
+ * Every I/O thread owns a selector and the buffers for reading and
+ * decoding responses, the probes only keep their own state. Timeouts
+ * and deadlines of the probes are checked by the I/O threads between
+ * two selections. The host names of redirect targets are resolved on
+ * separate threads, so a slow lookup does not stall the I/O threads.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class NioHttpEngine {
+	
+	private static final int IO_THREADS = Math.max(1, Math.min(4, Runtime.getRuntime().availableProcessors()));
+	private static final long SWEEP_INTERVAL_MILLIS = 50;
+	private static final int READ_BUFFER_SIZE = 64 * 1024;
+	private static final int CHAR_BUFFER_SIZE = 16 * 1024;
+	
+	private static final NioHttpEngine INSTANCE = new NioHttpEngine();
+	
+	private final IoThread[] ioThreads = new IoThread[IO_THREADS];
+	private final AtomicInteger nextIoThread = new AtomicInteger();
+	
+	// threads for resolving the host names of redirect targets
+	private final ExecutorService resolver = Executors.newCachedThreadPool(new ThreadFactory() {
+		
+		public Thread newThread(Runnable runnable) {
+			Thread thread = new Thread(runnable, "http-nio-resolver");
+			thread.setDaemon(true);
+			return thread;
+		}
+	});
+	
+	private NioHttpEngine() {
+		for (int i = 0; i < ioThreads.length; i++) {
+			ioThreads[i] = new IoThread("http-nio-" + i);
+			ioThreads[i].start();
+		}
+	}
+	
+	public static NioHttpEngine getInstance() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * Method for starting a probe on the next I/O thread.
+	 * 
+	 * @param probe
+	 */
+	public void execute(NioHttpProbe probe) {
+		int index = (nextIoThread.getAndIncrement() & Integer.MAX_VALUE) % ioThreads.length;
+		ioThreads[index].submit(probe);
+	}
+	
+	/**
+	 * Method for resolving the host name of the next target of a probe 
+	 * and starting the probe again.
+	 * 
+	 * @param probe
+	 */
+	void resolve(final NioHttpProbe probe) {
+		resolver.execute(new Runnable() {
+			
+			public void run() {
+				if (probe.resolveRedirect()) {
+					execute(probe);
+				}
+			}
+		});
+	}
+	
+	/**
+	 * Thread class for driving the probes of one selector.
+	 */
+	private class IoThread extends Thread {
+		
+		private final Selector selector;
+		private final Queue<NioHttpProbe> probeQueue = new ConcurrentLinkedQueue<NioHttpProbe>();
+		
+		// buffers are shared by all probes of the thread
+		private final ByteBuffer readBuffer = ByteBuffer.allocate(READ_BUFFER_SIZE);
+		private final CharBuffer charBuffer = CharBuffer.allocate(CHAR_BUFFER_SIZE);
+		
+		private long lastSweep = System.nanoTime();
+		
+		private IoThread(String name) {
+			
+			super(name);
+			setDaemon(true);
+			
+			try {
+				selector = Selector.open();
+			}
+			catch (IOException e) {
+				throw new IllegalStateException("Could not open selector for the HTTP engine", e);
+			}
+		}
+		
+		private void submit(NioHttpProbe probe) {
+			probeQueue.add(probe);
+			selector.wakeup();
+		}
+		
+		@Override
+		public void run() {
+			while (true) {
+				try {
+					
+					selector.select(SWEEP_INTERVAL_MILLIS);
+					
+					// start the new probes
+					NioHttpProbe probe;
+					while ((probe = probeQueue.poll()) != null) {
+						try {
+							probe.start(selector);
+						}
+						catch (Throwable t) {
+							fail(probe, t);
+						}
+					}
+					
+					// handle the probes, which are ready for I/O
+					Iterator<SelectionKey> keyIterator = selector.selectedKeys().iterator();
+					while (keyIterator.hasNext()) {
+						SelectionKey key = keyIterator.next();
+						keyIterator.remove();
+						probe = (NioHttpProbe) key.attachment();
+						try {
+							probe.handle(key, readBuffer, charBuffer);
+						}
+						catch (Throwable t) {
+							fail(probe, t);
+						}
+					}
+					
+					// check the timeouts of all probes from time to time
+					long now = System.nanoTime();
+					if (now - lastSweep >= TimeUnit.MILLISECONDS.toNanos(SWEEP_INTERVAL_MILLIS)) {
+						lastSweep = now;
+						for (SelectionKey key : selector.keys()) {
+							probe = (NioHttpProbe) key.attachment();
+							if (probe != null) {
+								try {
+									probe.checkTimeout(now);
+								}
+								catch (Throwable t) {
+									fail(probe, t);
+								}
+							}
+						}
+					}
+				}
+				catch (Throwable t) {
+					
+					// the selector has failed, so all its probes have failed
+					failAll(t);
+				}
+			}
+		}
+		
+		/**
+		 * Helper method for failing a probe with an unexpected error.
+		 * 
+		 * @param probe
+		 * @param t
+		 */
+		private void fail(NioHttpProbe probe, Throwable t) {
+			try {
+				probe.fail(t);
+			}
+			catch (Throwable e) {
+				// the listener of the probe has failed as well
+			}
+		}
+		
+		/**
+		 * Helper method for failing all probes of the selector.
+		 * 
+		 * @param t
+		 */
+		private void failAll(Throwable t) {
+			
+			NioHttpProbe probe;
+			while ((probe = probeQueue.poll()) != null) {
+				fail(probe, t);
+			}
+			
+			try {
+				for (SelectionKey key : selector.keys()) {
+					probe = (NioHttpProbe) key.attachment();
+					if (probe != null) {
+						fail(probe, t);
+					}
+				}
+			}
+			catch (Throwable e) {
+				// the probes of a closed selector are lost anyway
+			}
+		}
+	}
+}
@@ -0,0 +1,1067 @@
+package de.papke.health.checker.http;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.StandardSocketOptions;
+import java.net.URI;
+import java.net.URISyntaxException;
+import java.nio.ByteBuffer;
+import java.nio.CharBuffer;
+import java.nio.channels.SelectionKey;
+import java.nio.channels.Selector;
+import java.nio.channels.SocketChannel;
+import java.nio.charset.Charset;
+import java.nio.charset.CharsetDecoder;
+import java.nio.charset.CodingErrorAction;
+import java.util.Arrays;
+import java.util.Base64;
+import java.util.LinkedHashMap;
+import java.util.Map;
+import java.util.concurrent.TimeUnit;
+import java.util.zip.DataFormatException;
+import java.util.zip.ZipException;
+
+import org.apache.commons.lang3.StringUtils;
+import org.apache.http.protocol.HTTP;
+
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.api.DeadlineExceededException;
+import de.papke.health.checker.api.Status;
+import de.papke.health.checker.api.Type;
+import de.papke.health.checker.engine.ResultListener;
+import de.papke.health.checker.util.PatternMatcher;
+import de.papke.health.checker.util.PatternTimeoutException;
+import de.papke.health.checker.util.StreamingMatcher;
+
+/**
+ * Class for a single HTTP health check of the non-blocking engine.
+ * 
+ * The probe is a state machine, which is driven by an I/O thread of
+ * the engine: it connects, writes the request, parses the response
+ * and searches the patterns in the response text while the bytes
+ * arrive. The probe has no thread and only small buffers of its own,
+ * so thousands of probes can be in flight at once.
+ * 
+ * Like the blocking engine, the probe follows redirects of GET and HEAD
+ * requests and the location of a POST response. Connections are closed
+ * after every response.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class NioHttpProbe {
+	
+	private static final Charset HEADER_CHARSET = Charset.forName("ISO-8859-1");
+	private static final String CRLF = "\r\n";
+	private static final String HTTPS_SCHEME = "https";
+	private static final int DEFAULT_PORT = 80;
+	
+	private static final int INITIAL_HEADER_SIZE = 512;
+	private static final int MAX_HEADER_SIZE = 64 * 1024;
+	private static final int MAX_REDIRECTS = 100;
+	
+	// states of the probe
+	private static final int CONNECTING = 0;
+	private static final int WRITING = 1;
+	private static final int READING_HEADER = 2;
+	private static final int READING_BODY = 3;
+	private static final int DONE = 4;
+	private static final int RESOLVING = 5;
+	
+	// states of a chunked body
+	private static final int CHUNK_SIZE = 0;
+	private static final int CHUNK_DATA = 1;
+	private static final int CHUNK_END = 2;
+	private static final int CHUNK_TRAILER = 3;
+	
+	// settings of the health check
+	private final String[] headers;
+	private final String authorization;
+	private final byte[] postData;
+	private final String postContentType;
+	private final int expectedStatusCode;
+	private final PatternMatcher patternMatcher;
+	private final long maxBodyBytes;
+	private final boolean compression;
+	private final String conditionalKey;
+	private final ConditionalCache.Entry validated;
+	private final int connectTimeout;
+	private final int responseTimeout;
+	private final long deadlineMillis;
+	private final long deadlineNanos;
+	private final long patternTimeoutMillis;
+	private final ResultListener listener;
+	
+	// measurements of all requests of the probe
+	private final Map<String, Long> phaseMap = new LinkedHashMap<String, Long>();
+	private long bodyBytes;
+	
+	// current request
+	private URI uri;
+	private HttpMethod method;
+	private InetAddress address;
+	private int redirects;
+	private Selector selector;
+	private SocketChannel channel;
+	private SelectionKey key;
+	private ByteBuffer requestBuffer;
+	private int state = CONNECTING;
+	private long phaseStart;
+	private long timeoutNanos;
+	private boolean timeoutSet;
+	
+	// current response
+	private byte[] header = new byte[INITIAL_HEADER_SIZE];
+	private int headerLength;
+	private int statusCode;
+	private final StringBuilder detailBuilder = new StringBuilder();
+	private String location;
+	private int locationCount;
+	private String charset;
+	private String contentEncoding;
+	private String etag;
+	private String lastModified;
+	private long contentLength;
+	private boolean chunked;
+	private int chunkState;
+	private long chunkRemaining;
+	private final StringBuilder chunkLine = new StringBuilder();
+	
+	// current response body
+	private long currentWireBytes;
+	private long currentBodyBytes;
+	private ContentInflater inflater;
+	private boolean limitReached;
+	private CharsetDecoder decoder;
+	private ByteBuffer undecoded;
+	private StreamingMatcher streamingMatcher;
+	private byte[] preview;
+	private int previewLength;
+	
+	/**
+	 * @param url
+	 * @param method
+	 * @param headers the additional request headers ("name:value") or null
+	 * @param username
+	 * @param password
+	 * @param postData the URL encoded form data of a POST request or null
+	 * @param postContentType
+	 * @param expectedStatusCode
+	 * @param patternMatcher the patterns to search in the response text or null
+	 * @param maxBodyBytes
+	 * @param compression true if a compressed response is requested
+	 * @param conditionalKey the key of the last validated response or null if the request is not conditional
+	 * @param connectTimeout
+	 * @param responseTimeout
+	 * @param deadlineMillis the deadline or -1 if there is no deadline
+	 * @param patternTimeoutMillis
+	 * @param listener
+	 * @throws Exception
+	 */
+	public NioHttpProbe(String url, HttpMethod method, String[] headers, String username, String password, byte[] postData, String postContentType,
+			int expectedStatusCode, PatternMatcher patternMatcher, long maxBodyBytes, boolean compression, String conditionalKey, int connectTimeout, int responseTimeout,
+			long deadlineMillis, long patternTimeoutMillis, ResultListener listener) throws Exception {
+		
+		this.method = method;
+		this.headers = headers;
+		this.postData = postData;
+		this.postContentType = postContentType;
+		this.expectedStatusCode = expectedStatusCode;
+		this.patternMatcher = patternMatcher;
+		this.maxBodyBytes = maxBodyBytes;
+		this.compression = compression;
+		this.conditionalKey = conditionalKey;
+		this.validated = conditionalKey != null ? ConditionalCache.getInstance().get(conditionalKey) : null;
+		this.connectTimeout = connectTimeout;
+		this.responseTimeout = responseTimeout;
+		this.deadlineMillis = deadlineMillis;
+		this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, deadlineMillis));
+		this.patternTimeoutMillis = patternTimeoutMillis;
+		this.listener = listener;
+		
+		// basic authentication is sent with the first request
+		if (StringUtils.isNotEmpty(username) && StringUtils.isNotEmpty(password)) {
+			this.authorization = "Basic " + Base64.getEncoder().encodeToString((username + ":" + password).getBytes(HEADER_CHARSET));
+		}
+		else {
+			this.authorization = null;
+		}
+		
+		// report all request phases in a fixed order
+		for (HttpPhase phase : HttpPhase.values()) {
+			phaseMap.put(phase.toString(), 0L);
+		}
+		
+		// resolve the host name on the calling thread
+		setTarget(new URI(url));
+		resolveTarget();
+	}
+	
+	/**
+	 * Helper method for setting the target of the next request.
+	 * 
+	 * @param targetUri
+	 * @throws IOException
+	 */
+	private void setTarget(URI targetUri) throws IOException {
+		
+		if (HTTPS_SCHEME.equalsIgnoreCase(targetUri.getScheme())) {
+			throw new IOException("The non-blocking HTTP engine does not support HTTPS: " + targetUri);
+		}
+		
+		uri = targetUri;
+	}
+	
+	/**
+	 * Method for resolving the host name of a redirect target, which is 
+	 * called on a resolver thread of the engine, because a slow lookup
+	 * would stall all probes of an I/O thread.
+	 * 
+	 * @return true if the probe can be started
+	 */
+	boolean resolveRedirect() {
+		
+		// the probe has no channel while resolving, so the deadline is checked here
+		if (isDeadlineExceeded(System.nanoTime())) {
+			finish(Status.TIMEOUT, new DeadlineExceededException(deadlineMillis).getMessage(), null);
+			return false;
+		}
+		
+		try {
+			resolveTarget();
+			return true;
+		}
+		catch (Throwable t) {
+			fail(t);
+			return false;
+		}
+	}
+	
+	/**
+	 * Helper method for resolving the host name of the target and 
+	 * creating the next request.
+	 * 
+	 * @throws IOException
+	 */
+	private void resolveTarget() throws IOException {
+		
+		long start = System.nanoTime();
+		try {
+			address = InetAddress.getByName(uri.getHost());
+		}
+		finally {
+			addPhase(HttpPhase.dns, System.nanoTime() - start);
+		}
+		
+		requestBuffer = ByteBuffer.wrap(createRequest());
+	}
+	
+	/**
+	 * Helper method for creating the bytes of the current request.
+	 * 
+	 * @return
+	 */
+	private byte[] createRequest() {
+		
+		String path = StringUtils.defaultIfEmpty(uri.getRawPath(), "/");
+		if (uri.getRawQuery() != null) {
+			path += "?" + uri.getRawQuery();
+		}
+		
+		StringBuilder builder = new StringBuilder();
+		builder.append(method.toString().toUpperCase()).append(' ').append(path).append(" HTTP/1.1").append(CRLF);
+		builder.append("Host: ").append(uri.getHost());
+		if (uri.getPort() != -1 && uri.getPort() != DEFAULT_PORT) {
+			builder.append(':').append(uri.getPort());
+		}
+		builder.append(CRLF);
+		builder.append("User-Agent: ").append(HttpHealthChecker.getUserAgent()).append(CRLF);
+		builder.append("Connection: close").append(CRLF);
+		
+		if (authorization != null) {
+			builder.append("Authorization: ").append(authorization).append(CRLF);
+		}
+		
+		// request a compressed response
+		if (compression) {
+			builder.append("Accept-Encoding: ").append(HttpHealthChecker.ACCEPT_ENCODING).append(CRLF);
+		}
+		
+		// validate the last response
+		if (validated != null) {
+			if (validated.getEtag() != null) {
+				builder.append("If-None-Match: ").append(validated.getEtag()).append(CRLF);
+			}
+			if (validated.getLastModified() != null) {
+				builder.append("If-Modified-Since: ").append(validated.getLastModified()).append(CRLF);
+			}
+		}
+		
+		// add headers to HTTP request
+		if (headers != null) {
+			for (String requestHeader : headers) {
+				String[] headerArray = requestHeader.split(":");
+				if (headerArray.length == 2) {
+					builder.append(headerArray[0].trim()).append(": ").append(headerArray[1].trim()).append(CRLF);
+				}
+			}
+		}
+		
+		// add data to POST request
+		byte[] body = method == HttpMethod.post && postData != null ? postData : new byte[0];
+		if (method == HttpMethod.post) {
+			if (postData != null) {
+				builder.append("Content-Type: ").append(postContentType).append(CRLF);
+			}
+			builder.append("Content-Length: ").append(body.length).append(CRLF);
+		}
+		
+		builder.append(CRLF);
+		
+		byte[] head = builder.toString().getBytes(HEADER_CHARSET);
+		byte[] request = Arrays.copyOf(head, head.length + body.length);
+		System.arraycopy(body, 0, request, head.length, body.length);
+		
+		return request;
+	}
+	
+	/**
+	 * Method for connecting to the current target, which is called on
+	 * the I/O thread.
+	 * 
+	 * @param selector
+	 */
+	void start(Selector selector) {
+		
+		this.selector = selector;
+		
+		try {
+			
+			// reset the state of a previous response
+			state = CONNECTING;
+			headerLength = 0;
+			detailBuilder.setLength(0);
+			location = null;
+			locationCount = 0;
+			
+			int port = uri.getPort() != -1 ? uri.getPort() : DEFAULT_PORT;
+			
+			channel = SocketChannel.open();
+			channel.configureBlocking(false);
+			channel.setOption(StandardSocketOptions.TCP_NODELAY, true);
+			
+			phaseStart = System.nanoTime();
+			setTimeout(connectTimeout);
+			if (channel.connect(new InetSocketAddress(address, port))) {
+				key = channel.register(selector, SelectionKey.OP_WRITE, this);
+				connected();
+			}
+			else {
+				key = channel.register(selector, SelectionKey.OP_CONNECT, this);
+			}
+		}
+		catch (IOException e) {
+			fail(e);
+		}
+	}
+	
+	/**
+	 * Method for handling the readiness of the channel, which is called
+	 * on the I/O thread.
+	 * 
+	 * @param selectionKey
+	 * @param readBuffer the read buffer of the I/O thread
+	 * @param charBuffer the decoding buffer of the I/O thread
+	 */
+	void handle(SelectionKey selectionKey, ByteBuffer readBuffer, CharBuffer charBuffer) {
+		
+		if (state == DONE || selectionKey != key) {
+			return;
+		}
+		
+		try {
+			if (state == CONNECTING && selectionKey.isConnectable()) {
+				if (channel.finishConnect()) {
+					connected();
+				}
+			}
+			else if (state == WRITING && selectionKey.isWritable()) {
+				write();
+			}
+			else if (selectionKey.isReadable()) {
+				read(readBuffer, charBuffer);
+			}
+			
+			// the probe is started again after resolving the host name of a redirect
+			if (state == RESOLVING) {
+				NioHttpEngine.getInstance().resolve(this);
+			}
+		}
+		catch (PatternTimeoutException e) {
+			finish(Status.TIMEOUT, e.getMessage(), getDetail());
+		}
+		catch (IOException e) {
+			fail(e);
+		}
+		catch (RuntimeException e) {
+			fail(e);
+		}
+	}
+	
+	/**
+	 * Method for checking the timeouts of the probe, which is called
+	 * on the I/O thread from time to time.
+	 * 
+	 * @param now
+	 */
+	void checkTimeout(long now) {
+		
+		if (state == DONE || !timeoutSet || now - timeoutNanos < 0) {
+			return;
+		}
+		
+		if (isDeadlineExceeded(now)) {
+			finish(Status.TIMEOUT, new DeadlineExceededException(deadlineMillis).getMessage(), null);
+		}
+		else if (state == CONNECTING) {
+			finish(Status.DOWN, "Connect to " + uri.getHost() + ":" + (uri.getPort() != -1 ? uri.getPort() : DEFAULT_PORT) + " timed out", null);
+		}
+		else {
+			finish(Status.DOWN, "Read timed out", null);
+		}
+	}
+	
+	private boolean isDeadlineExceeded(long now) {
+		return deadlineMillis >= 0 && now - deadlineNanos >= 0;
+	}
+	
+	/**
+	 * Helper method for setting the timeout of the next I/O operation,
+	 * which is limited to the deadline. A timeout of 0 means no timeout
+	 * like in the blocking engine.
+	 * 
+	 * @param timeoutMillis
+	 */
+	private void setTimeout(int timeoutMillis) {
+		
+		timeoutSet = timeoutMillis > 0 || deadlineMillis >= 0;
+		timeoutNanos = timeoutMillis > 0 ? System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(timeoutMillis) : deadlineNanos;
+		
+		if (deadlineMillis >= 0 && timeoutNanos - deadlineNanos > 0) {
+			timeoutNanos = deadlineNanos;
+		}
+	}
+	
+	private void connected() {
+		addPhase(HttpPhase.connect, System.nanoTime() - phaseStart);
+		state = WRITING;
+		key.interestOps(SelectionKey.OP_WRITE);
+		phaseStart = System.nanoTime();
+		setTimeout(responseTimeout);
+	}
+	
+	private void write() throws IOException {
+		
+		channel.write(requestBuffer);
+		
+		if (!requestBuffer.hasRemaining()) {
+			requestBuffer.rewind();
+			state = READING_HEADER;
+			key.interestOps(SelectionKey.OP_READ);
+		}
+	}
+	
+	/**
+	 * Helper method for reading the available bytes of the response.
+	 * 
+	 * @param readBuffer
+	 * @param charBuffer
+	 * @throws IOException
+	 */
+	private void read(ByteBuffer readBuffer, CharBuffer charBuffer) throws IOException {
+		
+		readBuffer.clear();
+		int read = channel.read(readBuffer);
+		
+		// the response timeout is the maximum time between two reads
+		setTimeout(responseTimeout);
+		
+		if (read == -1) {
+			end(charBuffer);
+			return;
+		}
+		
+		byte[] bytes = readBuffer.array();
+		int offset = 0;
+		
+		if (state == READING_HEADER) {
+			offset = readHeader(bytes, read);
+			if (offset < 0 || state != READING_BODY) {
+				return;
+			}
+		}
+		
+		readBody(bytes, offset, read - offset, charBuffer);
+	}
+	
+	/**
+	 * Helper method for collecting the response header.
+	 * 
+	 * @param bytes
+	 * @param length
+	 * @return the offset of the body in the given bytes or -1 if the header is not complete
+	 * @throws IOException
+	 */
+	private int readHeader(byte[] bytes, int length) throws IOException {
+		
+		// time to the first byte of the response
+		if (headerLength == 0) {
+			addPhase(HttpPhase.ttfb, System.nanoTime() - phaseStart);
+		}
+		
+		for (int i = 0; i < length; i++) {
+			
+			if (headerLength == header.length) {
+				if (header.length == MAX_HEADER_SIZE) {
+					throw new IOException("The header of the HTTP response is too large");
+				}
+				header = Arrays.copyOf(header, Math.min(MAX_HEADER_SIZE, header.length * 2));
+			}
+			header[headerLength++] = bytes[i];
+			
+			// the header ends with an empty line
+			if (headerLength >= 4 && header[headerLength - 1] == '\n' && header[headerLength - 2] == '\r'
+					&& header[headerLength - 3] == '\n' && header[headerLength - 4] == '\r') {
+				parseHeader();
+				return i + 1;
+			}
+		}
+		
+		return -1;
+	}
+	
+	/**
+	 * Helper method for parsing the status line and the header fields.
+	 * 
+	 * @throws IOException
+	 */
+	private void parseHeader() throws IOException {
+		
+		String[] lines = new String(header, 0, headerLength - 4, HEADER_CHARSET).split(CRLF);
+		
+		// parse status line, e.g. "HTTP/1.1 200 OK"
+		String[] statusLine = lines[0].split(" ", 3);
+		if (statusLine.length < 2 || !statusLine[0].startsWith("HTTP/")) {
+			throw new IOException("The status line of the HTTP response is invalid: " + lines[0]);
+		}
+		statusCode = Integer.parseInt(statusLine[1]);
+		
+		contentLength = -1;
+		chunked = false;
+		charset = null;
+		contentEncoding = null;
+		etag = null;
+		lastModified = null;
+		
+		for (int i = 1; i < lines.length; i++) {
+			
+			int separator = lines[i].indexOf(':');
+			if (separator <= 0) {
+				continue;
+			}
+			
+			String name = lines[i].substring(0, separator).trim();
+			String value = lines[i].substring(separator + 1).trim();
+			detailBuilder.append(name).append(':').append(' ').append(value).append('\n');
+			
+			if ("Content-Length".equalsIgnoreCase(name)) {
+				contentLength = Long.parseLong(value);
+			}
+			else if ("Transfer-Encoding".equalsIgnoreCase(name)) {
+				chunked = value.toLowerCase().contains("chunked");
+			}
+			else if ("Content-Type".equalsIgnoreCase(name)) {
+				charset = getCharset(value);
+			}
+			else if ("Content-Encoding".equalsIgnoreCase(name)) {
+				contentEncoding = value;
+			}
+			else if ("ETag".equalsIgnoreCase(name)) {
+				etag = value;
+			}
+			else if ("Last-Modified".equalsIgnoreCase(name)) {
+				lastModified = value;
+			}
+			else if ("Location".equalsIgnoreCase(name)) {
+				location = value;
+				locationCount++;
+			}
+		}
+		
+		// follow redirects like the blocking engine
+		if (isRedirect()) {
+			redirect();
+			return;
+		}
+		
+		// reuse the outcome of the last validated response, if the document has not been modified
+		if (validated != null && statusCode == 304) {
+			detailBuilder.append(HttpHealthChecker.getNotModifiedTransfer(validated)).append(validated.getPreview());
+			finish(validated.getStatus(), validated.getMessage(), detailBuilder.toString());
+			return;
+		}
+		
+		// check if HTTP response status code matches expectations
+		if (statusCode != expectedStatusCode) {
+			if (conditionalKey != null) {
+				ConditionalCache.getInstance().remove(conditionalKey);
+			}
+			finish(Status.DOWN, "The status code of the HTTP response does not match", null);
+			return;
+		}
+		
+		startBody();
+	}
+	
+	/**
+	 * Helper method for getting the charset of a content type.
+	 * 
+	 * @param contentType
+	 * @return the charset or null if the content type has none
+	 */
+	private static String getCharset(String contentType) {
+		
+		for (String parameter : contentType.split(";")) {
+			String[] parameterArray = parameter.trim().split("=", 2);
+			if (parameterArray.length == 2 && "charset".equalsIgnoreCase(parameterArray[0].trim())) {
+				return parameterArray[1].trim().replace("\"", "");
+			}
+		}
+		
+		return null;
+	}
+	
+	/**
+	 * Helper method for checking if the response has to be followed.
+	 * 
+	 * @return
+	 */
+	private boolean isRedirect() {
+		
+		// the location of a POST response is requested with GET
+		if (method == HttpMethod.post) {
+			return locationCount == 1 && StringUtils.isNotEmpty(location);
+		}
+		
+		boolean redirectStatus = statusCode == 301 || statusCode == 302 || statusCode == 303 || statusCode == 307;
+		return redirectStatus && location != null;
+	}
+	
+	/**
+	 * Helper method for requesting the location of the response.
+	 * 
+	 * @throws IOException
+	 */
+	private void redirect() throws IOException {
+		
+		if (++redirects > MAX_REDIRECTS) {
+			throw new IOException("Maximum redirects (" + MAX_REDIRECTS + ") exceeded");
+		}
+		
+		close();
+		
+		try {
+			
+			// the location of a POST response is requested with GET
+			if (method == HttpMethod.post) {
+				method = HttpMethod.get;
+				setTarget(new URI(HttpHealthChecker.getLocationUrl(uri.toString(), location)));
+			}
+			else {
+				setTarget(uri.resolve(location));
+			}
+		}
+		catch (URISyntaxException e) {
+			throw new IOException("The location of the HTTP response is invalid: " + location);
+		}
+		catch (IllegalArgumentException e) {
+			throw new IOException("The location of the HTTP response is invalid: " + location);
+		}
+		
+		state = RESOLVING;
+	}
+	
+	/**
+	 * Helper method for preparing the reading of the response body.
+	 */
+	private void startBody() {
+		
+		state = READING_BODY;
+		chunkState = CHUNK_SIZE;
+		chunkLine.setLength(0);
+		phaseStart = System.nanoTime();
+		
+		// responses without body
+		if (method == HttpMethod.head || statusCode == 204 || statusCode == 304) {
+			finishBody(null);
+			return;
+		}
+		
+		// decode the response text only for patterns
+		if (patternMatcher != null) {
+			
+			long budgetMillis = patternTimeoutMillis;
+			if (deadlineMillis >= 0) {
+				long remainingMillis = Math.max(0, TimeUnit.NANOSECONDS.toMillis(deadlineNanos - System.nanoTime()));
+				budgetMillis = budgetMillis < 0 ? remainingMillis : Math.min(budgetMillis, remainingMillis);
+			}
+			
+			streamingMatcher = new StreamingMatcher(patternMatcher.newScan(budgetMillis));
+			decoder = Charset.forName(charset != null ? charset : HTTP.DEFAULT_CONTENT_CHARSET).newDecoder()
+					.onMalformedInput(CodingErrorAction.REPLACE)
+					.onUnmappableCharacter(CodingErrorAction.REPLACE);
+		}
+		
+		// decompress a compressed response body while it is read
+		inflater = ContentInflater.create(contentEncoding);
+		
+		if (contentLength == 0) {
+			finishBody(null);
+		}
+	}
+	
+	/**
+	 * Helper method for reading a part of the response body.
+	 * 
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @param charBuffer
+	 * @throws IOException
+	 */
+	private void readBody(byte[] bytes, int offset, int length, CharBuffer charBuffer) throws IOException {
+		
+		while (length > 0 && state == READING_BODY) {
+			
+			int consumed;
+			
+			if (!chunked) {
+				
+				// body delimited by its length or by the end of the connection
+				int count = contentLength >= 0 ? (int) Math.min(length, contentLength - currentWireBytes) : length;
+				consumeWire(bytes, offset, count, charBuffer);
+				consumed = count;
+				
+				if (state == READING_BODY && contentLength >= 0 && currentWireBytes == contentLength) {
+					finishBody(charBuffer);
+				}
+			}
+			else if (chunkState == CHUNK_DATA) {
+				int count = (int) Math.min(length, chunkRemaining);
+				consumeWire(bytes, offset, count, charBuffer);
+				chunkRemaining -= count;
+				consumed = count;
+				if (chunkRemaining == 0) {
+					chunkState = CHUNK_END;
+				}
+			}
+			else {
+				consumed = 1;
+				readChunkLine((char) (bytes[offset] & 0xff), charBuffer);
+			}
+			
+			offset += consumed;
+			length -= consumed;
+		}
+	}
+	
+	/**
+	 * Helper method for reading the lines around the data of chunks.
+	 * 
+	 * @param c
+	 * @param charBuffer
+	 */
+	private void readChunkLine(char c, CharBuffer charBuffer) {
+		
+		if (c != '\n') {
+			if (c != '\r') {
+				chunkLine.append(c);
+			}
+			return;
+		}
+		
+		String line = chunkLine.toString().trim();
+		chunkLine.setLength(0);
+		
+		if (chunkState == CHUNK_SIZE) {
+			
+			// ignore chunk extensions
+			int extension = line.indexOf(';');
+			chunkRemaining = Long.parseLong(extension >= 0 ? line.substring(0, extension).trim() : line, 16);
+			chunkState = chunkRemaining > 0 ? CHUNK_DATA : CHUNK_TRAILER;
+		}
+		else if (chunkState == CHUNK_END) {
+			chunkState = CHUNK_SIZE;
+		}
+		else if (line.isEmpty()) {
+			
+			// the trailer ends with an empty line
+			finishBody(charBuffer);
+		}
+	}
+	
+	/**
+	 * Helper method for counting the bytes of the response body on the
+	 * wire and decompressing them.
+	 * 
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @param charBuffer
+	 * @throws IOException
+	 */
+	private void consumeWire(byte[] bytes, int offset, int length, CharBuffer charBuffer) throws IOException {
+		
+		currentWireBytes += length;
+		bodyBytes += length;
+		
+		if (inflater == null) {
+			consumeBody(bytes, offset, length, charBuffer);
+			return;
+		}
+		
+		inflater.setInput(bytes, offset, length);
+		try {
+			int count;
+			while (state == READING_BODY && (count = inflater.inflate()) > 0) {
+				consumeBody(inflater.getOutput(), 0, count, charBuffer);
+			}
+		}
+		catch (DataFormatException e) {
+			throw new ZipException(e.getMessage());
+		}
+	}
+	
+	/**
+	 * Helper method for searching or previewing the bytes of the response body.
+	 * 
+	 * @param bytes
+	 * @param offset
+	 * @param length
+	 * @param charBuffer
+	 */
+	private void consumeBody(byte[] bytes, int offset, int length, CharBuffer charBuffer) {
+		
+		// stop after the maximum number of bytes
+		if (maxBodyBytes >= 0 && currentBodyBytes + length >= maxBodyBytes) {
+			length = (int) (maxBodyBytes - currentBodyBytes);
+			limitReached = true;
+		}
+		
+		currentBodyBytes += length;
+		
+		if (streamingMatcher == null) {
+			
+			// keep the beginning of the body as preview
+			int count = Math.min(length, StreamingMatcher.PREVIEW_SIZE - previewLength);
+			if (count > 0) {
+				if (preview == null || previewLength + count > preview.length) {
+					preview = Arrays.copyOf(preview != null ? preview : new byte[0], Math.min(StreamingMatcher.PREVIEW_SIZE, Math.max(previewLength + count, previewLength * 2)));
+				}
+				System.arraycopy(bytes, offset, preview, previewLength, count);
+				previewLength += count;
+			}
+		}
+		else if (decode(ByteBuffer.wrap(bytes, offset, length), charBuffer, false)) {
+			
+			// the result of the search is known
+			finishBody(charBuffer);
+			return;
+		}
+		
+		if (limitReached) {
+			finishBody(charBuffer);
+		}
+	}
+	
+	/**
+	 * Helper method for decoding bytes and pushing the characters into
+	 * the streaming matcher. Incomplete characters are kept for the
+	 * next bytes.
+	 * 
+	 * @param in
+	 * @param charBuffer
+	 * @param endOfInput
+	 * @return true if the result of the search is known
+	 */
+	private boolean decode(ByteBuffer in, CharBuffer charBuffer, boolean endOfInput) {
+		
+		// prepend the incomplete character of the previous bytes
+		if (undecoded != null) {
+			ByteBuffer joined = ByteBuffer.allocate(undecoded.remaining() + in.remaining());
+			joined.put(undecoded).put(in).flip();
+			in = joined;
+			undecoded = null;
+		}
+		
+		boolean done = false;
+		while (true) {
+			
+			charBuffer.clear();
+			boolean overflow = decoder.decode(in, charBuffer, endOfInput).isOverflow();
+			if (endOfInput && !overflow) {
+				overflow = decoder.flush(charBuffer).isOverflow();
+			}
+			
+			done = streamingMatcher.write(charBuffer.array(), 0, charBuffer.position());
+			if (done || !overflow) {
+				break;
+			}
+		}
+		
+		if (in.hasRemaining() && !done) {
+			undecoded = ByteBuffer.allocate(in.remaining());
+			undecoded.put(in).flip();
+		}
+		
+		return done;
+	}
+	
+	/**
+	 * Helper method for handling the end of the connection.
+	 * 
+	 * @param charBuffer
+	 * @throws IOException
+	 */
+	private void end(CharBuffer charBuffer) throws IOException {
+		
+		if (state == READING_HEADER) {
+			throw new IOException("The target server failed to respond");
+		}
+		
+		if (chunked || contentLength >= 0) {
+			throw new IOException("Premature end of the HTTP response body (received: " + currentWireBytes + " bytes)");
+		}
+		
+		finishBody(charBuffer);
+	}
+	
+	/**
+	 * Helper method for checking the response text at the end of the body
+	 * or as soon as the result of the search is known.
+	 * 
+	 * @param charBuffer
+	 */
+	private void finishBody(CharBuffer charBuffer) {
+		
+		addPhase(HttpPhase.body, System.nanoTime() - phaseStart);
+		
+		String previewText = "";
+		String message = null;
+		if (streamingMatcher == null) {
+			if (previewLength > 0) {
+				previewText = new String(preview, 0, previewLength, Charset.forName(charset != null ? charset : HTTP.DEFAULT_CONTENT_CHARSET));
+			}
+		}
+		else {
+		
+			// search the rest of the text
+			if (charBuffer != null && undecoded != null) {
+				decode(ByteBuffer.allocate(0), charBuffer, true);
+			}
+			PatternMatcher.Scan scan = streamingMatcher.finish();
+			previewText = streamingMatcher.getPreview();
+		
+			// check if response text matches the given patterns
+			if (!scan.isMatched()) {
+				String text = limitReached ? "first " + maxBodyBytes + " bytes of the HTTP response text" : "HTTP response text";
+				message = scan.getFailure(text);
+			}
+		}
+		
+		// report the bytes on the wire and the decoded bytes
+		if (compression || conditionalKey != null) {
+			detailBuilder.append(HttpHealthChecker.getTransfer(currentWireBytes, currentBodyBytes, inflater != null ? contentEncoding : null));
+		}
+		
+		// remember the outcome for validating the response with the next request
+		if (conditionalKey != null) {
+			ConditionalCache.getInstance().put(conditionalKey, new ConditionalCache.Entry(etag, lastModified,
+					message == null ? Status.UP : Status.DOWN, message, previewText, currentBodyBytes));
+		}
+		
+		detailBuilder.append(previewText);
+		finish(message == null ? Status.UP : Status.DOWN, message, detailBuilder.toString());
+	}
+	
+	/**
+	 * Helper method for getting the detail of a response, which has not been read completely.
+	 * 
+	 * @return
+	 */
+	private String getDetail() {
+		return detailBuilder.length() > 0 ? detailBuilder.toString() : null;
+	}
+	
+	/**
+	 * Method for failing the probe, e.g. when the I/O thread has caught 
+	 * an unexpected error of the probe.
+	 * 
+	 * @param t
+	 */
+	void fail(Throwable t) {
+		finish(Status.DOWN, t.getMessage() != null ? t.getMessage() : t.toString(), null);
+	}
+	
+	/**
+	 * Helper method for finishing the probe and passing its result to the listener.
+	 * 
+	 * @param status
+	 * @param message
+	 * @param detail
+	 */
+	private void finish(Status status, String message, String detail) {
+		
+		if (state == DONE) {
+			return;
+		}
+		
+		state = DONE;
+		close();
+		
+		// release the native memory of the inflater
+		if (inflater != null) {
+			inflater.end();
+			inflater = null;
+		}
+		
+		listener.onResult(new CheckResult(null, Type.http, status, 0, message, detail, phaseMap, bodyBytes, System.currentTimeMillis()));
+	}
+	
+	/**
+	 * Helper method for closing the connection of the current request.
+	 */
+	private void close() {
+		
+		if (key != null) {
+			key.cancel();
+			key = null;
+		}
+		
+		if (channel != null) {
+			try {
+				channel.close();
+			}
+			catch (IOException e) {
+				// the connection is not used anymore
+			}
+			channel = null;
+		}
+	}
+	
+	private void addPhase(HttpPhase phase, long nanos) {
+		String name = phase.toString();
+		phaseMap.put(name, phaseMap.get(name) + nanos);
+	}
+}
@@ -0,0 +1,80 @@
+package de.papke.health.checker.http;
+
+import java.io.IOException;
+import java.net.InetAddress;
+import java.net.UnknownHostException;
+
+import org.apache.http.HttpHost;
+import org.apache.http.conn.OperatedClientConnection;
+import org.apache.http.conn.scheme.SchemeRegistry;
+import org.apache.http.impl.conn.DefaultClientConnectionOperator;
+import org.apache.http.params.HttpParams;
+import org.apache.http.protocol.HttpContext;
+
+import de.papke.health.checker.api.CheckContext;
+
+/**
+ * Connection operator class which measures the duration of the 
+ * DNS lookup and the TCP connect of new HTTP connections.
+ * 
+ * The TLS handshake is measured by the SSL socket factory and 
+ * is not part of the connect duration.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class TimingClientConnectionOperator extends DefaultClientConnectionOperator {
+
+	public TimingClientConnectionOperator(SchemeRegistry schemeRegistry) {
+		super(schemeRegistry);
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.apache.http.impl.conn.DefaultClientConnectionOperator#resolveHostname(java.lang.String)
+	 */
+	@Override
+	protected InetAddress[] resolveHostname(String host) throws UnknownHostException {
+		
+		long start = System.nanoTime();
+		try {
+			return super.resolveHostname(host);
+		}
+		finally {
+			CheckContext.current().addPhase(HttpPhase.dns.toString(), System.nanoTime() - start);
+		}
+	}
+	
+	/* (non-Javadoc)
+	 * @see org.apache.http.impl.conn.DefaultClientConnectionOperator#openConnection(org.apache.http.conn.OperatedClientConnection, org.apache.http.HttpHost, java.net.InetAddress, org.apache.http.protocol.HttpContext, org.apache.http.params.HttpParams)
+	 */
+	@Override
+	public void openConnection(OperatedClientConnection conn, HttpHost target, InetAddress local, HttpContext context, HttpParams params) throws IOException {
+		
+		CheckContext checkContext = CheckContext.current();
+		long otherNanos = getOtherNanos(checkContext);
+		long start = System.nanoTime();
+		
+		try {
+			super.openConnection(conn, target, local, context, params);
+		}
+		finally {
+			
+			// connect duration without DNS lookup and TLS handshake
+			long totalNanos = System.nanoTime() - start;
+			long otherDeltaNanos = getOtherNanos(checkContext) - otherNanos;
+			checkContext.addPhase(HttpPhase.connect.toString(), Math.max(0, totalNanos - otherDeltaNanos));
+		}
+	}
+	
+	/**
+	 * Helper method for getting the time spent for DNS lookups and TLS handshakes.
+	 * 
+	 * @param checkContext
+	 * @return
+	 */
+	private long getOtherNanos(CheckContext checkContext) {
+		return checkContext.getPhase(HttpPhase.dns.toString()) 
+				+ checkContext.getPhase(HttpPhase.tls.toString()) 
+				+ checkContext.getPhase(HttpPhase.tls_resumed.toString());
+	}
+}
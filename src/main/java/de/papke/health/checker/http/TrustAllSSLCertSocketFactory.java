@@ -7,6 +7,7 @@ import java.net.Socket;
 import java.net.UnknownHostException;
 
 import javax.net.ssl.SSLContext;
+import javax.net.ssl.SSLSessionContext;
 import javax.net.ssl.SSLSocket;
 import javax.net.ssl.TrustManager;
 
@@ -15,23 +16,46 @@ import org.apache.http.conn.scheme.LayeredSocketFactory;
 import org.apache.http.params.HttpConnectionParams;
 import org.apache.http.params.HttpParams;
 
+import de.papke.health.checker.api.CheckContext;
+
 /**
  * SSL socket factory class which accepts all kinds of SSL certificates
  * (self-signed, expired, ...). 
  * 
+ * All factories share one SSL context and with it the client session
+ * cache, so handshakes with a server, which has been contacted before,
+ * resume the TLS session (session IDs or tickets) instead of doing a 
+ * full handshake. Resumed handshakes are measured as separate phase.
+ * 
  * @author Christoph Papke (info@christoph-papke.de)
  *
  */
 @SuppressWarnings("deprecation")
 public class TrustAllSSLCertSocketFactory implements LayeredSocketFactory {
 
-	private SSLContext sslcontext = null;
+	private static final String SESSION_TICKET_PROPERTY = "jdk.tls.client.enableSessionTicketExtension";
+	private static final int SESSION_CACHE_SIZE = 1000;
+	private static final int SESSION_TIMEOUT_SECONDS = 3600;
+	
+	private static SSLContext sslcontext = null;
 
 	private static SSLContext createEasySSLContext() throws IOException {
 		try {
+			
+			// let the client ask for stateless session tickets as well
+			if (System.getProperty(SESSION_TICKET_PROPERTY) == null) {
+				System.setProperty(SESSION_TICKET_PROPERTY, "true");
+			}
+			
 			SSLContext context = SSLContext.getInstance("TLS");
 			context.init(null, new TrustManager[] { new TrustAllSSLCertTrustManager(
 					null) }, null);
+			
+			// keep the sessions of all servers for resumption
+			SSLSessionContext sessionContext = context.getClientSessionContext();
+			sessionContext.setSessionCacheSize(SESSION_CACHE_SIZE);
+			sessionContext.setSessionTimeout(SESSION_TIMEOUT_SECONDS);
+			
 			return context;
 		}
 		catch (Exception e) {
@@ -39,11 +63,11 @@ public class TrustAllSSLCertSocketFactory implements LayeredSocketFactory {
 		}
 	}
 
-	private SSLContext getSSLContext() throws IOException {
-		if (this.sslcontext == null) {
-			this.sslcontext = createEasySSLContext();
+	private static synchronized SSLContext getSSLContext() throws IOException {
+		if (sslcontext == null) {
+			sslcontext = createEasySSLContext();
 		}
-		return this.sslcontext;
+		return sslcontext;
 	}
 
 	public Socket connectSocket(Socket sock, String host, int port,
@@ -53,7 +77,7 @@ public class TrustAllSSLCertSocketFactory implements LayeredSocketFactory {
 		int soTimeout = HttpConnectionParams.getSoTimeout(params);
 
 		InetSocketAddress remoteAddress = new InetSocketAddress(host, port);
-		SSLSocket sslsock = (SSLSocket) ((sock != null) ? sock : createSocket());
+		Socket plainsock = (sock != null) ? sock : createSocket();
 
 		if ((localAddress != null) || (localPort > 0)) {
 			// we need to bind explicitly
@@ -62,17 +86,39 @@ public class TrustAllSSLCertSocketFactory implements LayeredSocketFactory {
 			}
 			InetSocketAddress isa = new InetSocketAddress(localAddress,
 					localPort);
-			sslsock.bind(isa);
+			plainsock.bind(isa);
 		}
 
-		sslsock.connect(remoteAddress, connTimeout);
-		sslsock.setSoTimeout(soTimeout);
+		plainsock.connect(remoteAddress, connTimeout);
+		plainsock.setSoTimeout(soTimeout);
+		
+		// the session cache is looked up by the host and port of the SSL socket
+		SSLSocket sslsock = (SSLSocket) createSocket(plainsock, host, port, true);
+		
+		// do the TLS handshake explicitly to measure its duration
+		long startMillis = System.currentTimeMillis();
+		long start = System.nanoTime();
+		HttpPhase phase = HttpPhase.tls;
+		try {
+			sslsock.startHandshake();
+			
+			// a resumed session has been created by an earlier handshake
+			if (sslsock.getSession().getCreationTime() < startMillis) {
+				phase = HttpPhase.tls_resumed;
+			}
+		}
+		finally {
+			CheckContext.current().addPhase(phase.toString(), System.nanoTime() - start);
+		}
+		
 		return sslsock;
 
 	}
 
 	public Socket createSocket() throws IOException {
-		return getSSLContext().getSocketFactory().createSocket();
+		
+		// the SSL socket is layered over the connected socket
+		return new Socket();
 	}
 
 	public boolean isSecure(Socket socket) throws IllegalArgumentException {
@@ -1,15 +1,17 @@
 package de.papke.health.checker.jdbc;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.sql.Connection;
 import java.sql.DriverManager;
 import java.sql.PreparedStatement;
 import java.sql.ResultSet;
 import java.sql.ResultSetMetaData;
+import java.sql.SQLException;
 import java.util.ArrayList;
 import java.util.List;
 import java.util.Properties;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.TimeUnit;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
@@ -18,7 +20,10 @@ import org.apache.commons.lang3.StringUtils;
 import com.bethecoder.ascii_table.ASCIITable;
 
 import de.papke.health.checker.HealthChecker;
-import de.papke.health.checker.elasticsearch.ElasticSearchParameter;
+import de.papke.health.checker.api.CheckContext;
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.api.Type;
+import de.papke.health.checker.util.PatternMatcher;
 
 /**
  * Class for checking the health of a JDBC compatible database.
@@ -37,7 +42,7 @@ public class JdbcHealthChecker extends HealthChecker {
 	}
 
 	public JdbcHealthChecker() {
-		super(options);
+		super(Type.jdbc, options);
 	}
 
 	/**
@@ -94,7 +99,7 @@ public class JdbcHealthChecker extends HealthChecker {
 	}
 
 	@Override
-	public void check(CommandLine commandLine) throws Exception {
+	public CheckResult check(CommandLine commandLine) throws Exception {
 
 		// get username
 		String username = commandLine.getOptionValue(JdbcParameter.USERNAME.toString());
@@ -112,29 +117,30 @@ public class JdbcHealthChecker extends HealthChecker {
 		String query = commandLine.getOptionValue(JdbcParameter.QUERY.toString());
 
 		// get connect timeout
-		int connectTimeout = (Integer) ElasticSearchParameter.CONNECT_TIMEOUT.getDefaultValue();
-		String connectTimeoutString = commandLine.getOptionValue(ElasticSearchParameter.CONNECT_TIMEOUT.toString());
+		int connectTimeout = (Integer) JdbcParameter.CONNECT_TIMEOUT.getDefaultValue();
+		String connectTimeoutString = commandLine.getOptionValue(JdbcParameter.CONNECT_TIMEOUT.toString());
 		if (StringUtils.isNotEmpty(connectTimeoutString)) {
 			connectTimeout = Integer.parseInt(connectTimeoutString);
 		}
 		
 		// get response timeout
-		int responseTimeout = (Integer) ElasticSearchParameter.RESPONSE_TIMEOUT.getDefaultValue();
-		String responseTimeoutString = commandLine.getOptionValue(ElasticSearchParameter.RESPONSE_TIMEOUT.toString());
+		int responseTimeout = (Integer) JdbcParameter.RESPONSE_TIMEOUT.getDefaultValue();
+		String responseTimeoutString = commandLine.getOptionValue(JdbcParameter.RESPONSE_TIMEOUT.toString());
 		if (StringUtils.isNotEmpty(responseTimeoutString)) {
-			responseTimeout = Integer.parseInt(connectTimeoutString);
+			responseTimeout = Integer.parseInt(responseTimeoutString);
 		}		
 		
 		// get pattern
-		Pattern pattern = (Pattern) JdbcParameter.PATTERN.getDefaultValue();
-		String patternString = commandLine.getOptionValue(JdbcParameter.PATTERN.toString());
-		if (StringUtils.isNotEmpty(patternString)) {
-			pattern = Pattern.compile(patternString);
-		}
+		PatternMatcher patternMatcher = getPatternMatcher(commandLine, JdbcParameter.PATTERN, JdbcParameter.EXCLUDE_PATTERN);
 
 		// load JDBC driver class
 		Class.forName(driver);
 		
+		// limit the timeouts to the remaining time of the deadline
+		CheckContext context = CheckContext.current();
+		connectTimeout = context.limitTimeout(connectTimeout);
+		responseTimeout = context.limitTimeout(responseTimeout);
+		
 		// create connection properties
 		Properties properties = new Properties();
 		properties.setProperty("user", username);
@@ -144,49 +150,75 @@ public class JdbcHealthChecker extends HealthChecker {
 
 		// get database connection
 		Connection connection = DriverManager.getConnection(url, properties);
-
-		// create prepared statement for SQL query
-		PreparedStatement statement = connection.prepareStatement(query);
+		try {
+
+			// create prepared statement for SQL query
+			final PreparedStatement statement = connection.prepareStatement(query);
+			
+			// the query must not run longer than the deadline
+			if (context.getDeadlineMillis() >= 0) {
+				statement.setQueryTimeout((int) Math.max(1, TimeUnit.MILLISECONDS.toSeconds(context.limitTimeout(responseTimeout) + 999)));
+			}
+			
+			// cancel the query when the deadline is exceeded
+			context.register(new Closeable() {
+				
+				public void close() throws IOException {
+					try {
+						statement.cancel();
+					}
+					catch (SQLException e) {
+						throw new IOException(e);
+					}
+				}
+			});
 		
-		// execute SQL query from prepared statement 
-		ResultSet resultSet = statement.executeQuery();
+			// execute SQL query from prepared statement 
+			ResultSet resultSet = statement.executeQuery();
 		
-		// get metadata from result set
-		ResultSetMetaData metadata = resultSet.getMetaData();
-
-		// get table header list with column names
-		List<String> headerList = new ArrayList<String>();
-		int columnCount = metadata.getColumnCount();
-		for (int i = 1; i < columnCount + 1; i++ ) {
-			String name = metadata.getColumnName(i);
-			headerList.add(name);
-		}
+			// get metadata from result set
+			ResultSetMetaData metadata = resultSet.getMetaData();
+
+			// get table header list with column names
+			List<String> headerList = new ArrayList<String>();
+			int columnCount = metadata.getColumnCount();
+			for (int i = 1; i < columnCount + 1; i++ ) {
+				String name = metadata.getColumnName(i);
+				headerList.add(name);
+			}
 
-		// get table row list with column values 
-		List<List<String>> rowList = new ArrayList<List<String>>();
-		while(resultSet.next()) {
-			List<String> columnList = new ArrayList<String>();
-			for (String column : headerList) {
-				String value = resultSet.getString(column);
-				if (value == null) {
-					value = "";
+			// get table row list with column values 
+			List<List<String>> rowList = new ArrayList<List<String>>();
+			while(resultSet.next()) {
+				List<String> columnList = new ArrayList<String>();
+				for (String column : headerList) {
+					String value = resultSet.getString(column);
+					if (value == null) {
+						value = "";
+					}
+					columnList.add(value);
 				}
-				columnList.add(value);
+				rowList.add(columnList);
 			}
-			rowList.add(columnList);
-		}
-
-		// get result as ASCII table
-		String result = ASCIITable.getInstance().getTable(headerList.toArray(new String[headerList.size()]), listWithSubListToArray(rowList));
-		if (StringUtils.isNotEmpty(result)) {
 
-			System.out.println(result);
+			// get result as ASCII table
+			String result = ASCIITable.getInstance().getTable(headerList.toArray(new String[headerList.size()]), listWithSubListToArray(rowList));
+			context.addBytesRead(result.length());
+			if (StringUtils.isNotEmpty(result)) {
 
-			// check if pattern matches the query result
-			Matcher matcher = pattern.matcher(result);
-			if (!matcher.find()) {
-				throw new Exception("The pattern does not match the query result");
+				// check if patterns match the query result
+				PatternMatcher.Scan scan = patternMatcher.scan(result);
+				if (!scan.isMatched()) {
+					return down(scan.getFailure("query result"), result);
+				}
 			}
+
+			return up(result);
+		}
+		finally {
+			
+			// close database connection
+			connection.close();
 		}
 	}
 }
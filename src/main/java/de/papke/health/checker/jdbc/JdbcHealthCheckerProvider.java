@@ -0,0 +1,22 @@
+package de.papke.health.checker.jdbc;
+
+import de.papke.health.checker.HealthChecker;
+import de.papke.health.checker.HealthCheckerProvider;
+import de.papke.health.checker.api.Type;
+
+/**
+ * Provider for the health checker of a JDBC compatible database.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class JdbcHealthCheckerProvider implements HealthCheckerProvider {
+	
+	public Type getType() {
+		return Type.jdbc;
+	}
+	
+	public HealthChecker create() throws Exception {
+		return new JdbcHealthChecker();
+	}
+}
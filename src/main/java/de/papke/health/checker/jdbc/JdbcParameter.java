@@ -24,7 +24,8 @@ public enum JdbcParameter implements Parameter {
 	URL("l", "url", "The JDBC database url to connect to", null),
 	QUERY("q", "query", "The SQL query to execute", null),
 	
-	PATTERN("x", "pattern", "The regex pattern to search in the SQL query result", Pattern.compile(".*"));
+	PATTERN("x", "pattern", "The regex pattern to search in the SQL query result, can be given multiple times", Pattern.compile(".*")),
+	EXCLUDE_PATTERN(null, "exclude-pattern", "The regex pattern which must not be found in the SQL query result, can be given multiple times", null);
 	
 	private final String shortName;
 	private final String longName;
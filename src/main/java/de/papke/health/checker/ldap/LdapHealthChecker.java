@@ -2,8 +2,6 @@ package de.papke.health.checker.ldap;
 
 import java.util.ArrayList;
 import java.util.List;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
 import javax.net.ssl.SSLSocketFactory;
 
@@ -25,6 +23,10 @@ import com.unboundid.ldap.sdk.controls.SimplePagedResultsControl;
 import com.unboundid.util.ssl.SSLUtil;
 
 import de.papke.health.checker.HealthChecker;
+import de.papke.health.checker.api.CheckContext;
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.api.Type;
+import de.papke.health.checker.util.PatternMatcher;
 
 /**
  * Class for checking the health of an LDAP server.
@@ -44,7 +46,7 @@ public class LdapHealthChecker extends HealthChecker {
 	}
 	
 	public LdapHealthChecker() {
-		super(options);
+		super(Type.ldap, options);
 	}
 
 	/**
@@ -90,6 +92,7 @@ public class LdapHealthChecker extends HealthChecker {
 	private List<SearchResultEntry> search(String baseDn, SearchScope searchScope, Filter filter, String[] attributes, int pageSize, LDAPConnection connection) throws Exception {
 	
 		List<SearchResultEntry> searchResultEntries = new ArrayList<SearchResultEntry>();
+		CheckContext context = CheckContext.current();
 		
 		// check if paging should be used
 		if (pageSize != -1) {
@@ -107,6 +110,9 @@ public class LdapHealthChecker extends HealthChecker {
 				controls[0] = new SimplePagedResultsControl(pageSize, cookie);
 				searchRequest.setControls(controls);
 				
+				// every page must be returned within the deadline
+				searchRequest.setResponseTimeoutMillis(context.limitTimeout((int) connection.getConnectionOptions().getResponseTimeoutMillis()));
+				
 				// execute LDAP search request
 				SearchResult searchResult = connection.search(searchRequest);
 	
@@ -138,7 +144,7 @@ public class LdapHealthChecker extends HealthChecker {
 	}	
 	
 	@Override
-	public void check(CommandLine commandLine) throws Exception {
+	public CheckResult check(CommandLine commandLine) throws Exception {
 		
 		// get username
 		String username = commandLine.getOptionValue(LdapParameter.USERNAME.toString());
@@ -163,7 +169,7 @@ public class LdapHealthChecker extends HealthChecker {
 		int responseTimeout = (Integer) LdapParameter.RESPONSE_TIMEOUT.getDefaultValue();
 		String responseTimeoutString = commandLine.getOptionValue(LdapParameter.RESPONSE_TIMEOUT.toString());
 		if (StringUtils.isNotEmpty(responseTimeoutString)) {
-			responseTimeout = Integer.parseInt(connectTimeoutString);
+			responseTimeout = Integer.parseInt(responseTimeoutString);
 		}
 		
 		// get search scope
@@ -200,34 +206,47 @@ public class LdapHealthChecker extends HealthChecker {
 		}
 		
 		// get pattern
-		Pattern pattern = (Pattern) LdapParameter.PATTERN.getDefaultValue();
-		String patternString = commandLine.getOptionValue(LdapParameter.PATTERN.toString());
-		if (StringUtils.isNotEmpty(patternString)) {
-			pattern = Pattern.compile(patternString);
-		}
+		PatternMatcher patternMatcher = getPatternMatcher(commandLine, LdapParameter.PATTERN, LdapParameter.EXCLUDE_PATTERN);
+		
+		// limit the timeouts to the remaining time of the deadline
+		CheckContext context = CheckContext.current();
+		connectTimeout = context.limitTimeout(connectTimeout);
+		responseTimeout = context.limitTimeout(responseTimeout);
 		
 		// get LDAP connection
 		LDAPConnection connection = getConnection(username, password, url, connectTimeout, responseTimeout);
 		
-		// execute LDAP search request
-		StringBuffer resultBuffer = new StringBuffer();
-		List<SearchResultEntry> searchResultEntryList = search(baseDn, searchScope, filter, attributes, pageSize, connection);
-		for (SearchResultEntry searchResultEntry : searchResultEntryList) {
-			resultBuffer.append(searchResultEntry.toLDIFString());
-			resultBuffer.append("\n");
-		}
-		
-		// get result as string
-		String result = resultBuffer.toString();
-		if (StringUtils.isNotEmpty(result)) {
+		try {
 			
-			System.out.println(result);
+			// close the connection when the deadline is exceeded
+			context.register(connection);
 			
-			// check if query result matches the given pattern
-			Matcher matcher = pattern.matcher(result);
-			if (!matcher.find()) {
-				throw new Exception("The pattern does not match the query result");
+			// execute LDAP search request
+			StringBuffer resultBuffer = new StringBuffer();
+			List<SearchResultEntry> searchResultEntryList = search(baseDn, searchScope, filter, attributes, pageSize, connection);
+			for (SearchResultEntry searchResultEntry : searchResultEntryList) {
+				resultBuffer.append(searchResultEntry.toLDIFString());
+				resultBuffer.append("\n");
 			}
+		
+			// get result as string
+			String result = resultBuffer.toString();
+			context.addBytesRead(result.length());
+			if (StringUtils.isNotEmpty(result)) {
+			
+				// check if query result matches the given patterns
+				PatternMatcher.Scan scan = patternMatcher.scan(result);
+				if (!scan.isMatched()) {
+					return down(scan.getFailure("query result"), result);
+				}
+			}
+
+			return up(result);
+		}
+		finally {
+			
+			// close LDAP connection
+			connection.close();
 		}
 	}
 }
@@ -0,0 +1,22 @@
+package de.papke.health.checker.ldap;
+
+import de.papke.health.checker.HealthChecker;
+import de.papke.health.checker.HealthCheckerProvider;
+import de.papke.health.checker.api.Type;
+
+/**
+ * Provider for the health checker of an LDAP server.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class LdapHealthCheckerProvider implements HealthCheckerProvider {
+	
+	public Type getType() {
+		return Type.ldap;
+	}
+	
+	public HealthChecker create() throws Exception {
+		return new LdapHealthChecker();
+	}
+}
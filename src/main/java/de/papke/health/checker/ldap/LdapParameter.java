@@ -31,7 +31,8 @@ public enum LdapParameter implements Parameter {
 	ATTRIBUTES("a", "attributes", "The returned attributes of the LDAP query", null),
 	PAGE_SIZE("x", "page-size", "The page size of the LDAP query", 1000),
 	
-	PATTERN("y", "pattern", "The regex pattern to search in the LDAP search result", Pattern.compile(".*"));
+	PATTERN("y", "pattern", "The regex pattern to search in the LDAP search result, can be given multiple times", Pattern.compile(".*")),
+	EXCLUDE_PATTERN(null, "exclude-pattern", "The regex pattern which must not be found in the LDAP search result, can be given multiple times", null);
 	
 	private final String shortName;
 	private final String longName;
@@ -0,0 +1,113 @@
+package de.papke.health.checker.metrics;
+
+import java.util.Map;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.api.Status;
+import de.papke.health.checker.api.Type;
+
+/**
+ * Class for the metrics of a single health check.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class CheckMetrics {
+	
+	private final String name;
+	private final Type type;
+	
+	private final LatencyHistogram duration = new LatencyHistogram();
+	private final ConcurrentMap<String, LatencyHistogram> phaseDurationMap = new ConcurrentHashMap<String, LatencyHistogram>();
+	private final AtomicLong upCount = new AtomicLong();
+	private final AtomicLong downCount = new AtomicLong();
+	private final AtomicLong timeoutCount = new AtomicLong();
+	private final AtomicLong bytesRead = new AtomicLong();
+	
+	private volatile boolean up;
+	
+	public CheckMetrics(String name, Type type) {
+		this.name = name;
+		this.type = type;
+	}
+	
+	/**
+	 * Method for recording the result of a health check run.
+	 * 
+	 * @param result
+	 * @param durationNanos
+	 */
+	public void record(CheckResult result, long durationNanos) {
+		
+		duration.record(durationNanos);
+		bytesRead.addAndGet(result.getBytesRead());
+		
+		for (Map.Entry<String, Long> phase : result.getPhases().entrySet()) {
+			getPhaseDuration(phase.getKey()).record(phase.getValue());
+		}
+		
+		up = result.isUp();
+		if (up) {
+			upCount.incrementAndGet();
+		}
+		else if (result.getStatus() == Status.TIMEOUT) {
+			timeoutCount.incrementAndGet();
+		}
+		else {
+			downCount.incrementAndGet();
+		}
+	}
+	
+	private LatencyHistogram getPhaseDuration(String phase) {
+		
+		LatencyHistogram histogram = phaseDurationMap.get(phase);
+		if (histogram == null) {
+			histogram = new LatencyHistogram();
+			LatencyHistogram existingHistogram = phaseDurationMap.putIfAbsent(phase, histogram);
+			if (existingHistogram != null) {
+				histogram = existingHistogram;
+			}
+		}
+		
+		return histogram;
+	}
+	
+	public String getName() {
+		return name;
+	}
+	
+	public Type getType() {
+		return type;
+	}
+	
+	public LatencyHistogram getDuration() {
+		return duration;
+	}
+	
+	public Map<String, LatencyHistogram> getPhaseDurations() {
+		return phaseDurationMap;
+	}
+	
+	public long getUpCount() {
+		return upCount.get();
+	}
+	
+	public long getDownCount() {
+		return downCount.get();
+	}
+	
+	public long getTimeoutCount() {
+		return timeoutCount.get();
+	}
+	
+	public long getBytesRead() {
+		return bytesRead.get();
+	}
+	
+	public boolean isUp() {
+		return up;
+	}
+}
@@ -0,0 +1,190 @@
+package de.papke.health.checker.metrics;
+
+import java.util.Arrays;
+import java.util.concurrent.atomic.AtomicLong;
+import java.util.concurrent.atomic.AtomicLongArray;
+
+/**
+ * Lock-free latency histogram with logarithmic buckets.
+ * 
+ * Like HdrHistogram, every power of two is split into a fixed number 
+ * of linear sub-buckets, so the relative error stays below 25% over the
+ * whole range from one microsecond up to several hours. These buckets
+ * are used for percentiles.
+ * 
+ * The exported bucket bounds (like the le bounds of Prometheus) do not 
+ * fall on the edges of the logarithmic buckets, so they have counters
+ * of their own, which are incremented when a value is recorded. Recording
+ * a value is a few atomic increments without any allocation.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class LatencyHistogram {
+	
+	private static final int SUB_BUCKET_BITS = 2;
+	private static final int SUB_BUCKETS = 1 << SUB_BUCKET_BITS;
+	private static final int MAX_EXPONENT = 40;
+	private static final int BUCKETS = SUB_BUCKETS + (MAX_EXPONENT - SUB_BUCKET_BITS + 1) * SUB_BUCKETS;
+	
+	private static final long NANOS_PER_MICRO = 1000;
+	private static final long[] BOUNDS_MICROS = new long[] { 
+		1000, 2500, 5000, 10000, 25000, 50000, 100000, 250000, 500000, 
+		1000000, 2500000, 5000000, 10000000, 30000000, 60000000 
+	};
+	private static final long[] BOUNDS_NANOS = new long[BOUNDS_MICROS.length];
+	
+	static {
+		for (int i = 0; i < BOUNDS_MICROS.length; i++) {
+			BOUNDS_NANOS[i] = BOUNDS_MICROS[i] * NANOS_PER_MICRO;
+		}
+	}
+	
+	private final AtomicLongArray counts = new AtomicLongArray(BUCKETS);
+	private final AtomicLongArray boundCounts = new AtomicLongArray(BOUNDS_MICROS.length);
+	private final AtomicLong count = new AtomicLong();
+	private final AtomicLong sumMicros = new AtomicLong();
+	
+	/**
+	 * Method for recording a duration.
+	 * 
+	 * @param nanos
+	 */
+	public void record(long nanos) {
+		
+		long micros = Math.max(0, nanos / NANOS_PER_MICRO);
+		
+		counts.incrementAndGet(getIndex(micros));
+		
+		// count the value for the lowest exported bound, which is not lower than the value
+		int boundIndex = getBoundIndex(nanos);
+		if (boundIndex < BOUNDS_NANOS.length) {
+			boundCounts.incrementAndGet(boundIndex);
+		}
+		
+		count.incrementAndGet();
+		sumMicros.addAndGet(micros);
+	}
+	
+	/**
+	 * Helper method for getting the bucket index of a value.
+	 * 
+	 * @param micros
+	 * @return
+	 */
+	private static int getIndex(long micros) {
+		
+		if (micros < SUB_BUCKETS) {
+			return (int) micros;
+		}
+		
+		int exponent = Math.min(63 - Long.numberOfLeadingZeros(micros), MAX_EXPONENT);
+		int subBucket = (int) ((micros >> (exponent - SUB_BUCKET_BITS)) & (SUB_BUCKETS - 1));
+		
+		return Math.min(BUCKETS - 1, SUB_BUCKETS + (exponent - SUB_BUCKET_BITS) * SUB_BUCKETS + subBucket);
+	}
+	
+	/**
+	 * Helper method for getting the index of the lowest exported bound, 
+	 * which is greater than or equal to a value.
+	 * 
+	 * @param nanos
+	 * @return the index or the number of bounds if the value is greater than all bounds
+	 */
+	private static int getBoundIndex(long nanos) {
+		int index = Arrays.binarySearch(BOUNDS_NANOS, nanos);
+		return index >= 0 ? index : -index - 1;
+	}
+	
+	/**
+	 * Method for getting the number of exported bounds.
+	 * 
+	 * @return
+	 */
+	public static int getBoundCount() {
+		return BOUNDS_MICROS.length;
+	}
+	
+	/**
+	 * Method for getting an exported bound in microseconds.
+	 * 
+	 * @param boundIndex
+	 * @return
+	 */
+	public static long getBoundMicros(int boundIndex) {
+		return BOUNDS_MICROS[boundIndex];
+	}
+	
+	/**
+	 * Helper method for getting the highest value (inclusive) 
+	 * of a bucket in microseconds.
+	 * 
+	 * @param index
+	 * @return
+	 */
+	private static long getUpperBound(int index) {
+		
+		if (index < SUB_BUCKETS) {
+			return index;
+		}
+		
+		int exponent = (index - SUB_BUCKETS) / SUB_BUCKETS + SUB_BUCKET_BITS;
+		int subBucket = (index - SUB_BUCKETS) % SUB_BUCKETS;
+		
+		return ((long) (SUB_BUCKETS + subBucket + 1) << (exponent - SUB_BUCKET_BITS)) - 1;
+	}
+	
+	/**
+	 * Method for getting the number of recorded values 
+	 * which are less than or equal to an exported bound.
+	 * 
+	 * @param boundIndex
+	 * @return
+	 */
+	public long getCumulativeCount(int boundIndex) {
+		
+		long cumulativeCount = 0;
+		
+		for (int i = 0; i <= boundIndex; i++) {
+			cumulativeCount += boundCounts.get(i);
+		}
+		
+		return cumulativeCount;
+	}
+	
+	/**
+	 * Method for getting the value at the given percentile
+	 * (0 to 100) in microseconds.
+	 * 
+	 * @param percentile
+	 * @return
+	 */
+	public long getPercentile(double percentile) {
+		
+		long total = 0;
+		long[] snapshot = new long[BUCKETS];
+		for (int i = 0; i < BUCKETS; i++) {
+			snapshot[i] = counts.get(i);
+			total += snapshot[i];
+		}
+		
+		long rank = (long) Math.ceil(percentile / 100 * total);
+		long cumulativeCount = 0;
+		for (int i = 0; i < BUCKETS; i++) {
+			cumulativeCount += snapshot[i];
+			if (cumulativeCount >= rank && cumulativeCount > 0) {
+				return getUpperBound(i);
+			}
+		}
+		
+		return 0;
+	}
+	
+	public long getCount() {
+		return count.get();
+	}
+	
+	public long getSumMicros() {
+		return sumMicros.get();
+	}
+}
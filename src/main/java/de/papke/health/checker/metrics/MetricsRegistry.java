@@ -0,0 +1,163 @@
+package de.papke.health.checker.metrics;
+
+import java.io.File;
+import java.io.FileOutputStream;
+import java.io.IOException;
+import java.io.OutputStream;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import de.papke.health.checker.api.CheckResult;
+
+/**
+ * Process wide registry for the metrics of all health checks.
+ * 
+ * The metrics are rendered in the Prometheus text exposition format
+ * and labelled by health checker type and health check name.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class MetricsRegistry {
+	
+	private static final MetricsRegistry INSTANCE = new MetricsRegistry();
+	
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	private static final String PREFIX = "health_check_";
+	private static final double MICROS_PER_SECOND = 1000000.0;
+	
+	private final ConcurrentMap<String, CheckMetrics> metricsMap = new ConcurrentSkipListMap<String, CheckMetrics>();
+	
+	public static MetricsRegistry getInstance() {
+		return INSTANCE;
+	}
+	
+	/**
+	 * Method for recording the result of a health check run.
+	 * 
+	 * @param result
+	 * @param durationNanos
+	 */
+	public void record(CheckResult result, long durationNanos) {
+		
+		String key = result.getType() + "|" + result.getName();
+		
+		CheckMetrics metrics = metricsMap.get(key);
+		if (metrics == null) {
+			metrics = new CheckMetrics(result.getName(), result.getType());
+			CheckMetrics existingMetrics = metricsMap.putIfAbsent(key, metrics);
+			if (existingMetrics != null) {
+				metrics = existingMetrics;
+			}
+		}
+		
+		metrics.record(result, durationNanos);
+	}
+	
+	/**
+	 * Method for rendering all metrics in the Prometheus text format.
+	 * 
+	 * @return
+	 */
+	public String render() {
+		
+		StringBuilder builder = new StringBuilder();
+		
+		appendHeader(builder, "duration_seconds", "histogram", "Duration of the health check runs");
+		for (CheckMetrics metrics : metricsMap.values()) {
+			appendHistogram(builder, "duration_seconds", getLabels(metrics, null), metrics.getDuration());
+		}
+		
+		appendHeader(builder, "phase_duration_seconds", "histogram", "Duration of the single phases of the health check runs");
+		for (CheckMetrics metrics : metricsMap.values()) {
+			for (Map.Entry<String, LatencyHistogram> phase : metrics.getPhaseDurations().entrySet()) {
+				appendHistogram(builder, "phase_duration_seconds", getLabels(metrics, "phase=\"" + escape(phase.getKey()) + "\""), phase.getValue());
+			}
+		}
+		
+		appendHeader(builder, "runs_total", "counter", "Number of health check runs by status");
+		for (CheckMetrics metrics : metricsMap.values()) {
+			appendSample(builder, "runs_total", getLabels(metrics, "status=\"UP\""), String.valueOf(metrics.getUpCount()));
+			appendSample(builder, "runs_total", getLabels(metrics, "status=\"DOWN\""), String.valueOf(metrics.getDownCount()));
+			appendSample(builder, "runs_total", getLabels(metrics, "status=\"TIMEOUT\""), String.valueOf(metrics.getTimeoutCount()));
+		}
+		
+		appendHeader(builder, "received_bytes_total", "counter", "Number of bytes received from the backends");
+		for (CheckMetrics metrics : metricsMap.values()) {
+			appendSample(builder, "received_bytes_total", getLabels(metrics, null), String.valueOf(metrics.getBytesRead()));
+		}
+		
+		appendHeader(builder, "up", "gauge", "Status of the last health check run (1 = UP, 0 = DOWN)");
+		for (CheckMetrics metrics : metricsMap.values()) {
+			appendSample(builder, "up", getLabels(metrics, null), metrics.isUp() ? "1" : "0");
+		}
+		
+		return builder.toString();
+	}
+	
+	/**
+	 * Method for writing all metrics to a file. The file is replaced
+	 * atomically, so readers never see a partially written file.
+	 * 
+	 * @param fileName
+	 * @throws IOException
+	 */
+	public void write(String fileName) throws IOException {
+		
+		File file = new File(fileName);
+		File tempFile = new File(file.getAbsolutePath() + ".tmp");
+		
+		OutputStream outputStream = new FileOutputStream(tempFile);
+		try {
+			outputStream.write(render().getBytes(CHARSET));
+		}
+		finally {
+			outputStream.close();
+		}
+		
+		if (!tempFile.renameTo(file)) {
+			throw new IOException("Could not write metrics file '" + fileName + "'");
+		}
+	}
+	
+	private static void appendHeader(StringBuilder builder, String name, String type, String help) {
+		builder.append("# HELP ").append(PREFIX).append(name).append(" ").append(help).append("\n");
+		builder.append("# TYPE ").append(PREFIX).append(name).append(" ").append(type).append("\n");
+	}
+	
+	private static void appendSample(StringBuilder builder, String name, String labels, String value) {
+		builder.append(PREFIX).append(name).append("{").append(labels).append("} ").append(value).append("\n");
+	}
+	
+	private static void appendHistogram(StringBuilder builder, String name, String labels, LatencyHistogram histogram) {
+		
+		for (int i = 0; i < LatencyHistogram.getBoundCount(); i++) {
+			appendSample(builder, name + "_bucket", labels + ",le=\"" + toSeconds(LatencyHistogram.getBoundMicros(i)) + "\"", String.valueOf(histogram.getCumulativeCount(i)));
+		}
+		
+		appendSample(builder, name + "_bucket", labels + ",le=\"+Inf\"", String.valueOf(histogram.getCount()));
+		appendSample(builder, name + "_sum", labels, toSeconds(histogram.getSumMicros()));
+		appendSample(builder, name + "_count", labels, String.valueOf(histogram.getCount()));
+	}
+	
+	private static String getLabels(CheckMetrics metrics, String extraLabels) {
+		
+		String labels = "type=\"" + metrics.getType() + "\",name=\"" + escape(metrics.getName()) + "\"";
+		if (extraLabels != null) {
+			labels += "," + extraLabels;
+		}
+		
+		return labels;
+	}
+	
+	private static String toSeconds(long micros) {
+		return String.format(Locale.ROOT, "%.6f", micros / MICROS_PER_SECOND).replaceAll("0+$", "").replaceAll("\\.$", ".0");
+	}
+	
+	private static String escape(String value) {
+		return String.valueOf(value).replace("\\", "\\\\").replace("\"", "\\\"").replace("\n", "\\n");
+	}
+}
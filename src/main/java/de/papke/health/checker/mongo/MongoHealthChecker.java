@@ -1,7 +1,7 @@
 package de.papke.health.checker.mongo;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
@@ -16,7 +16,10 @@ import com.mongodb.MongoClientOptions;
 import com.mongodb.MongoClientURI;
 
 import de.papke.health.checker.HealthChecker;
-import de.papke.health.checker.elasticsearch.ElasticSearchParameter;
+import de.papke.health.checker.api.CheckContext;
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.api.Type;
+import de.papke.health.checker.util.PatternMatcher;
 
 /**
  * Class for checking the health of a MongoDB server.
@@ -27,6 +30,8 @@ import de.papke.health.checker.elasticsearch.ElasticSearchParameter;
 public class MongoHealthChecker extends HealthChecker {
 	
 	private static Options options = new Options();
+	
+	private final ConcurrentMap<String, MongoClient> mongoClientCache = new ConcurrentHashMap<String, MongoClient>();
 
 	static {
 		for (MongoParameter parameter : MongoParameter.values()) {
@@ -35,11 +40,47 @@ public class MongoHealthChecker extends HealthChecker {
 	}
 	
 	public MongoHealthChecker() {
-		super(options);
+		super(Type.mongo, options);
+	}
+	
+	/**
+	 * Helper method for getting a client for the MongoDB server.
+	 * Clients are cached, so repeated checks reuse the connection pool
+	 * of the client.
+	 * 
+	 * @param url
+	 * @param connectTimeout
+	 * @param responseTimeout
+	 * @return
+	 * @throws Exception
+	 */
+	private MongoClient getMongoClient(String url, int connectTimeout, int responseTimeout) throws Exception {
+		
+		String key = url + "|" + connectTimeout + "|" + responseTimeout;
+		
+		MongoClient mongoClient = mongoClientCache.get(key);
+		if (mongoClient == null) {
+			
+			// create MongoDB options builder
+			MongoClientOptions.Builder builder = new MongoClientOptions.Builder()
+			.connectTimeout(connectTimeout)
+			.socketTimeout(responseTimeout);
+			
+			// create client for MongoDB server
+			mongoClient = new MongoClient(new MongoClientURI(url, builder));
+			
+			MongoClient existingMongoClient = mongoClientCache.putIfAbsent(key, mongoClient);
+			if (existingMongoClient != null) {
+				mongoClient.close();
+				mongoClient = existingMongoClient;
+			}
+		}
+		
+		return mongoClient;
 	}
 	
 	@Override
-	public void check(CommandLine commandLine) throws Exception {
+	public CheckResult check(CommandLine commandLine) throws Exception {
 		
 		// get url
 		String url = commandLine.getOptionValue(MongoParameter.URL.toString());
@@ -54,33 +95,29 @@ public class MongoHealthChecker extends HealthChecker {
 		String collection = commandLine.getOptionValue(MongoParameter.COLLECTION.toString());
 		
 		// get connect timeout
-		int connectTimeout = (Integer) ElasticSearchParameter.CONNECT_TIMEOUT.getDefaultValue();
-		String connectTimeoutString = commandLine.getOptionValue(ElasticSearchParameter.CONNECT_TIMEOUT.toString());
+		int connectTimeout = (Integer) MongoParameter.CONNECT_TIMEOUT.getDefaultValue();
+		String connectTimeoutString = commandLine.getOptionValue(MongoParameter.CONNECT_TIMEOUT.toString());
 		if (StringUtils.isNotEmpty(connectTimeoutString)) {
 			connectTimeout = Integer.parseInt(connectTimeoutString);
 		}
 		
 		// get response timeout
-		int responseTimeout = (Integer) ElasticSearchParameter.RESPONSE_TIMEOUT.getDefaultValue();
-		String responseTimeoutString = commandLine.getOptionValue(ElasticSearchParameter.RESPONSE_TIMEOUT.toString());
+		int responseTimeout = (Integer) MongoParameter.RESPONSE_TIMEOUT.getDefaultValue();
+		String responseTimeoutString = commandLine.getOptionValue(MongoParameter.RESPONSE_TIMEOUT.toString());
 		if (StringUtils.isNotEmpty(responseTimeoutString)) {
-			responseTimeout = Integer.parseInt(connectTimeoutString);
+			responseTimeout = Integer.parseInt(responseTimeoutString);
 		}		
 		
 		// get pattern 
-		Pattern pattern = (Pattern) MongoParameter.PATTERN.getDefaultValue();
-		String patternString = commandLine.getOptionValue(MongoParameter.PATTERN.toString());
-		if (StringUtils.isNotEmpty(patternString)) {
-			pattern = Pattern.compile(patternString);
-		}
+		PatternMatcher patternMatcher = getPatternMatcher(commandLine, MongoParameter.PATTERN, MongoParameter.EXCLUDE_PATTERN);
 		
-		// create MongoDB options builder
-		MongoClientOptions.Builder builder = new MongoClientOptions.Builder()
-		.connectTimeout(connectTimeout)
-		.socketTimeout(responseTimeout);
+		// limit the timeouts of the cached client to the deadline
+		CheckContext context = CheckContext.current();
+		connectTimeout = context.limitTimeoutToBudget(connectTimeout);
+		responseTimeout = context.limitTimeoutToBudget(responseTimeout);
 		
-		// create client for MongoDB server
-		MongoClient mongoClient = new MongoClient(new MongoClientURI(url, builder));
+		// get client for MongoDB server
+		MongoClient mongoClient = getMongoClient(url, connectTimeout, responseTimeout);
 		
 		// get MongoDB database
 		DB mongoDb = mongoClient.getDB(database);
@@ -93,21 +130,23 @@ public class MongoHealthChecker extends HealthChecker {
 		StringBuffer resultBuffer = new StringBuffer();
 		MongoCursor<Object> mongoCursor = mongoCollection.find(query).as(Object.class);
 		while(mongoCursor.hasNext()) {
+			context.checkDeadline();
 			resultBuffer.append(mongoCursor.next());
 			resultBuffer.append("\n");
 		}
 		
 		// get result as string
 		String result = resultBuffer.toString();
+		context.addBytesRead(result.length());
 		if (StringUtils.isNotEmpty(result)) {
 			
-			System.out.println(result);
-			
-			// check if query result matches the given pattern
-			Matcher matcher = pattern.matcher(result);
-			if (!matcher.find()) {
-				throw new Exception("The pattern does not match the query result");
+			// check if query result matches the given patterns
+			PatternMatcher.Scan scan = patternMatcher.scan(result);
+			if (!scan.isMatched()) {
+				return down(scan.getFailure("query result"), result);
 			}
 		}
+
+		return up(result);
 	}
 }
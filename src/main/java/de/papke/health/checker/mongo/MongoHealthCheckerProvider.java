@@ -0,0 +1,22 @@
+package de.papke.health.checker.mongo;
+
+import de.papke.health.checker.HealthChecker;
+import de.papke.health.checker.HealthCheckerProvider;
+import de.papke.health.checker.api.Type;
+
+/**
+ * Provider for the health checker of a MongoDB server.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class MongoHealthCheckerProvider implements HealthCheckerProvider {
+	
+	public Type getType() {
+		return Type.mongo;
+	}
+	
+	public HealthChecker create() throws Exception {
+		return new MongoHealthChecker();
+	}
+}
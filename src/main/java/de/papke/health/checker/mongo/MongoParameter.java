@@ -23,7 +23,8 @@ public enum MongoParameter implements Parameter {
 	COLLECTION("c", "collection", "The database collection for the query", null),
 	QUERY("q", "query", "The database query to execute", null),
 	
-	PATTERN("x", "pattern", "The regex pattern to search in the query result", Pattern.compile(".*"));
+	PATTERN("x", "pattern", "The regex pattern to search in the query result, can be given multiple times", Pattern.compile(".*")),
+	EXCLUDE_PATTERN(null, "exclude-pattern", "The regex pattern which must not be found in the query result, can be given multiple times", null);
 	
 	private final String shortName;
 	private final String longName;
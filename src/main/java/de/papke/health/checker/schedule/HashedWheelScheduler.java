@@ -0,0 +1,275 @@
+package de.papke.health.checker.schedule;
+
+import java.util.ArrayList;
+import java.util.List;
+import java.util.Queue;
+import java.util.Random;
+import java.util.concurrent.ConcurrentLinkedQueue;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicLong;
+
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.engine.CheckExecutor;
+import de.papke.health.checker.engine.HealthCheck;
+import de.papke.health.checker.engine.ResultListener;
+
+/**
+ * Scheduler for running a large number of health checks periodically.
+ * 
+ * The scheduler is built on a hashed timing wheel: a single timer thread
+ * advances over a fixed number of buckets, one per tick. Scheduling a 
+ * health check is a constant time insert into a bucket, no matter how many
+ * health checks are registered. Due health checks are handed over to a 
+ * check executor, so the timer thread never blocks on I/O.
+ * 
+ * Each run is delayed by a random jitter to spread the load on the
+ * backends. Failing health checks are retried with an exponential
+ * backoff up to a maximum delay.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class HashedWheelScheduler {
+	
+	public static final long DEFAULT_TICK_MILLIS = 10;
+	public static final int DEFAULT_WHEEL_SIZE = 1024;
+	
+	private static final double JITTER = 0.1;
+	private static final int MAX_BACKOFF_SHIFT = 6;
+	private static final long MAX_BACKOFF_MILLIS = TimeUnit.MINUTES.toMillis(5);
+	
+	private final CheckExecutor executor;
+	private final ResultListener listener;
+	private final long tickNanos;
+	private final int mask;
+	private final List<List<Task>> wheel;
+	private final Queue<Task> pendingTasks = new ConcurrentLinkedQueue<Task>();
+	private final Random random = new Random();
+	private final Thread timerThread;
+	
+	private volatile boolean running;
+	private volatile long startNanos;
+	private long tick;
+	
+	private final AtomicLong registered = new AtomicLong();
+	
+	// statistics, only written by the timer thread
+	private volatile long fired;
+	private volatile long totalDriftNanos;
+	private volatile long maxDriftNanos;
+	
+	/**
+	 * @param executor executor for running due health checks
+	 * @param listener listener for the results of all health checks
+	 */
+	public HashedWheelScheduler(CheckExecutor executor, ResultListener listener) {
+		this(executor, listener, DEFAULT_TICK_MILLIS, DEFAULT_WHEEL_SIZE);
+	}
+	
+	/**
+	 * @param executor executor for running due health checks
+	 * @param listener listener for the results of all health checks
+	 * @param tickMillis duration of a single tick
+	 * @param wheelSize number of buckets (rounded up to a power of two)
+	 */
+	public HashedWheelScheduler(CheckExecutor executor, ResultListener listener, long tickMillis, int wheelSize) {
+		
+		this.executor = executor;
+		this.listener = listener;
+		this.tickNanos = TimeUnit.MILLISECONDS.toNanos(tickMillis);
+		
+		int size = Integer.highestOneBit(Math.max(1, wheelSize - 1)) << 1;
+		this.mask = size - 1;
+		this.wheel = new ArrayList<List<Task>>(size);
+		for (int i = 0; i < size; i++) {
+			wheel.add(new ArrayList<Task>());
+		}
+		
+		this.timerThread = new Thread(new Runnable() {
+			
+			public void run() {
+				runTimer();
+			}
+		}, "hashed-wheel-scheduler");
+		this.timerThread.setDaemon(true);
+	}
+	
+	/**
+	 * Method for registering a health check, which should run
+	 * periodically. The first run starts after a random delay
+	 * within the interval.
+	 * 
+	 * @param healthCheck
+	 * @param intervalMillis
+	 */
+	public void register(HealthCheck healthCheck, long intervalMillis) {
+		
+		Task task = new Task(healthCheck, intervalMillis);
+		schedule(task, (long) (random.nextDouble() * intervalMillis));
+		
+		registered.incrementAndGet();
+	}
+	
+	public void start() {
+		startNanos = System.nanoTime();
+		running = true;
+		timerThread.start();
+	}
+	
+	public void stop() {
+		running = false;
+		timerThread.interrupt();
+	}
+	
+	/**
+	 * Helper method for scheduling the next run of a task.
+	 * The task is picked up by the timer thread on the next tick.
+	 * 
+	 * @param task
+	 * @param delayMillis
+	 */
+	private void schedule(Task task, long delayMillis) {
+		task.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(delayMillis);
+		pendingTasks.add(task);
+	}
+	
+	/**
+	 * Helper method for the main loop of the timer thread.
+	 */
+	private void runTimer() {
+		
+		while (running) {
+			
+			// wait for the end of the current tick
+			long sleepNanos = startNanos + (tick + 1) * tickNanos - System.nanoTime();
+			if (sleepNanos > 0) {
+				try {
+					TimeUnit.NANOSECONDS.sleep(sleepNanos);
+				}
+				catch (InterruptedException e) {
+					return;
+				}
+			}
+			
+			transferPendingTasks();
+			expireTasks(wheel.get((int) (tick & mask)));
+			
+			tick++;
+		}
+	}
+	
+	/**
+	 * Helper method for moving new tasks into their buckets.
+	 */
+	private void transferPendingTasks() {
+		
+		Task task;
+		while ((task = pendingTasks.poll()) != null) {
+			
+			// late tasks are put into the current bucket
+			long taskTick = Math.max(tick, (task.deadlineNanos - startNanos) / tickNanos);
+			
+			task.remainingRounds = (taskTick - tick) >> Integer.bitCount(mask);
+			wheel.get((int) (taskTick & mask)).add(task);
+		}
+	}
+	
+	/**
+	 * Helper method for running all due tasks of a bucket.
+	 * Tasks of later rounds stay in the bucket.
+	 * 
+	 * @param bucket
+	 */
+	private void expireTasks(List<Task> bucket) {
+		
+		int remaining = 0;
+		long now = System.nanoTime();
+		
+		for (int i = 0; i < bucket.size(); i++) {
+			
+			Task task = bucket.get(i);
+			
+			if (task.remainingRounds > 0) {
+				task.remainingRounds--;
+				bucket.set(remaining++, task);
+			}
+			else {
+				recordDrift(now - task.deadlineNanos);
+				executor.execute(task.healthCheck, task);
+			}
+		}
+		
+		// remove expired tasks from the bucket
+		for (int i = bucket.size() - 1; i >= remaining; i--) {
+			bucket.remove(i);
+		}
+	}
+	
+	private void recordDrift(long driftNanos) {
+		
+		fired++;
+		totalDriftNanos += driftNanos;
+		
+		if (driftNanos > maxDriftNanos) {
+			maxDriftNanos = driftNanos;
+		}
+	}
+	
+	public long getRegistered() {
+		return registered.get();
+	}
+	
+	public long getFired() {
+		return fired;
+	}
+	
+	public long getAverageDriftMicros() {
+		long currentFired = fired;
+		return currentFired > 0 ? TimeUnit.NANOSECONDS.toMicros(totalDriftNanos / currentFired) : 0;
+	}
+	
+	public long getMaxDriftMicros() {
+		return TimeUnit.NANOSECONDS.toMicros(maxDriftNanos);
+	}
+	
+	/**
+	 * Class for a registered health check together with its 
+	 * scheduling state.
+	 */
+	private class Task implements ResultListener {
+		
+		private final HealthCheck healthCheck;
+		private final long intervalMillis;
+		
+		private long deadlineNanos;
+		private long remainingRounds;
+		private int failures;
+		
+		private Task(HealthCheck healthCheck, long intervalMillis) {
+			this.healthCheck = healthCheck;
+			this.intervalMillis = intervalMillis;
+		}
+		
+		/**
+		 * Method for passing the result on and scheduling the next run
+		 * with jitter and exponential backoff for failing health checks.
+		 */
+		public void onResult(CheckResult result) {
+			
+			listener.onResult(result);
+			
+			failures = result.isUp() ? 0 : failures + 1;
+			
+			long delayMillis = intervalMillis << Math.min(failures, MAX_BACKOFF_SHIFT);
+			if (failures > 0) {
+				delayMillis = Math.max(intervalMillis, Math.min(delayMillis, MAX_BACKOFF_MILLIS));
+			}
+			
+			long jitterMillis = (long) ((random.nextDouble() * 2 - 1) * JITTER * delayMillis);
+			
+			if (running) {
+				schedule(this, delayMillis + jitterMillis);
+			}
+		}
+	}
+}
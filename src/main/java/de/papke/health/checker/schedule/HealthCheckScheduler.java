@@ -0,0 +1,140 @@
+package de.papke.health.checker.schedule;
+
+import java.io.IOException;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.Executors;
+import java.util.concurrent.ScheduledExecutorService;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicBoolean;
+import java.util.concurrent.atomic.AtomicLong;
+
+import org.apache.commons.lang3.StringUtils;
+
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.daemon.OutputRouter;
+import de.papke.health.checker.engine.HealthCheck;
+import de.papke.health.checker.metrics.MetricsRegistry;
+
+/**
+ * Class for running a health check periodically inside
+ * the same JVM.
+ * 
+ * The health checker object and the parsed command line are
+ * created only once and reused for every run, so class loading,
+ * JIT compilation and cached protocol clients are kept warm.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class HealthCheckScheduler {
+	
+	private final HealthCheck healthCheck;
+	private final long intervalMillis;
+	private final long repeat;
+	
+	private String metricsFile;
+	
+	private final AtomicLong runs = new AtomicLong();
+	private final AtomicBoolean lastRunSuccessful = new AtomicBoolean(true);
+	
+	/**
+	 * @param healthCheck
+	 * @param intervalMillis
+	 * @param repeat number of runs or -1 to run forever
+	 */
+	public HealthCheckScheduler(HealthCheck healthCheck, long intervalMillis, long repeat) {
+		this.healthCheck = healthCheck;
+		this.intervalMillis = intervalMillis;
+		this.repeat = repeat;
+	}
+	
+	/**
+	 * Method for setting a file, which gets the metrics
+	 * after every run.
+	 * 
+	 * @param metricsFile
+	 */
+	public void setMetricsFile(String metricsFile) {
+		this.metricsFile = StringUtils.isNotEmpty(metricsFile) ? metricsFile : null;
+	}
+	
+	/**
+	 * Method for running the health check periodically.
+	 * This method blocks until the configured number of runs
+	 * is reached or forever if no limit is given.
+	 * 
+	 * @return true if the last run was successful
+	 * @throws InterruptedException
+	 */
+	public boolean run() throws InterruptedException {
+		
+		final CountDownLatch finished = new CountDownLatch(1);
+		
+		ScheduledExecutorService executor = Executors.newSingleThreadScheduledExecutor();
+		try {
+			
+			// the results are printed to the client of a daemon request
+			executor.scheduleAtFixedRate(OutputRouter.inherit(new Runnable() {
+				
+				public void run() {
+					
+					// delayed runs may still be pending after the last run
+					if (repeat > 0 && runs.get() >= repeat) {
+						return;
+					}
+					
+					try {
+						runOnce();
+					}
+					catch (Throwable t) {
+						
+						// an error must not cancel the periodic task
+						lastRunSuccessful.set(false);
+						System.err.println("[run " + runs.get() + "] " + t);
+					}
+					finally {
+						if (repeat > 0 && runs.get() >= repeat) {
+							finished.countDown();
+						}
+					}
+				}
+			}), 0, intervalMillis, TimeUnit.MILLISECONDS);
+			
+			finished.await();
+		}
+		finally {
+			executor.shutdownNow();
+		}
+		
+		return lastRunSuccessful.get();
+	}
+	
+	/**
+	 * Helper method for executing a single run of the health check.
+	 * Failures are only printed, so the next run is still executed.
+	 */
+	private void runOnce() {
+		
+		long run = runs.incrementAndGet();
+		
+		CheckResult result = healthCheck.run();
+		lastRunSuccessful.set(result.isUp());
+		
+		if (result.isUp()) {
+			System.out.println("[run " + run + "] " + result);
+		}
+		else {
+			System.err.println("[run " + run + "] " + result);
+		}
+		
+		// write metrics of all runs so far
+		if (metricsFile != null) {
+			try {
+				MetricsRegistry.getInstance().write(metricsFile);
+			}
+			catch (IOException e) {
+				System.err.println(e.getMessage());
+			}
+		}
+	}
+}
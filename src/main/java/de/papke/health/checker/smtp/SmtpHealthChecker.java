@@ -1,9 +1,10 @@
 package de.papke.health.checker.smtp;
 
+import java.io.Closeable;
+import java.io.IOException;
 import java.util.Properties;
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
 
+import javax.mail.MessagingException;
 import javax.mail.Session;
 import javax.mail.Transport;
 
@@ -14,7 +15,10 @@ import org.apache.commons.lang3.StringUtils;
 import com.sun.mail.smtp.SMTPTransport;
 
 import de.papke.health.checker.HealthChecker;
-import de.papke.health.checker.ldap.LdapParameter;
+import de.papke.health.checker.api.CheckContext;
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.api.Type;
+import de.papke.health.checker.util.PatternMatcher;
 
 /**
  * Class for checking the health of a SMTP server.
@@ -33,11 +37,11 @@ public class SmtpHealthChecker extends HealthChecker {
 	}
 
 	public SmtpHealthChecker() {
-		super(options);
+		super(Type.smtp, options);
 	}
 
 	@Override
-	public void check(CommandLine commandLine) throws Exception {
+	public CheckResult check(CommandLine commandLine) throws Exception {
 		
 		// get hostname
 		String hostname = commandLine.getOptionValue(SmtpParameter.HOSTNAME.toString());
@@ -55,25 +59,26 @@ public class SmtpHealthChecker extends HealthChecker {
 		String password = commandLine.getOptionValue(SmtpParameter.PASSWORD.toString());
 		
 		// get connect timeout
-		int connectTimeout = (Integer) LdapParameter.CONNECT_TIMEOUT.getDefaultValue();
+		int connectTimeout = (Integer) SmtpParameter.CONNECT_TIMEOUT.getDefaultValue();
 		String connectTimeoutString = commandLine.getOptionValue(SmtpParameter.CONNECT_TIMEOUT.toString());
 		if (StringUtils.isNotEmpty(connectTimeoutString)) {
 			connectTimeout = Integer.parseInt(connectTimeoutString);
 		}
 		
 		// get response timeout
-		int responseTimeout = (Integer) LdapParameter.RESPONSE_TIMEOUT.getDefaultValue();
+		int responseTimeout = (Integer) SmtpParameter.RESPONSE_TIMEOUT.getDefaultValue();
 		String responseTimeoutString = commandLine.getOptionValue(SmtpParameter.RESPONSE_TIMEOUT.toString());
 		if (StringUtils.isNotEmpty(responseTimeoutString)) {
-			responseTimeout = Integer.parseInt(connectTimeoutString);
+			responseTimeout = Integer.parseInt(responseTimeoutString);
 		}		
 		
 		// get pattern
-		Pattern pattern = (Pattern) SmtpParameter.PATTERN.getDefaultValue();
-		String patternString = commandLine.getOptionValue(SmtpParameter.PATTERN.toString());
-		if (StringUtils.isNotEmpty(patternString)) {
-			pattern = Pattern.compile(patternString);
-		}
+		PatternMatcher patternMatcher = getPatternMatcher(commandLine, SmtpParameter.PATTERN, SmtpParameter.EXCLUDE_PATTERN);
+		
+		// limit the timeouts to the remaining time of the deadline
+		CheckContext context = CheckContext.current();
+		connectTimeout = context.limitTimeout(connectTimeout);
+		responseTimeout = context.limitTimeout(responseTimeout);
 		
 		// create mail properties
 		Properties properties = new Properties();
@@ -91,29 +96,50 @@ public class SmtpHealthChecker extends HealthChecker {
 			properties.setProperty("mail.password", password);
 		}
 		
-		// get mail session
-		Session session = Session.getDefaultInstance(properties);
+		// get mail session (the default instance would ignore changed properties on repeated checks)
+		Session session = Session.getInstance(properties);
 		
 		// get transport
-		Transport transport = session.getTransport();
+		final Transport transport = session.getTransport();
+		
+		// close the transport when the deadline is exceeded
+		context.register(new Closeable() {
+			
+			public void close() throws IOException {
+				try {
+					transport.close();
+				}
+				catch (MessagingException e) {
+					throw new IOException(e);
+				}
+			}
+		});
 
 		// connect to the SMTP server
 		transport.connect();
 		
-		// get SMTP server response
-		String response = "";
-		if (transport instanceof SMTPTransport) {
-			SMTPTransport smtpTransport = (SMTPTransport) transport;
-			response = smtpTransport.getLastServerResponse();
-		}
+		try {
+			
+			// get SMTP server response
+			String response = "";
+			if (transport instanceof SMTPTransport) {
+				SMTPTransport smtpTransport = (SMTPTransport) transport;
+				response = smtpTransport.getLastServerResponse();
+				context.addBytesRead(response.length());
+			}
 		
-		// check if pattern matches the query result
-		Matcher matcher = pattern.matcher(response);
-		if (!matcher.find()) {
-			throw new Exception("The pattern does not match the query result");
+			// check if patterns match the query result
+			PatternMatcher.Scan scan = patternMatcher.scan(response);
+			if (!scan.isMatched()) {
+				return down(scan.getFailure("query result"), null);
+			}
+
+			return up(null);
+		}
+		finally {
+			
+			// close transport
+			transport.close();
 		}
-		
-		// close transport
-		transport.close();
 	}
 }
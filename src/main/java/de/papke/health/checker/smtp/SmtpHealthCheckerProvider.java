@@ -0,0 +1,22 @@
+package de.papke.health.checker.smtp;
+
+import de.papke.health.checker.HealthChecker;
+import de.papke.health.checker.HealthCheckerProvider;
+import de.papke.health.checker.api.Type;
+
+/**
+ * Provider for the health checker of a SMTP server.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class SmtpHealthCheckerProvider implements HealthCheckerProvider {
+	
+	public Type getType() {
+		return Type.smtp;
+	}
+	
+	public HealthChecker create() throws Exception {
+		return new SmtpHealthChecker();
+	}
+}
@@ -24,7 +24,8 @@ public enum SmtpParameter implements Parameter {
 	USERNAME("u", "username", "The username of the SMTP server", null), 
 	PASSWORD("p", "password", "The password of the SMTP server", null),
 
-	PATTERN("x", "pattern", "The regex pattern to search in the SMTP server response", Pattern.compile("250.*"));
+	PATTERN("x", "pattern", "The regex pattern to search in the SMTP server response, can be given multiple times", Pattern.compile("250.*")),
+	EXCLUDE_PATTERN(null, "exclude-pattern", "The regex pattern which must not be found in the SMTP server response, can be given multiple times", null);
 	
 	private final String shortName;
 	private final String longName;
@@ -1,7 +1,7 @@
 package de.papke.health.checker.solr;
 
-import java.util.regex.Matcher;
-import java.util.regex.Pattern;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
 
 import org.apache.commons.cli.CommandLine;
 import org.apache.commons.cli.Options;
@@ -13,6 +13,10 @@ import org.apache.solr.client.solrj.util.ClientUtils;
 import org.apache.solr.common.SolrDocument;
 
 import de.papke.health.checker.HealthChecker;
+import de.papke.health.checker.api.CheckContext;
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.api.Type;
+import de.papke.health.checker.util.PatternMatcher;
 
 /**
  * Class for checking the health of a Solr server.
@@ -23,6 +27,8 @@ import de.papke.health.checker.HealthChecker;
 public class SolrHealthChecker extends HealthChecker {
 	
 	private static Options options = new Options();
+	
+	private final ConcurrentMap<String, CommonsHttpSolrServer> solrServerCache = new ConcurrentHashMap<String, CommonsHttpSolrServer>();
 
 	static {
 		for (SolrParameter parameter : SolrParameter.values()) {
@@ -31,11 +37,43 @@ public class SolrHealthChecker extends HealthChecker {
 	}
 	
 	public SolrHealthChecker() {
-		super(options);
+		super(Type.solr, options);
+	}
+	
+	/**
+	 * Helper method for getting a client for the solr server.
+	 * Clients are cached, so repeated checks reuse the HTTP connections
+	 * of the client.
+	 * 
+	 * @param url
+	 * @param connectTimeout
+	 * @param responseTimeout
+	 * @return
+	 * @throws Exception
+	 */
+	private CommonsHttpSolrServer getSolrServer(String url, int connectTimeout, int responseTimeout) throws Exception {
+		
+		String key = url + "|" + connectTimeout + "|" + responseTimeout;
+		
+		CommonsHttpSolrServer solrServer = solrServerCache.get(key);
+		if (solrServer == null) {
+			
+			// create solr server client
+			solrServer = new CommonsHttpSolrServer(url);
+			solrServer.setConnectionTimeout(connectTimeout);
+			solrServer.setSoTimeout(responseTimeout);
+			
+			CommonsHttpSolrServer existingSolrServer = solrServerCache.putIfAbsent(key, solrServer);
+			if (existingSolrServer != null) {
+				solrServer = existingSolrServer;
+			}
+		}
+		
+		return solrServer;
 	}
 	
 	@Override
-	public void check(CommandLine commandLine) throws Exception {
+	public CheckResult check(CommandLine commandLine) throws Exception {
 		
 		// get url
 		String url = commandLine.getOptionValue(SolrParameter.URL.toString());
@@ -54,20 +92,19 @@ public class SolrHealthChecker extends HealthChecker {
 		int responseTimeout = (Integer) SolrParameter.RESPONSE_TIMEOUT.getDefaultValue();
 		String responseTimeoutString = commandLine.getOptionValue(SolrParameter.RESPONSE_TIMEOUT.toString());
 		if (StringUtils.isNotEmpty(responseTimeoutString)) {
-			responseTimeout = Integer.parseInt(connectTimeoutString);
+			responseTimeout = Integer.parseInt(responseTimeoutString);
 		}
 		
 		// get pattern
-		Pattern pattern = (Pattern) SolrParameter.PATTERN.getDefaultValue();
-		String patternString = commandLine.getOptionValue(SolrParameter.PATTERN.toString());
-		if (StringUtils.isNotEmpty(patternString)) {
-			pattern = Pattern.compile(patternString);
-		}
+		PatternMatcher patternMatcher = getPatternMatcher(commandLine, SolrParameter.PATTERN, SolrParameter.EXCLUDE_PATTERN);
 		
-		// create solr server client
-		CommonsHttpSolrServer solrServer = new CommonsHttpSolrServer(url);
-		solrServer.setConnectionTimeout(connectTimeout);
-		solrServer.setSoTimeout(responseTimeout);
+		// limit the timeouts of the cached client to the deadline
+		CheckContext context = CheckContext.current();
+		connectTimeout = context.limitTimeoutToBudget(connectTimeout);
+		responseTimeout = context.limitTimeoutToBudget(responseTimeout);
+		
+		// get solr server client
+		CommonsHttpSolrServer solrServer = getSolrServer(url, connectTimeout, responseTimeout);
 		
 		// create solr query
 		SolrQuery solrQuery = new SolrQuery(query);
@@ -84,15 +121,16 @@ public class SolrHealthChecker extends HealthChecker {
 		
 		// get result as string
 		String result = resultBuffer.toString();
+		context.addBytesRead(result.length());
 		if (StringUtils.isNotEmpty(result)) {
-
-			System.out.println(result);
 			
-			// check if query result matches the given pattern
-			Matcher matcher = pattern.matcher(result);
-			if (!matcher.find()) {
-				throw new Exception("The pattern does not match the solr result text");
+			// check if query result matches the given patterns
+			PatternMatcher.Scan scan = patternMatcher.scan(result);
+			if (!scan.isMatched()) {
+				return down(scan.getFailure("solr result text"), result);
 			}
 		}
+
+		return up(result);
 	}
 }
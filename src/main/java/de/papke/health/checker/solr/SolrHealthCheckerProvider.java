@@ -0,0 +1,22 @@
+package de.papke.health.checker.solr;
+
+import de.papke.health.checker.HealthChecker;
+import de.papke.health.checker.HealthCheckerProvider;
+import de.papke.health.checker.api.Type;
+
+/**
+ * Provider for the health checker of a Solr server.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class SolrHealthCheckerProvider implements HealthCheckerProvider {
+	
+	public Type getType() {
+		return Type.solr;
+	}
+	
+	public HealthChecker create() throws Exception {
+		return new SolrHealthChecker();
+	}
+}
@@ -20,7 +20,8 @@ public enum SolrParameter implements Parameter {
 	CONNECT_TIMEOUT("c", "connect-timeout", "The connection timeout of the solr server (in milliseconds)", DEFAULT_CONNECT_TIMEOUT),
 	RESPONSE_TIMEOUT("r", "response-timeout", "The response timeout of the solr server (in milliseconds)", DEFAULT_RESPONSE_TIMEOUT),
 	
-	PATTERN("x", "pattern", "The regex pattern to search in the HTTP response text", Pattern.compile(".*"));
+	PATTERN("x", "pattern", "The regex pattern to search in the HTTP response text, can be given multiple times", Pattern.compile(".*")),
+	EXCLUDE_PATTERN(null, "exclude-pattern", "The regex pattern which must not be found in the HTTP response text, can be given multiple times", null);
 	
 	private final String shortName;
 	private final String longName;
@@ -0,0 +1,33 @@
+package de.papke.health.checker.status;
+
+import de.papke.health.checker.api.CheckResult;
+
+/**
+ * Class for the latest result of a health check together
+ * with its last failure.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class ResultEntry {
+	
+	private final CheckResult result;
+	private final CheckResult lastFailure;
+	
+	public ResultEntry(CheckResult result, CheckResult lastFailure) {
+		this.result = result;
+		this.lastFailure = lastFailure;
+	}
+	
+	public CheckResult getResult() {
+		return result;
+	}
+	
+	public CheckResult getLastFailure() {
+		return lastFailure;
+	}
+	
+	public long getAgeMillis() {
+		return System.currentTimeMillis() - result.getTimestamp();
+	}
+}
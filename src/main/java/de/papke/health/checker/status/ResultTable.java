@@ -0,0 +1,66 @@
+package de.papke.health.checker.status;
+
+import java.util.Collection;
+import java.util.concurrent.ConcurrentNavigableMap;
+import java.util.concurrent.ConcurrentSkipListMap;
+
+import de.papke.health.checker.api.CheckResult;
+
+/**
+ * Class for keeping the latest results of all health checks
+ * in memory, so they can be read without triggering a health check.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class ResultTable {
+	
+	private final ConcurrentNavigableMap<String, ResultEntry> entryMap = new ConcurrentSkipListMap<String, ResultEntry>();
+	
+	/**
+	 * Method for storing the latest result of a health check.
+	 * 
+	 * @param result
+	 */
+	public void update(CheckResult result) {
+		
+		ResultEntry previousEntry = entryMap.get(result.getName());
+		
+		CheckResult lastFailure = previousEntry != null ? previousEntry.getLastFailure() : null;
+		if (!result.isUp()) {
+			lastFailure = result;
+		}
+		
+		entryMap.put(result.getName(), new ResultEntry(result, lastFailure));
+	}
+	
+	public ResultEntry get(String name) {
+		return entryMap.get(name);
+	}
+	
+	public Collection<ResultEntry> getAll() {
+		return entryMap.values();
+	}
+	
+	/**
+	 * Method for checking if results for all health checks
+	 * are available and all of them are successful.
+	 * 
+	 * @param expectedSize
+	 * @return
+	 */
+	public boolean isHealthy(int expectedSize) {
+		
+		if (entryMap.size() < expectedSize) {
+			return false;
+		}
+		
+		for (ResultEntry entry : entryMap.values()) {
+			if (!entry.getResult().isUp()) {
+				return false;
+			}
+		}
+		
+		return true;
+	}
+}
@@ -0,0 +1,254 @@
+package de.papke.health.checker.status;
+
+import java.io.IOException;
+import java.io.OutputStream;
+import java.net.HttpURLConnection;
+import java.net.InetSocketAddress;
+import java.nio.charset.Charset;
+import java.util.Locale;
+import java.util.Map;
+import java.util.concurrent.ExecutorService;
+import java.util.concurrent.Executors;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.metrics.MetricsRegistry;
+
+/**
+ * Lightweight HTTP server for serving the cached health check results.
+ * 
+ * Requests are answered from the result table only, so probe traffic
+ * never triggers a health check against the backends. Available paths:
+ * 
+ * <ul>
+ * <li><code>/health</code> - overall status of all health checks</li>
+ * <li><code>/health/{name}</code> - status of a single health check</li>
+ * <li><code>/results</code> - all results as JSON</li>
+ * <li><code>/metrics</code> - metrics of all health check runs in the Prometheus text format</li>
+ * </ul>
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class StatusServer {
+	
+	private static final String HEALTH_PATH = "/health";
+	private static final String RESULTS_PATH = "/results";
+	private static final String METRICS_PATH = "/metrics";
+	private static final String METRICS_CONTENT_TYPE = "text/plain; version=0.0.4; charset=UTF-8";
+	private static final String PATH_SEPARATOR = "/";
+	private static final String TEXT_CONTENT_TYPE = "text/plain; charset=UTF-8";
+	private static final String JSON_CONTENT_TYPE = "application/json; charset=UTF-8";
+	private static final Charset CHARSET = Charset.forName("UTF-8");
+	private static final int THREADS = 4;
+	
+	private final ResultTable resultTable;
+	private final int expectedSize;
+	private final HttpServer httpServer;
+	private final ExecutorService executor;
+	
+	/**
+	 * @param port
+	 * @param resultTable
+	 * @param expectedSize number of health checks which have to report a result
+	 * @throws IOException
+	 */
+	public StatusServer(int port, ResultTable resultTable, int expectedSize) throws IOException {
+		
+		this.resultTable = resultTable;
+		this.expectedSize = expectedSize;
+		this.executor = Executors.newFixedThreadPool(THREADS);
+		
+		this.httpServer = HttpServer.create(new InetSocketAddress(port), 0);
+		this.httpServer.setExecutor(executor);
+		
+		this.httpServer.createContext(HEALTH_PATH, new HttpHandler() {
+			
+			public void handle(HttpExchange exchange) throws IOException {
+				handleHealth(exchange);
+			}
+		});
+		
+		this.httpServer.createContext(METRICS_PATH, new HttpHandler() {
+			
+			public void handle(HttpExchange exchange) throws IOException {
+				send(exchange, HttpURLConnection.HTTP_OK, METRICS_CONTENT_TYPE, MetricsRegistry.getInstance().render());
+			}
+		});
+		
+		this.httpServer.createContext(RESULTS_PATH, new HttpHandler() {
+			
+			public void handle(HttpExchange exchange) throws IOException {
+				send(exchange, HttpURLConnection.HTTP_OK, JSON_CONTENT_TYPE, getResultsJson());
+			}
+		});
+	}
+	
+	public void start() {
+		httpServer.start();
+	}
+	
+	public void stop() {
+		httpServer.stop(0);
+		executor.shutdownNow();
+	}
+	
+	public int getPort() {
+		return httpServer.getAddress().getPort();
+	}
+	
+	/**
+	 * Helper method for answering requests for the overall status
+	 * or the status of a single health check.
+	 * 
+	 * @param exchange
+	 * @throws IOException
+	 */
+	private void handleHealth(HttpExchange exchange) throws IOException {
+		
+		String path = exchange.getRequestURI().getPath();
+		
+		// the context also matches other paths with the same prefix
+		if (!path.equals(HEALTH_PATH) && !path.startsWith(HEALTH_PATH + PATH_SEPARATOR)) {
+			send(exchange, HttpURLConnection.HTTP_NOT_FOUND, TEXT_CONTENT_TYPE, "Unknown path '" + path + "'\n");
+			return;
+		}
+		
+		String name = path.length() > HEALTH_PATH.length() + 1 ? path.substring(HEALTH_PATH.length() + 1) : "";
+		
+		// overall status of all health checks
+		if (name.isEmpty() || name.equals(PATH_SEPARATOR)) {
+			boolean healthy = resultTable.isHealthy(expectedSize);
+			send(exchange, healthy ? HttpURLConnection.HTTP_OK : HttpURLConnection.HTTP_UNAVAILABLE, TEXT_CONTENT_TYPE, healthy ? "UP\n" : "DOWN\n");
+			return;
+		}
+		
+		// status of a single health check
+		ResultEntry entry = resultTable.get(name);
+		if (entry == null) {
+			send(exchange, HttpURLConnection.HTTP_NOT_FOUND, TEXT_CONTENT_TYPE, "Unknown health check '" + name + "'\n");
+		}
+		else {
+			CheckResult result = entry.getResult();
+			send(exchange, result.isUp() ? HttpURLConnection.HTTP_OK : HttpURLConnection.HTTP_UNAVAILABLE, TEXT_CONTENT_TYPE, result + "\n");
+		}
+	}
+	
+	/**
+	 * Helper method for rendering all results as JSON array.
+	 * 
+	 * @return
+	 */
+	private String getResultsJson() {
+		
+		StringBuilder builder = new StringBuilder("[");
+		
+		for (ResultEntry entry : resultTable.getAll()) {
+			
+			if (builder.length() > 1) {
+				builder.append(",");
+			}
+			
+			CheckResult result = entry.getResult();
+			CheckResult lastFailure = entry.getLastFailure();
+			
+			builder.append("{");
+			appendJson(builder, "name", result.getName()).append(",");
+			appendJson(builder, "type", String.valueOf(result.getType())).append(",");
+			appendJson(builder, "status", String.valueOf(result.getStatus())).append(",");
+			builder.append("\"ageMillis\":").append(entry.getAgeMillis()).append(",");
+			builder.append("\"latencyMillis\":").append(result.getLatencyMillis()).append(",");
+			appendJson(builder, "message", result.getMessage()).append(",");
+			appendJson(builder, "lastFailureMessage", lastFailure != null ? lastFailure.getMessage() : null).append(",");
+			builder.append("\"lastFailureAgeMillis\":").append(lastFailure != null ? String.valueOf(System.currentTimeMillis() - lastFailure.getTimestamp()) : "null").append(",");
+			
+			// durations of the single phases in milliseconds
+			builder.append("\"phases\":{");
+			String separator = "";
+			for (Map.Entry<String, Long> phase : result.getPhases().entrySet()) {
+				builder.append(separator).append("\"").append(phase.getKey()).append("\":");
+				builder.append(String.format(Locale.ROOT, "%.3f", phase.getValue() / 1000000.0));
+				separator = ",";
+			}
+			builder.append("}}");
+		}
+		
+		return builder.append("]\n").toString();
+	}
+	
+	/**
+	 * Helper method for appending a JSON string field.
+	 * 
+	 * @param builder
+	 * @param key
+	 * @param value
+	 * @return
+	 */
+	private static StringBuilder appendJson(StringBuilder builder, String key, String value) {
+		
+		builder.append("\"").append(key).append("\":");
+		
+		if (value == null) {
+			return builder.append("null");
+		}
+		
+		builder.append("\"");
+		for (int i = 0; i < value.length(); i++) {
+			char c = value.charAt(i);
+			switch (c) {
+			case '"':
+				builder.append("\\\"");
+				break;
+			case '\\':
+				builder.append("\\\\");
+				break;
+			case '\n':
+				builder.append("\\n");
+				break;
+			case '\r':
+				builder.append("\\r");
+				break;
+			case '\t':
+				builder.append("\\t");
+				break;
+			default:
+				if (c < 0x20) {
+					builder.append(String.format("\\u%04x", (int) c));
+				}
+				else {
+					builder.append(c);
+				}
+			}
+		}
+		
+		return builder.append("\"");
+	}
+	
+	/**
+	 * Helper method for sending a response.
+	 * 
+	 * @param exchange
+	 * @param statusCode
+	 * @param contentType
+	 * @param body
+	 * @throws IOException
+	 */
+	private static void send(HttpExchange exchange, int statusCode, String contentType, String body) throws IOException {
+		
+		byte[] bytes = body.getBytes(CHARSET);
+		
+		exchange.getResponseHeaders().set("Content-Type", contentType);
+		exchange.sendResponseHeaders(statusCode, bytes.length);
+		
+		OutputStream outputStream = exchange.getResponseBody();
+		try {
+			outputStream.write(bytes);
+		}
+		finally {
+			outputStream.close();
+		}
+	}
+}
@@ -0,0 +1,193 @@
+package de.papke.health.checker.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.LinkedList;
+import java.util.List;
+import java.util.Map;
+import java.util.Queue;
+import java.util.TreeMap;
+
+/**
+ * Aho-Corasick automaton for finding many literal words in a single
+ * pass over a text.
+ * 
+ * The automaton is fed one character at a time, so the text can be
+ * split into chunks (e.g. windows of a stream) as long as every
+ * character is fed exactly once. The automaton is immutable and can
+ * be shared by threads, the state of a search is a plain int.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class AhoCorasick {
+	
+	public static final int INITIAL_STATE = 0;
+	
+	private static final int ROOT_TABLE_SIZE = 128;
+	
+	private final char[][] keys;
+	private final int[][] targets;
+	private final int[] fail;
+	private final int[][] outputs;
+	private final boolean[] accepting;
+	
+	// transitions of the initial state for ASCII characters
+	private final int[] rootTable = new int[ROOT_TABLE_SIZE];
+	
+	/**
+	 * @param wordList the non-empty words to search for
+	 */
+	public AhoCorasick(List<String> wordList) {
+		
+		// build the trie
+		List<TreeMap<Character, Integer>> trie = new ArrayList<TreeMap<Character, Integer>>();
+		List<List<Integer>> outputList = new ArrayList<List<Integer>>();
+		trie.add(new TreeMap<Character, Integer>());
+		outputList.add(new ArrayList<Integer>());
+		
+		for (int i = 0; i < wordList.size(); i++) {
+			
+			String word = wordList.get(i);
+			int state = INITIAL_STATE;
+			
+			for (int j = 0; j < word.length(); j++) {
+				Integer next = trie.get(state).get(word.charAt(j));
+				if (next == null) {
+					next = trie.size();
+					trie.get(state).put(word.charAt(j), next);
+					trie.add(new TreeMap<Character, Integer>());
+					outputList.add(new ArrayList<Integer>());
+				}
+				state = next;
+			}
+			
+			outputList.get(state).add(i);
+		}
+		
+		// convert the trie to arrays
+		int size = trie.size();
+		keys = new char[size][];
+		targets = new int[size][];
+		fail = new int[size];
+		outputs = new int[size][];
+		
+		for (int state = 0; state < size; state++) {
+			
+			Map<Character, Integer> transitions = trie.get(state);
+			keys[state] = new char[transitions.size()];
+			targets[state] = new int[transitions.size()];
+			
+			int index = 0;
+			for (Map.Entry<Character, Integer> transition : transitions.entrySet()) {
+				keys[state][index] = transition.getKey();
+				targets[state][index] = transition.getValue();
+				index++;
+			}
+		}
+		
+		// compute the failure links breadth first, words ending in
+		// the state of a failure link end in the state as well
+		Queue<Integer> queue = new LinkedList<Integer>();
+		for (int target : targets[INITIAL_STATE]) {
+			fail[target] = INITIAL_STATE;
+			queue.add(target);
+		}
+		
+		while (!queue.isEmpty()) {
+			
+			int state = queue.poll();
+			outputList.get(state).addAll(outputList.get(fail[state]));
+			
+			for (int i = 0; i < keys[state].length; i++) {
+				
+				int target = targets[state][i];
+				
+				int fallback = fail[state];
+				int next;
+				while ((next = getTransition(fallback, keys[state][i])) < 0 && fallback != INITIAL_STATE) {
+					fallback = fail[fallback];
+				}
+				fail[target] = next >= 0 ? next : INITIAL_STATE;
+				
+				queue.add(target);
+			}
+		}
+		
+		accepting = new boolean[size];
+		for (int state = 0; state < size; state++) {
+			List<Integer> stateOutputList = outputList.get(state);
+			accepting[state] = !stateOutputList.isEmpty();
+			outputs[state] = new int[stateOutputList.size()];
+			for (int i = 0; i < outputs[state].length; i++) {
+				outputs[state][i] = stateOutputList.get(i);
+			}
+		}
+		
+		for (char c = 0; c < ROOT_TABLE_SIZE; c++) {
+			rootTable[c] = Math.max(INITIAL_STATE, getTransition(INITIAL_STATE, c));
+		}
+	}
+	
+	/**
+	 * Helper method for getting the direct transition of a state.
+	 * 
+	 * @param state
+	 * @param c
+	 * @return the next state or -1 if there is no transition
+	 */
+	private int getTransition(int state, char c) {
+		int index = Arrays.binarySearch(keys[state], c);
+		return index >= 0 ? targets[state][index] : -1;
+	}
+	
+	/**
+	 * Method for feeding the next character of the text to the automaton.
+	 * 
+	 * @param state
+	 * @param c
+	 * @return the next state
+	 */
+	public int next(int state, char c) {
+		
+		// most characters of a text do not continue a word
+		if (state == INITIAL_STATE && c < ROOT_TABLE_SIZE) {
+			return rootTable[c];
+		}
+		
+		while (state != INITIAL_STATE) {
+			int next = getTransition(state, c);
+			if (next >= 0) {
+				return next;
+			}
+			state = fail[state];
+		}
+		
+		if (c < ROOT_TABLE_SIZE) {
+			return rootTable[c];
+		}
+		
+		return Math.max(INITIAL_STATE, getTransition(INITIAL_STATE, c));
+	}
+	
+	/**
+	 * Method for checking if words end at the current character.
+	 * 
+	 * @param state
+	 * @return
+	 */
+	public boolean isAccepting(int state) {
+		return accepting[state];
+	}
+	
+	/**
+	 * Method for getting the indexes of all words ending
+	 * at the current character.
+	 * 
+	 * @param state
+	 * @return
+	 */
+	public int[] getOutputs(int state) {
+		return outputs[state];
+	}
+}
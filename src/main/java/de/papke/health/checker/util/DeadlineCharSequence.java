@@ -0,0 +1,71 @@
+package de.papke.health.checker.util;
+
+/**
+ * Char sequence which aborts the pattern evaluation running on it 
+ * when its deadline is exceeded.
+ * 
+ * The regex engine of java.util.regex reads every character through
+ * charAt, also while backtracking, so counting these calls bounds the 
+ * time of any regex without changing its semantics. The clock is only 
+ * read every few thousand characters.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public final class DeadlineCharSequence implements CharSequence {
+	
+	private static final int CHECK_INTERVAL = 4096;
+	
+	private final CharSequence text;
+	private final long deadlineNanos;
+	private final long budgetMillis;
+	private int countdown = CHECK_INTERVAL;
+	
+	/**
+	 * @param text
+	 * @param deadlineNanos the deadline as value of System.nanoTime()
+	 * @param budgetMillis the time budget for the message of the exception
+	 */
+	public DeadlineCharSequence(CharSequence text, long deadlineNanos, long budgetMillis) {
+		this.text = text;
+		this.deadlineNanos = deadlineNanos;
+		this.budgetMillis = budgetMillis;
+	}
+	
+	@Override
+	public char charAt(int index) {
+		
+		if (--countdown == 0) {
+			countdown = CHECK_INTERVAL;
+			checkDeadline();
+		}
+		
+		return text.charAt(index);
+	}
+	
+	/**
+	 * Method for checking if the deadline has been exceeded.
+	 * 
+	 * @throws PatternTimeoutException
+	 */
+	public void checkDeadline() throws PatternTimeoutException {
+		if (System.nanoTime() - deadlineNanos > 0) {
+			throw new PatternTimeoutException(budgetMillis);
+		}
+	}
+	
+	@Override
+	public int length() {
+		return text.length();
+	}
+	
+	@Override
+	public CharSequence subSequence(int start, int end) {
+		return new DeadlineCharSequence(text.subSequence(start, end), deadlineNanos, budgetMillis);
+	}
+	
+	@Override
+	public String toString() {
+		return text.toString();
+	}
+}
@@ -0,0 +1,101 @@
+package de.papke.health.checker.util;
+
+import java.io.FilterInputStream;
+import java.io.IOException;
+import java.io.InputStream;
+
+/**
+ * Input stream which counts the bytes read from the underlying stream
+ * and ends after a maximum number of bytes.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class LimitedInputStream extends FilterInputStream {
+	
+	private final long maxBytes;
+	private long count;
+	private boolean ended;
+	
+	/**
+	 * @param inputStream
+	 * @param maxBytes the maximum number of bytes or -1 for no limit
+	 */
+	public LimitedInputStream(InputStream inputStream, long maxBytes) {
+		super(inputStream);
+		this.maxBytes = maxBytes;
+	}
+	
+	@Override
+	public int read() throws IOException {
+		
+		if (isLimitReached()) {
+			return -1;
+		}
+		
+		int b = super.read();
+		if (b == -1) {
+			ended = true;
+		}
+		else {
+			count++;
+		}
+		
+		return b;
+	}
+	
+	@Override
+	public int read(byte[] buffer, int offset, int length) throws IOException {
+		
+		if (isLimitReached()) {
+			return -1;
+		}
+		
+		if (maxBytes >= 0) {
+			length = (int) Math.min(length, maxBytes - count);
+		}
+		
+		int read = super.read(buffer, offset, length);
+		if (read == -1) {
+			ended = true;
+		}
+		else {
+			count += read;
+		}
+		
+		return read;
+	}
+	
+	@Override
+	public long skip(long n) throws IOException {
+		throw new IOException("Skipping is not supported");
+	}
+	
+	@Override
+	public boolean markSupported() {
+		return false;
+	}
+	
+	/**
+	 * Method for getting the number of bytes read so far.
+	 * 
+	 * @return
+	 */
+	public long getCount() {
+		return count;
+	}
+	
+	public boolean isLimitReached() {
+		return maxBytes >= 0 && count >= maxBytes;
+	}
+	
+	/**
+	 * Method for checking if the underlying stream has been read 
+	 * to its end.
+	 * 
+	 * @return
+	 */
+	public boolean isEnded() {
+		return ended;
+	}
+}
@@ -0,0 +1,660 @@
+package de.papke.health.checker.util;
+
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.List;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.ConcurrentMap;
+import java.util.concurrent.TimeUnit;
+import java.util.regex.Matcher;
+import java.util.regex.Pattern;
+
+import de.papke.health.checker.api.CheckContext;
+
+/**
+ * Class for searching many patterns, which must be found (includes)
+ * or must not be found (excludes), in a single pass over a text.
+ * 
+ * Literal patterns and the literal prefixes of regex patterns are 
+ * compiled into an Aho-Corasick automaton, regex patterns are only
+ * tried where their prefix has been found. Regex patterns without 
+ * prefix are combined into one alternation, so the text is only 
+ * scanned once for all of them. Patterns which cannot be combined 
+ * (e.g. with back references) are searched one by one.
+ * 
+ * The compiled matcher is immutable and can be shared by threads,
+ * a single search keeps its state in a scan.
+ * 
+ * The automaton runs in linear time. The regexes run on a guarded text,
+ * which aborts the scan when the pattern budget of the health check on
+ * the current thread is exceeded.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class PatternMatcher {
+	
+	private static final String META_CHARACTERS = "\\^$.|?*+()[]{}";
+	private static final String QUOTE_START = "\\Q";
+	private static final String QUOTE_END = "\\E";
+	
+	// back references, named groups and comments do not survive the combination
+	private static final Pattern NOT_COMBINABLE = Pattern.compile("\\\\[1-9]|\\\\k<|\\(\\?<[a-zA-Z]|\\(\\?[a-zA-Z]*x");
+	
+	// the end of the text (\z), whose matches do not report that they require the end
+	private static final Pattern TEXT_END = Pattern.compile("\\\\z");
+	
+	private static final String QUANTIFIERS = "?*+{";
+	
+	private static final int MIN_PREFIX_LENGTH = 3;
+	private static final int MAX_COMBINED = 64;
+	
+	private final List<String> patternList = new ArrayList<String>();
+	private final int includeCount;
+	
+	// literal patterns and prefixes of regex patterns
+	private final AhoCorasick automaton;
+	private final int[] wordIndexes;
+	private final int[] wordLengths;
+	
+	// regex patterns
+	private final Pattern[] regexes;
+	private final boolean[] textEnds;
+	private final int[] combinedIndexes;
+	private final int[] separateIndexes;
+	private final ConcurrentMap<Long, Combination> combinationCache = new ConcurrentHashMap<Long, Combination>();
+	
+	/**
+	 * Class for the alternation of some of the combined regex patterns.
+	 */
+	private static class Combination {
+		
+		private final Pattern pattern;
+		private final int[] indexes;
+		private final int[] groups;
+		
+		private Combination(Pattern pattern, int[] indexes, int[] groups) {
+			this.pattern = pattern;
+			this.indexes = indexes;
+			this.groups = groups;
+		}
+	}
+	
+	/**
+	 * @param includeList the patterns which must be found
+	 * @param excludeList the patterns which must not be found
+	 */
+	public PatternMatcher(List<String> includeList, List<String> excludeList) {
+		
+		patternList.addAll(includeList);
+		patternList.addAll(excludeList);
+		includeCount = includeList.size();
+		
+		regexes = new Pattern[patternList.size()];
+		textEnds = new boolean[patternList.size()];
+		List<String> wordList = new ArrayList<String>();
+		List<Integer> wordIndexList = new ArrayList<Integer>();
+		List<Integer> combinedIndexList = new ArrayList<Integer>();
+		List<Integer> separateIndexList = new ArrayList<Integer>();
+		
+		// sort the patterns into literals, prefixed, combined and separate regexes
+		for (int i = 0; i < patternList.size(); i++) {
+			
+			String pattern = patternList.get(i);
+			String literal = getLiteral(pattern);
+			
+			if (literal != null) {
+				wordList.add(literal);
+				wordIndexList.add(i);
+				continue;
+			}
+			
+			regexes[i] = Pattern.compile(pattern);
+			textEnds[i] = TEXT_END.matcher(pattern).find();
+			
+			String prefix = getPrefix(pattern);
+			if (prefix != null) {
+				wordList.add(prefix);
+				wordIndexList.add(i);
+			}
+			else if (combinedIndexList.size() < MAX_COMBINED && isCombinable(pattern)) {
+				combinedIndexList.add(i);
+			}
+			else {
+				separateIndexList.add(i);
+			}
+		}
+		
+		automaton = wordList.isEmpty() ? null : new AhoCorasick(wordList);
+		wordIndexes = toArray(wordIndexList);
+		combinedIndexes = toArray(combinedIndexList);
+		separateIndexes = toArray(separateIndexList);
+		
+		wordLengths = new int[wordList.size()];
+		for (int i = 0; i < wordLengths.length; i++) {
+			wordLengths[i] = wordList.get(i).length();
+		}
+	}
+	
+	/**
+	 * Helper method for getting the text of a literal pattern.
+	 * 
+	 * @param pattern
+	 * @return the text or null if the pattern is no literal
+	 */
+	private static String getLiteral(String pattern) {
+		
+		// quoted pattern
+		if (pattern.startsWith(QUOTE_START) && pattern.indexOf(QUOTE_END) == pattern.length() - QUOTE_END.length() && pattern.length() > QUOTE_START.length() + QUOTE_END.length()) {
+			return pattern.substring(QUOTE_START.length(), pattern.length() - QUOTE_END.length());
+		}
+		
+		if (pattern.isEmpty()) {
+			return null;
+		}
+		
+		for (int i = 0; i < pattern.length(); i++) {
+			if (META_CHARACTERS.indexOf(pattern.charAt(i)) >= 0) {
+				return null;
+			}
+		}
+		
+		return pattern;
+	}
+	
+	/**
+	 * Helper method for getting the literal text every match of a 
+	 * regex pattern starts with.
+	 * 
+	 * @param pattern
+	 * @return the prefix or null if the pattern has no usable prefix
+	 */
+	private static String getPrefix(String pattern) {
+		
+		// an alternative may start without the prefix
+		if (pattern.indexOf('|') >= 0) {
+			return null;
+		}
+		
+		int end = 0;
+		while (end < pattern.length() && META_CHARACTERS.indexOf(pattern.charAt(end)) < 0) {
+			end++;
+		}
+		
+		// a quantifier applies to the last literal character
+		if (end < pattern.length() && QUANTIFIERS.indexOf(pattern.charAt(end)) >= 0) {
+			end--;
+		}
+		
+		return end >= MIN_PREFIX_LENGTH ? pattern.substring(0, end) : null;
+	}
+	
+	/**
+	 * Helper method for checking if a regex pattern can be combined with
+	 * others into one alternation. A quote without end would swallow the 
+	 * closing parenthesis of its group.
+	 * 
+	 * @param pattern
+	 * @return
+	 */
+	private static boolean isCombinable(String pattern) {
+		
+		if (NOT_COMBINABLE.matcher(pattern).find()) {
+			return false;
+		}
+		
+		// skip the escaped characters and look for the end of every quote
+		int i = 0;
+		while (i < pattern.length()) {
+			if (pattern.startsWith(QUOTE_START, i)) {
+				int end = pattern.indexOf(QUOTE_END, i + QUOTE_START.length());
+				if (end < 0) {
+					return false;
+				}
+				i = end + QUOTE_END.length();
+			}
+			else {
+				i += pattern.charAt(i) == '\\' ? 2 : 1;
+			}
+		}
+		
+		return true;
+	}
+	
+	private static int[] toArray(List<Integer> list) {
+		int[] array = new int[list.size()];
+		for (int i = 0; i < array.length; i++) {
+			array[i] = list.get(i);
+		}
+		return array;
+	}
+	
+	/**
+	 * Helper method for getting the alternation of the combined regex
+	 * patterns with the given bits set in the mask. Patterns which have
+	 * been found are removed from the alternation during a scan.
+	 * 
+	 * @param mask
+	 * @return
+	 */
+	private Combination getCombination(long mask) {
+		
+		Combination combination = combinationCache.get(mask);
+		if (combination == null) {
+			
+			List<Integer> indexList = new ArrayList<Integer>();
+			List<Integer> groupList = new ArrayList<Integer>();
+			StringBuilder patternBuilder = new StringBuilder();
+			int group = 1;
+			
+			for (int i = 0; i < combinedIndexes.length; i++) {
+				if ((mask & (1L << i)) != 0) {
+					
+					int index = combinedIndexes[i];
+					if (patternBuilder.length() > 0) {
+						patternBuilder.append('|');
+					}
+					patternBuilder.append('(').append(regexes[index].pattern()).append(')');
+					
+					indexList.add(index);
+					groupList.add(group);
+					group += 1 + regexes[index].matcher("").groupCount();
+				}
+			}
+			
+			// a single regex keeps the optimizations of its own pattern
+			if (indexList.size() == 1) {
+				combination = new Combination(regexes[indexList.get(0)], toArray(indexList), new int[] { 0 });
+			}
+			else {
+				combination = new Combination(Pattern.compile(patternBuilder.toString()), toArray(indexList), toArray(groupList));
+			}
+			combinationCache.putIfAbsent(mask, combination);
+		}
+		
+		return combination;
+	}
+	
+	/**
+	 * Method for starting a new search with the pattern budget of the 
+	 * health check on the current thread.
+	 * 
+	 * @return
+	 */
+	public Scan newScan() {
+		return new Scan(CheckContext.current().getPatternBudgetMillis());
+	}
+	
+	/**
+	 * Method for starting a new search with the given pattern budget, 
+	 * e.g. for health checks, which do not run on their own thread.
+	 * 
+	 * @param budgetMillis the budget in milliseconds or -1 if there is no budget
+	 * @return
+	 */
+	public Scan newScan(long budgetMillis) {
+		return new Scan(budgetMillis);
+	}
+	
+	/**
+	 * Method for searching all patterns in a complete text.
+	 * 
+	 * @param text
+	 * @return the finished scan
+	 * @throws PatternTimeoutException if the regexes exceed the time budget
+	 */
+	public Scan scan(CharSequence text) throws PatternTimeoutException {
+		Scan scan = newScan();
+		scan.scan(text, 0, true);
+		return scan;
+	}
+	
+	/**
+	 * Class for the state of a single search, which can be fed
+	 * with consecutive windows of a text.
+	 */
+	public class Scan {
+		
+		private final boolean[] found = new boolean[patternList.size()];
+		private int missingIncludes = includeCount;
+		private int foundExclude = -1;
+		private int missingWords = wordIndexes.length;
+		private int wordState = AhoCorasick.INITIAL_STATE;
+		private Matcher[] matchers;
+		
+		// prefixes at the end of the previous window, which need more text
+		private int[] pendingIndexes = new int[0];
+		private int[] pendingStarts = new int[0];
+		private int pendingCount;
+		private int previousLength;
+		
+		// time budget of the regexes
+		private final long budgetMillis;
+		private final long deadlineNanos;
+		
+		private Scan(long budgetMillis) {
+			this.budgetMillis = budgetMillis;
+			this.deadlineNanos = System.nanoTime() + TimeUnit.MILLISECONDS.toNanos(Math.max(0, budgetMillis));
+		}
+		
+		/**
+		 * Helper method for guarding a window against regexes, which
+		 * exceed the time budget of the scan.
+		 * 
+		 * @param window
+		 * @return
+		 */
+		private CharSequence guard(CharSequence window) {
+			return budgetMillis < 0 ? window : new DeadlineCharSequence(window, deadlineNanos, budgetMillis);
+		}
+		
+		/**
+		 * Method for marking a pattern as found.
+		 * 
+		 * @param index
+		 */
+		private void found(int index) {
+			
+			if (found[index]) {
+				return;
+			}
+			
+			found[index] = true;
+			
+			if (index < includeCount) {
+				missingIncludes--;
+			}
+			else if (foundExclude < 0) {
+				foundExclude = index;
+			}
+		}
+		
+		/**
+		 * Method for searching the patterns in the next window of the text.
+		 * The characters before the given start have been part of the
+		 * previous window and are not fed to the automaton again.
+		 * 
+		 * @param window
+		 * @param newStart
+		 * @param last true if this is the last window of the text
+		 * @throws PatternTimeoutException if the regexes exceed the time budget
+		 */
+		public void scan(CharSequence window, int newStart, boolean last) throws PatternTimeoutException {
+			
+			int length = window.length();
+			CharSequence guardedWindow = guard(window);
+			
+			// try the regexes, whose prefix has been found at the end of the previous window
+			int pending = pendingCount;
+			pendingCount = 0;
+			for (int i = 0; i < pending && !isDone(); i++) {
+				int start = pendingStarts[i] - (previousLength - newStart);
+				if (start >= 0) {
+					verify(guardedWindow, pendingIndexes[i], start, last);
+				}
+			}
+			previousLength = length;
+			
+			// search all literals and prefixes in one pass
+			if (automaton != null && missingWords > 0) {
+				
+				int state = wordState;
+				for (int i = newStart; i < length; i++) {
+					
+					state = automaton.next(state, window.charAt(i));
+					if (!automaton.isAccepting(state)) {
+						continue;
+					}
+					
+					for (int word : automaton.getOutputs(state)) {
+						
+						int index = wordIndexes[word];
+						if (found[index]) {
+							continue;
+						}
+						
+						if (regexes[index] == null) {
+							found(index);
+							missingWords--;
+						}
+						else if (verify(guardedWindow, index, i + 1 - wordLengths[word], last)) {
+							missingWords--;
+						}
+					}
+					
+					if (isDone() || missingWords == 0) {
+						break;
+					}
+				}
+				wordState = state;
+			}
+			
+			if (isDone()) {
+				return;
+			}
+			
+			// search combined regexes in one pass
+			scanCombined(guardedWindow, last);
+			
+			// search the remaining regexes one by one
+			for (int index : separateIndexes) {
+				if (isDone()) {
+					return;
+				}
+				if (!found[index]) {
+					Matcher matcher = regexes[index].matcher(guardedWindow);
+					if (matcher.find() && !isWindowEnd(matcher, index, last)) {
+						found(index);
+					}
+				}
+			}
+		}
+		
+		/**
+		 * Helper method for checking if the last match of a regex depends on
+		 * the end of a window, which is not the end of the text (e.g. with $ 
+		 * or \b). The end of the window is searched again as overlap of the 
+		 * next window, so such a match is not counted.
+		 * 
+		 * @param matcher
+		 * @param index
+		 * @param last true if this is the last window of the text
+		 * @return
+		 */
+		private boolean isWindowEnd(Matcher matcher, int index, boolean last) {
+			
+			if (last) {
+				return false;
+			}
+			
+			// a match at the end of the text (\z) does not report that it requires the end
+			return matcher.requireEnd() || (textEnds[index] && matcher.hitEnd() && matcher.end() == matcher.regionEnd());
+		}
+		
+		/**
+		 * Helper method for trying a regex at the position of its prefix.
+		 * 
+		 * @param window
+		 * @param index
+		 * @param start
+		 * @param last
+		 * @return true if the regex matches
+		 */
+		private boolean verify(CharSequence window, int index, int start, boolean last) {
+			
+			Matcher matcher = getMatcher(window, index);
+			if (matcher.region(start, window.length()).lookingAt() && !isWindowEnd(matcher, index, last)) {
+				found(index);
+				return true;
+			}
+			
+			// the regex may match (or stop matching) with the text of the next window
+			if (!last && matcher.hitEnd()) {
+				if (pendingCount == pendingIndexes.length) {
+					pendingIndexes = Arrays.copyOf(pendingIndexes, pendingCount * 2 + 4);
+					pendingStarts = Arrays.copyOf(pendingStarts, pendingCount * 2 + 4);
+				}
+				pendingIndexes[pendingCount] = index;
+				pendingStarts[pendingCount] = start;
+				pendingCount++;
+			}
+			
+			return false;
+		}
+		
+		/**
+		 * Helper method for getting the matcher of a regex for the given 
+		 * window, which sees the whole window at every region.
+		 * 
+		 * @param window
+		 * @param index
+		 * @return
+		 */
+		private Matcher getMatcher(CharSequence window, int index) {
+			
+			if (matchers == null) {
+				matchers = new Matcher[regexes.length];
+			}
+			
+			Matcher matcher = matchers[index];
+			if (matcher == null) {
+				matcher = regexes[index].matcher(window);
+				matcher.useTransparentBounds(true);
+				matcher.useAnchoringBounds(false);
+				matchers[index] = matcher;
+			}
+			else {
+				matcher.reset(window);
+			}
+			
+			return matcher;
+		}
+		
+		/**
+		 * Helper method for searching the combined regexes. At every match
+		 * of the alternation the other missing regexes are tried as well,
+		 * because only one alternative is reported for a position.
+		 * 
+		 * @param window
+		 * @param last true if this is the last window of the text
+		 */
+		private void scanCombined(CharSequence window, boolean last) {
+			
+			long mask = getMissingMask();
+			if (mask == 0) {
+				return;
+			}
+			
+			int length = window.length();
+			Combination combination = getCombination(mask);
+			Matcher matcher = combination.pattern.matcher(window);
+			
+			int from = 0;
+			while (from <= length && !isDone() && matcher.find(from)) {
+				
+				int start = matcher.start();
+				boolean windowEnd = false;
+				
+				for (int i = 0; i < combination.indexes.length; i++) {
+					
+					int index = combination.indexes[i];
+					if (found[index]) {
+						continue;
+					}
+					
+					if (matcher.start(combination.groups[i]) >= 0) {
+						if (!isWindowEnd(matcher, index, last)) {
+							found(index);
+							continue;
+						}
+						windowEnd = true;
+					}
+					
+					// the regex matches at the same position
+					Matcher singleMatcher = getMatcher(window, index);
+					if (singleMatcher.region(start, length).lookingAt() && !isWindowEnd(singleMatcher, index, last)) {
+						found(index);
+					}
+				}
+				
+				// remove found regexes from the alternation
+				long missingMask = getMissingMask();
+				if (missingMask == 0) {
+					return;
+				}
+				
+				// the match depends on the end of the window, the following
+				// matches in the overlap are searched with the next window
+				if (windowEnd && missingMask == mask) {
+					return;
+				}
+				if (missingMask != mask) {
+					mask = missingMask;
+					combination = getCombination(mask);
+					matcher = combination.pattern.matcher(window);
+				}
+				
+				from = start + 1;
+			}
+		}
+		
+		/**
+		 * Helper method for getting the mask of the combined regexes,
+		 * which have not been found yet.
+		 * 
+		 * @return
+		 */
+		private long getMissingMask() {
+			
+			long mask = 0;
+			for (int i = 0; i < combinedIndexes.length; i++) {
+				if (!found[combinedIndexes[i]]) {
+					mask |= 1L << i;
+				}
+			}
+			
+			return mask;
+		}
+		
+		/**
+		 * Method for checking if the result of the search is known,
+		 * i.e. an exclude has been found or all includes have been
+		 * found and there are no excludes.
+		 * 
+		 * @return
+		 */
+		public boolean isDone() {
+			return foundExclude >= 0 || (missingIncludes == 0 && includeCount == patternList.size());
+		}
+		
+		/**
+		 * Method for checking if all includes and no excludes have been found.
+		 * 
+		 * @return
+		 */
+		public boolean isMatched() {
+			return foundExclude < 0 && missingIncludes == 0;
+		}
+		
+		/**
+		 * Method for getting the reason why the text does not match.
+		 * 
+		 * @param textName the name of the searched text (e.g. "HTTP response text")
+		 * @return
+		 */
+		public String getFailure(String textName) {
+			
+			if (foundExclude >= 0) {
+				return "The exclude pattern '" + patternList.get(foundExclude) + "' matches the " + textName;
+			}
+			
+			for (int i = 0; i < includeCount; i++) {
+				if (!found[i]) {
+					return "The pattern '" + patternList.get(i) + "' does not match the " + textName;
+				}
+			}
+			
+			return null;
+		}
+	}
+}
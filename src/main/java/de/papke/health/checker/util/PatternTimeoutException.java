@@ -0,0 +1,21 @@
+package de.papke.health.checker.util;
+
+/**
+ * Exception for a pattern evaluation which has exceeded its time budget,
+ * e.g. because of catastrophic backtracking of a regex.
+ * 
+ * The exception is unchecked, because it is thrown from inside the
+ * regex engine. It has no stack trace, because the time budget is an 
+ * expected outcome of a health check.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class PatternTimeoutException extends RuntimeException {
+	
+	private static final long serialVersionUID = 1L;
+	
+	public PatternTimeoutException(long budgetMillis) {
+		super("The pattern evaluation has exceeded its time budget of " + budgetMillis + " ms", null, false, false);
+	}
+}
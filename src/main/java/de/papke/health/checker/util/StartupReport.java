@@ -0,0 +1,47 @@
+package de.papke.health.checker.util;
+
+import java.lang.management.ClassLoadingMXBean;
+import java.lang.management.ManagementFactory;
+import java.lang.management.RuntimeMXBean;
+
+import de.papke.health.checker.api.Type;
+
+/**
+ * Class for measuring the startup costs of a health checker type.
+ * 
+ * The snapshot taken on creation marks the point where the health 
+ * checker is ready to run, i.e. the JVM has started, the provider 
+ * has been found and the command line has been parsed. The report
+ * compares it with the state after the health check.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class StartupReport {
+	
+	private final Type type;
+	private final long readyMillis;
+	private final long readyClassCount;
+	
+	public StartupReport(Type type) {
+		this.type = type;
+		this.readyMillis = ManagementFactory.getRuntimeMXBean().getUptime();
+		this.readyClassCount = ManagementFactory.getClassLoadingMXBean().getTotalLoadedClassCount();
+	}
+	
+	/**
+	 * Method for printing the startup report to the console.
+	 */
+	public void print() {
+		
+		RuntimeMXBean runtime = ManagementFactory.getRuntimeMXBean();
+		ClassLoadingMXBean classLoading = ManagementFactory.getClassLoadingMXBean();
+		
+		long finishedMillis = runtime.getUptime();
+		long finishedClassCount = classLoading.getTotalLoadedClassCount();
+		
+		System.out.println("Startup (" + type + "): ready after " + readyMillis + " ms with " + readyClassCount + " classes loaded, "
+				+ "finished after " + finishedMillis + " ms with " + finishedClassCount + " classes loaded "
+				+ "(check: " + (finishedMillis - readyMillis) + " ms, " + (finishedClassCount - readyClassCount) + " classes)");
+	}
+}
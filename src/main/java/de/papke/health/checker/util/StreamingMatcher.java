@@ -0,0 +1,186 @@
+package de.papke.health.checker.util;
+
+import java.io.IOException;
+import java.io.Reader;
+import java.nio.CharBuffer;
+import java.util.Arrays;
+
+/**
+ * Class for searching patterns in a stream of characters 
+ * with constant memory.
+ * 
+ * The characters are read into a window of fixed size, which is 
+ * searched whenever it is full. The end of the window is kept as 
+ * overlap for the next window, so regex matches across window 
+ * boundaries are found as long as they are shorter than the overlap
+ * (literal patterns are found across any boundary). Matches which
+ * depend on the end of the text (e.g. with $) only count in the last
+ * window. Reading stops as soon as the result of the search is known.
+ * 
+ * The text is either pulled from a reader or pushed in pieces.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class StreamingMatcher {
+	
+	public static final int WINDOW_SIZE = 64 * 1024;
+	public static final int OVERLAP_SIZE = 4 * 1024;
+	public static final int PREVIEW_SIZE = 8 * 1024;
+	
+	// windows are reused by the health checks of a thread
+	private static final ThreadLocal<char[]> WINDOW = new ThreadLocal<char[]>() {
+		
+		@Override
+		protected char[] initialValue() {
+			return new char[WINDOW_SIZE];
+		}
+	};
+	
+	// windows of pushed text start small, because most texts are short
+	private static final int INITIAL_PUSH_WINDOW_SIZE = 1024;
+	
+	private final PatternMatcher.Scan scan;
+	private String preview = "";
+	
+	private char[] window;
+	private int length;
+	private int newStart;
+	private boolean first = true;
+	private boolean finished;
+	
+	public StreamingMatcher(PatternMatcher patternMatcher) {
+		this(patternMatcher.newScan());
+	}
+	
+	/**
+	 * @param scan the scan to feed, e.g. with a given pattern budget
+	 */
+	public StreamingMatcher(PatternMatcher.Scan scan) {
+		this.scan = scan;
+	}
+	
+	/**
+	 * Method for searching the patterns in the characters of the reader.
+	 * The reader is only read until the result of the search is known.
+	 * 
+	 * @param reader
+	 * @return the finished scan
+	 * @throws IOException
+	 */
+	public PatternMatcher.Scan find(Reader reader) throws IOException {
+		
+		window = WINDOW.get();
+		
+		while (true) {
+			
+			// fill the window
+			int read = reader.read(window, length, window.length - length);
+			if (read != -1) {
+				length += read;
+				if (length < window.length) {
+					continue;
+				}
+			}
+			
+			// search the window
+			if (search(read == -1)) {
+				return scan;
+			}
+		}
+	}
+	
+	/**
+	 * Method for pushing the next characters of the text, e.g. when they
+	 * arrive from a non-blocking connection. The window of pushed text 
+	 * grows with the text up to the window size.
+	 * 
+	 * @param chars
+	 * @param offset
+	 * @param count
+	 * @return true if the result of the search is known
+	 */
+	public boolean write(char[] chars, int offset, int count) {
+		
+		if (window == null) {
+			window = new char[INITIAL_PUSH_WINDOW_SIZE];
+		}
+		
+		while (count > 0 && !finished) {
+			
+			// grow the window
+			if (length == window.length) {
+				window = Arrays.copyOf(window, Math.min(WINDOW_SIZE, window.length * 2));
+			}
+			
+			// fill the window
+			int copied = Math.min(count, window.length - length);
+			System.arraycopy(chars, offset, window, length, copied);
+			length += copied;
+			offset += copied;
+			count -= copied;
+			
+			// search the full window
+			if (length == WINDOW_SIZE) {
+				search(false);
+			}
+		}
+		
+		return finished;
+	}
+	
+	/**
+	 * Method for searching the rest of a pushed text at its end.
+	 * 
+	 * @return the finished scan
+	 */
+	public PatternMatcher.Scan finish() {
+		
+		if (!finished) {
+			if (window == null) {
+				window = new char[0];
+			}
+			search(true);
+		}
+		
+		return scan;
+	}
+	
+	/**
+	 * Helper method for searching the current window.
+	 * 
+	 * @param last true if the window contains the end of the text
+	 * @return true if the result of the search is known
+	 */
+	private boolean search(boolean last) {
+		
+		// keep the beginning of the text
+		if (first) {
+			preview = new String(window, 0, Math.min(length, PREVIEW_SIZE));
+			first = false;
+		}
+		
+		// search the window
+		scan.scan(CharBuffer.wrap(window, 0, length), newStart, last);
+		if (scan.isDone() || last) {
+			finished = true;
+			return true;
+		}
+		
+		// move the overlap to the beginning of the window
+		System.arraycopy(window, length - OVERLAP_SIZE, window, 0, OVERLAP_SIZE);
+		length = OVERLAP_SIZE;
+		newStart = OVERLAP_SIZE;
+		
+		return false;
+	}
+	
+	/**
+	 * Method for getting the beginning of the text, which has been read.
+	 * 
+	 * @return
+	 */
+	public String getPreview() {
+		return preview;
+	}
+}
@@ -0,0 +1,55 @@
+package de.papke.health.checker.util;
+
+import java.util.concurrent.TimeUnit;
+
+/**
+ * Helper class for parsing time values from the command line.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class TimeUtils {
+	
+	private TimeUtils() {}
+
+	/**
+	 * Method for parsing a duration string like "500ms", "10s", "5m" 
+	 * or "1h" into milliseconds. Values without unit are interpreted 
+	 * as milliseconds.
+	 * 
+	 * @param duration
+	 * @return
+	 */
+	public static long parseMillis(String duration) {
+		
+		String value = duration.trim().toLowerCase();
+		
+		// find the start of the unit suffix
+		int unitIndex = 0;
+		while (unitIndex < value.length() && Character.isDigit(value.charAt(unitIndex))) {
+			unitIndex++;
+		}
+		
+		if (unitIndex == 0) {
+			throw new IllegalArgumentException("Invalid duration '" + duration + "'");
+		}
+		
+		long amount = Long.parseLong(value.substring(0, unitIndex));
+		String unit = value.substring(unitIndex).trim();
+		
+		if (unit.isEmpty() || unit.equals("ms")) {
+			return amount;
+		}
+		else if (unit.equals("s")) {
+			return TimeUnit.SECONDS.toMillis(amount);
+		}
+		else if (unit.equals("m")) {
+			return TimeUnit.MINUTES.toMillis(amount);
+		}
+		else if (unit.equals("h")) {
+			return TimeUnit.HOURS.toMillis(amount);
+		}
+		
+		throw new IllegalArgumentException("Invalid duration unit '" + unit + "' in '" + duration + "'");
+	}
+}
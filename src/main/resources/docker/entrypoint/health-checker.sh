@@ -1,7 +1,10 @@
 #!/bin/bash
 
-# include parent entrypoint script
-source /jdk-base.sh
+# include parent entrypoint script (not available in images with a minimal runtime)
+if [ -f /jdk-base.sh ]
+then
+	source /jdk-base.sh
+fi
 
 # execute command
 exec health-checker "$@"
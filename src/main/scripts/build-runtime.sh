@@ -0,0 +1,106 @@
+#!/bin/bash
+
+# Script for building a minimal Java runtime with jlink and the class list
+# for an application class data sharing (AppCDS) archive from training runs 
+# of the health checker. The archive itself is created by bin/health-checker-cds
+# where the health checker is installed, because it is bound to the jar path.
+#
+# Usage: build-runtime.sh <target folder> <jar name> <health checker types>
+
+# Configuration
+targetFolder="$1"
+jarName="$2"
+types="$3"
+jarFile="$targetFolder/$jarName"
+runtimeFolder="$targetFolder/runtime"
+classListFolder="$targetFolder/runtime-classlists"
+classListFile="$runtimeFolder/health-checker.classlist"
+
+# modules which are only loaded as services and cannot be found by jdeps
+serviceModules="jdk.charsets jdk.crypto.ec jdk.zipfs"
+
+# Function for logging messages
+function log() {
+
+	# parameters
+	local level="$1"
+	local text="$2"
+
+	# create log message
+	local now=$(date +"%d-%m-%Y %H:%M:%S")
+	echo -e "$now [$level] $text"
+}
+
+# Function for getting the arguments of a training run, which fails fast
+# without a backend but loads the classes of the health checker type
+function trainingArgs() {
+
+	# parameters
+	local type="$1"
+
+	case "$type" in
+		elasticsearch) echo "-h 127.0.0.1 -p 1 -i index -q *" ;;
+		http) echo "-l http://127.0.0.1:1/" ;;
+		jdbc) echo "-y org.postgresql.Driver -l jdbc:postgresql://127.0.0.1:1/db -u user -p password -q select.1" ;;
+		ldap) echo "-l ldap://127.0.0.1:1 -b dc=example" ;;
+		mongo) echo "-l mongodb://127.0.0.1:1 -d db -c collection -q {} -s 100" ;;
+		smtp) echo "--hostname 127.0.0.1 --port 1" ;;
+		solr) echo "-l http://127.0.0.1:1/solr -q *:*" ;;
+	esac
+}
+
+# check if jar file exists
+if [ ! -f "$jarFile" ]
+then
+	log "ERROR" "Jar file '$jarFile' does not exist"
+	exit 1
+fi
+
+# check if the JDK supports jlink
+if [ "$JAVA_HOME" == "" ]
+then
+	JAVA_HOME="$(dirname $(dirname $(readlink -f $(which javac))))"
+fi
+
+if [ ! -x "$JAVA_HOME/bin/jlink" ]
+then
+	log "ERROR" "Please set 'JAVA_HOME' to a JDK with jlink (version 11 or later)!"
+	exit 1
+fi
+
+# get required JDK modules
+log "INFO" "Analyzing JDK modules of '$jarFile'"
+modules=$("$JAVA_HOME/bin/jdeps" --ignore-missing-deps --print-module-deps --multi-release base -q "$jarFile" 2>/dev/null | tail -1)
+if [ "$modules" == "" ]
+then
+	log "ERROR" "Could not determine the JDK modules of '$jarFile'"
+	exit 1
+fi
+
+# add service modules if available in this JDK
+availableModules=$("$JAVA_HOME/bin/java" --list-modules)
+for module in $serviceModules
+do
+	if echo "$availableModules" | grep -q "^$module@"
+	then
+		modules="$modules,$module"
+	fi
+done
+
+# create minimal runtime
+log "INFO" "Creating runtime with modules $modules"
+rm -rf "$runtimeFolder" "$classListFolder"
+"$JAVA_HOME/bin/jlink" --add-modules "$modules" --strip-debug --no-header-files --no-man-pages --compress=2 --output "$runtimeFolder" || exit 1
+
+# create class lists from training runs
+mkdir -p "$classListFolder"
+for type in $types
+do
+	log "INFO" "Training run for type '$type'"
+	HEALTH_CHECKER_TYPE="$type" "$runtimeFolder/bin/java" -Xshare:off -XX:DumpLoadedClassList="$classListFolder/$type.classlist" -jar "$jarFile" $(trainingArgs "$type") > /dev/null 2>&1
+done
+
+# merge class lists of all training runs
+cat "$classListFolder"/*.classlist | grep -v "^#" | sort -u > "$classListFile"
+
+log "INFO" "Runtime created in '$runtimeFolder' ($(wc -l < "$classListFile") classes for class data sharing)"
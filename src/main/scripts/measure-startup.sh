@@ -0,0 +1,91 @@
+#!/bin/bash
+
+# Script for measuring the cold-start time and memory of one-shot health checks.
+# Each step changes one thing, so the gains can be attributed: the fat jar on the
+# installed JDK, the fat jar on the minimal runtime without and with a class data
+# sharing archive and the slim jar of the type on the minimal runtime without and
+# with a class data sharing archive. All runs use the serial garbage collector.
+#
+# Usage: measure-startup.sh <runs> <type> <health checker arguments>
+# Example: measure-startup.sh 10 http -l http://localhost:8080/
+
+# Configuration
+scriptPath="$(readlink -f $0)"
+projectFolder="$(dirname $(dirname $(dirname $(dirname $scriptPath))))"
+targetFolder="$projectFolder/target"
+runtimeFolder="$targetFolder/runtime"
+fatJarFile="$targetFolder/health-checker.jar"
+fatArchiveFile="$targetFolder/measure-startup.jsa"
+runs="$1"
+type="$2"
+shift 2
+slimJarFile="$targetFolder/health-checker-$type.jar"
+slimArchiveFile="$targetFolder/measure-startup-$type.jsa"
+
+# Function for measuring a command and printing average time and maximum memory
+function measure() {
+
+	# parameters
+	local label="$1"
+	shift
+
+	local totalMillis=0
+	local maxKilobytes=0
+
+	for run in $(seq 1 $runs)
+	do
+		local start=$(date +%s%N)
+		if [ -x /usr/bin/time ]
+		then
+			local kilobytes=$(HEALTH_CHECKER_TYPE="$type" /usr/bin/time -f "%M" "$@" 2>&1 > /dev/null | tail -1)
+			if [ "$kilobytes" -gt "$maxKilobytes" ] 2>/dev/null
+			then
+				maxKilobytes="$kilobytes"
+			fi
+		else
+			HEALTH_CHECKER_TYPE="$type" "$@" > /dev/null 2>&1
+		fi
+		local end=$(date +%s%N)
+		totalMillis=$((totalMillis + (end - start) / 1000000))
+	done
+
+	local memory="n/a (/usr/bin/time not installed)"
+	if [ "$maxKilobytes" -gt 0 ]
+	then
+		memory="$((maxKilobytes / 1024)) MB"
+	fi
+
+	echo "$label: $((totalMillis / runs)) ms average time, maximum RSS $memory ($runs runs)"
+}
+
+# check parameters
+if [ "$runs" == "" ] || [ "$type" == "" ]
+then
+	echo "Usage: $(basename $0) <runs> <type> <health checker arguments>"
+	exit 1
+fi
+
+# check if the minimal runtime was built
+if [ ! -x "$runtimeFolder/bin/java" ]
+then
+	echo "Please build the minimal runtime first: mvn -Pruntime package"
+	exit 1
+fi
+
+# measure the fat jar on the JDK and on the minimal runtime
+"$projectFolder/bin/health-checker-cds" "$runtimeFolder" "$fatJarFile" "$fatArchiveFile" > /dev/null || exit 1
+
+measure "JDK, $(basename $fatJarFile)" java -XX:+UseSerialGC -jar "$fatJarFile" "$@"
+measure "runtime, $(basename $fatJarFile)" "$runtimeFolder/bin/java" -XX:+UseSerialGC -jar "$fatJarFile" "$@"
+measure "runtime with CDS, $(basename $fatJarFile)" "$runtimeFolder/bin/java" -XX:SharedArchiveFile="$fatArchiveFile" -Xshare:auto -XX:+UseSerialGC -jar "$fatJarFile" "$@"
+
+# measure the slim jar of the type on the minimal runtime if available
+if [ -f "$slimJarFile" ]
+then
+	"$projectFolder/bin/health-checker-cds" "$runtimeFolder" "$slimJarFile" "$slimArchiveFile" > /dev/null || exit 1
+
+	measure "runtime, $(basename $slimJarFile)" "$runtimeFolder/bin/java" -XX:+UseSerialGC -jar "$slimJarFile" "$@"
+	measure "runtime with CDS, $(basename $slimJarFile)" "$runtimeFolder/bin/java" -XX:SharedArchiveFile="$slimArchiveFile" -Xshare:auto -XX:+UseSerialGC -jar "$slimJarFile" "$@"
+else
+	echo "Slim jar '$slimJarFile' not found, build it with: mvn -Pslim,runtime package"
+fi
@@ -0,0 +1,81 @@
+package de.papke.health.checker;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.apache.commons.cli.CommandLine;
+import org.apache.commons.cli.Option;
+import org.apache.commons.cli.Options;
+
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.api.Type;
+import de.papke.health.checker.engine.HealthCheck;
+
+/**
+ * Health checker for tests, which counts its executions and
+ * can be blocked until a test releases it.
+ * 
+ * The detail of a result is the number of the execution, 
+ * e.g. "run 1".
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class StubHealthChecker extends HealthChecker {
+	
+	private final AtomicInteger executions = new AtomicInteger();
+	
+	private volatile CountDownLatch started;
+	private volatile CountDownLatch release;
+	
+	public StubHealthChecker() {
+		super(Type.http, createOptions());
+	}
+	
+	private static Options createOptions() {
+		Options options = new Options();
+		options.addOption(new Option("l", "url", true, "The url of the stub"));
+		return options;
+	}
+	
+	/**
+	 * Method for blocking the next executions until the release latch is counted down.
+	 * 
+	 * @param started counted down by every blocked execution
+	 * @param release
+	 */
+	public void block(CountDownLatch started, CountDownLatch release) {
+		this.started = started;
+		this.release = release;
+	}
+	
+	/**
+	 * Method for creating a health check of this health checker.
+	 * 
+	 * @param name
+	 * @param args
+	 * @return
+	 * @throws Exception
+	 */
+	public HealthCheck createHealthCheck(String name, String... args) throws Exception {
+		return new HealthCheck(name, type, this, parse(args));
+	}
+	
+	public int getExecutions() {
+		return executions.get();
+	}
+	
+	@Override
+	public CheckResult check(CommandLine commandLine) throws Exception {
+		
+		int execution = executions.incrementAndGet();
+		
+		CountDownLatch releaseLatch = release;
+		if (releaseLatch != null) {
+			started.countDown();
+			releaseLatch.await();
+		}
+		
+		return up("run " + execution);
+	}
+}
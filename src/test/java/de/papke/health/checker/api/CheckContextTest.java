@@ -0,0 +1,47 @@
+package de.papke.health.checker.api;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import org.junit.Test;
+
+/**
+ * Tests for limiting the timeouts of a health check to its deadline.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class CheckContextTest {
+	
+	@Test
+	public void timeoutsAreUnchangedWithoutDeadline() throws Exception {
+		
+		CheckContext context = CheckContext.reset();
+		
+		// a timeout of 0 still means no timeout
+		assertEquals(0, context.limitTimeout(0));
+		assertEquals(0, context.limitTimeoutToBudget(0));
+		assertEquals(5000, context.limitTimeout(5000));
+		assertEquals(5000, context.limitTimeoutToBudget(5000));
+	}
+	
+	@Test
+	public void timeoutsAreLimitedToDeadline() throws Exception {
+		
+		CheckContext context = CheckContext.reset();
+		context.startDeadline(2000);
+		
+		// a timeout of 0 gets the remaining time instead of no timeout
+		int timeout = context.limitTimeout(0);
+		assertTrue(String.valueOf(timeout), timeout > 1000 && timeout <= 2000);
+		assertEquals(2000, context.limitTimeoutToBudget(0));
+		
+		// shorter timeouts are kept, longer timeouts are limited
+		assertEquals(500, context.limitTimeout(500));
+		assertTrue(context.limitTimeout(5000) <= 2000);
+		assertEquals(500, context.limitTimeoutToBudget(500));
+		assertEquals(2000, context.limitTimeoutToBudget(5000));
+		
+		context.finishDeadline();
+	}
+}
@@ -0,0 +1,194 @@
+package de.papke.health.checker.cache;
+
+import static org.junit.Assert.assertArrayEquals;
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertNotNull;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+import static org.junit.Assert.fail;
+
+import java.io.File;
+import java.io.IOException;
+import java.io.RandomAccessFile;
+import java.nio.charset.StandardCharsets;
+import java.nio.file.Files;
+import java.util.ArrayList;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Rule;
+import org.junit.Test;
+import org.junit.rules.TemporaryFolder;
+
+import de.papke.health.checker.StubHealthChecker;
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.api.Status;
+import de.papke.health.checker.engine.HealthCheck;
+
+/**
+ * Tests for the result cache, which is shared by processes in a file.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class FileResultCacheTest {
+	
+	private static final long TTL_MILLIS = TimeUnit.MINUTES.toMillis(1);
+	private static final int PROBE_LENGTH = 8;
+	
+	@Rule
+	public TemporaryFolder temporaryFolder = new TemporaryFolder();
+	
+	private final StubHealthChecker healthChecker = new StubHealthChecker();
+	
+	/**
+	 * Helper method for opening a cache in a new file.
+	 * 
+	 * @return
+	 * @throws IOException
+	 */
+	private FileResultCache createCache() throws IOException {
+		return FileResultCache.getInstance(new File(temporaryFolder.getRoot(), "results.cache").getPath());
+	}
+	
+	/**
+	 * Helper method for creating a result with the given age.
+	 * 
+	 * @param healthCheck
+	 * @param message
+	 * @param ageMillis
+	 * @return
+	 */
+	private static CheckResult createResult(HealthCheck healthCheck, String message, long ageMillis) {
+		return new CheckResult(healthCheck.getName(), healthCheck.getType(), Status.UP, 5, message, Collections.<String, Long>emptyMap(), 0, System.currentTimeMillis() - ageMillis);
+	}
+	
+	@Test
+	public void storedResultIsReadUntilItExpires() throws Exception {
+		
+		FileResultCache cache = createCache();
+		HealthCheck healthCheck = healthChecker.createHealthCheck("stored", "--url", "http://file-cache-test/stored");
+		
+		assertNull(cache.get(healthCheck, TTL_MILLIS));
+		cache.put(healthCheck, createResult(healthCheck, "stored", 1000));
+		
+		CheckResult result = cache.get(healthCheck, TTL_MILLIS);
+		assertNotNull(result);
+		assertEquals(Status.UP, result.getStatus());
+		assertEquals(5, result.getLatencyMillis());
+		assertEquals("stored", result.getMessage());
+		assertNull(cache.get(healthCheck, 500));
+	}
+	
+	@Test
+	public void corruptedSlotIsIgnored() throws Exception {
+		
+		FileResultCache cache = createCache();
+		HealthCheck healthCheck = healthChecker.createHealthCheck("corrupted", "--url", "http://file-cache-test/corrupted");
+		cache.put(healthCheck, createResult(healthCheck, "corrupted message", 0));
+		
+		// change a byte of the message in the mapped file
+		File file = new File(temporaryFolder.getRoot(), "results.cache");
+		byte[] content = Files.readAllBytes(file.toPath());
+		byte[] message = "corrupted message".getBytes(StandardCharsets.UTF_8);
+		int offset = indexOf(content, message);
+		assertTrue(offset > 0);
+		RandomAccessFile randomAccessFile = new RandomAccessFile(file, "rw");
+		try {
+			randomAccessFile.seek(offset);
+			randomAccessFile.write('C');
+		}
+		finally {
+			randomAccessFile.close();
+		}
+		
+		assertNull(cache.get(healthCheck, TTL_MILLIS));
+	}
+	
+	private static int indexOf(byte[] content, byte[] part) {
+		for (int i = 0; i <= content.length - part.length; i++) {
+			int j = 0;
+			while (j < part.length && content[i + j] == part[j]) {
+				j++;
+			}
+			if (j == part.length) {
+				return i;
+			}
+		}
+		return -1;
+	}
+	
+	@Test
+	public void oldestSlotIsReplaced() throws Exception {
+		
+		FileResultCache cache = createCache();
+		
+		// find more health checks starting at the same slot than a probe can hold
+		List<HealthCheck> healthCheckList = new ArrayList<HealthCheck>();
+		int slotIndex = -1;
+		for (int i = 0; healthCheckList.size() <= PROBE_LENGTH; i++) {
+			HealthCheck healthCheck = healthChecker.createHealthCheck("check " + i, "--url", "http://file-cache-test/" + i);
+			int currentSlotIndex = FileResultCache.getSlotIndex(FileResultCache.hash(healthCheck.getKey()), 0);
+			if (slotIndex < 0) {
+				slotIndex = currentSlotIndex;
+			}
+			if (currentSlotIndex == slotIndex) {
+				healthCheckList.add(healthCheck);
+			}
+		}
+		
+		// fill the slots, the first result is the oldest
+		for (int i = 0; i < PROBE_LENGTH; i++) {
+			HealthCheck healthCheck = healthCheckList.get(i);
+			cache.put(healthCheck, createResult(healthCheck, healthCheck.getName(), (PROBE_LENGTH - i) * 1000));
+		}
+		HealthCheck last = healthCheckList.get(PROBE_LENGTH);
+		cache.put(last, createResult(last, last.getName(), 0));
+		
+		assertNull(cache.get(healthCheckList.get(0), TTL_MILLIS));
+		for (int i = 1; i <= PROBE_LENGTH; i++) {
+			HealthCheck healthCheck = healthCheckList.get(i);
+			assertEquals(healthCheck.getName(), cache.get(healthCheck, TTL_MILLIS).getMessage());
+		}
+	}
+	
+	@Test
+	public void longMessageIsTruncatedAtCharacter() throws Exception {
+		
+		FileResultCache cache = createCache();
+		HealthCheck healthCheck = healthChecker.createHealthCheck("truncated", "--url", "http://file-cache-test/truncated");
+		
+		// an odd offset lets the slot end within a two byte character
+		StringBuilder message = new StringBuilder("x");
+		for (int i = 0; i < 300; i++) {
+			message.append('ä');
+		}
+		cache.put(healthCheck, createResult(healthCheck, message.toString(), 0));
+		
+		String cachedMessage = cache.get(healthCheck, TTL_MILLIS).getMessage();
+		assertTrue(message.toString().startsWith(cachedMessage));
+		assertFalse(cachedMessage.contains("\uFFFD"));
+	}
+	
+	@Test
+	public void foreignFileIsNotChanged() throws Exception {
+		
+		byte[][] contents = { "no result cache".getBytes(StandardCharsets.UTF_8), new byte[100] };
+		for (int i = 0; i < contents.length; i++) {
+			File file = temporaryFolder.newFile("foreign" + i);
+			Files.write(file.toPath(), contents[i]);
+			
+			try {
+				FileResultCache.getInstance(file.getPath());
+				fail("The file " + file + " has been opened as result cache");
+			}
+			catch (IOException e) {
+				// expected
+			}
+			
+			assertArrayEquals(contents[i], Files.readAllBytes(file.toPath()));
+		}
+	}
+}
@@ -0,0 +1,135 @@
+package de.papke.health.checker.cache;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import de.papke.health.checker.StubHealthChecker;
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.engine.HealthCheck;
+
+/**
+ * Tests for the stale-while-revalidate semantics of the result cache.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class ResultCacheTest {
+	
+	private static final long TIMEOUT_MILLIS = 10000;
+	
+	@Test
+	public void freshResultIsServedWithoutExecution() throws Exception {
+		
+		StubHealthChecker healthChecker = new StubHealthChecker();
+		HealthCheck healthCheck = healthChecker.createHealthCheck("fresh", "--url", "http://cache-test/fresh");
+		
+		assertEquals("run 1", ResultCache.getInstance().get(healthCheck, TimeUnit.MINUTES.toMillis(1)).getDetail());
+		assertEquals("run 1", ResultCache.getInstance().get(healthCheck, TimeUnit.MINUTES.toMillis(1)).getDetail());
+		assertEquals(1, healthChecker.getExecutions());
+	}
+	
+	@Test
+	public void identicalHealthChecksShareTheResult() throws Exception {
+		
+		StubHealthChecker healthChecker = new StubHealthChecker();
+		HealthCheck first = healthChecker.createHealthCheck("first", "--url", "http://cache-test/shared");
+		HealthCheck second = healthChecker.createHealthCheck("second", "--url", "http://cache-test/shared");
+		
+		ResultCache.getInstance().get(first, TimeUnit.MINUTES.toMillis(1));
+		CheckResult result = ResultCache.getInstance().get(second, TimeUnit.MINUTES.toMillis(1));
+		
+		assertEquals("second", result.getName());
+		assertEquals("run 1", result.getDetail());
+		assertEquals(1, healthChecker.getExecutions());
+	}
+	
+	@Test
+	public void staleResultIsServedWhileRefreshingOnce() throws Exception {
+		
+		StubHealthChecker healthChecker = new StubHealthChecker();
+		HealthCheck healthCheck = healthChecker.createHealthCheck("stale", "--url", "http://cache-test/stale");
+		
+		// cache the first result and let it expire
+		ResultCache.getInstance().get(healthCheck, 0);
+		TimeUnit.MILLISECONDS.sleep(5);
+		
+		// the stale result is returned while the refresh is blocked
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		healthChecker.block(started, release);
+		
+		assertEquals("run 1", ResultCache.getInstance().get(healthCheck, 0).getDetail());
+		started.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		assertEquals("run 1", ResultCache.getInstance().get(healthCheck, 0).getDetail());
+		assertEquals("run 1", ResultCache.getInstance().get(healthCheck, 0).getDetail());
+		assertEquals(2, healthChecker.getExecutions());
+		
+		// the refreshed result replaces the stale result
+		release.countDown();
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		String detail = null;
+		while (!"run 2".equals(detail) && System.currentTimeMillis() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(1);
+			detail = ResultCache.getInstance().get(healthCheck, Long.MAX_VALUE).getDetail();
+		}
+		
+		assertEquals("run 2", detail);
+		assertEquals(2, healthChecker.getExecutions());
+	}
+	
+	@Test
+	public void resultsOlderThanTimeToLiveAndGracePeriodAreEvicted() throws Exception {
+		
+		ResultCache resultCache = new ResultCache(10, 1, 1);
+		StubHealthChecker healthChecker = new StubHealthChecker();
+		HealthCheck old = healthChecker.createHealthCheck("old", "--url", "http://cache-test/old");
+		HealthCheck current = healthChecker.createHealthCheck("current", "--url", "http://cache-test/current");
+		
+		// the old result is removed with the next request after the grace period
+		resultCache.get(old, 0);
+		TimeUnit.MILLISECONDS.sleep(20);
+		resultCache.get(current, TimeUnit.MINUTES.toMillis(1));
+		assertEquals(1, resultCache.size());
+		
+		// the evicted health check is executed again
+		assertEquals("run 3", resultCache.get(old, 0).getDetail());
+	}
+	
+	@Test
+	public void rejectedRefreshIsRetriedWithTheNextRequest() throws Exception {
+		
+		ResultCache resultCache = new ResultCache(TimeUnit.MINUTES.toMillis(1), 1, 1);
+		StubHealthChecker healthChecker = new StubHealthChecker();
+		HealthCheck[] healthChecks = new HealthCheck[3];
+		for (int i = 0; i < healthChecks.length; i++) {
+			healthChecks[i] = healthChecker.createHealthCheck("check " + i, "--url", "http://cache-test/rejected/" + i);
+			resultCache.get(healthChecks[i], 0);
+		}
+		TimeUnit.MILLISECONDS.sleep(5);
+		
+		// the first refresh blocks the only thread, the second fills the queue and the third is rejected
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		healthChecker.block(started, release);
+		for (HealthCheck healthCheck : healthChecks) {
+			resultCache.get(healthCheck, 0);
+		}
+		started.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+		healthChecker.block(null, null);
+		release.countDown();
+		
+		// the rejected refresh is submitted again
+		long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+		while (healthChecker.getExecutions() < 6 && System.currentTimeMillis() < deadline) {
+			TimeUnit.MILLISECONDS.sleep(1);
+			resultCache.get(healthChecks[2], 0);
+		}
+		
+		assertTrue(healthChecker.getExecutions() >= 6);
+	}
+}
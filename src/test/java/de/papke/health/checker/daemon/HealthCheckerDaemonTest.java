@@ -0,0 +1,195 @@
+package de.papke.health.checker.daemon;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.io.BufferedReader;
+import java.io.InputStreamReader;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.concurrent.TimeUnit;
+import java.util.concurrent.atomic.AtomicInteger;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+/**
+ * Tests for health checks, which are forwarded to the daemon.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class HealthCheckerDaemonTest {
+	
+	private static final String TOKEN = "secret";
+	private static final int EXIT_CODE_UP = 0;
+	
+	private static int daemonPort;
+	
+	private HttpServer httpServer;
+	private final AtomicInteger requestCount = new AtomicInteger();
+	
+	@Before
+	public void setUp() throws Exception {
+		
+		startDaemon();
+		
+		// count the requests of the health checks
+		httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 50);
+		httpServer.createContext("/", new HttpHandler() {
+			
+			public void handle(HttpExchange exchange) {
+				try {
+					requestCount.incrementAndGet();
+					byte[] body = "status: UP".getBytes(StandardCharsets.UTF_8);
+					exchange.sendResponseHeaders(200, body.length);
+					exchange.getResponseBody().write(body);
+				}
+				catch (Exception e) {
+					// the test fails with the result of the health check
+				}
+				finally {
+					exchange.close();
+				}
+			}
+		});
+		httpServer.start();
+	}
+	
+	@After
+	public void tearDown() {
+		httpServer.stop(0);
+	}
+	
+	/**
+	 * Helper method for starting one daemon for all tests on a free loopback port.
+	 * 
+	 * @throws Exception
+	 */
+	private static synchronized void startDaemon() throws Exception {
+		
+		if (daemonPort > 0) {
+			return;
+		}
+		
+		ServerSocket serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+		daemonPort = serverSocket.getLocalPort();
+		serverSocket.close();
+		
+		final HealthCheckerDaemon daemon = new HealthCheckerDaemon(String.valueOf(daemonPort), TOKEN);
+		Thread thread = new Thread("health-checker-daemon") {
+			
+			@Override
+			public void run() {
+				try {
+					daemon.run();
+				}
+				catch (Exception e) {
+					// the tests fail without daemon
+				}
+			}
+		};
+		thread.setDaemon(true);
+		thread.start();
+		
+		// wait until the daemon is listening
+		long deadline = System.nanoTime() + TimeUnit.SECONDS.toNanos(10);
+		while (true) {
+			try {
+				new Socket(InetAddress.getLoopbackAddress(), daemonPort).close();
+				return;
+			}
+			catch (Exception e) {
+				if (System.nanoTime() > deadline) {
+					throw e;
+				}
+				TimeUnit.MILLISECONDS.sleep(50);
+			}
+		}
+	}
+	
+	/**
+	 * Helper method for forwarding a health check to the daemon
+	 * like the start script does.
+	 * 
+	 * @param type
+	 * @param args
+	 * @return the exit code
+	 * @throws Exception
+	 */
+	private static int forward(String type, String... args) throws Exception {
+		
+		Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemonPort);
+		try {
+			
+			// send the request
+			StringBuilder request = new StringBuilder();
+			request.append(TOKEN).append('\0').append(type).append('\0').append(args.length).append('\0');
+			for (String arg : args) {
+				request.append(arg).append('\0');
+			}
+			OutputStream outputStream = socket.getOutputStream();
+			outputStream.write(request.toString().getBytes(StandardCharsets.UTF_8));
+			outputStream.flush();
+			
+			// read the output until the exit code
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			String line;
+			while ((line = reader.readLine()) != null) {
+				if (line.startsWith("x")) {
+					return Integer.parseInt(line.substring(1));
+				}
+			}
+			
+			throw new Exception("The daemon did not send an exit code");
+		}
+		finally {
+			socket.close();
+		}
+	}
+	
+	@Test
+	public void forwardedHealthChecksShareCachedResults() throws Exception {
+		
+		String url = "http://127.0.0.1:" + httpServer.getAddress().getPort() + "/";
+		
+		// the second health check gets the result of the first one
+		assertEquals(EXIT_CODE_UP, forward("http", "-l", url, "--cache-ttl", "1m"));
+		assertEquals(EXIT_CODE_UP, forward("http", "-l", url, "--cache-ttl", "1m"));
+		assertEquals(1, requestCount.get());
+		
+		// health checks without time to live are executed every time
+		assertEquals(EXIT_CODE_UP, forward("http", "-l", url));
+		assertEquals(EXIT_CODE_UP, forward("http", "-l", url));
+		assertEquals(3, requestCount.get());
+	}
+	
+	@Test
+	public void requestsWithInvalidTokenAreRejected() throws Exception {
+		
+		Socket socket = new Socket(InetAddress.getLoopbackAddress(), daemonPort);
+		try {
+			socket.getOutputStream().write("wrong\0http\0000\0".getBytes(StandardCharsets.UTF_8));
+			BufferedReader reader = new BufferedReader(new InputStreamReader(socket.getInputStream(), StandardCharsets.UTF_8));
+			String line;
+			String lastLine = null;
+			while ((line = reader.readLine()) != null) {
+				lastLine = line;
+			}
+			assertTrue(lastLine, lastLine.startsWith("x") && !lastLine.equals("x" + EXIT_CODE_UP));
+		}
+		finally {
+			socket.close();
+		}
+		assertEquals(0, requestCount.get());
+	}
+}
@@ -0,0 +1,169 @@
+package de.papke.health.checker.engine;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+import de.papke.health.checker.StubHealthChecker;
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.api.Status;
+
+/**
+ * Tests for coalescing concurrent executions of identical health checks.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class SingleFlightTest {
+	
+	private static final long TIMEOUT_MILLIS = 10000;
+	
+	/**
+	 * Thread for executing a health check via the single flight.
+	 */
+	private static class Caller extends Thread {
+		
+		private final HealthCheck healthCheck;
+		private volatile CheckResult result;
+		
+		private Caller(HealthCheck healthCheck) {
+			this.healthCheck = healthCheck;
+			setDaemon(true);
+			start();
+		}
+		
+		@Override
+		public void run() {
+			result = SingleFlight.getInstance().execute(healthCheck);
+		}
+		
+		private CheckResult getResult() throws InterruptedException {
+			join(TIMEOUT_MILLIS);
+			return result;
+		}
+		
+		private void awaitWaiting() throws InterruptedException {
+			long deadline = System.currentTimeMillis() + TIMEOUT_MILLIS;
+			while (getState() != State.WAITING && getState() != State.TIMED_WAITING && System.currentTimeMillis() < deadline) {
+				TimeUnit.MILLISECONDS.sleep(1);
+			}
+		}
+	}
+	
+	@Test
+	public void concurrentIdenticalExecutionsAreCoalesced() throws Exception {
+		
+		StubHealthChecker healthChecker = new StubHealthChecker();
+		HealthCheck first = healthChecker.createHealthCheck("first", "--url", "http://single-flight-test/coalesced");
+		HealthCheck second = healthChecker.createHealthCheck("second", "--url", "http://single-flight-test/coalesced");
+		
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		healthChecker.block(started, release);
+		
+		// the first execution is running, the second caller waits for it
+		Caller firstCaller = new Caller(first);
+		assertTrue(started.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+		Caller secondCaller = new Caller(second);
+		secondCaller.awaitWaiting();
+		
+		release.countDown();
+		CheckResult firstResult = firstCaller.getResult();
+		CheckResult secondResult = secondCaller.getResult();
+		
+		assertEquals(1, healthChecker.getExecutions());
+		assertEquals("first", firstResult.getName());
+		assertEquals("second", secondResult.getName());
+		assertEquals("run 1", firstResult.getDetail());
+		assertEquals("run 1", secondResult.getDetail());
+	}
+	
+	@Test
+	public void sequentialExecutionsAreNotCoalesced() throws Exception {
+		
+		StubHealthChecker healthChecker = new StubHealthChecker();
+		HealthCheck healthCheck = healthChecker.createHealthCheck("sequential", "--url", "http://single-flight-test/sequential");
+		
+		assertEquals("run 1", SingleFlight.getInstance().execute(healthCheck).getDetail());
+		assertEquals("run 2", SingleFlight.getInstance().execute(healthCheck).getDetail());
+		assertEquals(2, healthChecker.getExecutions());
+	}
+	
+	@Test
+	public void differentHealthChecksAreNotCoalesced() throws Exception {
+		
+		StubHealthChecker healthChecker = new StubHealthChecker();
+		HealthCheck first = healthChecker.createHealthCheck("first", "--url", "http://single-flight-test/first");
+		HealthCheck second = healthChecker.createHealthCheck("second", "--url", "http://single-flight-test/second");
+		
+		CountDownLatch started = new CountDownLatch(2);
+		CountDownLatch release = new CountDownLatch(1);
+		healthChecker.block(started, release);
+		
+		// both executions are running at the same time
+		Caller firstCaller = new Caller(first);
+		Caller secondCaller = new Caller(second);
+		assertTrue(started.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+		
+		release.countDown();
+		assertEquals("first", firstCaller.getResult().getName());
+		assertEquals("second", secondCaller.getResult().getName());
+		assertEquals(2, healthChecker.getExecutions());
+	}
+	
+	@Test
+	public void healthChecksWithDifferentDeadlinesAreNotCoalesced() throws Exception {
+		
+		StubHealthChecker healthChecker = new StubHealthChecker();
+		HealthCheck first = healthChecker.createHealthCheck("first", "--url", "http://single-flight-test/deadline", "--deadline", "10s");
+		HealthCheck second = healthChecker.createHealthCheck("second", "--url", "http://single-flight-test/deadline", "--deadline", "20s");
+		
+		CountDownLatch started = new CountDownLatch(2);
+		CountDownLatch release = new CountDownLatch(1);
+		healthChecker.block(started, release);
+		
+		// both executions are running at the same time
+		Caller firstCaller = new Caller(first);
+		Caller secondCaller = new Caller(second);
+		assertTrue(started.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+		
+		release.countDown();
+		assertEquals(Status.UP, firstCaller.getResult().getStatus());
+		assertEquals(Status.UP, secondCaller.getResult().getStatus());
+		assertEquals(2, healthChecker.getExecutions());
+	}
+	
+	@Test
+	public void waitingCallersTimeOutAtTheirDeadline() throws Exception {
+		
+		StubHealthChecker healthChecker = new StubHealthChecker();
+		HealthCheck first = healthChecker.createHealthCheck("first", "--url", "http://single-flight-test/timeout", "--deadline", "200ms");
+		HealthCheck second = healthChecker.createHealthCheck("second", "--url", "http://single-flight-test/timeout", "--deadline", "200ms");
+		
+		CountDownLatch started = new CountDownLatch(1);
+		CountDownLatch release = new CountDownLatch(1);
+		healthChecker.block(started, release);
+		
+		// the execution is never released, so both callers time out
+		try {
+			Caller firstCaller = new Caller(first);
+			assertTrue(started.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+			long start = System.nanoTime();
+			Caller secondCaller = new Caller(second);
+			
+			CheckResult secondResult = secondCaller.getResult();
+			assertTrue(TimeUnit.NANOSECONDS.toMillis(System.nanoTime() - start) < TIMEOUT_MILLIS);
+			assertEquals("second", secondResult.getName());
+			assertEquals(Status.TIMEOUT, secondResult.getStatus());
+			assertEquals(Status.TIMEOUT, firstCaller.getResult().getStatus());
+			assertEquals(1, healthChecker.getExecutions());
+		}
+		finally {
+			release.countDown();
+		}
+	}
+}
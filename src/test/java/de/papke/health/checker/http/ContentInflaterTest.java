@@ -0,0 +1,172 @@
+package de.papke.health.checker.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.nio.charset.StandardCharsets;
+import java.util.zip.CRC32;
+import java.util.zip.Deflater;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+import java.util.zip.ZipException;
+
+import org.junit.Test;
+
+/**
+ * Tests for decompressing gzip and deflate encoded response bodies,
+ * which are pushed in pieces.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class ContentInflaterTest {
+	
+	private static final String TEXT = createText();
+	
+	/**
+	 * Helper method for creating a text, which is larger than the output buffer.
+	 * 
+	 * @return
+	 */
+	private static String createText() {
+		StringBuilder builder = new StringBuilder();
+		for (int i = 0; i < 2000; i++) {
+			builder.append("{\"id\":").append(i).append(",\"status\":\"UP\"}\n");
+		}
+		return builder.toString();
+	}
+	
+	/**
+	 * Helper method for pushing the body in pieces of the given size.
+	 * 
+	 * @param encoding
+	 * @param body
+	 * @param pieceSize
+	 * @return the decompressed text
+	 * @throws Exception
+	 */
+	private static String inflate(String encoding, byte[] body, int pieceSize) throws Exception {
+		
+		ContentInflater inflater = ContentInflater.create(encoding);
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		try {
+			for (int offset = 0; offset < body.length; offset += pieceSize) {
+				inflater.setInput(body, offset, Math.min(pieceSize, body.length - offset));
+				int count;
+				while ((count = inflater.inflate()) > 0) {
+					outputStream.write(inflater.getOutput(), 0, count);
+				}
+			}
+			assertEquals(body.length > 0, inflater.isFinished());
+		}
+		finally {
+			inflater.end();
+		}
+		
+		return new String(outputStream.toByteArray(), StandardCharsets.UTF_8);
+	}
+	
+	/**
+	 * Helper method for compressing the text in the gzip format.
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	private static byte[] gzip() throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		GZIPOutputStream gzipStream = new GZIPOutputStream(outputStream);
+		gzipStream.write(TEXT.getBytes(StandardCharsets.UTF_8));
+		gzipStream.close();
+		return outputStream.toByteArray();
+	}
+	
+	/**
+	 * Helper method for compressing the text in the gzip format with
+	 * the optional extra, name and comment fields in the header.
+	 * 
+	 * @return
+	 * @throws Exception
+	 */
+	private static byte[] gzipWithOptionalFields() throws Exception {
+		
+		byte[] text = TEXT.getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		
+		// write the header with FEXTRA, FNAME and FCOMMENT
+		outputStream.write(new byte[] { 0x1f, (byte) 0x8b, 8, 4 | 8 | 16, 0, 0, 0, 0, 0, (byte) 0xff });
+		outputStream.write(new byte[] { 3, 0, 'a', 'b', 'c' });
+		outputStream.write("status.json\0".getBytes(StandardCharsets.ISO_8859_1));
+		outputStream.write("comment\0".getBytes(StandardCharsets.ISO_8859_1));
+		
+		// write the raw deflate body and the trailer
+		outputStream.write(deflate(false));
+		CRC32 crc = new CRC32();
+		crc.update(text);
+		writeInt(outputStream, (int) crc.getValue());
+		writeInt(outputStream, text.length);
+		
+		return outputStream.toByteArray();
+	}
+	
+	private static void writeInt(ByteArrayOutputStream outputStream, int value) {
+		for (int i = 0; i < 4; i++) {
+			outputStream.write(value >>> (8 * i));
+		}
+	}
+	
+	/**
+	 * Helper method for compressing the text in the deflate format.
+	 * 
+	 * @param zlib true for the zlib wrapper, false for raw deflate
+	 * @return
+	 * @throws Exception
+	 */
+	private static byte[] deflate(boolean zlib) throws Exception {
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		Deflater deflater = new Deflater(Deflater.DEFAULT_COMPRESSION, !zlib);
+		DeflaterOutputStream deflaterStream = new DeflaterOutputStream(outputStream, deflater);
+		deflaterStream.write(TEXT.getBytes(StandardCharsets.UTF_8));
+		deflaterStream.close();
+		deflater.end();
+		return outputStream.toByteArray();
+	}
+	
+	@Test
+	public void gzipBodyIsInflated() throws Exception {
+		assertEquals(TEXT, inflate(ContentInflater.GZIP, gzip(), 4096));
+		assertEquals(TEXT, inflate(ContentInflater.X_GZIP, gzip(), 4096));
+	}
+	
+	@Test
+	public void gzipHeaderWithOptionalFieldsIsSkippedByteByByte() throws Exception {
+		assertEquals(TEXT, inflate(ContentInflater.GZIP, gzipWithOptionalFields(), 1));
+	}
+	
+	@Test
+	public void deflateBodyIsInflatedWithAndWithoutZlibWrapper() throws Exception {
+		assertEquals(TEXT, inflate(ContentInflater.DEFLATE, deflate(true), 4096));
+		assertEquals(TEXT, inflate(ContentInflater.DEFLATE, deflate(false), 4096));
+		assertEquals(TEXT, inflate(ContentInflater.DEFLATE, deflate(true), 1));
+		assertEquals(TEXT, inflate(ContentInflater.DEFLATE, deflate(false), 1));
+	}
+	
+	@Test
+	public void emptyBodyIsInflatedToEmptyText() throws Exception {
+		assertEquals("", inflate(ContentInflater.GZIP, new byte[0], 1));
+		assertEquals("", inflate(ContentInflater.DEFLATE, new byte[0], 1));
+	}
+	
+	@Test(expected = ZipException.class)
+	public void bodyWithoutGzipMagicIsRejected() throws Exception {
+		inflate(ContentInflater.GZIP, TEXT.getBytes(StandardCharsets.UTF_8), 4096);
+	}
+	
+	@Test
+	public void uncompressedEncodingsHaveNoInflater() {
+		assertNull(ContentInflater.create(null));
+		assertNull(ContentInflater.create("identity"));
+		assertTrue(ContentInflater.create(" GZIP ") != null);
+	}
+}
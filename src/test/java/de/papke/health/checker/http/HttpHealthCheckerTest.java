@@ -0,0 +1,188 @@
+package de.papke.health.checker.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertNull;
+import static org.junit.Assert.assertTrue;
+
+import java.io.ByteArrayOutputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.InetSocketAddress;
+import java.nio.charset.StandardCharsets;
+import java.util.ArrayList;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.zip.DeflaterOutputStream;
+import java.util.zip.GZIPOutputStream;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import com.sun.net.httpserver.HttpExchange;
+import com.sun.net.httpserver.HttpHandler;
+import com.sun.net.httpserver.HttpServer;
+
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.api.Status;
+
+/**
+ * Tests for decompressing response bodies and for reusing the last
+ * validated response of conditional requests.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class HttpHealthCheckerTest {
+	
+	private static final String ETAG = "\"v1\"";
+	private static final String TEXT = "{\"status\":\"UP\",\"version\":1}";
+	private static final String PATTERN = "\"status\":\"UP\"";
+	
+	private HttpServer httpServer;
+	private final List<String> ifNoneMatchList = Collections.synchronizedList(new ArrayList<String>());
+	private volatile int statusCode = 200;
+	
+	@Before
+	public void setUp() throws Exception {
+		
+		httpServer = HttpServer.create(new InetSocketAddress(InetAddress.getLoopbackAddress(), 0), 50);
+		httpServer.createContext("/", new HttpHandler() {
+			
+			public void handle(HttpExchange exchange) {
+				try {
+					respond(exchange);
+				}
+				catch (Exception e) {
+					// the test fails with the result of the health check
+				}
+				finally {
+					exchange.close();
+				}
+			}
+		});
+		httpServer.start();
+	}
+	
+	@After
+	public void tearDown() {
+		httpServer.stop(0);
+	}
+	
+	/**
+	 * Helper method for answering a request, the path selects the content encoding.
+	 * 
+	 * @param exchange
+	 * @throws Exception
+	 */
+	private void respond(HttpExchange exchange) throws Exception {
+		
+		String path = exchange.getRequestURI().getPath();
+		
+		// answer conditional requests with 304, if the document has not been modified
+		String ifNoneMatch = exchange.getRequestHeaders().getFirst("If-None-Match");
+		ifNoneMatchList.add(ifNoneMatch);
+		if (statusCode == 200 && ETAG.equals(ifNoneMatch)) {
+			exchange.getResponseHeaders().set("ETag", ETAG);
+			exchange.sendResponseHeaders(304, -1);
+			return;
+		}
+		
+		// encode the response text
+		byte[] body = TEXT.getBytes(StandardCharsets.UTF_8);
+		ByteArrayOutputStream outputStream = new ByteArrayOutputStream();
+		if (path.startsWith("/gzip")) {
+			exchange.getResponseHeaders().set("Content-Encoding", ContentInflater.GZIP);
+			OutputStream encodingStream = new GZIPOutputStream(outputStream);
+			encodingStream.write(body);
+			encodingStream.close();
+			body = outputStream.toByteArray();
+		}
+		else if (path.startsWith("/deflate")) {
+			exchange.getResponseHeaders().set("Content-Encoding", ContentInflater.DEFLATE);
+			OutputStream encodingStream = new DeflaterOutputStream(outputStream);
+			encodingStream.write(body);
+			encodingStream.close();
+			body = outputStream.toByteArray();
+		}
+		else if (path.startsWith("/empty")) {
+			exchange.getResponseHeaders().set("Content-Encoding", ContentInflater.GZIP);
+			body = new byte[0];
+		}
+		
+		exchange.getResponseHeaders().set("Content-Type", "application/json; charset=UTF-8");
+		exchange.getResponseHeaders().set("ETag", ETAG);
+		exchange.sendResponseHeaders(statusCode, body.length > 0 ? body.length : -1);
+		exchange.getResponseBody().write(body);
+	}
+	
+	/**
+	 * Helper method for doing a health check against the stub server.
+	 * 
+	 * @param path
+	 * @param args the additional command line arguments
+	 * @return
+	 * @throws Exception
+	 */
+	private CheckResult check(String path, String... args) throws Exception {
+		
+		List<String> argList = new ArrayList<String>(Arrays.asList("-l", "http://127.0.0.1:" + httpServer.getAddress().getPort() + path, "--compression", "true"));
+		argList.addAll(Arrays.asList(args));
+		
+		HttpHealthChecker healthChecker = new HttpHealthChecker();
+		return healthChecker.checkWithinDeadline(healthChecker.parse(argList.toArray(new String[argList.size()])));
+	}
+	
+	@Test
+	public void compressedBodiesAreMatchedByBothEngines() throws Exception {
+		for (String engine : new String[] { "blocking", "nio" }) {
+			for (String path : new String[] { "/gzip", "/deflate" }) {
+				CheckResult result = check(path, "--engine", engine, "-x", PATTERN);
+				assertEquals(engine + " " + path + ": " + result.getMessage(), Status.UP, result.getStatus());
+				assertTrue(result.getDetail(), result.getDetail().contains("bytes decoded"));
+			}
+		}
+	}
+	
+	@Test
+	public void emptyGzipBodyIsUp() throws Exception {
+		for (String engine : new String[] { "blocking", "nio" }) {
+			CheckResult result = check("/empty", "--engine", engine);
+			assertEquals(engine + ": " + result.getMessage(), Status.UP, result.getStatus());
+		}
+	}
+	
+	@Test
+	public void notModifiedResponseReusesLastValidatedResult() throws Exception {
+		
+		// validate the response with the first request
+		CheckResult result = check("/gzip", "--conditional", "true", "-x", PATTERN);
+		assertEquals(Status.UP, result.getStatus());
+		
+		// reuse the outcome of the validated response
+		result = check("/gzip", "--conditional", "true", "-x", PATTERN);
+		assertEquals(Status.UP, result.getStatus());
+		assertTrue(result.getDetail(), result.getDetail().contains("reused (not modified)"));
+		assertTrue(result.getDetail(), result.getDetail().contains(TEXT));
+		assertEquals(Arrays.asList(null, ETAG), ifNoneMatchList);
+	}
+	
+	@Test
+	public void unexpectedStatusCodeRemovesLastValidatedResult() throws Exception {
+		
+		// validate the response with the first request
+		assertEquals(Status.UP, check("/gzip", "--conditional", "true").getStatus());
+		
+		// the validated response is dropped with the unexpected status code
+		statusCode = 500;
+		assertEquals(Status.DOWN, check("/gzip", "--conditional", "true").getStatus());
+		
+		// the next request is not conditional
+		statusCode = 200;
+		assertEquals(Status.UP, check("/gzip", "--conditional", "true").getStatus());
+		assertEquals(3, ifNoneMatchList.size());
+		assertEquals(ETAG, ifNoneMatchList.get(1));
+		assertNull(ifNoneMatchList.get(2));
+	}
+}
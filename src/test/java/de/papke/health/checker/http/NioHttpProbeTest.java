@@ -0,0 +1,257 @@
+package de.papke.health.checker.http;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.InputStream;
+import java.io.OutputStream;
+import java.net.InetAddress;
+import java.net.ServerSocket;
+import java.net.Socket;
+import java.nio.charset.StandardCharsets;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+import java.util.concurrent.CompletableFuture;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Test;
+
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.api.Status;
+import de.papke.health.checker.engine.ResultListener;
+import de.papke.health.checker.util.PatternMatcher;
+
+/**
+ * Tests for parsing responses with the non-blocking HTTP engine.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class NioHttpProbeTest {
+	
+	private static final long TIMEOUT_MILLIS = 10000;
+	private static final int MAX_BODY_BYTES = 1024 * 1024;
+	
+	private StubServer stubServer;
+	
+	/**
+	 * Server for answering the connections in turn with the given
+	 * responses, which are sent in the given pieces.
+	 */
+	private static class StubServer extends Thread {
+		
+		private final ServerSocket serverSocket;
+		private final List<String[]> responseList;
+		
+		private StubServer(String[]... responses) throws Exception {
+			this.serverSocket = new ServerSocket(0, 50, InetAddress.getLoopbackAddress());
+			this.responseList = Arrays.asList(responses);
+			setDaemon(true);
+			start();
+		}
+		
+		@Override
+		public void run() {
+			try {
+				for (String[] pieces : responseList) {
+					
+					Socket socket = serverSocket.accept();
+					try {
+						
+						// read the request header
+						InputStream inputStream = socket.getInputStream();
+						int matched = 0;
+						while (matched < 4) {
+							int b = inputStream.read();
+							if (b == -1) {
+								break;
+							}
+							matched = (b == (matched % 2 == 0 ? '\r' : '\n')) ? matched + 1 : (b == '\r' ? 1 : 0);
+						}
+						
+						// send the pieces in separate reads of the probe
+						OutputStream outputStream = socket.getOutputStream();
+						for (String piece : pieces) {
+							outputStream.write(piece.getBytes(StandardCharsets.ISO_8859_1));
+							outputStream.flush();
+							TimeUnit.MILLISECONDS.sleep(5);
+						}
+					}
+					finally {
+						socket.close();
+					}
+				}
+			}
+			catch (Exception e) {
+				// the test fails with the result of the probe
+			}
+		}
+		
+		private String getUrl(String path) {
+			return "http://127.0.0.1:" + serverSocket.getLocalPort() + path;
+		}
+		
+		private void close() throws Exception {
+			serverSocket.close();
+		}
+	}
+	
+	@After
+	public void tearDown() throws Exception {
+		if (stubServer != null) {
+			stubServer.close();
+		}
+	}
+	
+	/**
+	 * Helper method for executing a GET request with the non-blocking engine.
+	 * 
+	 * @param url
+	 * @param pattern the pattern to search or null
+	 * @return
+	 * @throws Exception
+	 */
+	private static CheckResult get(String url, String pattern) throws Exception {
+		return get(url, pattern, 5000, -1);
+	}
+	
+	/**
+	 * Helper method for executing a GET request with the given timeouts.
+	 * 
+	 * @param url
+	 * @param pattern the pattern to search or null
+	 * @param timeoutMillis the connect and response timeout
+	 * @param deadlineMillis the deadline or -1
+	 * @return
+	 * @throws Exception
+	 */
+	private static CheckResult get(String url, String pattern, int timeoutMillis, long deadlineMillis) throws Exception {
+		
+		final CompletableFuture<CheckResult> future = new CompletableFuture<CheckResult>();
+		NioHttpEngine.getInstance().execute(createProbe(url, pattern, timeoutMillis, deadlineMillis, future));
+		
+		return future.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS);
+	}
+	
+	private static NioHttpProbe createProbe(String url, String pattern, int timeoutMillis, long deadlineMillis, final CompletableFuture<CheckResult> future) throws Exception {
+		
+		PatternMatcher patternMatcher = pattern != null ? new PatternMatcher(Collections.singletonList(pattern), Collections.<String>emptyList()) : null;
+		
+		return new NioHttpProbe(url, HttpMethod.get, null, null, null, null, null, 200, patternMatcher, MAX_BODY_BYTES,
+				false, null, timeoutMillis, timeoutMillis, deadlineMillis, -1, new ResultListener() {
+					
+					public void onResult(CheckResult result) {
+						future.complete(result);
+					}
+				});
+	}
+	
+	@Test
+	public void chunkedBodyIsParsedAcrossReads() throws Exception {
+		
+		stubServer = new StubServer(new String[] {
+				"HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n",
+				"5\r\nhel",
+				"lo\r\n7;name=value\r\n wo",
+				"rld\r",
+				"\n0\r\nX-Trailer: 1\r\n",
+				"\r\n"
+		});
+		
+		CheckResult result = get(stubServer.getUrl("/chunked"), "hello world");
+		
+		assertEquals(result.getMessage(), Status.UP, result.getStatus());
+		assertEquals(12, result.getBytesRead());
+	}
+	
+	@Test
+	public void chunkedBodyIsParsedFromSingleBytes() throws Exception {
+		
+		String response = "HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n3\r\nabc\r\nA\r\n0123456789\r\n0\r\n\r\n";
+		String[] pieces = new String[response.length()];
+		for (int i = 0; i < pieces.length; i++) {
+			pieces[i] = response.substring(i, i + 1);
+		}
+		stubServer = new StubServer(pieces);
+		
+		CheckResult result = get(stubServer.getUrl("/chunked"), "c0123");
+		
+		assertEquals(result.getMessage(), Status.UP, result.getStatus());
+		assertEquals(13, result.getBytesRead());
+	}
+	
+	@Test
+	public void patternMissingInChunkedBodyIsReported() throws Exception {
+		
+		stubServer = new StubServer(new String[] {
+				"HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\n4\r\nDOWN\r\n0\r\n\r\n"
+		});
+		
+		CheckResult result = get(stubServer.getUrl("/chunked"), "UP");
+		
+		assertEquals(Status.DOWN, result.getStatus());
+		assertTrue(result.getMessage(), result.getMessage().contains("'UP' does not match"));
+	}
+	
+	@Test
+	public void invalidChunkSizeFailsTheProbe() throws Exception {
+		
+		stubServer = new StubServer(new String[] {
+				"HTTP/1.1 200 OK\r\nTransfer-Encoding: chunked\r\n\r\nzz\r\n"
+		});
+		
+		assertEquals(Status.DOWN, get(stubServer.getUrl("/chunked"), "UP").getStatus());
+	}
+	
+	@Test
+	public void redirectIsFollowed() throws Exception {
+		
+		stubServer = new StubServer(
+				new String[] { "HTTP/1.1 302 Found\r\nLocation: /target\r\nContent-Length: 0\r\n\r\n" },
+				new String[] { "HTTP/1.1 200 OK\r\nContent-Length: 9\r\n\r\nstatus UP" });
+		
+		CheckResult result = get(stubServer.getUrl("/redirect"), "status UP");
+		
+		assertEquals(result.getMessage(), Status.UP, result.getStatus());
+	}
+	
+	@Test
+	public void zeroTimeoutsMeanNoTimeout() throws Exception {
+		
+		// answer after several sweeps of the engine
+		String[] pieces = new String[41];
+		Arrays.fill(pieces, "");
+		pieces[40] = "HTTP/1.1 200 OK\r\nContent-Length: 9\r\n\r\nstatus UP";
+		stubServer = new StubServer(pieces);
+		
+		CheckResult result = get(stubServer.getUrl("/slow"), "status UP", 0, -1);
+		
+		assertEquals(result.getMessage(), Status.UP, result.getStatus());
+	}
+	
+	@Test
+	public void redirectIsNotResolvedAfterTheDeadline() throws Exception {
+		
+		CompletableFuture<CheckResult> future = new CompletableFuture<CheckResult>();
+		NioHttpProbe probe = createProbe("http://127.0.0.1:1/", null, 0, 0, future);
+		
+		assertFalse(probe.resolveRedirect());
+		assertEquals(Status.TIMEOUT, future.get(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS).getStatus());
+	}
+	
+	@Test
+	public void unresolvableRedirectTargetFailsTheProbe() throws Exception {
+		
+		stubServer = new StubServer(new String[] {
+				"HTTP/1.1 302 Found\r\nLocation: http://health-checker-test.invalid/\r\nContent-Length: 0\r\n\r\n"
+		});
+		
+		CheckResult result = get(stubServer.getUrl("/redirect"), null);
+		
+		assertEquals(Status.DOWN, result.getStatus());
+		assertTrue(result.getMessage(), result.getMessage().contains("health-checker-test.invalid"));
+	}
+}
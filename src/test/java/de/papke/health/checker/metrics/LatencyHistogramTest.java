@@ -0,0 +1,76 @@
+package de.papke.health.checker.metrics;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.concurrent.TimeUnit;
+
+import org.junit.Test;
+
+/**
+ * Tests for counting latencies in the exported buckets and for
+ * the percentiles of the logarithmic buckets.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class LatencyHistogramTest {
+	
+	private static final int MILLISECOND = 0;
+	private static final int TWO_AND_A_HALF_MILLISECONDS = 1;
+	
+	@Test
+	public void valuesAreCountedUpToTheirExportedBound() {
+		
+		LatencyHistogram histogram = new LatencyHistogram();
+		
+		// the logarithmic bucket of 900 us spans the bound of 1 ms
+		histogram.record(TimeUnit.MICROSECONDS.toNanos(900));
+		histogram.record(TimeUnit.MICROSECONDS.toNanos(1000));
+		histogram.record(TimeUnit.MICROSECONDS.toNanos(1000) + 1);
+		histogram.record(TimeUnit.MICROSECONDS.toNanos(2500));
+		histogram.record(TimeUnit.MINUTES.toNanos(5));
+		
+		assertEquals(1000, LatencyHistogram.getBoundMicros(MILLISECOND));
+		assertEquals(2500, LatencyHistogram.getBoundMicros(TWO_AND_A_HALF_MILLISECONDS));
+		assertEquals(2, histogram.getCumulativeCount(MILLISECOND));
+		assertEquals(4, histogram.getCumulativeCount(TWO_AND_A_HALF_MILLISECONDS));
+		
+		// values above the highest bound are only counted in +Inf
+		assertEquals(4, histogram.getCumulativeCount(LatencyHistogram.getBoundCount() - 1));
+		assertEquals(5, histogram.getCount());
+	}
+	
+	@Test
+	public void everyExportedBoundCountsAllValuesUpToIt() {
+		
+		LatencyHistogram histogram = new LatencyHistogram();
+		
+		// record values just below, at and just above every bound
+		for (int i = 0; i < LatencyHistogram.getBoundCount(); i++) {
+			long boundNanos = TimeUnit.MICROSECONDS.toNanos(LatencyHistogram.getBoundMicros(i));
+			histogram.record(boundNanos - 1);
+			histogram.record(boundNanos);
+			histogram.record(boundNanos + 1);
+		}
+		
+		for (int i = 0; i < LatencyHistogram.getBoundCount(); i++) {
+			assertEquals(3 * i + 2, histogram.getCumulativeCount(i));
+		}
+	}
+	
+	@Test
+	public void percentilesStayWithinTheRelativeError() {
+		
+		LatencyHistogram histogram = new LatencyHistogram();
+		for (int i = 1; i <= 1000; i++) {
+			histogram.record(TimeUnit.MICROSECONDS.toNanos(i * 100));
+		}
+		
+		long median = histogram.getPercentile(50);
+		long p99 = histogram.getPercentile(99);
+		assertTrue(String.valueOf(median), median >= 50000 && median <= 50000 * 1.25);
+		assertTrue(String.valueOf(p99), p99 >= 99000 && p99 <= 99000 * 1.25);
+		assertEquals(1000 * 1001 / 2 * 100, histogram.getSumMicros());
+	}
+}
@@ -0,0 +1,130 @@
+package de.papke.health.checker.schedule;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertTrue;
+
+import java.util.Set;
+import java.util.concurrent.ConcurrentHashMap;
+import java.util.concurrent.CountDownLatch;
+import java.util.concurrent.TimeUnit;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.papke.health.checker.StubHealthChecker;
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.engine.CheckExecutor;
+import de.papke.health.checker.engine.ResultListener;
+
+/**
+ * Tests for firing health checks on the hashed timing wheel.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class HashedWheelSchedulerTest {
+	
+	private static final long TIMEOUT_MILLIS = 10000;
+	
+	private CheckExecutor executor;
+	private HashedWheelScheduler scheduler;
+	
+	@Before
+	public void setup() {
+		executor = new CheckExecutor(4);
+	}
+	
+	@After
+	public void shutdown() {
+		if (scheduler != null) {
+			scheduler.stop();
+		}
+		executor.shutdown();
+	}
+	
+	@Test
+	public void allRegisteredHealthChecksFire() throws Exception {
+		
+		int checks = 200;
+		final Set<String> names = ConcurrentHashMap.<String>newKeySet();
+		final CountDownLatch fired = new CountDownLatch(checks);
+		
+		scheduler = new HashedWheelScheduler(executor, new ResultListener() {
+			
+			public void onResult(CheckResult result) {
+				if (names.add(result.getName())) {
+					fired.countDown();
+				}
+			}
+		}, 1, 64);
+		
+		StubHealthChecker healthChecker = new StubHealthChecker();
+		for (int i = 0; i < checks; i++) {
+			scheduler.register(healthChecker.createHealthCheck("check-" + i, "--url", "http://wheel-test/" + i), 100);
+		}
+		
+		scheduler.start();
+		
+		assertTrue(fired.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+		assertEquals(checks, names.size());
+		assertEquals(checks, scheduler.getRegistered());
+	}
+	
+	@Test
+	public void healthChecksFireRepeatedlyAfterTheirInterval() throws Exception {
+		
+		long intervalMillis = 100;
+		int runs = 4;
+		final long[] resultNanos = new long[runs];
+		final CountDownLatch fired = new CountDownLatch(runs);
+		
+		// the interval spans several rounds of the small wheel
+		scheduler = new HashedWheelScheduler(executor, new ResultListener() {
+			
+			private int run;
+			
+			public synchronized void onResult(CheckResult result) {
+				if (run < resultNanos.length) {
+					resultNanos[run++] = System.nanoTime();
+					fired.countDown();
+				}
+			}
+		}, 1, 8);
+		
+		StubHealthChecker healthChecker = new StubHealthChecker();
+		scheduler.register(healthChecker.createHealthCheck("repeated", "--url", "http://wheel-test/repeated"), intervalMillis);
+		scheduler.start();
+		
+		assertTrue(fired.await(TIMEOUT_MILLIS, TimeUnit.MILLISECONDS));
+		
+		// the next runs are not earlier than the interval minus the jitter and one tick
+		long minimumMillis = (long) (intervalMillis * 0.9) - 1;
+		for (int i = 1; i < runs; i++) {
+			long delayMillis = TimeUnit.NANOSECONDS.toMillis(resultNanos[i] - resultNanos[i - 1]);
+			assertTrue("run " + (i + 1) + " after " + delayMillis + " ms", delayMillis >= minimumMillis);
+		}
+	}
+	
+	@Test
+	public void stoppedSchedulerDoesNotFire() throws Exception {
+		
+		StubHealthChecker healthChecker = new StubHealthChecker();
+		
+		scheduler = new HashedWheelScheduler(executor, new ResultListener() {
+			
+			public void onResult(CheckResult result) {
+			}
+		}, 1, 64);
+		scheduler.register(healthChecker.createHealthCheck("stopped", "--url", "http://wheel-test/stopped"), 50);
+		scheduler.start();
+		scheduler.stop();
+		
+		// runs handed over before stopping may still finish
+		TimeUnit.MILLISECONDS.sleep(20);
+		int executions = healthChecker.getExecutions();
+		TimeUnit.MILLISECONDS.sleep(200);
+		
+		assertEquals(executions, healthChecker.getExecutions());
+	}
+}
@@ -0,0 +1,71 @@
+package de.papke.health.checker.status;
+
+import static org.junit.Assert.assertEquals;
+
+import java.net.HttpURLConnection;
+import java.net.URL;
+
+import org.junit.After;
+import org.junit.Before;
+import org.junit.Test;
+
+import de.papke.health.checker.api.CheckResult;
+import de.papke.health.checker.api.Status;
+import de.papke.health.checker.api.Type;
+
+/**
+ * Tests for the paths of the status server.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class StatusServerTest {
+	
+	private StatusServer statusServer;
+	
+	@Before
+	public void setUp() throws Exception {
+		
+		ResultTable resultTable = new ResultTable();
+		resultTable.update(new CheckResult("y", Type.http, Status.UP, 5, "ok"));
+		
+		statusServer = new StatusServer(0, resultTable, 1);
+		statusServer.start();
+	}
+	
+	@After
+	public void tearDown() {
+		statusServer.stop();
+	}
+	
+	/**
+	 * Helper method for requesting a path of the status server.
+	 * 
+	 * @param path
+	 * @return the status code
+	 * @throws Exception
+	 */
+	private int get(String path) throws Exception {
+		HttpURLConnection connection = (HttpURLConnection) new URL("http://127.0.0.1:" + statusServer.getPort() + path).openConnection();
+		try {
+			return connection.getResponseCode();
+		}
+		finally {
+			connection.disconnect();
+		}
+	}
+	
+	@Test
+	public void healthPathsAreServed() throws Exception {
+		assertEquals(HttpURLConnection.HTTP_OK, get("/health"));
+		assertEquals(HttpURLConnection.HTTP_OK, get("/health/"));
+		assertEquals(HttpURLConnection.HTTP_OK, get("/health/y"));
+		assertEquals(HttpURLConnection.HTTP_NOT_FOUND, get("/health/x"));
+	}
+	
+	@Test
+	public void pathsWithHealthPrefixAreNotFound() throws Exception {
+		assertEquals(HttpURLConnection.HTTP_NOT_FOUND, get("/healthxy"));
+		assertEquals(HttpURLConnection.HTTP_NOT_FOUND, get("/healthy"));
+	}
+}
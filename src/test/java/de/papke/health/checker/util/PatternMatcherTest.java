@@ -0,0 +1,182 @@
+package de.papke.health.checker.util;
+
+import static org.junit.Assert.assertEquals;
+import static org.junit.Assert.assertFalse;
+import static org.junit.Assert.assertTrue;
+
+import java.io.StringReader;
+import java.util.Arrays;
+import java.util.Collections;
+import java.util.List;
+
+import org.junit.Test;
+
+/**
+ * Tests for searching patterns in windows of a streamed text,
+ * especially for matches across the window boundaries.
+ * 
+ * @author Christoph Papke (info@christoph-papke.de)
+ *
+ */
+public class PatternMatcherTest {
+	
+	private static final int BOUNDARY = StreamingMatcher.WINDOW_SIZE;
+	
+	/**
+	 * Helper method for creating a text of filler characters with
+	 * the given part starting at the given position.
+	 * 
+	 * @param part
+	 * @param position
+	 * @param length
+	 * @return
+	 */
+	private static String createText(String part, int position, int length) {
+		
+		StringBuilder builder = new StringBuilder(length);
+		while (builder.length() < position) {
+			builder.append('x');
+		}
+		builder.append(part);
+		while (builder.length() < length) {
+			builder.append('x');
+		}
+		
+		return builder.toString();
+	}
+	
+	private static String repeat(char c, int count) {
+		char[] chars = new char[count];
+		Arrays.fill(chars, c);
+		return new String(chars);
+	}
+	
+	private static PatternMatcher.Scan find(List<String> includeList, List<String> excludeList, String text) throws Exception {
+		PatternMatcher patternMatcher = new PatternMatcher(includeList, excludeList);
+		return new StreamingMatcher(patternMatcher.newScan(-1)).find(new StringReader(text));
+	}
+	
+	/**
+	 * Helper method for pushing a text in pieces of the given size.
+	 * 
+	 * @param includeList
+	 * @param excludeList
+	 * @param text
+	 * @param pieceSize
+	 * @return
+	 */
+	private static PatternMatcher.Scan push(List<String> includeList, List<String> excludeList, String text, int pieceSize) {
+		
+		PatternMatcher patternMatcher = new PatternMatcher(includeList, excludeList);
+		StreamingMatcher streamingMatcher = new StreamingMatcher(patternMatcher.newScan(-1));
+		
+		char[] chars = text.toCharArray();
+		for (int offset = 0; offset < chars.length; offset += pieceSize) {
+			if (streamingMatcher.write(chars, offset, Math.min(pieceSize, chars.length - offset))) {
+				break;
+			}
+		}
+		
+		return streamingMatcher.finish();
+	}
+	
+	@Test
+	public void literalIsFoundAcrossTheWindowBoundary() throws Exception {
+		
+		String text = createText("status=healthy", BOUNDARY - 6, 2 * BOUNDARY);
+		
+		assertTrue(find(Collections.singletonList("status=healthy"), Collections.<String>emptyList(), text).isMatched());
+	}
+	
+	@Test
+	public void literalLongerThanTheOverlapIsFoundAcrossTheWindowBoundary() throws Exception {
+		
+		String literal = "<" + repeat('a', StreamingMatcher.OVERLAP_SIZE * 2) + ">";
+		String text = createText(literal, BOUNDARY - StreamingMatcher.OVERLAP_SIZE, 3 * BOUNDARY);
+		
+		assertTrue(find(Collections.singletonList(literal), Collections.<String>emptyList(), text).isMatched());
+	}
+	
+	@Test
+	public void regexIsVerifiedWhenItsPrefixEndsAtTheWindowBoundary() throws Exception {
+		
+		// the prefix is in the first window, the rest of the match in the next one
+		String text = createText("status: 200 OK", BOUNDARY - "status: ".length(), 2 * BOUNDARY);
+		
+		assertTrue(find(Collections.singletonList("status: \\d+ OK"), Collections.<String>emptyList(), text).isMatched());
+	}
+	
+	@Test
+	public void regexWithoutPrefixIsFoundInTheOverlap() throws Exception {
+		
+		String text = createText("v=12.34", BOUNDARY - 3, 2 * BOUNDARY);
+		
+		assertTrue(find(Collections.singletonList("\\w=\\d+\\.\\d+"), Collections.<String>emptyList(), text).isMatched());
+	}
+	
+	@Test
+	public void excludeIsFoundAcrossTheWindowBoundary() throws Exception {
+		
+		String text = createText("healthy", 0, BOUNDARY - 4) + "ERROR" + repeat('x', BOUNDARY);
+		PatternMatcher.Scan scan = find(Collections.singletonList("healthy"), Collections.singletonList("ERROR"), text);
+		
+		assertFalse(scan.isMatched());
+		assertEquals("The exclude pattern 'ERROR' matches the text", scan.getFailure("text"));
+	}
+	
+	@Test
+	public void missingPatternIsReported() throws Exception {
+		
+		String text = createText("status: 200 OK", 10, 2 * BOUNDARY);
+		PatternMatcher.Scan scan = find(Arrays.asList("status: \\d+ OK", "ready"), Collections.<String>emptyList(), text);
+		
+		assertFalse(scan.isMatched());
+		assertEquals("The pattern 'ready' does not match the text", scan.getFailure("text"));
+	}
+	
+	@Test
+	public void quoteWithoutEndIsNotCombined() throws Exception {
+		
+		String text = createText("foo bar a|b", 10, 100);
+		
+		// the quote would swallow the closing parenthesis in the alternation
+		assertTrue(find(Arrays.asList("\\Qfoo", "b.r"), Collections.<String>emptyList(), text).isMatched());
+		assertFalse(find(Collections.singletonList("b.r"), Arrays.asList("E.ROR", "\\Qa|b"), text).isMatched());
+		assertTrue(find(Collections.singletonList("b.r"), Arrays.asList("E.ROR", "\\Qa|c"), text).isMatched());
+		
+		// a quote with end is still combined
+		assertTrue(find(Arrays.asList("\\Qfo\\Eo", "b.r"), Collections.<String>emptyList(), text).isMatched());
+	}
+	
+	@Test
+	public void endOfWindowIsNotTheEndOfTheText() throws Exception {
+		
+		// the first window ends with "foo", the text goes on
+		String text = createText("foobar", BOUNDARY - 3, 2 * BOUNDARY);
+		List<String> none = Collections.<String>emptyList();
+		
+		// prefixed, combined and separate regexes
+		for (String pattern : Arrays.asList("foo$", "foo\\z", "foo\\Z", "foo\\b", "[f]oo$", "(o)\\1$")) {
+			assertFalse(pattern, find(Collections.singletonList(pattern), none, text).isMatched());
+			assertFalse(pattern, find(Arrays.asList(pattern, "x.x"), none, text).isMatched());
+			assertTrue(pattern, find(Collections.singletonList("x"), Collections.singletonList(pattern), text).isMatched());
+			assertTrue(pattern, push(Collections.singletonList("x"), Collections.singletonList(pattern), text, 1000).isMatched());
+		}
+		
+		// the end of the text is still found
+		String endText = createText("foo", 2 * BOUNDARY - 3, 2 * BOUNDARY);
+		assertTrue(find(Arrays.asList("foo$", "foo\\z", "[f]oo$", "(o)\\1\\z"), none, endText).isMatched());
+		assertTrue(find(Arrays.asList("x$", "[x]\\Z", "(x)\\1$"), none, text).isMatched());
+	}
+	
+	@Test
+	public void pushedPiecesAreMatchedAcrossTheWindowBoundary() throws Exception {
+		
+		String text = createText("status: 200 OK", BOUNDARY - "status: 2".length(), 2 * BOUNDARY + 100);
+		List<String> includeList = Arrays.asList("status: \\d+ OK", "200 OK");
+		
+		assertTrue(push(includeList, Collections.<String>emptyList(), text, 7).isMatched());
+		assertTrue(push(includeList, Collections.<String>emptyList(), text, 1).isMatched());
+		assertFalse(push(includeList, Collections.singletonList("OK"), text, 7).isMatched());
+	}
+}